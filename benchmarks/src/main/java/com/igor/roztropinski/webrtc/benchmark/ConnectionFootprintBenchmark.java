@@ -0,0 +1,84 @@
+package com.igor.roztropinski.webrtc.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap retained by the server per idle connection: new (accepted, not authenticated yet) and authenticated one,
+ * that is not a member of any room. Sockets are created before the first measurement, so only what the server keeps
+ * for them is counted; what real socket of the http server keeps (netty channel, buffers) is not.
+ * Time is meaningless here, retainedBytesPerConnection is the result.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-XX:+UseSerialGC"})
+public class ConnectionFootprintBenchmark {
+
+    @Param({"100000"})
+    private int connections;
+
+    @Param({"false", "true"})
+    private boolean authenticated;
+
+    private ServerHarness harness;
+    private StubSocket[] sockets;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public double retainedBytesPerConnection;
+    }
+
+    /**
+     * Server logs every connection, output of the forked vm would be counted as well.
+     */
+    @Setup(Level.Trial)
+    public void silenceLogs() {
+        java.util.logging.Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() throws Exception {
+        harness = new ServerHarness(connections);
+        sockets = new StubSocket[connections];
+        for (int i = 0; i < connections; i++) {
+            sockets[i] = new StubSocket("socket-" + (i + 1));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws Exception {
+        harness.close();
+        harness = null;
+        sockets = null;
+    }
+
+    @Benchmark
+    public long connect(Footprint footprint) throws Exception {
+        var before = usedHeap();
+        harness.run(() -> {
+            for (int i = 0; i < sockets.length; i++) {
+                harness.accept(sockets[i]);
+                if (authenticated) {
+                    harness.authenticate(sockets[i], i + 1);
+                }
+            }
+        });
+        var after = usedHeap();
+        footprint.retainedBytesPerConnection = (double) (after - before) / connections;
+        return after;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
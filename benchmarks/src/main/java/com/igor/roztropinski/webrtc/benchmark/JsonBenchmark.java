@@ -0,0 +1,46 @@
+package com.igor.roztropinski.webrtc.benchmark;
+
+import com.igor.roztropinski.webrtc.function.SocketMessages;
+import com.igor.roztropinski.webrtc.json.JsonMapper;
+import com.igor.roztropinski.webrtc.model.RawSocketMessage;
+import com.igor.roztropinski.webrtc.model.RoomMembers;
+import com.igor.roztropinski.webrtc.model.SocketMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of server messages and deserialization of client messages, with {@link RawSocketMessage}
+ * going through its custom deserializer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    private final SocketMessage<RoomMembers> roomMembers = SocketMessages.roomMembers(
+            new RoomMembers("default", 1, new long[]{1, 2, 3, 4, 5, 6, 7, 8}));
+
+    @Benchmark
+    public String jsonRoomMembers() {
+        return JsonMapper.json(roomMembers);
+    }
+
+    @Benchmark
+    public byte[] jsonBytesRoomMembers() {
+        return JsonMapper.jsonBytes(roomMembers);
+    }
+
+    @Benchmark
+    public RawSocketMessage objectJoinRoom() {
+        return JsonMapper.object(Messages.JOIN_ROOM, RawSocketMessage.class);
+    }
+
+    @Benchmark
+    public RawSocketMessage objectPeerLog() {
+        return JsonMapper.object(Messages.PEER_LOG, RawSocketMessage.class);
+    }
+}
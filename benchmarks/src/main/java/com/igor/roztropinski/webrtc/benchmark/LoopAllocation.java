@@ -0,0 +1,33 @@
+package com.igor.roztropinski.webrtc.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Bytes allocated per operation by the server event loop. Gc profiler normalizes allocations of benchmark threads only,
+ * so for benchmarks driving {@link ServerHarness} this is what its gc.alloc.rate.norm is for other benchmarks.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class LoopAllocation {
+
+    public double loopAllocRateNorm;
+    private long bytes;
+    private long operations;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        bytes = 0;
+        operations = 0;
+        loopAllocRateNorm = 0;
+    }
+
+    void record(long allocated, int operations) {
+        this.bytes += allocated;
+        this.operations += operations;
+        this.loopAllocRateNorm = (double) bytes / this.operations;
+    }
+}
@@ -0,0 +1,36 @@
+package com.igor.roztropinski.webrtc.benchmark;
+
+import com.igor.roztropinski.webrtc.wire.BinaryEnvelope;
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Typical client messages.
+ */
+public class Messages {
+
+    public static final String JOIN_ROOM = "{\"type\":\"JOIN_ROOM\",\"data\":\"default\"}";
+    public static final String PEER_LOG = "{\"type\":\"PEER_LOG\",\"data\":{\"peerId\":\"2\",\"message\":\"ICE connection state changed\",\"objects\":[\"connected\"]}}";
+    public static final String PING = "{\"type\":\"PING\"}";
+    public static final String SDP = "v=0\\r\\no=- 4611731400430051336 2 IN IP4 127.0.0.1\\r\\ns=-\\r\\nt=0 0\\r\\na=group:BUNDLE 0 1\\r\\na=msid-semantic: WMS stream\\r\\nm=audio 9 UDP/TLS/RTP/SAVPF 111 103 104 9 0 8 106 105 13 110 112 113 126\\r\\nc=IN IP4 0.0.0.0\\r\\na=rtcp:9 IN IP4 0.0.0.0\\r\\na=ice-ufrag:EsAw\\r\\na=ice-pwd:bP+XJMM09aR8AiX1jdukzR6Y\\r\\na=fingerprint:sha-256 DA:7B:57:DC:28:CE:04:4F:31:79:85:C4:31:67:EB:27:58:29:ED:77:2A:0D:24:AE:ED:AD:30:BC:BD:F1:9C:02\\r\\na=setup:actpass\\r\\na=mid:0\\r\\na=sendrecv\\r\\na=rtcp-mux\\r\\na=rtpmap:111 opus/48000/2\\r\\n";
+
+    public static final String OFFER_DATA = String.format("{\"type\":\"offer\",\"sdp\":\"%s\"}", SDP);
+    public static final String CANDIDATE_DATA = "{\"candidate\":\"candidate:842163049 1 udp 1677729535 93.184.216.34 54321 typ srflx raddr 192.168.1.2 rport 54321 generation 0\",\"sdpMid\":\"0\",\"sdpMLineIndex\":0}";
+
+    public static String offer(long from, long to) {
+        return String.format("{\"from\":%d,\"to\":%d,\"event\":\"offer\",\"data\":%s}", from, to, OFFER_DATA);
+    }
+
+    public static String candidate(long from, long to) {
+        return String.format("{\"from\":%d,\"to\":%d,\"event\":\"candidate\",\"data\":%s}", from, to, CANDIDATE_DATA);
+    }
+
+    public static Buffer binaryOffer(long from, long to) {
+        return BinaryEnvelope.encode("offer", from, to, OFFER_DATA.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Buffer binaryCandidate(long from, long to) {
+        return BinaryEnvelope.encode("candidate", from, to, CANDIDATE_DATA.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,78 @@
+package com.igor.roztropinski.webrtc.benchmark;
+
+import com.igor.roztropinski.webrtc.wire.WireFormat;
+import io.vertx.core.buffer.Buffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Peer event, from receiving its text by the server to writing it to the destination socket:
+ * parsing, validation of the origin, directory lookup and outbound queue.
+ * Sender and receiver speak the given wire formats, when they differ, every event is transcoded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PeerEventRoutingBenchmark {
+
+    private static final int BATCH = 1000;
+
+    @Param({"JSON", "BINARY"})
+    public WireFormat senderFormat;
+    @Param({"JSON", "BINARY"})
+    public WireFormat receiverFormat;
+
+    private ServerHarness harness;
+    private StubSocket sender;
+    private StubSocket receiver;
+    private final String offer = Messages.offer(1, 2);
+    private final String candidate = Messages.candidate(1, 2);
+    private final Buffer binaryOffer = Messages.binaryOffer(1, 2);
+    private final Buffer binaryCandidate = Messages.binaryCandidate(1, 2);
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        harness = new ServerHarness(2);
+        sender = harness.connect(1, senderFormat);
+        receiver = harness.connect(2, receiverFormat);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        harness.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long offer(LoopAllocation allocation) throws Exception {
+        return senderFormat == WireFormat.BINARY ? relay(binaryOffer, allocation) : relay(offer, allocation);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long candidate(LoopAllocation allocation) throws Exception {
+        return senderFormat == WireFormat.BINARY ? relay(binaryCandidate, allocation) : relay(candidate, allocation);
+    }
+
+    private long relay(Buffer event, LoopAllocation allocation) throws Exception {
+        return harness.call(allocation, BATCH, () -> {
+            for (int i = 0; i < BATCH; i++) {
+                sender.receive(event);
+            }
+            return receiver.written();
+        });
+    }
+
+    private long relay(String event, LoopAllocation allocation) throws Exception {
+        return harness.call(allocation, BATCH, () -> {
+            for (int i = 0; i < BATCH; i++) {
+                sender.receive(event);
+            }
+            return receiver.written();
+        });
+    }
+}
@@ -0,0 +1,56 @@
+package com.igor.roztropinski.webrtc.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Membership change of a room, that already has given number of members: new member joins and leaves it,
+ * so every operation is ROOM_MEMBERS snapshot to the new member and MEMBER_JOINED, MEMBER_LEFT changes to the others
+ * (harness sends room changes at once, without a window).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoomMembersBroadcastBenchmark {
+
+    private static final int BATCH = 10;
+    private static final String JOIN = "{\"type\":\"JOIN_ROOM\",\"data\":\"benchmark\"}";
+    private static final String LEAVE = "{\"type\":\"LEAVE_ROOM\",\"data\":\"benchmark\"}";
+
+    @Param({"2", "10", "50", "100", "500"})
+    private int members;
+
+    private ServerHarness harness;
+    private StubSocket joining;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        harness = new ServerHarness(members + 1);
+        for (long id = 1; id <= members; id++) {
+            var member = harness.connect(id);
+            harness.run(() -> member.receive(JOIN));
+        }
+        joining = harness.connect(members + 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        harness.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long joinAndLeave(LoopAllocation allocation) throws Exception {
+        return harness.call(allocation, BATCH, () -> {
+            for (int i = 0; i < BATCH; i++) {
+                joining.receive(JOIN);
+                joining.receive(LEAVE);
+            }
+            return joining.written();
+        });
+    }
+}
@@ -0,0 +1,134 @@
+package com.igor.roztropinski.webrtc.benchmark;
+
+import com.igor.roztropinski.webrtc.SignalingServer;
+import com.igor.roztropinski.webrtc.SignalingServerAuthenticator;
+import com.igor.roztropinski.webrtc.admission.AdmissionControl;
+import com.igor.roztropinski.webrtc.admission.AdmissionOptions;
+import com.igor.roztropinski.webrtc.ice.IceServersIssuer;
+import com.igor.roztropinski.webrtc.metrics.Metrics;
+import com.igor.roztropinski.webrtc.peerlog.LoggingPeerLogSink;
+import com.igor.roztropinski.webrtc.outbound.CandidateBatching;
+import com.igor.roztropinski.webrtc.outbound.OutboundLimits;
+import com.igor.roztropinski.webrtc.outbound.WriteCoalescing;
+import com.igor.roztropinski.webrtc.session.SessionOptions;
+import com.igor.roztropinski.webrtc.wire.WireFormat;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.ServerWebSocket;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Real signaling server, with in-memory sockets instead of the http server. All calls are executed on the server
+ * event loop, as they would be in production, benchmarks should pass batches of operations to amortize that.
+ */
+public class ServerHarness {
+
+    private static final int TIMEOUT_SECONDS = 30;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final Vertx vertx;
+    private final Context context;
+    private final Map<String, Long> access = new HashMap<>();
+    private final SignalingServer server;
+    private Handler<ServerWebSocket> webSocketHandler;
+
+    public ServerHarness(int users) throws Exception {
+        for (long id = 1; id <= users; id++) {
+            access.put(secret(id), id);
+        }
+        vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(1));
+        context = vertx.getOrCreateContext();
+        //long timeouts and ping interval, so that none of them interferes with the measured paths,
+        //room changes are sent at once, not after a window, messages are not rate limited
+        server = new SignalingServer(new SignalingServerAuthenticator(access),
+                new AdmissionControl(AdmissionOptions.unlimited(users + 1)),
+                600_000, 600_000, 600_000, 100, 0, OutboundLimits.DEFAULT, CandidateBatching.DISABLED,
+                WriteCoalescing.DEFAULT, SessionOptions.DEFAULT, IceServersIssuer.DISABLED, new Metrics(),
+                new LoggingPeerLogSink());
+        var httpServer = (HttpServer) Proxy.newProxyInstance(ServerHarness.class.getClassLoader(),
+                new Class<?>[]{HttpServer.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("webSocketHandler")) {
+                        webSocketHandler = (Handler<ServerWebSocket>) args[0];
+                    }
+                    return method.getReturnType().isInstance(proxy) ? proxy : null;
+                });
+        call(() -> server.start(vertx, httpServer));
+    }
+
+    public static String secret(long id) {
+        return "secret-" + id;
+    }
+
+    public StubSocket connect(long id) throws Exception {
+        return connect(id, WireFormat.JSON);
+    }
+
+    public StubSocket connect(long id, WireFormat format) throws Exception {
+        return call(() -> {
+            var socket = new StubSocket("socket-" + id, format);
+            accept(socket);
+            authenticate(socket, id);
+            return socket;
+        });
+    }
+
+    /**
+     * Must be called on the event loop, as all methods of the server.
+     */
+    public void accept(StubSocket socket) {
+        webSocketHandler.handle(socket.socket());
+    }
+
+    /**
+     * Must be called on the event loop, as all methods of the server.
+     */
+    public void authenticate(StubSocket socket, long id) {
+        socket.receive(String.format("{\"type\":\"USER_AUTHENTICATION\",\"data\":\"%s\"}", secret(id)));
+    }
+
+    public <T> T call(Callable<T> task) throws Exception {
+        var result = new CompletableFuture<T>();
+        context.runOnContext(v -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Calls task on the event loop, recording allocations made by it.
+     */
+    public <T> T call(LoopAllocation allocation, int operations, Callable<T> task) throws Exception {
+        return call(() -> {
+            var allocated = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+            var result = task.call();
+            allocation.record(THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated, operations);
+            return result;
+        });
+    }
+
+    public void run(Runnable task) throws Exception {
+        call(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public void close() throws Exception {
+        vertx.close().toCompletionStage().toCompletableFuture().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,153 @@
+package com.igor.roztropinski.webrtc.benchmark;
+
+import com.igor.roztropinski.webrtc.SignalingServer;
+import com.igor.roztropinski.webrtc.SignalingServerAuthenticator;
+import com.igor.roztropinski.webrtc.SignalingVerticle;
+import com.igor.roztropinski.webrtc.admission.AdmissionControl;
+import com.igor.roztropinski.webrtc.admission.AdmissionOptions;
+import com.igor.roztropinski.webrtc.cluster.LoopbackCluster;
+import com.igor.roztropinski.webrtc.ice.IceServersIssuer;
+import com.igor.roztropinski.webrtc.metrics.Metrics;
+import com.igor.roztropinski.webrtc.peerlog.LoggingPeerLogSink;
+import com.igor.roztropinski.webrtc.session.SessionOptions;
+import com.igor.roztropinski.webrtc.shard.Shards;
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.WebSocket;
+import io.vertx.ext.web.Router;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Peer events relayed per second by the signaling server deployed on 1..N event loops (shards).
+ * Users are connected in pairs, accepted connections are spread across shards round robin,
+ * so most pairs have their peers on different shards and every relay crosses event loops.
+ * Clients run on a separate vertx instance, with as many event loops as server, so on a machine
+ * with at least twice as many cores as shards, throughput should grow roughly linearly with shards.
+ * On a single core it can not grow, event loops only take turns, so there it measures the cost of sharding:
+ * cross event loop hops and per shard state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ShardsScalingBenchmark {
+
+    private static final int PORT = 9977;
+    private static final int EVENTS_PER_SENDER = 100;
+    private static final int PAIRS = 64;
+    private static final String PEER_EVENT = "{\"from\":%d,\"to\":%d,\"event\":\"candidate\",\"data\":{\"candidate\":\"candidate:1 1 udp 2122260223 192.168.1.2 54321 typ host\"}}";
+
+    @Param({"1", "2", "4", "8"})
+    private int shards;
+
+    private Vertx serverVertx;
+    private Vertx clientVertx;
+    private final List<Sender> senders = new ArrayList<>();
+    private volatile CountDownLatch received;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        var access = new HashMap<String, Long>();
+        for (long id = 1; id <= PAIRS * 2; id++) {
+            access.put(secret(id), id);
+        }
+
+        serverVertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(shards));
+        var serverShards = new Shards<SignalingServer>(shards);
+        var shardsIndexes = new AtomicInteger();
+        var cluster = LoopbackCluster.standalone();
+        //all shards share a single admission control, without rate limits, as the node does
+        var admission = new AdmissionControl(AdmissionOptions.unlimited(PAIRS * 2));
+        var metrics = new Metrics();
+        var peerLogs = new LoggingPeerLogSink();
+        serverVertx.deployVerticle(() -> new SignalingVerticle(serverShards, shardsIndexes.getAndIncrement(), cluster,
+                        () -> new SignalingServer(new SignalingServerAuthenticator(access), admission,
+                                SessionOptions.DEFAULT, IceServersIssuer.DISABLED, metrics, peerLogs),
+                        Router::router,
+                        new HttpServerOptions().setPort(PORT)),
+                new DeploymentOptions().setInstances(shards))
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        clientVertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(shards));
+        var client = clientVertx.createHttpClient(new HttpClientOptions().setMaxWebSockets(PAIRS * 2));
+        for (long id = 1; id <= PAIRS * 2; id += 2) {
+            senders.add(connect(client, id, id + 1));
+            senders.add(connect(client, id + 1, id));
+        }
+        //node directory is updated asynchronously, after authentication
+        Thread.sleep(500);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        clientVertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        serverVertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS * 2 * EVENTS_PER_SENDER)
+    public void relayPeerEvents() throws Exception {
+        received = new CountDownLatch(PAIRS * 2 * EVENTS_PER_SENDER);
+        for (var sender : senders) {
+            sender.context.runOnContext(v -> {
+                for (int e = 0; e < EVENTS_PER_SENDER; e++) {
+                    sender.socket.writeTextMessage(sender.event);
+                }
+            });
+        }
+        if (!received.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Not all peer events were relayed, missing: " + received.getCount());
+        }
+    }
+
+    private Sender connect(HttpClient client, long id, long peerId) throws Exception {
+        var contexts = new Context[1];
+        var socket = client.webSocket(PORT, "localhost", "/")
+                .onSuccess(s -> contexts[0] = Vertx.currentContext())
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        var authenticated = new CountDownLatch(1);
+        socket.textMessageHandler(m -> {
+            if (authenticated.getCount() > 0) {
+                authenticated.countDown();
+            } else {
+                received.countDown();
+            }
+        });
+        socket.writeTextMessage(String.format("{\"type\":\"USER_AUTHENTICATION\",\"data\":\"%s\"}", secret(id)));
+        if (!authenticated.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("User " + id + " was not authenticated");
+        }
+        return new Sender(socket, contexts[0], String.format(PEER_EVENT, id, peerId));
+    }
+
+    private static String secret(long id) {
+        return "secret-" + id;
+    }
+
+    private static class Sender {
+
+        final WebSocket socket;
+        final Context context;
+        final String event;
+
+        Sender(WebSocket socket, Context context, String event) {
+            this.socket = socket;
+            this.context = context;
+            this.event = event;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.igor.roztropinski.webrtc.benchmark;
+
+import com.igor.roztropinski.webrtc.wire.WireFormat;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.net.SocketAddress;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * In-memory server websocket: it keeps handlers set by the server, so that messages can be passed to them directly,
+ * and counts frames written by the server, without any networking. Everything not needed by the server is a no-op.
+ * Proxy allocates arguments array on every call, which is a constant part of allocation rate reported for the server.
+ */
+public class StubSocket {
+
+    private static final Future<Void> WRITTEN = Future.succeededFuture();
+
+    private final String id;
+    private final ServerWebSocket socket;
+    private Handler<String> textMessageHandler;
+    private Handler<Buffer> binaryMessageHandler;
+    private Handler<Void> closeHandler;
+    private boolean closed;
+    private long written;
+
+    public StubSocket(String id) {
+        this(id, WireFormat.JSON);
+    }
+
+    /**
+     * @param format negotiated by the client, as its subprotocol
+     */
+    public StubSocket(String id, WireFormat format) {
+        this.id = id;
+        this.socket = (ServerWebSocket) Proxy.newProxyInstance(StubSocket.class.getClassLoader(),
+                new Class<?>[]{ServerWebSocket.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "textHandlerID":
+                        case "binaryHandlerID":
+                            return id;
+                        case "textMessageHandler":
+                            textMessageHandler = (Handler<String>) args[0];
+                            return proxy;
+                        case "binaryMessageHandler":
+                            binaryMessageHandler = (Handler<Buffer>) args[0];
+                            return proxy;
+                        case "subProtocol":
+                            return format.subProtocol();
+                        case "closeHandler":
+                            closeHandler = (Handler<Void>) args[0];
+                            return proxy;
+                        case "writeFrame":
+                        case "writeTextMessage":
+                        case "writeBinaryMessage":
+                            written++;
+                            return WRITTEN;
+                        case "writePing":
+                            return WRITTEN;
+                        case "close":
+                            close();
+                            return WRITTEN;
+                        case "isClosed":
+                            return closed;
+                        case "writeQueueFull":
+                            return false;
+                        case "remoteAddress":
+                            return SocketAddress.inetSocketAddress(0, "localhost");
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "StubSocket(" + id + ")";
+                        default:
+                            return method.getReturnType().isInstance(proxy) ? proxy : null;
+                    }
+                });
+    }
+
+    public ServerWebSocket socket() {
+        return socket;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    /**
+     * Passes text message to the server, as if it was received from the client.
+     */
+    public void receive(String text) {
+        textMessageHandler.handle(text);
+    }
+
+    /**
+     * Passes binary message to the server, as if it was received from the client.
+     */
+    public void receive(Buffer frame) {
+        binaryMessageHandler.handle(frame);
+    }
+
+    public long written() {
+        return written;
+    }
+
+    private void close() {
+        if (!closed) {
+            closed = true;
+            if (closeHandler != null) {
+                closeHandler.handle(null);
+            }
+        }
+    }
+}
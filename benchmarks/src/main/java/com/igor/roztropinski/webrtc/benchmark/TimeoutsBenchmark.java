@@ -0,0 +1,77 @@
+package com.igor.roztropinski.webrtc.benchmark;
+
+import com.igor.roztropinski.webrtc.timer.TimerWheel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One tick (100 ms) of connection timeouts, with connections idle deadlines spread evenly over 3 seconds
+ * (ping interval), so that every tick expires and reschedules 1/30 of them.
+ * Timer wheel, as used by the server, visits only expired timeouts; full sweep is what the server did before:
+ * every tick it checked all connections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimeoutsBenchmark {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(3000);
+
+    @Param({"1000", "10000", "100000"})
+    private int connections;
+
+    private TimerWheel wheel;
+    private Map<String, Connection> sweptConnections;
+    private long now;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        now = 0;
+        wheel = new TimerWheel(100, TimeUnit.MILLISECONDS, 512, now);
+        sweptConnections = new ConcurrentHashMap<>();
+        for (int i = 0; i < connections; i++) {
+            var connection = new Connection();
+            connection.deadline = now + TICK + (INTERVAL * i / connections);
+            connection.timeout = wheel.schedule(connection.deadline, () -> onTimeout(connection));
+            sweptConnections.put("socket-" + i, connection);
+        }
+    }
+
+    @Benchmark
+    public int wheelAdvance() {
+        now += TICK;
+        return wheel.advance(now);
+    }
+
+    @Benchmark
+    public int fullSweep() {
+        now += TICK;
+        var expired = new ArrayList<Connection>();
+        for (var c : sweptConnections.values()) {
+            if (now >= c.deadline) {
+                expired.add(c);
+            }
+        }
+        expired.forEach(c -> c.deadline = now + INTERVAL);
+        return expired.size();
+    }
+
+    private void onTimeout(Connection connection) {
+        connection.deadline = now + INTERVAL;
+        connection.timeout.reschedule(connection.deadline);
+    }
+
+    private static class Connection {
+
+        long deadline;
+        TimerWheel.Timeout timeout;
+    }
+}
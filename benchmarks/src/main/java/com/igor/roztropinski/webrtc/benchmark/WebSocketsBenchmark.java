@@ -0,0 +1,58 @@
+package com.igor.roztropinski.webrtc.benchmark;
+
+import com.igor.roztropinski.webrtc.function.WebSockets;
+import com.igor.roztropinski.webrtc.json.InboundMessageParser;
+import com.igor.roztropinski.webrtc.model.InboundMessage;
+import com.igor.roztropinski.webrtc.model.RawSocketMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading of client messages. {@link WebSockets#message} fails on peer events, which have no type,
+ * so for them it measures the exception path; {@link InboundMessageParser#parse} is the single pass parser,
+ * used by the server for all text messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebSocketsBenchmark {
+
+    private final StubSocket socket = new StubSocket("socket");
+    private final String offer = Messages.offer(1, 2);
+    private final String candidate = Messages.candidate(1, 2);
+
+    @Benchmark
+    public Optional<RawSocketMessage> messageValid() {
+        return WebSockets.message(socket.socket(), Messages.JOIN_ROOM, false);
+    }
+
+    @Benchmark
+    public Optional<RawSocketMessage> messagePeerEventOffer() {
+        return WebSockets.message(socket.socket(), offer, false);
+    }
+
+    @Benchmark
+    public Optional<RawSocketMessage> messagePeerEventCandidate() {
+        return WebSockets.message(socket.socket(), candidate, false);
+    }
+
+    @Benchmark
+    public Optional<InboundMessage> inboundValid() {
+        return InboundMessageParser.parse(Messages.JOIN_ROOM);
+    }
+
+    @Benchmark
+    public Optional<InboundMessage> inboundPeerEventOffer() {
+        return InboundMessageParser.parse(offer);
+    }
+
+    @Benchmark
+    public Optional<InboundMessage> inboundPeerEventCandidate() {
+        return InboundMessageParser.parse(candidate);
+    }
+}
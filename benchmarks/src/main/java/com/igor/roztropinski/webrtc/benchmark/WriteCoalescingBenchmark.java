@@ -0,0 +1,253 @@
+package com.igor.roztropinski.webrtc.benchmark;
+
+import com.igor.roztropinski.webrtc.SignalingServer;
+import com.igor.roztropinski.webrtc.SignalingServerAuthenticator;
+import com.igor.roztropinski.webrtc.SignalingVerticle;
+import com.igor.roztropinski.webrtc.admission.AdmissionControl;
+import com.igor.roztropinski.webrtc.admission.AdmissionOptions;
+import com.igor.roztropinski.webrtc.cluster.LoopbackCluster;
+import com.igor.roztropinski.webrtc.ice.IceServersIssuer;
+import com.igor.roztropinski.webrtc.metrics.Metrics;
+import com.igor.roztropinski.webrtc.outbound.CandidateBatching;
+import com.igor.roztropinski.webrtc.outbound.WriteCoalescing;
+import com.igor.roztropinski.webrtc.peerlog.LoggingPeerLogSink;
+import com.igor.roztropinski.webrtc.session.SessionOptions;
+import com.igor.roztropinski.webrtc.shard.Shards;
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.WebSocket;
+import io.vertx.ext.web.Router;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Peer events relayed by a single shard with every frame flushed at once (maxFlushDelay = 0) and with frames coalesced
+ * per event loop turn. Every receiver has a few senders, that send bursts of candidates at the same time, as peers
+ * of a room do after joining it. Besides throughput, server flushes and write syscalls of the whole process
+ * (from /proc/self/io, so client writes are there as well, one per event in both cases) are counted, together with
+ * relayed events, as counters are summed over iterations. Relay latency, from sender write to receiver read,
+ * is measured by receivers and its p50 and p99 are printed after every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WriteCoalescingBenchmark {
+
+    private static final int PORT = 9978;
+    private static final int RECEIVERS = 16;
+    private static final int SENDERS_PER_RECEIVER = 4;
+    private static final int EVENTS_PER_SENDER = 25;
+    private static final int EVENTS = RECEIVERS * SENDERS_PER_RECEIVER * EVENTS_PER_SENDER;
+    private static final int MAX_LATENCY_MICROS = 100_000;
+    private static final String SENT = "\"sent\":";
+    private static final String PEER_EVENT = "{\"from\":%d,\"to\":%d,\"event\":\"candidate\",\"data\":{\"candidate\":\"candidate:1 1 udp 2122260223 192.168.1.2 54321 typ host\"," + SENT + "%d}}";
+    private static final Path PROCESS_IO = Path.of("/proc/self/io");
+
+    @Param({"0", "1000"})
+    private int maxFlushDelay;
+
+    private Vertx serverVertx;
+    private Vertx clientVertx;
+    private SignalingServer server;
+    private final List<Sender> senders = new ArrayList<>();
+    //receivers run on a single client event loop, so it needs no synchronization
+    private final int[] latencies = new int[MAX_LATENCY_MICROS + 1];
+    private volatile CountDownLatch received;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Writes {
+
+        public long events;
+        public long flushes;
+        public long writeSyscalls;
+    }
+
+    /**
+     * Server logs every connection, output of the forked vm would be counted as well.
+     */
+    @Setup(Level.Trial)
+    public void silenceLogs() {
+        java.util.logging.Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        var users = RECEIVERS * (SENDERS_PER_RECEIVER + 1);
+        var access = new HashMap<String, Long>();
+        for (long id = 1; id <= users; id++) {
+            access.put(secret(id), id);
+        }
+
+        serverVertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(1));
+        var servers = new SignalingServer[1];
+        serverVertx.deployVerticle(() -> new SignalingVerticle(new Shards<>(1), 0, LoopbackCluster.standalone(),
+                        () -> servers[0] = new SignalingServer(new SignalingServerAuthenticator(access),
+                                new AdmissionControl(AdmissionOptions.unlimited(users)), CandidateBatching.DISABLED,
+                                new WriteCoalescing(maxFlushDelay), SessionOptions.DEFAULT, IceServersIssuer.DISABLED,
+                                new Metrics(), new LoggingPeerLogSink()),
+                        Router::router,
+                        new HttpServerOptions().setPort(PORT)),
+                new DeploymentOptions())
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        server = servers[0];
+
+        clientVertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(1));
+        var client = clientVertx.createHttpClient(new HttpClientOptions().setMaxWebSockets(users));
+        long id = 1;
+        for (int r = 0; r < RECEIVERS; r++) {
+            var receiver = id++;
+            connect(client, receiver);
+            for (int s = 0; s < SENDERS_PER_RECEIVER; s++) {
+                var sender = id++;
+                senders.add(new Sender(connect(client, sender), sender, receiver));
+            }
+        }
+        //directory is updated asynchronously, after authentication
+        Thread.sleep(500);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        clientVertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        serverVertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetLatencies() {
+        Arrays.fill(latencies, 0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void printLatencies() {
+        System.out.printf("relay latency p50: %d us, p99: %d us%n", percentile(0.5), percentile(0.99));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void relayPeerEvents(Writes writes) throws Exception {
+        var flushes = server.outboundStats().flushes();
+        var writeSyscalls = writeSyscalls();
+        received = new CountDownLatch(EVENTS);
+        for (var sender : senders) {
+            sender.socket.context.runOnContext(v -> {
+                for (int e = 0; e < EVENTS_PER_SENDER; e++) {
+                    sender.socket.socket.writeTextMessage(String.format(PEER_EVENT, sender.id, sender.peerId, System.nanoTime()));
+                }
+            });
+        }
+        if (!received.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Not all peer events were relayed, missing: " + received.getCount());
+        }
+        writes.events += EVENTS;
+        writes.flushes += server.outboundStats().flushes() - flushes;
+        writes.writeSyscalls += writeSyscalls() - writeSyscalls;
+    }
+
+    private Connected connect(HttpClient client, long id) throws Exception {
+        var contexts = new Context[1];
+        var socket = client.webSocket(PORT, "localhost", "/")
+                .onSuccess(s -> contexts[0] = Vertx.currentContext())
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        var authenticated = new CountDownLatch(1);
+        socket.textMessageHandler(m -> {
+            if (authenticated.getCount() > 0) {
+                authenticated.countDown();
+            } else {
+                onReceived(m);
+            }
+        });
+        socket.writeTextMessage(String.format("{\"type\":\"USER_AUTHENTICATION\",\"data\":\"%s\"}", secret(id)));
+        if (!authenticated.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("User " + id + " was not authenticated");
+        }
+        return new Connected(socket, contexts[0]);
+    }
+
+    private void onReceived(String message) {
+        var from = message.indexOf(SENT);
+        if (from < 0) {
+            return;
+        }
+        from += SENT.length();
+        var to = from;
+        while (Character.isDigit(message.charAt(to))) {
+            to++;
+        }
+        var latency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - Long.parseLong(message, from, to, 10));
+        latencies[(int) Math.min(latency, MAX_LATENCY_MICROS)]++;
+        received.countDown();
+    }
+
+    private int percentile(double percentile) {
+        long total = 0;
+        for (var count : latencies) {
+            total += count;
+        }
+        var rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int micros = 0; micros < latencies.length; micros++) {
+            seen += latencies[micros];
+            if (seen >= rank) {
+                return micros;
+            }
+        }
+        return MAX_LATENCY_MICROS;
+    }
+
+    /**
+     * Write syscalls (write, writev, sendmsg...) of the whole process.
+     */
+    private static long writeSyscalls() throws Exception {
+        for (var line : Files.readAllLines(PROCESS_IO)) {
+            if (line.startsWith("syscw:")) {
+                return Long.parseLong(line.substring("syscw:".length()).trim());
+            }
+        }
+        return 0;
+    }
+
+    private static String secret(long id) {
+        return "secret-" + id;
+    }
+
+    private static class Connected {
+
+        final WebSocket socket;
+        final Context context;
+
+        Connected(WebSocket socket, Context context) {
+            this.socket = socket;
+            this.context = context;
+        }
+    }
+
+    private static class Sender {
+
+        final Connected socket;
+        final long id;
+        final long peerId;
+
+        Sender(Connected socket, long id, long peerId) {
+            this.socket = socket;
+            this.id = id;
+            this.peerId = peerId;
+        }
+    }
+}
@@ -3,5 +3,9 @@ package com.igor.roztropinski.webrtc;
 public class Errors {
     public static final String NOT_AUTHENTICATED = "NOT_AUTHENTICATED";
     public static final String INVALID_MESSAGE_FORMAT = "INVALID_MESSAGE_FORMAT";
+    public static final String INVALID_ROOM_ID = "INVALID_ROOM_ID";
+    public static final String ROOM_NOT_ALLOWED = "ROOM_NOT_ALLOWED";
+    public static final String SESSION_EXPIRED = "SESSION_EXPIRED";
+    public static final String RATE_LIMITED = "RATE_LIMITED";
     public static final String UNKNOWN_ERROR = "UNKNOWN_ERROR";
 }
@@ -1,77 +1,508 @@
 package com.igor.roztropinski.webrtc;
 
+import com.igor.roztropinski.webrtc.admission.AdmissionControl;
+import com.igor.roztropinski.webrtc.admission.AdmissionOptions;
+import com.igor.roztropinski.webrtc.admission.ConnectionRates;
+import com.igor.roztropinski.webrtc.admission.MessageClass;
+import com.igor.roztropinski.webrtc.admission.RateLimitAction;
+import com.igor.roztropinski.webrtc.auth.AuthenticatedUser;
+import com.igor.roztropinski.webrtc.cluster.ClusterMessage;
+import com.igor.roztropinski.webrtc.cluster.ClusterTransport;
+import com.igor.roztropinski.webrtc.cluster.LoopbackCluster;
+import com.igor.roztropinski.webrtc.collection.LongMap;
 import com.igor.roztropinski.webrtc.function.Dates;
 import com.igor.roztropinski.webrtc.function.SocketMessages;
 import com.igor.roztropinski.webrtc.function.WebSockets;
-import com.igor.roztropinski.webrtc.json.JsonMapper;
+import com.igor.roztropinski.webrtc.ice.IceServersIssuer;
+import com.igor.roztropinski.webrtc.jfr.*;
+import com.igor.roztropinski.webrtc.json.InboundMessageParser;
+import com.igor.roztropinski.webrtc.json.RawSocketMessageDeserializer;
+import com.igor.roztropinski.webrtc.metrics.Closure;
+import com.igor.roztropinski.webrtc.metrics.Metrics;
+import com.igor.roztropinski.webrtc.metrics.SessionEvent;
+import com.igor.roztropinski.webrtc.metrics.ShardMetrics;
 import com.igor.roztropinski.webrtc.model.*;
+import com.igor.roztropinski.webrtc.outbound.CandidateBatcher;
+import com.igor.roztropinski.webrtc.outbound.CandidateBatching;
+import com.igor.roztropinski.webrtc.outbound.OutboundKind;
+import com.igor.roztropinski.webrtc.outbound.OutboundLimits;
+import com.igor.roztropinski.webrtc.outbound.OutboundQueue;
+import com.igor.roztropinski.webrtc.outbound.OutboundStats;
+import com.igor.roztropinski.webrtc.outbound.WriteCoalescer;
+import com.igor.roztropinski.webrtc.outbound.WriteCoalescing;
+import com.igor.roztropinski.webrtc.peerlog.LoggingPeerLogSink;
+import com.igor.roztropinski.webrtc.peerlog.PeerLogSink;
+import com.igor.roztropinski.webrtc.room.RoomNotification;
+import com.igor.roztropinski.webrtc.room.Rooms;
+import com.igor.roztropinski.webrtc.session.PeerEventsRing;
+import com.igor.roztropinski.webrtc.session.SessionOptions;
+import com.igor.roztropinski.webrtc.session.SessionTokens;
+import com.igor.roztropinski.webrtc.session.SuspendedSession;
+import com.igor.roztropinski.webrtc.session.SuspendedSessions;
+import com.igor.roztropinski.webrtc.shard.Shard;
+import com.igor.roztropinski.webrtc.shard.Shards;
+import com.igor.roztropinski.webrtc.shard.UserDirectory;
+import com.igor.roztropinski.webrtc.shard.UserLocation;
+import com.igor.roztropinski.webrtc.telemetry.ClientTelemetry;
+import com.igor.roztropinski.webrtc.telemetry.PeerStatsAggregator;
+import com.igor.roztropinski.webrtc.telemetry.RollingStats;
+import com.igor.roztropinski.webrtc.telemetry.StatsSnapshot;
+import com.igor.roztropinski.webrtc.timer.TimerWheel;
+import com.igor.roztropinski.webrtc.wire.BinaryEnvelope;
+import com.igor.roztropinski.webrtc.wire.RelayedPeerEvent;
+import com.igor.roztropinski.webrtc.wire.WireFormat;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.ServerWebSocket;
 import io.vertx.core.http.WebSocketBase;
-import lombok.Value;
-import lombok.With;
 import lombok.extern.slf4j.Slf4j;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.Collections;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
+/**
+ * Single shard of the signaling server. There is one instance per event loop, all of them listen on the same port,
+ * and all state of a shard (connections, rooms it owns, timeouts) is owned by its event loop. Directory of users
+ * is one per node, see {@link UserDirectory}.
+ * Connection lives on the shard that accepted it, rooms live on shards chosen by room id hash, and shards
+ * of this and other nodes pass messages to each other, by {@link Shards} and {@link ClusterTransport}.
+ * Outbound messages go through {@link OutboundQueue} of the connection, lost connections are kept
+ * in {@link SuspendedSessions} for a while, and client reports are handled by {@link ClientTelemetry}.
+ */
 @Slf4j
 public class SignalingServer {
 
-    private final ScheduledExecutorService scheduledExecutor = Executors.newScheduledThreadPool(1);
-    private final Map<String, SocketConnection> newConnections = new ConcurrentHashMap<>();
-    private final Map<String, String> authenticatedConnections = new ConcurrentHashMap<>();
-    private final Map<String, SocketConnection> idsConnections = new ConcurrentHashMap<>();
-    private final Set<Long> roomMembers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private static final int TIMEOUTS_WHEEL_SIZE = 512;
+    private static final long ACTIVE_CONNECTIONS_LOG_FREQUENCY = 10_000;
+    private static final long EVENT_LOOP_LAG_PROBE_INTERVAL = 100;
+    //applies directory updates of other nodes, so that they are applied once per node
+    private static final int DIRECTORY_SHARD = 0;
+    private final LongMap<SocketConnection> connections = new LongMap<>();
+    private final LongMap<SocketConnection> users = new LongMap<>();
+    private final Rooms rooms = new Rooms();
+    private final Set<String> roomFlushes = new HashSet<>();
+    private final Map<SocketMessageType, MessageHandler> handlers = new EnumMap<>(SocketMessageType.class);
     private final SignalingServerAuthenticator authenticator;
-    private final int maxConnections;
-    private final int authenticationTimeout;
-    private final int inactiveTimeout;
-    private final int invalidatorFrequency;
+    private final AdmissionControl admission;
+    private final RateLimitAction onRateLimited;
+    private final long authenticationTimeout;
+    private final long inactiveTimeout;
+    private final long pingInterval;
+    private final int timeoutsResolution;
+    private final int roomChangesWindow;
+    private final OutboundLimits outboundLimits;
+    private final CandidateBatching candidateBatching;
+    private final SessionOptions sessions;
+    private final IceServersIssuer iceServers;
+    private final OutboundStats outboundStats = new OutboundStats();
+    private final PeerStatsAggregator peerStats = new PeerStatsAggregator();
+    private final WriteCoalescer writes;
+    private final Metrics metrics;
+    private final PeerLogSink peerLogs;
     private final AtomicBoolean closing = new AtomicBoolean(false);
+    private final List<Long> timers = new ArrayList<>();
+    private Vertx vertx;
+    private Shards<SignalingServer> shards;
+    private UserDirectory directory;
+    private int shard;
+    private ClusterTransport cluster;
+    private String node;
+    private TimerWheel timeouts;
+    private SuspendedSessions suspendedSessions;
+    private CandidateBatcher candidates;
     private boolean started = false;
+    private long lagProbedAt;
+    private long eventLoopLag;
+    private long lastConnectionId;
+    private int newConnections;
+    //size of users, copied on every change, as it is read by stop() outside of the event loop
+    private volatile int authenticatedConnections;
 
+    /**
+     * @param admission             of the node, shared by all of its shards
+     * @param authenticationTimeout in milliseconds
+     * @param inactiveTimeout       in milliseconds
+     * @param pingInterval          in milliseconds, after that much idle time server pings connection
+     * @param timeoutsResolution    in milliseconds, precision with which timeouts are fired
+     * @param roomChangesWindow     in milliseconds, changes of room members within it are sent together, 0 sends them at once
+     * @param outboundLimits        of every connection outbound queue
+     * @param candidateBatching     of ICE candidates to every connection
+     * @param writeCoalescing       of writes to all connections of the shard
+     * @param sessions              how lost connections can be resumed
+     * @param iceServers            of the node, shared by all of its shards
+     * @param metrics               of the node, shared by all of its shards
+     * @param peerLogs              sink of the node, shared by all of its shards
+     */
     public SignalingServer(SignalingServerAuthenticator authenticator,
-                           int maxConnections,
+                           AdmissionControl admission,
                            int authenticationTimeout,
                            int inactiveTimeout,
-                           int invalidatorFrequency) {
+                           int pingInterval,
+                           int timeoutsResolution,
+                           int roomChangesWindow,
+                           OutboundLimits outboundLimits,
+                           CandidateBatching candidateBatching,
+                           WriteCoalescing writeCoalescing,
+                           SessionOptions sessions,
+                           IceServersIssuer iceServers,
+                           Metrics metrics,
+                           PeerLogSink peerLogs) {
         this.authenticator = authenticator;
-        this.inactiveTimeout = inactiveTimeout;
-        this.maxConnections = maxConnections;
-        this.authenticationTimeout = authenticationTimeout;
-        this.invalidatorFrequency = invalidatorFrequency;
+        this.inactiveTimeout = TimeUnit.MILLISECONDS.toNanos(inactiveTimeout);
+        this.pingInterval = TimeUnit.MILLISECONDS.toNanos(pingInterval);
+        this.admission = admission;
+        this.onRateLimited = admission.options().onExceeded();
+        this.authenticationTimeout = TimeUnit.MILLISECONDS.toNanos(authenticationTimeout);
+        this.timeoutsResolution = timeoutsResolution;
+        this.roomChangesWindow = roomChangesWindow;
+        this.outboundLimits = outboundLimits;
+        this.candidateBatching = candidateBatching;
+        this.writes = new WriteCoalescer(writeCoalescing, outboundStats);
+        this.sessions = sessions;
+        this.iceServers = iceServers;
+        this.metrics = metrics;
+        this.peerLogs = peerLogs;
 
-        this.authenticator.onAuthenticated(this::onAuthenticated);
+        handlers.put(SocketMessageType.PEER_EVENT, this::handlePeerEvent);
+        handlers.put(SocketMessageType.PEER_LOG, this::handlePeerLogMessage);
+        handlers.put(SocketMessageType.MEDIA_STATS, this::handleMediaStats);
+        handlers.put(SocketMessageType.PEER_STATS, this::handlePeerStats);
+        handlers.put(SocketMessageType.PING, this::handlePingMessage);
+        handlers.put(SocketMessageType.JOIN_ROOM, this::handleRoomMessage);
+        handlers.put(SocketMessageType.LEAVE_ROOM, this::handleRoomMessage);
+    }
+
+    public SignalingServer(SignalingServerAuthenticator authenticator, AdmissionControl admission,
+                           CandidateBatching candidateBatching, WriteCoalescing writeCoalescing, SessionOptions sessions,
+                           IceServersIssuer iceServers, Metrics metrics, PeerLogSink peerLogs) {
+        this(authenticator, admission, 20_000, 10_000, 3_000, 100, 50, OutboundLimits.DEFAULT, candidateBatching,
+                writeCoalescing, sessions, iceServers, metrics, peerLogs);
+    }
+
+    public SignalingServer(SignalingServerAuthenticator authenticator, AdmissionControl admission,
+                           SessionOptions sessions, IceServersIssuer iceServers, Metrics metrics, PeerLogSink peerLogs) {
+        this(authenticator, admission, CandidateBatching.DISABLED, WriteCoalescing.DEFAULT, sessions, iceServers,
+                metrics, peerLogs);
+    }
+
+    /**
+     * Server with its own admission control, limiting only connections of this shard.
+     */
+    public SignalingServer(SignalingServerAuthenticator authenticator, int maxConnections, Metrics metrics,
+                           PeerLogSink peerLogs) {
+        this(authenticator, new AdmissionControl(AdmissionOptions.defaults(maxConnections)), SessionOptions.DEFAULT,
+                IceServersIssuer.DISABLED, metrics, peerLogs);
     }
 
     public SignalingServer(SignalingServerAuthenticator authenticator, int maxConnections) {
-        this(authenticator, maxConnections, 20_000, 10_000, 10_000);
+        this(authenticator, maxConnections, new Metrics(), new LoggingPeerLogSink());
     }
 
     public SignalingServer(SignalingServerAuthenticator authenticator) {
         this(authenticator, 10);
     }
 
-    private void onAuthenticated(WebSocketBase authenticated, String userId) {
+    private void onAuthenticated(SocketConnection connection, AuthenticatedUser user) {
         if (closing.get()) {
             return;
         }
+        if (connection.state != ConnectionState.NEW) {
+            log.warn("Authenticated socket of {} user is no longer new, skipping", user.userId());
+            return;
+        }
+
+        addAuthenticated(connection, user, shards.nextSequence());
+        //authenticating again, instead of resuming, takes over room of the suspended session, as of replaced connection
+        var session = suspendedSessions.remove(connection.userId);
+        if (session != null) {
+            metrics.onSession(SessionEvent.DISCARDED);
+            takeOverRoom(connection, session.roomId());
+        }
+        send(connection, SocketMessages.userAuthenticated(new UserAuthenticated(connection.sessionToken, false)));
+        sendIceServers(connection);
+        publishConnected(connection.userId, connection.sequence);
+    }
+
+    private void addAuthenticated(SocketConnection connection, AuthenticatedUser user, long sequence) {
+        var userId = user.userId();
+        connection.state = ConnectionState.AUTHENTICATED;
+        newConnections--;
+        connection.user = user;
+        connection.userId = userId;
+        connection.sequence = sequence;
+        connection.sessionToken = sessions.enabled() ? SessionTokens.generate(shard) : null;
+        connection.activeAt = Dates.monotonicNanos();
+        connection.timeout.reschedule(connection.activeAt + pingInterval);
 
-        newConnections.remove(authenticated.textHandlerID());
-        authenticatedConnections.put(authenticated.textHandlerID(), userId);
-        var previous = idsConnections.put(userId, new SocketConnection(authenticated, Dates.now()));
+        var previous = users.put(userId, connection);
+        authenticatedConnections = users.size();
         if (previous != null) {
-            authenticatedConnections.remove(previous.socket.textHandlerID());
-            closeSocket(previous.socket);
+            closeReplaced(previous);
+            takeOverRoom(connection, previous.roomId);
+        }
+    }
+
+    /**
+     * Room of the previous connection, or session, of the user is taken over only if the new credentials allow it.
+     */
+    private void takeOverRoom(SocketConnection connection, String roomId) {
+        if (roomId == null || connection.roomId != null) {
+            return;
+        }
+        if (connection.user.canJoin(roomId)) {
+            connection.roomId = roomId;
+        } else {
+            leaveRoom(roomId, connection.userId);
+        }
+    }
+
+    private void publishConnected(long userId, long sequence) {
+        onUserConnected(userId, new UserLocation(node, shard, sequence));
+        cluster.publish(ClusterMessage.userConnected(node, shard, userId, sequence));
+    }
+
+    private void publishDisconnected(long userId, long sequence, String roomId) {
+        if (roomId != null) {
+            leaveRoom(roomId, userId);
+        }
+        directory.disconnect(userId, node, sequence);
+        cluster.publish(ClusterMessage.userDisconnected(node, shard, userId, sequence));
+    }
+
+    /**
+     * Replaced connection is closed without leaving its room, new connection of the user takes over its membership.
+     */
+    private void closeReplaced(SocketConnection connection) {
+        connection.state = ConnectionState.REPLACED;
+        connection.timeout.cancel();
+        metrics.onClosure(Closure.REPLACED);
+        closeSocket(connection.socket);
+    }
+
+    /**
+     * Called once per node: on the shard of the connection, or on {@link #DIRECTORY_SHARD} for connections of other nodes.
+     * Only the shard of the superseded location can hold an older connection, or session, of the user, so only it is told.
+     */
+    private void onUserConnected(long userId, UserLocation location) {
+        var previous = directory.connect(userId, location);
+        if (previous == null) {
+            return;
+        }
+        if (previous.isAfter(location)) {
+            //late message about an older connection, or this one has lost a race with a newer one
+            supersede(userId, location, previous);
+        } else {
+            supersede(userId, previous, location);
+        }
+    }
+
+    private void supersede(long userId, UserLocation superseded, UserLocation current) {
+        if (isLocal(superseded)) {
+            onShard(shards.shard(superseded.shard()), s -> s.onSuperseded(userId, current));
+        }
+    }
+
+    private void onSuperseded(long userId, UserLocation location) {
+        var localNode = isLocal(location);
+        if (localNode && location.shard() == shard) {
+            return;
+        }
+
+        var local = users.get(userId);
+        String roomId;
+        if (local != null && location.isAfter(node, local.sequence)) {
+            log.info("User {} connected to {} shard of {} node, closing its previous connection", userId,
+                    location.shard(), location.node());
+            users.remove(userId);
+            authenticatedConnections = users.size();
+            closeReplaced(local);
+            roomId = local.roomId;
+        } else {
+            var session = suspendedSessions.get(userId);
+            if (session == null || !location.isAfter(node, session.sequence())) {
+                return;
+            }
+            log.info("User {} connected to {} shard of {} node, discarding its suspended session", userId,
+                    location.shard(), location.node());
+            suspendedSessions.remove(userId);
+            metrics.onSession(SessionEvent.DISCARDED);
+            roomId = session.roomId();
+        }
+        if (roomId == null) {
+            return;
+        }
+        if (localNode) {
+            onShard(shards.shard(location.shard()), s -> s.inheritRoom(userId, location.sequence(), roomId));
+        } else {
+            //membership is partitioned by nodes, so it has to be moved to the new one
+            leaveRoom(roomId, userId);
+            cluster.send(location.node(), location.shard(),
+                    ClusterMessage.inheritRoom(node, shard, userId, location.sequence(), roomId));
+        }
+    }
+
+    private void inheritRoom(long userId, long sequence, String roomId) {
+        var connection = users.get(userId);
+        if (connection == null || connection.sequence != sequence) {
+            leaveRoom(roomId, userId);
+        } else if (connection.roomId == null && connection.user.canJoin(roomId)) {
+            connection.roomId = roomId;
+        } else if (!roomId.equals(connection.roomId)) {
+            leaveRoom(roomId, userId);
+        }
+    }
+
+    private void adoptRoom(long userId, long sequence, String roomId) {
+        var connection = users.get(userId);
+        if (connection != null && connection.sequence == sequence && connection.roomId == null
+                && connection.user.canJoin(roomId)) {
+            connection.roomId = roomId;
+            joinRoom(roomId, userId);
+        }
+    }
+
+    /**
+     * Session is kept on the shard of its lost connection: directory still points here, so peer events
+     * to the user are buffered, and the user is still a member of its room.
+     */
+    private void suspendSession(SocketConnection connection) {
+        suspendedSessions.suspend(new SuspendedSession(connection.user, connection.sequence, connection.sessionToken,
+                connection.roomId, new PeerEventsRing(sessions.bufferedPeerEvents())));
+    }
+
+    /**
+     * Called on the shard of the session. From now on, peer events to the user are passed to the resuming shard.
+     *
+     * @return session, or null if there is no session of this token
+     */
+    private SuspendedSession claimSession(String token, UserLocation resumingLocation) {
+        var session = suspendedSessions.claim(token);
+        if (session != null) {
+            directory.connect(session.userId(), resumingLocation);
+        }
+        return session;
+    }
+
+    /**
+     * Called on the shard of the session token, sequence is of the claim, so directory points back here.
+     */
+    private void suspendAgain(SuspendedSession session, long sequence) {
+        suspendedSessions.suspend(new SuspendedSession(session.user(), sequence, session.token(), session.roomId(),
+                session.events()));
+        publishConnected(session.userId(), sequence);
+    }
+
+    private void onSessionClaimed(SocketConnection connection, SuspendedSession session, long sequence) {
+        connection.resuming = false;
+        if (session == null) {
+            send(connection, SocketMessages.failure(SocketMessageType.SESSION_RESUME, Errors.SESSION_EXPIRED));
+            return;
+        }
+        if (closing.get() || connection.state != ConnectionState.NEW) {
+            //client never got a new token, so session waits for the next connection under its token, on its shard
+            log.info("Connection resuming session of {} user was closed in the meantime", session.userId());
+            onShard(shards.shard(SessionTokens.shard(session.token())), s -> s.suspendAgain(session, sequence));
+            return;
+        }
+
+        addAuthenticated(connection, session.user(), sequence);
+        takeOverRoom(connection, session.roomId());
+        log.info("Session of {} user is resumed, replaying {} buffered peer events", session.userId(),
+                session.events().size());
+        metrics.onSession(SessionEvent.RESUMED);
+        send(connection, SocketMessages.userAuthenticated(new UserAuthenticated(connection.sessionToken, true)));
+        sendIceServers(connection);
+        session.events().drain(e -> {
+            if (offerPeerEvent(connection, e)) {
+                metrics.onRelayed(e.kind());
+            }
+        });
+        publishConnected(connection.userId, connection.sequence);
+        //room changes were not buffered, joining again sends snapshot to this member only, others see no change
+        if (connection.roomId != null) {
+            joinRoom(connection.roomId, connection.userId);
         }
-        WebSockets.send(authenticated, SocketMessages.userAuthenticated());
+    }
+
+    private void onClusterMessage(ClusterMessage message) {
+        try {
+            switch (message.type()) {
+                case USER_CONNECTED:
+                    shards.observeSequence(message.sequence());
+                    if (shard == DIRECTORY_SHARD) {
+                        onUserConnected(message.userId(),
+                                new UserLocation(message.node(), message.shard(), message.sequence()));
+                    }
+                    break;
+                case USER_DISCONNECTED:
+                    shards.observeSequence(message.sequence());
+                    if (shard == DIRECTORY_SHARD) {
+                        directory.disconnect(message.userId(), message.node(), message.sequence());
+                    }
+                    break;
+                case DIRECTORY_SYNC:
+                    syncDirectory(message.node(), message.shard());
+                    break;
+                case PEER_EVENT:
+                    var event = RelayedPeerEvent.ofJson(message.event(), message.payload());
+                    if (deliverPeerEvent(message.userId(), event)) {
+                        metrics.onRelayed(event.kind());
+                    }
+                    break;
+                case ROOM_PARTITION:
+                    onRoomPartition(message.roomId(), message.node(), message.members());
+                    break;
+                case INHERIT_ROOM:
+                    adoptRoom(message.userId(), message.sequence(), message.roomId());
+                    break;
+                case NODE_LEFT:
+                    onNodeLeft(message.node());
+                    break;
+                default:
+                    log.warn("Unsupported cluster message: {}", message.type());
+            }
+        } catch (Exception e) {
+            log.error("Problem while handling {} cluster message from {} node", message.type(), message.node(), e);
+        }
+    }
+
+    /**
+     * Sends users connected to, and rooms members owned by, this shard to the shard of a node that has just joined.
+     * Users are sent only to the shard applying directory updates of other nodes.
+     */
+    private void syncDirectory(String requesterNode, int requesterShard) {
+        rooms.forEachLocal((roomId, members) -> cluster.send(requesterNode, requesterShard,
+                ClusterMessage.roomPartition(node, shard, roomId, members)));
+        if (requesterShard != DIRECTORY_SHARD) {
+            return;
+        }
+        users.forEachValue(c -> cluster.send(requesterNode, requesterShard,
+                ClusterMessage.userConnected(node, shard, c.userId, c.sequence)));
+        suspendedSessions.forEach(s -> cluster.send(requesterNode, requesterShard,
+                ClusterMessage.userConnected(node, shard, s.userId(), s.sequence())));
+    }
+
+    private void onRoomPartition(String roomId, String partitionNode, long[] members) {
+        //published to all shards, but only the owner keeps rooms
+        if (shards.ofKey(roomId).index() == shard && rooms.partition(roomId, partitionNode, members)) {
+            scheduleRoomFlush(roomId);
+        }
+    }
+
+    private void onNodeLeft(String leftNode) {
+        log.info("{} node has left the cluster", leftNode);
+        if (shard == DIRECTORY_SHARD) {
+            directory.removeNode(leftNode);
+        }
+        rooms.removeNode(leftNode).forEach(this::scheduleRoomFlush);
+    }
+
+    private boolean isLocal(UserLocation location) {
+        return location.node().equals(node);
     }
 
     private void closeSocket(WebSocketBase socket) {
@@ -82,23 +513,52 @@ public class SignalingServer {
     }
 
     private void start() {
-        scheduledExecutor.scheduleAtFixedRate(this::closeNotAuthenticatedAndNotActiveConnections,
-                0, invalidatorFrequency, TimeUnit.MILLISECONDS);
+        shards.register(shard, vertx.getOrCreateContext(), this);
+        timeouts = new TimerWheel(timeoutsResolution, TimeUnit.MILLISECONDS, TIMEOUTS_WHEEL_SIZE, Dates.monotonicNanos());
+        suspendedSessions = new SuspendedSessions(sessions, timeouts, metrics,
+                s -> publishDisconnected(s.userId(), s.sequence(), s.roomId()));
+        candidates = new CandidateBatcher(vertx, candidateBatching, writes, metrics);
+        timers.add(vertx.setPeriodic(timeoutsResolution, t -> {
+            advanceTimeouts();
+            writes.flushIfOverdue();
+        }));
+        lagProbedAt = Dates.monotonicNanos();
+        timers.add(vertx.setPeriodic(EVENT_LOOP_LAG_PROBE_INTERVAL, t -> probeEventLoopLag()));
+        timers.add(vertx.setPeriodic(ACTIVE_CONNECTIONS_LOG_FREQUENCY,
+                t -> log.info("Active connections of {} shard: {} authenticated, {} new, outbound: {}", shard,
+                        users.size(), newConnections, outboundStats)));
+        timers.add(vertx.setPeriodic(RollingStats.WINDOW, t -> peerStats.prune(monotonicMillis())));
     }
 
+    /**
+     * Lag is how much later than scheduled the periodic probe has run, so how long event loop was busy with other tasks.
+     */
+    private void probeEventLoopLag() {
+        var now = Dates.monotonicNanos();
+        eventLoopLag = Math.max(0, now - lagProbedAt - TimeUnit.MILLISECONDS.toNanos(EVENT_LOOP_LAG_PROBE_INTERVAL));
+        lagProbedAt = now;
+        metrics.onEventLoopLag(eventLoopLag);
+    }
+
+    /**
+     * Called outside of the event loop (by shutdown hook): connections are closed on the event loop of this shard,
+     * as they are not thread safe, and this thread waits for them to be closed.
+     */
     public void stop() {
         try {
             closing.set(true);
-            scheduledExecutor.shutdown();
-
-            if (!scheduledExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                System.out.println("[WARNING] fail to terminate scheduled executor in 5 seconds, terminating nevertheless");
+            timers.forEach(vertx::cancelTimer);
+            if (shard == 0) {
+                cluster.publish(ClusterMessage.nodeLeft(node, shard));
             }
 
-            var closingMessage = SocketMessages.serverClosing();
-            idsConnections.values().forEach(c -> {
-                WebSockets.send(c.socket, closingMessage);
-                c.socket.close();
+            shards.shard(shard).execute(() -> {
+                var closingMessage = SocketMessages.serverClosing();
+                users.forEachValue(c -> {
+                    WebSockets.send(c.socket, closingMessage);
+                    metrics.onOutbound(SocketMessageType.SERVER_CLOSING);
+                    c.socket.close();
+                });
             });
 
             waitForSocketsClose();
@@ -111,7 +571,7 @@ public class SignalingServer {
     private void waitForSocketsClose() throws Exception {
         var wait = 1000;
         for (int i = 0; i < 5; i++) {
-            var opened = authenticatedConnections.size();
+            var opened = authenticatedConnections;
             if (opened > 0) {
                 System.out.printf("[INFO] %s connections open, waiting next %d ms", opened, wait);
                 System.out.println();
@@ -123,216 +583,807 @@ public class SignalingServer {
         }
     }
 
-    private void closeNotAuthenticatedAndNotActiveConnections() {
-        if (closing.get()) {
-            System.out.println("Server is closing, not accepting new connections...");
-            return;
+    private void advanceTimeouts() {
+        try {
+            var sweep = new TimeoutSweepEvent();
+            sweep.begin();
+            var expired = timeouts.advance(Dates.monotonicNanos());
+            if (expired > 0) {
+                log.debug("{} connection timeouts expired", expired);
+            }
+            sweep.end();
+            if (sweep.shouldCommit()) {
+                sweep.shard = shard;
+                sweep.expired = expired;
+                sweep.connections = connections.size();
+                sweep.commit();
+            }
+        } catch (Exception e) {
+            log.error("Problem while advancing connection timeouts", e);
         }
+    }
 
-        log.info("Active connections: {}", authenticatedConnections.values());
-
-        var now = Dates.now();
-
-        var toCloseNotAuthenticated = newConnections.values().stream()
-                .filter(s -> {
-                    var maxDate = s.activeAt.plus(authenticationTimeout, ChronoUnit.MILLIS);
-                    return now.isAfter(maxDate);
-                })
-                .collect(Collectors.toList());
-
-        if (!toCloseNotAuthenticated.isEmpty()) {
-            log.info("About to close {} not authenticated connections", toCloseNotAuthenticated.size());
-            toCloseNotAuthenticated.forEach(sc -> closeAndRemove(sc.socket, false));
+    /**
+     * Fires only for connections whose deadline has passed. Active connections are not rescheduled on every activity,
+     * only here, once their last known deadline expires. Idle connections are pinged at most once per ping interval.
+     */
+    private void onTimeout(SocketConnection connection) {
+        if (connection.state != ConnectionState.AUTHENTICATED) {
+            if (connection.state == ConnectionState.NEW) {
+                log.info("Closing not authenticated connection, address: {}", connection.socket.remoteAddress());
+                metrics.onClosure(Closure.AUTHENTICATION_TIMEOUT);
+                closeSocket(connection.socket);
+                authenticator.invalidate(connection.socket);
+            }
+            return;
         }
 
-        var toCloseNotActive = idsConnections.values().stream()
-                .filter(s -> {
-                    var maxDate = s.activeAt.plus(inactiveTimeout, ChronoUnit.MILLIS);
-                    return now.isAfter(maxDate);
-                })
-                .collect(Collectors.toList());
-
-        if (!toCloseNotActive.isEmpty()) {
-            log.info("About to close {} not active connections", toCloseNotActive.size());
-            toCloseNotActive.forEach(sc -> closeAndRemove(sc.socket, true));
+        var now = Dates.monotonicNanos();
+        if (connection.outbound.shouldBeEvicted(now)) {
+            log.warn("Connection of {} user is over its outbound limits for too long ({} messages, {} bytes), evicting it",
+                    connection.userId, connection.outbound.pendingMessages(), connection.outbound.pendingBytes());
+            connection.outbound.onEvicted();
+            connection.resumable = false;
+            metrics.onClosure(Closure.EVICTION);
+            closeSocket(connection.socket);
+            return;
         }
-    }
 
-    private void closeAndRemove(WebSocketBase socket, boolean authenticated) {
-        try {
-            closeSocket(socket);
-            if (!authenticated) {
-                newConnections.remove(socket.textHandlerID());
-                authenticator.invalidate(socket);
+        var idle = now - connection.activeAt;
+        if (idle < inactiveTimeout) {
+            if (idle >= pingInterval) {
+                WebSockets.ping(connection.socket);
+                metrics.onPing();
+                connection.timeout.reschedule(Math.min(now + pingInterval, connection.activeAt + inactiveTimeout));
+            } else {
+                connection.timeout.reschedule(connection.activeAt + pingInterval);
             }
-        } catch (Exception ignored) {
-
+        } else {
+            log.info("Closing not active connection of {} user", connection.userId);
+            metrics.onClosure(Closure.INACTIVITY_TIMEOUT);
+            closeSocket(connection.socket);
         }
     }
 
-    public void start(HttpServer server) {
+    /**
+     * Must be called on the event loop context on which server will listen.
+     * Server must not listen, until all shards are registered and returned future, of registration
+     * in the cluster, is completed.
+     */
+    public Future<Void> start(Vertx vertx, HttpServer server, Shards<SignalingServer> shards, int shard,
+                              ClusterTransport cluster) {
         if (started) {
-            return;
+            return Future.succeededFuture();
         }
+        this.vertx = vertx;
+        this.shards = shards;
+        this.directory = shards.directory();
+        this.shard = shard;
+        this.cluster = cluster;
+        this.node = cluster.nodeId();
         server.webSocketHandler(this::handle);
         start();
         started = true;
+        return cluster.register(shard, m -> {
+            onClusterMessage(m);
+            writes.flushIfOverdue();
+        }).onSuccess(v -> cluster.publish(ClusterMessage.directorySync(node, shard)));
+    }
+
+    /**
+     * Starts server as the only shard of standalone node.
+     */
+    public Future<Void> start(Vertx vertx, HttpServer server) {
+        return start(vertx, server, Shards.single(), 0, LoopbackCluster.standalone());
     }
 
     private void handle(WebSocketBase socket) {
         log.info("New connection, address: {}", socket.remoteAddress());
 
-        var openConnections = openConnections();
-        if (openConnections >= maxConnections) {
-            log.warn("There would be more open connections ({}) than allowed ({}), not accepting new ones",
-                    openConnections, maxConnections);
+        var now = Dates.monotonicNanos();
+        if (!admission.tryAccept(now)) {
+            log.warn("Connections are accepted faster than allowed, not accepting new ones");
+            metrics.onClosure(Closure.ACCEPT_RATE_LIMIT);
+            closeSocket(socket);
+            emitSocketAccepted(socket, 0, null, Closure.ACCEPT_RATE_LIMIT);
+            return;
+        }
+        if (!admission.tryAcquireConnection()) {
+            log.warn("There would be more open connections than allowed ({}), not accepting new ones",
+                    admission.options().maxConnections());
+            metrics.onClosure(Closure.CONNECTIONS_LIMIT);
             closeSocket(socket);
+            emitSocketAccepted(socket, 0, null, Closure.CONNECTIONS_LIMIT);
             return;
         }
 
-        newConnections.put(socket.textHandlerID(), new SocketConnection(socket, Dates.now()));
+        //otherwise handshake is done after this handler returns, and subprotocol is known only after it
+        if (socket instanceof ServerWebSocket) {
+            ((ServerWebSocket) socket).accept();
+        }
+        var connection = new SocketConnection(++lastConnectionId, socket, WireFormat.ofSubProtocol(socket.subProtocol()),
+                now, new OutboundQueue(socket, outboundLimits, outboundStats, writes), admission.connectionRates());
+        connection.timeout = timeouts.schedule(connection.activeAt + authenticationTimeout, () -> onTimeout(connection));
+        connections.put(connection.id, connection);
+        newConnections++;
+        emitSocketAccepted(socket, connection.id, connection.format, null);
+
+        socket.pongHandler(b -> connection.activeAt = Dates.monotonicNanos());
 
         socket.textMessageHandler(msg -> {
-            var id = authenticatedConnections.get(socket.textHandlerID());
-            WebSockets.message(socket, msg, false).ifPresentOrElse(m -> {
-                        handleMessage(socket, m, id);
-                    },
-                    () -> {
-                        if (id != null) {
-                            handlePeerEvent(socket, msg);
-                        }
-                    });
+            handleTextMessage(connection, msg);
+            writes.flushIfOverdue();
         });
 
+        //legacy clients never send binary frames, so they do not need the handler
+        if (connection.format == WireFormat.BINARY) {
+            socket.binaryMessageHandler(frame -> {
+                handleBinaryMessage(connection, frame);
+                writes.flushIfOverdue();
+            });
+        }
+
         socket.closeHandler(v -> {
-            var socketUserId = authenticatedConnections.remove(socket.textHandlerID());
-            log.info("Closing socket for user: {}", socketUserId);
-            if (socketUserId != null) {
-                idsConnections.remove(socketUserId);
-                removeRoomMemberIf(socketUserId);
+            admission.releaseConnection();
+            connection.timeout.cancel();
+            connection.outbound.clear();
+            connections.remove(connection.id);
+            var state = connection.state;
+            connection.state = ConnectionState.CLOSED;
+            if (state == ConnectionState.NEW) {
+                newConnections--;
+            }
+            log.info("Closing socket for user: {}", state == ConnectionState.NEW ? null : connection.userId);
+            var suspended = false;
+            if (state == ConnectionState.AUTHENTICATED) {
+                users.remove(connection.userId, connection);
+                authenticatedConnections = users.size();
+                suspended = sessions.enabled() && connection.resumable && !closing.get();
+                if (suspended) {
+                    suspendSession(connection);
+                } else {
+                    publishDisconnected(connection.userId, connection.sequence, connection.roomId);
+                }
             }
+            emitSocketClosed(connection, state, suspended);
         });
     }
 
-    private void handleMessage(WebSocketBase socket, RawSocketMessage message, String id) {
-        if (isAuthentication(message, id)) {
-            handleAuthentication(socket, message);
-        } else if (id == null) {
-            WebSockets.send(socket,
-                    SocketMessages.failure(SocketMessageType.UNKNOWN, Errors.NOT_AUTHENTICATED));
-        } else if (message.type() == SocketMessageType.PEER_LOG) {
-            handlePeerLogMessage(message, id);
-        } else if (message.type() == SocketMessageType.PING) {
-            handlePingMessage(id);
-        } else {
-            handleRoomMessage(message, id);
+    private void emitSocketAccepted(WebSocketBase socket, long connectionId, WireFormat format, Closure rejection) {
+        var event = new SocketAcceptedEvent();
+        if (event.shouldCommit()) {
+            event.shard = shard;
+            event.connectionId = connectionId;
+            event.address = String.valueOf(socket.remoteAddress());
+            event.wireFormat = format == null ? null : format.name();
+            event.rejection = rejection == null ? null : rejection.name();
+            event.commit();
         }
     }
 
-    private void handlePeerLogMessage(RawSocketMessage message, String id) {
-        try {
-            WebSockets.data(message, PeerLog.class)
-                    .ifPresent(d -> {
-                        log.info("Peer log from {} is: {}", id, d);
-                        log.info("...\n");
-                    });
-        } catch (Exception e) {
-            log.warn("Unhandled exception while handling peer log message from: " + id, e);
+    private void emitSocketClosed(SocketConnection connection, ConnectionState state, boolean suspended) {
+        var event = new SocketClosedEvent();
+        if (event.shouldCommit()) {
+            event.shard = shard;
+            event.connectionId = connection.id;
+            event.userId = state == ConnectionState.NEW ? 0 : connection.userId;
+            event.roomId = connection.roomId;
+            event.state = state.name();
+            event.suspended = suspended;
+            event.idle = Dates.monotonicNanos() - connection.activeAt;
+            event.commit();
         }
     }
 
-    private void handlePingMessage(String id) {
-        Optional.ofNullable(idsConnections.get(id))
-                .ifPresent(c -> {
-                    var updated = c.withActiveAt(Dates.now());
-                    idsConnections.put(id, updated);
-                    WebSockets.send(updated.socket, SocketMessages.pong());
+    /**
+     * Message over the limit is not handled. Client is told about it once, until it gets within the limit again,
+     * or its connection is closed, not to be resumed, as it would most likely keep on flooding.
+     */
+    private boolean admit(SocketConnection connection, SocketMessageType type) {
+        var messageClass = MessageClass.of(type);
+        if (connection.rates.tryAcquire(messageClass, connection.activeAt)) {
+            return true;
+        }
+        metrics.onRateLimited(messageClass);
+        if (!connection.rates.onLimited(messageClass)) {
+            return false;
+        }
+        if (onRateLimited == RateLimitAction.CLOSE) {
+            log.warn("Connection of {} user has sent {} messages faster than allowed, closing it",
+                    connection.state == ConnectionState.AUTHENTICATED ? connection.userId : null, messageClass);
+            connection.resumable = false;
+            metrics.onClosure(Closure.MESSAGES_RATE_LIMIT);
+            closeSocket(connection.socket);
+        } else {
+            log.warn("Connection of {} user has sent {} messages faster than allowed, rejecting them",
+                    connection.state == ConnectionState.AUTHENTICATED ? connection.userId : null, messageClass);
+            send(connection, SocketMessages.failure(type, Errors.RATE_LIMITED));
+        }
+        return false;
+    }
+
+    private void handleTextMessage(SocketConnection connection, String msg) {
+        connection.activeAt = Dates.monotonicNanos();
+        if (connection.state == ConnectionState.AUTHENTICATED && InboundMessageParser.isCanonicalPing(msg)) {
+            if (admit(connection, SocketMessageType.PING)) {
+                metrics.onInbound(SocketMessageType.PING);
+                send(connection, SocketMessages.pong());
+            }
+            return;
+        }
+
+        var message = InboundMessageParser.parse(msg);
+        if (!admit(connection, message.map(InboundMessage::type).orElse(SocketMessageType.UNKNOWN))) {
+            return;
+        }
+        message.ifPresentOrElse(m -> handleMessage(connection, m),
+                () -> {
+                    metrics.onInvalidMessage();
+                    send(connection, SocketMessages.failure(SocketMessageType.UNKNOWN, Errors.INVALID_MESSAGE_FORMAT));
                 });
     }
 
-    //TODO: room modifications should be synchronized
-    private void handleRoomMessage(RawSocketMessage message, String id) {
-        var idValue = Long.parseLong(id);
-        var roomChanged = false;
+    private void handleBinaryMessage(SocketConnection connection, Buffer frame) {
+        connection.activeAt = Dates.monotonicNanos();
+        var valid = BinaryEnvelope.isValid(frame);
+        if (!admit(connection, valid ? SocketMessageType.PEER_EVENT : SocketMessageType.UNKNOWN)) {
+            return;
+        }
+        if (!valid) {
+            metrics.onInvalidMessage();
+            send(connection, SocketMessages.failure(SocketMessageType.UNKNOWN, Errors.INVALID_MESSAGE_FORMAT));
+            return;
+        }
+        metrics.onInbound(SocketMessageType.PEER_EVENT);
+        if (connection.state != ConnectionState.AUTHENTICATED) {
+            send(connection, SocketMessages.failure(SocketMessageType.UNKNOWN, Errors.NOT_AUTHENTICATED));
+            return;
+        }
+        relayPeerEvent(connection, BinaryEnvelope.from(frame), BinaryEnvelope.to(frame), RelayedPeerEvent.ofBinary(frame));
+    }
+
+    private void handleMessage(SocketConnection connection, InboundMessage message) {
+        metrics.onInbound(message.type());
+        var authenticated = connection.state == ConnectionState.AUTHENTICATED;
+        if (!authenticated && message.type() == SocketMessageType.USER_AUTHENTICATION) {
+            handleAuthentication(connection, message);
+        } else if (!authenticated && message.type() == SocketMessageType.SESSION_RESUME) {
+            handleSessionResume(connection, message);
+        } else if (!authenticated) {
+            send(connection, SocketMessages.failure(SocketMessageType.UNKNOWN, Errors.NOT_AUTHENTICATED));
+        } else {
+            var handler = handlers.get(message.type());
+            if (handler == null) {
+                log.info("Unsupported {} message from {} user, ignoring it", message.type(), connection.userId);
+            } else {
+                handler.handle(connection, message);
+            }
+        }
+    }
+
+    /**
+     * Data is passed on as it was sent, parser has already validated it as json.
+     */
+    private void handlePeerLogMessage(SocketConnection connection, InboundMessage message) {
+        peerLogs.offer(connection.userId, message.dataJson());
+    }
+
+    private void handleMediaStats(SocketConnection connection, InboundMessage message) {
+        WebSockets.data(message, MediaStats.class).ifPresent(s -> {
+            telemetry(connection).onMediaStats(s);
+            adviseMediaQuality(connection);
+        });
+    }
+
+    private void handlePeerStats(SocketConnection connection, InboundMessage message) {
+        WebSockets.data(message, PeerStats[].class).ifPresent(s ->
+                telemetry(connection).onPeerStats(s, connection.roomId, peerStats, monotonicMillis()));
+    }
+
+    private ClientTelemetry telemetry(SocketConnection connection) {
+        if (connection.telemetry == null) {
+            connection.telemetry = new ClientTelemetry();
+        }
+        return connection.telemetry;
+    }
+
+    private void adviseMediaQuality(SocketConnection connection) {
+        if (connection.telemetry != null) {
+            connection.telemetry.advise(connection.roomSize)
+                    .ifPresent(q -> send(connection, SocketMessages.mediaQuality(q)));
+        }
+    }
+
+    private void handlePingMessage(SocketConnection connection, InboundMessage message) {
+        send(connection, SocketMessages.pong());
+    }
+
+    private void handleRoomMessage(SocketConnection connection, InboundMessage message) {
+        var noRoomId = message.dataJson().equals(RawSocketMessageDeserializer.EMPTY_DATA);
+        var roomId = noRoomId ? Rooms.DEFAULT_ROOM : WebSockets.data(message, String.class).orElse(null);
+        if (!Rooms.isValidId(roomId)) {
+            send(connection, SocketMessages.failure(message.type(), Errors.INVALID_ROOM_ID));
+            return;
+        }
 
         if (message.type() == SocketMessageType.JOIN_ROOM) {
-            roomChanged = roomMembers.add(idValue);
-        } else if (message.type() == SocketMessageType.LEAVE_ROOM) {
-            roomChanged = roomMembers.remove(idValue);
+            if (!connection.user.canJoin(roomId)) {
+                log.warn("{} user is not allowed to join {} room", connection.userId, roomId);
+                send(connection, SocketMessages.failure(message.type(), Errors.ROOM_NOT_ALLOWED));
+                return;
+            }
+            if (connection.roomId != null && !connection.roomId.equals(roomId)) {
+                leaveRoom(connection.roomId, connection.userId);
+                connection.roomSize = 0;
+            }
+            connection.roomId = roomId;
+            joinRoom(roomId, connection.userId);
+        } else if (connection.roomId != null && (noRoomId || connection.roomId.equals(roomId))) {
+            leaveRoom(connection.roomId, connection.userId);
+            connection.roomId = null;
+            connection.roomSize = 0;
+        } else {
+            log.info("{} user is not a member of {} room, skipping {}", connection.userId, roomId, message.type());
         }
+    }
+
+    private void joinRoom(String roomId, long userId) {
+        onShard(shards.ofKey(roomId), s -> s.onJoinRoom(roomId, userId));
+    }
+
+    private void leaveRoom(String roomId, long userId) {
+        onShard(shards.ofKey(roomId), s -> s.onLeaveRoom(roomId, userId));
+    }
+
+    /**
+     * Joining again is how client asks for a snapshot, when it has missed some changes.
+     */
+    private void onJoinRoom(String roomId, long userId) {
+        var event = new RoomJoinEvent();
+        event.begin();
+        var changed = rooms.join(roomId, userId);
+        if (changed) {
+            publishPartition(roomId);
+        }
+        scheduleRoomFlush(roomId);
+        event.end();
+        if (event.shouldCommit()) {
+            event.shard = shard;
+            event.roomId = roomId;
+            event.userId = userId;
+            event.changed = changed;
+            event.members = rooms.members(roomId).length;
+            event.commit();
+        }
+    }
 
-        if (roomChanged) {
-            sendRoomMembers();
+    private void onLeaveRoom(String roomId, long userId) {
+        var event = new RoomLeaveEvent();
+        event.begin();
+        var changed = rooms.leave(roomId, userId);
+        if (changed) {
+            publishPartition(roomId);
+            scheduleRoomFlush(roomId);
         } else {
-            log.info("Room haven't changed by {} message from {} user", message.type(), idValue);
+            log.info("{} room haven't changed by leaving of {} user", roomId, userId);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.shard = shard;
+            event.roomId = roomId;
+            event.userId = userId;
+            event.changed = changed;
+            event.members = rooms.members(roomId).length;
+            event.commit();
         }
     }
 
-    private void handlePeerEvent(WebSocketBase socket, String message) {
-        try {
-            var event = JsonMapper.object(message, PeerEvent.class);
+    private void publishPartition(String roomId) {
+        cluster.publish(ClusterMessage.roomPartition(node, shard, roomId, rooms.localMembers(roomId)));
+    }
+
+    private void scheduleRoomFlush(String roomId) {
+        if (!rooms.isPending(roomId)) {
+            return;
+        }
+        if (roomChangesWindow == 0) {
+            flushRoom(roomId);
+        } else if (roomFlushes.add(roomId)) {
+            vertx.setTimer(roomChangesWindow, t -> {
+                flushRoom(roomId);
+                writes.flushIfOverdue();
+            });
+        }
+    }
 
-            long originUserId = Long.parseLong(authenticatedConnections.get(socket.textHandlerID()));
-            long from = event.from();
-            if (originUserId != from) {
-                log.warn("Origin user id ({}) is not equal to from field ({}), skipping", originUserId, from);
+    private void flushRoom(String roomId) {
+        roomFlushes.remove(roomId);
+        rooms.flush(roomId).ifPresent(this::sendRoomNotification);
+    }
+
+    private void handlePeerEvent(SocketConnection connection, InboundMessage message) {
+        relayPeerEvent(connection, message.from(), message.to(), RelayedPeerEvent.ofJson(message.event(), message.raw()));
+    }
+
+    private void relayPeerEvent(SocketConnection connection, long from, long to, RelayedPeerEvent event) {
+        try {
+            if (connection.userId != from) {
+                log.warn("Origin user id ({}) is not equal to from field ({}), skipping", connection.userId, from);
                 return;
             }
 
-            long to = event.to();
-            var destination = idsConnections.get(String.valueOf(to));
-            if (destination == null) {
+            metrics.onPeerEvent(event.kind());
+
+            var location = directory.get(to);
+            if (location == null) {
                 log.warn("Destination user ({}) is not connected, skipping", to);
                 return;
             }
 
-            destination.socket.writeTextMessage(message).onFailure(t -> log.error("Fail to send message to client", t));
+            if (!isLocal(location)) {
+                //cluster transport speaks json only
+                cluster.send(location.node(), location.shard(),
+                        ClusterMessage.peerEvent(node, shard, to, event.event(), event.jsonText()));
+                return;
+            }
+
+            //activity is marked on receiving every message, so it is the time of receiving this one
+            var receivedAt = connection.activeAt;
+            onShard(shards.shard(location.shard()), s -> s.deliverPeerEvent(from, to, event, receivedAt));
         } catch (Exception e) {
             log.error("Problem while handling peer event", e);
         }
     }
 
-    private void removeRoomMemberIf(String id) {
-        try {
-            var idValue = Long.parseLong(id);
-            if (roomMembers.remove(idValue)) {
-                sendRoomMembers();
+    private void deliverPeerEvent(long from, long to, RelayedPeerEvent event, long receivedAt) {
+        var relay = new PeerEventRelayEvent();
+        var queueingDelay = relay.isEnabled() ? Dates.monotonicNanos() - receivedAt : 0;
+        relay.begin();
+        var delivered = deliverPeerEvent(to, event);
+        if (delivered) {
+            metrics.onRelayed(event.kind(), Dates.monotonicNanos() - receivedAt);
+        }
+        relay.end();
+        if (relay.shouldCommit()) {
+            relay.shard = shard;
+            relay.from = from;
+            relay.to = to;
+            relay.event = event.event();
+            relay.kind = event.kind().name();
+            relay.size = event.size();
+            relay.delivered = delivered;
+            relay.queueingDelay = queueingDelay;
+            relay.commit();
+        }
+    }
+
+    private boolean deliverPeerEvent(long to, RelayedPeerEvent event) {
+        var destination = users.get(to);
+        if (destination != null) {
+            return offerPeerEvent(destination, event);
+        }
+
+        if (suspendedSessions.buffer(to, event)) {
+            return false;
+        }
+        //session of the user is being resumed on another shard
+        var location = directory.get(to);
+        if (location != null && isLocal(location) && location.shard() != shard) {
+            onShard(shards.shard(location.shard()), s -> {
+                if (s.deliverPeerEvent(to, event)) {
+                    metrics.onRelayed(event.kind());
+                }
+            });
+            return false;
+        }
+        log.warn("Destination user ({}) is no longer connected, skipping", to);
+        return false;
+    }
+
+    /**
+     * Event is transcoded only if the destination speaks other format than its sender.
+     *
+     * @return false, if it could not be transcoded
+     */
+    private boolean offerPeerEvent(SocketConnection destination, RelayedPeerEvent event) {
+        var format = event.formatFor(destination.format);
+        var transcoded = !event.isIn(format);
+        var frame = event.in(format);
+        if (frame == null) {
+            return false;
+        }
+        if (transcoded) {
+            metrics.onTranscoded(format);
+        }
+        candidates.offer(destination.outbound, event.kind(), format, frame);
+        return true;
+    }
+
+    /**
+     * Members that have joined get snapshot, the others get change, but only if it has joined or left members,
+     * not both, otherwise they get snapshot as well. Snapshot and change are encoded once and passed to every shard,
+     * that has at least one of their recipients connected, in a single message.
+     * Members connected to other nodes get them from their nodes.
+     */
+    private void sendRoomNotification(RoomNotification notification) {
+        var broadcast = new BroadcastEvent();
+        var timed = broadcast.isEnabled();
+        broadcast.begin();
+        var joined = notification.joined().length > 0;
+        var left = notification.left().length > 0;
+        var changeType = joined == left ? null : (joined ? SocketMessageType.MEMBER_JOINED : SocketMessageType.MEMBER_LEFT);
+        var snapshotRecipients = notification.snapshotRecipients();
+        Arrays.sort(snapshotRecipients);
+
+        var snapshots = new ShardsRecipients(shards.count(), notification.members().length);
+        var changes = new ShardsRecipients(shards.count(), notification.members().length);
+        for (var m : notification.members()) {
+            var location = directory.get(m);
+            if (location == null || !isLocal(location)) {
+                continue;
             }
-        } catch (Exception ignored) {
+            if (Arrays.binarySearch(snapshotRecipients, m) >= 0 || (joined && left)) {
+                snapshots.add(location.shard(), m);
+            } else if (changeType != null) {
+                changes.add(location.shard(), m);
+            }
+        }
 
+        var roomId = notification.roomId();
+        var roomSize = notification.members().length;
+        long encodeTime = 0;
+        if (!snapshots.isEmpty()) {
+            var encodingAt = timed ? Dates.monotonicNanos() : 0;
+            var snapshot = SocketMessages.roomMembers(new RoomMembers(roomId, notification.version(), notification.members()));
+            var payload = SocketMessages.encoded(snapshot).buffer();
+            encodeTime += timed ? Dates.monotonicNanos() - encodingAt : 0;
+            deliverRoomMembers(roomId, roomSize, snapshots, SocketMessageType.ROOM_MEMBERS, payload);
+        }
+        if (!changes.isEmpty()) {
+            var encodingAt = timed ? Dates.monotonicNanos() : 0;
+            var change = new RoomMembersChange(roomId, notification.fromVersion(), notification.version(),
+                    joined ? notification.joined() : notification.left());
+            var message = joined ? SocketMessages.memberJoined(change) : SocketMessages.memberLeft(change);
+            var payload = SocketMessages.encoded(message).buffer();
+            encodeTime += timed ? Dates.monotonicNanos() - encodingAt : 0;
+            deliverRoomMembers(roomId, roomSize, changes, changeType, payload);
+        }
+
+        broadcast.end();
+        if (broadcast.shouldCommit()) {
+            broadcast.shard = shard;
+            broadcast.roomId = roomId;
+            broadcast.members = roomSize;
+            broadcast.snapshotRecipients = snapshots.size();
+            broadcast.changeRecipients = changes.size();
+            broadcast.encodeTime = encodeTime;
+            broadcast.commit();
         }
     }
 
-    private void sendRoomMembers() {
-        writeToAllSockets(SocketMessages.roomMembers(roomMembers));
+    private void deliverRoomMembers(String roomId, int roomSize, ShardsRecipients recipients, SocketMessageType type,
+                                    Buffer payload) {
+        for (int i = 0; i < shards.count(); i++) {
+            var shardRecipients = recipients.of(i);
+            if (shardRecipients != null) {
+                onShard(shards.shard(i), s -> s.deliverRoomMembers(roomId, roomSize, shardRecipients, type, payload));
+            }
+        }
     }
 
-    private void writeToAllSockets(SocketMessage<?> message) {
-        idsConnections.values().forEach(s -> WebSockets.send(s.socket, message));
+    private void deliverRoomMembers(String roomId, int roomSize, long[] members, SocketMessageType type, Buffer payload) {
+        var kind = OutboundKind.ofServerMessage(type);
+        var delivered = 0;
+        for (var m : members) {
+            var connection = users.get(m);
+            if (connection != null) {
+                connection.outbound.offer(kind, roomId, payload);
+                delivered++;
+                if (roomId.equals(connection.roomId)) {
+                    connection.roomSize = roomSize;
+                    adviseMediaQuality(connection);
+                }
+            }
+        }
+        metrics.onOutbound(type, delivered);
     }
 
-    private boolean isAuthentication(RawSocketMessage message, String id) {
-        return id == null && message.type() == SocketMessageType.USER_AUTHENTICATION;
+    private void onShard(Shard<SignalingServer> target, Consumer<SignalingServer> task) {
+        if (target.index() == shard) {
+            task.accept(this);
+        } else {
+            target.execute(() -> {
+                var owner = target.owner();
+                task.accept(owner);
+                owner.writes.flushIfOverdue();
+            });
+        }
+    }
+
+    /**
+     * Resumed session gets new credentials as well, the previous ones might be close to expiry.
+     */
+    private void sendIceServers(SocketConnection connection) {
+        iceServers.issue(connection.userId).ifPresent(s -> send(connection, SocketMessages.iceServers(s)));
+    }
+
+    private void send(SocketConnection connection, SocketMessage<?> message) {
+        send(connection, SocketMessages.encoded(message));
+    }
+
+    private void send(SocketConnection connection, EncodedMessage message) {
+        metrics.onOutbound(message.type());
+        connection.outbound.offer(OutboundKind.ofServerMessage(message.type()), message.buffer());
+    }
+
+    /**
+     * Session is claimed on its shard, known from the token, and the connection is authenticated back on this one.
+     */
+    private void handleSessionResume(SocketConnection connection, InboundMessage message) {
+        if (connection.resuming) {
+            return;
+        }
+        var token = WebSockets.data(message, String.class).orElse(null);
+        var sessionShard = SessionTokens.shard(token);
+        if (!sessions.enabled() || sessionShard < 0 || sessionShard >= shards.count()) {
+            send(connection, SocketMessages.failure(SocketMessageType.SESSION_RESUME, Errors.SESSION_EXPIRED));
+            return;
+        }
+
+        connection.resuming = true;
+        var sequence = shards.nextSequence();
+        var location = new UserLocation(node, shard, sequence);
+        var resumingShard = shards.shard(shard);
+        onShard(shards.shard(sessionShard), s -> {
+            var session = s.claimSession(token, location);
+            s.onShard(resumingShard, r -> r.onSessionClaimed(connection, session, sequence));
+        });
     }
 
-    private void handleAuthentication(WebSocketBase socket, RawSocketMessage message) {
+    private void handleAuthentication(SocketConnection connection, InboundMessage message) {
+        var event = new AuthenticationEvent();
+        event.begin();
         try {
             WebSockets.data(message, String.class)
-                    .ifPresent(d -> authenticator.authenticate(socket, d));
+                    .flatMap(d -> authenticator.authenticate(connection.socket, d))
+                    .ifPresent(u -> onAuthenticated(connection, u));
         } catch (Exception e) {
             log.warn("Unhandled exception while handling message...", e);
-            WebSockets.send(socket, SocketMessages.failure(SocketMessageType.USER_AUTHENTICATION, Errors.UNKNOWN_ERROR));
+            send(connection, SocketMessages.failure(SocketMessageType.USER_AUTHENTICATION, Errors.UNKNOWN_ERROR));
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.shard = shard;
+            event.connectionId = connection.id;
+            event.authenticated = connection.state == ConnectionState.AUTHENTICATED;
+            event.userId = event.authenticated ? connection.userId : 0;
+            event.commit();
         }
     }
 
-    private int openConnections() {
-        return newConnections.size() + authenticatedConnections.size();
+    public OutboundStats outboundStats() {
+        return outboundStats;
+    }
+
+    /**
+     * Must be called on the event loop of this shard, as all peer stats queries.
+     */
+    public StatsSnapshot globalPeerStats() {
+        return peerStats.global(monotonicMillis());
+    }
+
+    /**
+     * @return null, if no member of the room connected to this shard has reported stats lately
+     */
+    public StatsSnapshot roomPeerStats(String roomId) {
+        return peerStats.room(roomId, monotonicMillis());
+    }
+
+    public Map<String, StatsSnapshot> roomsPeerStats() {
+        return peerStats.rooms(monotonicMillis());
+    }
+
+    /**
+     * @return null, if the user is not connected to this shard or has not reported stats
+     */
+    public StatsSnapshot userPeerStats(long userId) {
+        var connection = users.get(userId);
+        return connection == null || connection.telemetry == null ? null : connection.telemetry.snapshot(monotonicMillis());
+    }
+
+    private static long monotonicMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(Dates.monotonicNanos());
+    }
+
+    /**
+     * Must be called on the event loop of this shard.
+     */
+    public ShardMetrics shardMetrics() {
+        var maxSocketPendingMessages = new int[1];
+        connections.forEachValue(c -> maxSocketPendingMessages[0] =
+                Math.max(maxSocketPendingMessages[0], c.outbound.pendingMessages()));
+        return new ShardMetrics(shard, newConnections, users.size(), directory.size(),
+                rooms.size(), suspendedSessions.size(), outboundStats.pendingMessages(), outboundStats.pendingBytes(), maxSocketPendingMessages[0],
+                outboundStats.queued(), outboundStats.coalesced(), outboundStats.dropped(), outboundStats.evicted(),
+                outboundStats.written(), outboundStats.flushes(), eventLoopLag);
     }
 
-    @Value
+    /**
+     * Recipients of a room notification, grouped by shards to which they are connected.
+     */
+    private static class ShardsRecipients {
+
+        final long[][] members;
+        final int[] counts;
+        final int capacity;
+        int size;
+
+        ShardsRecipients(int shards, int capacity) {
+            this.members = new long[shards][];
+            this.counts = new int[shards];
+            this.capacity = capacity;
+        }
+
+        void add(int shard, long member) {
+            if (members[shard] == null) {
+                members[shard] = new long[capacity];
+            }
+            members[shard][counts[shard]++] = member;
+            size++;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long[] of(int shard) {
+            return members[shard] == null ? null : Arrays.copyOf(members[shard], counts[shard]);
+        }
+    }
+
+    private interface MessageHandler {
+        void handle(SocketConnection connection, InboundMessage message);
+    }
+
+    private enum ConnectionState {
+        NEW, AUTHENTICATED, REPLACED, CLOSED
+    }
+
+    /**
+     * All state of a single connection. Deadline, of authentication, ping or inactivity, is kept by its timeout.
+     */
     private static class SocketConnection {
-        WebSocketBase socket;
-        @With
-        LocalDateTime activeAt;
+
+        final long id;
+        final WebSocketBase socket;
+        final WireFormat format;
+        final OutboundQueue outbound;
+        final ConnectionRates rates;
+        ConnectionState state = ConnectionState.NEW;
+        long activeAt;
+        AuthenticatedUser user;
+        long userId;
+        long sequence;
+        String roomId;
+        String sessionToken;
+        boolean resuming;
+        boolean resumable = true;
+        TimerWheel.Timeout timeout;
+        int roomSize;
+        ClientTelemetry telemetry;
+
+        SocketConnection(long id, WebSocketBase socket, WireFormat format, long activeAt, OutboundQueue outbound,
+                         ConnectionRates rates) {
+            this.id = id;
+            this.socket = socket;
+            this.format = format;
+            this.activeAt = activeAt;
+            this.outbound = outbound;
+            this.rates = rates;
+        }
     }
 }
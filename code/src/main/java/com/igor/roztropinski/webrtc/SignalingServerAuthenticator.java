@@ -1,41 +1,40 @@
 package com.igor.roztropinski.webrtc;
 
+import com.igor.roztropinski.webrtc.auth.AuthenticatedUser;
+import com.igor.roztropinski.webrtc.auth.Authentication;
+import com.igor.roztropinski.webrtc.auth.SecretsAuthentication;
 import io.vertx.core.http.WebSocketBase;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Map;
 import java.util.Optional;
 
 @Slf4j
-@RequiredArgsConstructor
 public class SignalingServerAuthenticator  {
 
-    private final Map<String, Long> secretsIds;
-    private Callback onAuthCallback;
+    private final Authentication authentication;
 
-    public void authenticate(WebSocketBase socket, String secret) {
-        if (onAuthCallback == null) {
-            log.info("Null on auth callback, not doing anything");
-            return;
-        }
-
-        Optional.ofNullable(secretsIds.get(secret))
-                .ifPresentOrElse(id -> {
-                    log.info("Authenticating socket with {} id", id);
-                    onAuthCallback.call(socket, String.valueOf(id));
-                }, () -> log.warn("Invalid credentials: {}", secret));
+    public SignalingServerAuthenticator(Authentication authentication) {
+        this.authentication = authentication;
     }
 
-    public void invalidate(WebSocketBase socket) {
-        log.info("Invalidating...{}", socket.textHandlerID());
+    public SignalingServerAuthenticator(Map<String, Long> secretsIds) {
+        this(new SecretsAuthentication(secretsIds));
     }
 
-    public void onAuthenticated(Callback callback) {
-        onAuthCallback = callback;
+    /**
+     * Credentials are never logged, they are valid secrets of other users, when mistyped.
+     * Result is returned to the caller, which already holds state of the connection, so it does not have to be
+     * looked up by socket.
+     */
+    public Optional<AuthenticatedUser> authenticate(WebSocketBase socket, String credentials) {
+        var user = authentication.authenticate(credentials);
+        user.ifPresentOrElse(u -> log.info("Authenticating socket with {} id", u.userId()),
+                () -> log.warn("Invalid credentials, address: {}", socket.remoteAddress()));
+        return user;
     }
 
-    public interface Callback {
-        void call(WebSocketBase authenticated, String userId);
+    public void invalidate(WebSocketBase socket) {
+        log.info("Invalidating...{}", socket.textHandlerID());
     }
 }
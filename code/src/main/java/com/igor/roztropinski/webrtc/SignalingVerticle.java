@@ -0,0 +1,69 @@
+package com.igor.roztropinski.webrtc;
+
+import com.igor.roztropinski.webrtc.cluster.ClusterTransport;
+import com.igor.roztropinski.webrtc.shard.Shards;
+import com.igor.roztropinski.webrtc.wire.WireFormat;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.ext.web.Router;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * One shard of the signaling server: http server with its own signaling server, both owned by event loop of this verticle.
+ * All instances listen on the same port, vertx distributes accepted connections between them.
+ * Instance starts listening only when all shards are registered, so no connection can reach a shard
+ * that other shards do not know about yet, and when it is registered in the cluster.
+ * Subprotocols of all {@link WireFormat}s are always offered, whatever the given http server options are.
+ */
+@Slf4j
+public class SignalingVerticle extends AbstractVerticle {
+
+    private final Shards<SignalingServer> shards;
+    private final int shard;
+    private final Supplier<SignalingServer> signalingServerFactory;
+    private final Function<Vertx, Router> routerFactory;
+    private final HttpServerOptions httpServerOptions;
+    private final ClusterTransport cluster;
+    private SignalingServer signalingServer;
+
+    public SignalingVerticle(Shards<SignalingServer> shards,
+                             int shard,
+                             ClusterTransport cluster,
+                             Supplier<SignalingServer> signalingServerFactory,
+                             Function<Vertx, Router> routerFactory,
+                             HttpServerOptions httpServerOptions) {
+        this.shards = shards;
+        this.shard = shard;
+        this.cluster = cluster;
+        this.signalingServerFactory = signalingServerFactory;
+        this.routerFactory = routerFactory;
+        this.httpServerOptions = httpServerOptions;
+    }
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        var httpServer = vertx.createHttpServer(new HttpServerOptions(httpServerOptions)
+                .setWebSocketSubProtocols(WireFormat.SUB_PROTOCOLS));
+        httpServer.requestHandler(routerFactory.apply(vertx));
+
+        signalingServer = signalingServerFactory.get();
+        var clusterRegistered = signalingServer.start(vertx, httpServer, shards, shard, cluster);
+
+        CompositeFuture.all(shards.allRegistered(), clusterRegistered)
+                .onFailure(startPromise::fail)
+                .onSuccess(r -> context.runOnContext(v -> httpServer.listen()
+                        .onSuccess(s -> log.info("Shard {} of signal server is running on {} port!", shard, s.actualPort()))
+                        .<Void>mapEmpty()
+                        .onComplete(startPromise)));
+    }
+
+    public SignalingServer signalingServer() {
+        return signalingServer;
+    }
+}
@@ -1,24 +1,95 @@
 package com.igor.roztropinski.webrtc;
 
+import com.igor.roztropinski.webrtc.admission.AdmissionControl;
+import com.igor.roztropinski.webrtc.admission.AdmissionOptions;
+import com.igor.roztropinski.webrtc.admission.RateLimit;
+import com.igor.roztropinski.webrtc.admission.RateLimitAction;
+import com.igor.roztropinski.webrtc.assets.StaticAssetsHandler;
+import com.igor.roztropinski.webrtc.assets.StaticAssetsWatcher;
+import com.igor.roztropinski.webrtc.auth.AuthTokens;
+import com.igor.roztropinski.webrtc.auth.Authentication;
+import com.igor.roztropinski.webrtc.auth.BearerSecretHandler;
+import com.igor.roztropinski.webrtc.auth.SecretsAuthentication;
+import com.igor.roztropinski.webrtc.auth.TokenAuthentication;
+import com.igor.roztropinski.webrtc.auth.TokenIssuer;
+import com.igor.roztropinski.webrtc.cluster.ClusterTransport;
+import com.igor.roztropinski.webrtc.cluster.EventBusClusterTransport;
+import com.igor.roztropinski.webrtc.cluster.LoopbackCluster;
+import com.igor.roztropinski.webrtc.ice.IceRelayLoadHandler;
+import com.igor.roztropinski.webrtc.ice.IceRelayPool;
+import com.igor.roztropinski.webrtc.ice.IceServersIssuer;
+import com.igor.roztropinski.webrtc.metrics.Metrics;
+import com.igor.roztropinski.webrtc.metrics.MetricsHandler;
+import com.igor.roztropinski.webrtc.outbound.CandidateBatching;
+import com.igor.roztropinski.webrtc.outbound.WriteCoalescing;
+import com.igor.roztropinski.webrtc.peerlog.AsyncPeerLogSink;
+import com.igor.roztropinski.webrtc.peerlog.PeerLogSink;
+import com.igor.roztropinski.webrtc.session.SessionOptions;
+import com.igor.roztropinski.webrtc.shard.Shards;
+import com.igor.roztropinski.webrtc.telemetry.StatsHandler;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
 import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.net.PemKeyCertOptions;
 import io.vertx.ext.web.Router;
-import io.vertx.ext.web.handler.StaticHandler;
+import io.vertx.ext.web.handler.BodyHandler;
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 @Slf4j
 public class WebrtcApp {
 
     private static final String STATIC_ROOT_DIR = "WEBRTC_STATIC_ROOT_DIR";
+    private static final String STATIC_WATCH = "WEBRTC_STATIC_WATCH";
     private static final String USE_HTTPS = "WEBRTC_USE_HTTPS";
     private static final String HTTP_SERVER_PORT = "WEBRTC_HTTP_SERVER_PORT";
     private static final String HTTPS_CERT_PATH = "WEBRTC_HTTPS_CERT_PATH";
     private static final String HTTPS_KEY_PATH = "WEBRTC_HTTPS_KEY_PATH";
+    private static final String WEBSOCKET_COMPRESSION = "WEBRTC_WEBSOCKET_COMPRESSION";
     private static final String PARTICIPANTS_ACCESS = "WEBRTC_PARTICIPANTS_ACCESS";
+    private static final String AUTHENTICATION = "WEBRTC_AUTHENTICATION";
+    private static final String AUTH_TOKEN_KEYS = TokenIssuer.KEYS;
+    private static final String AUTH_TOKEN_CACHE_SIZE = "WEBRTC_AUTH_TOKEN_CACHE_SIZE";
+    private static final String TOKENS_AUTHENTICATION = "tokens";
+    private static final String ICE_RELAYS = "WEBRTC_ICE_RELAYS";
+    private static final String ICE_RELAYS_LOAD_SECRET = "WEBRTC_ICE_RELAYS_LOAD_SECRET";
+    private static final String ADMIN_SECRET = "WEBRTC_ADMIN_SECRET";
+    private static final String TURN_SECRET = "WEBRTC_TURN_SECRET";
+    private static final String TURN_CREDENTIALS_TTL = "WEBRTC_TURN_CREDENTIALS_TTL";
+    private static final String TURN_RELAYS_PER_SESSION = "WEBRTC_TURN_RELAYS_PER_SESSION";
+    private static final String REGION = "WEBRTC_REGION";
+    private static final Set<String> SECRET_VARIABLES = Set.of(PARTICIPANTS_ACCESS, AUTH_TOKEN_KEYS, TURN_SECRET,
+            ICE_RELAYS_LOAD_SECRET, ADMIN_SECRET);
+    private static final String EVENT_LOOPS = "WEBRTC_EVENT_LOOPS";
+    private static final String CLUSTER = "WEBRTC_CLUSTER";
+    private static final String CLUSTER_HOST = "WEBRTC_CLUSTER_HOST";
+    private static final String PEER_LOGS_DIR = "WEBRTC_PEER_LOGS_DIR";
+    private static final String PEER_LOGS_MAX_FILE_SIZE_MB = "WEBRTC_PEER_LOGS_MAX_FILE_SIZE_MB";
+    private static final String PEER_LOGS_MAX_FILES = "WEBRTC_PEER_LOGS_MAX_FILES";
+    private static final String SESSION_GRACE_PERIOD = "WEBRTC_SESSION_GRACE_PERIOD";
+    private static final String SESSION_BUFFERED_PEER_EVENTS = "WEBRTC_SESSION_BUFFERED_PEER_EVENTS";
+    private static final String CANDIDATE_BATCH_WINDOW = "WEBRTC_CANDIDATE_BATCH_WINDOW";
+    private static final String CANDIDATE_BATCH_MAX_CANDIDATES = "WEBRTC_CANDIDATE_BATCH_MAX_CANDIDATES";
+    private static final String WRITE_MAX_FLUSH_DELAY = "WEBRTC_WRITE_MAX_FLUSH_DELAY";
+    private static final String MAX_CONNECTIONS = "WEBRTC_MAX_CONNECTIONS";
+    private static final String ACCEPT_RATE_LIMIT = "WEBRTC_ACCEPT_RATE_LIMIT";
+    private static final String SIGNALING_RATE_LIMIT = "WEBRTC_SIGNALING_RATE_LIMIT";
+    private static final String PEER_LOGS_RATE_LIMIT = "WEBRTC_PEER_LOGS_RATE_LIMIT";
+    private static final String PINGS_RATE_LIMIT = "WEBRTC_PINGS_RATE_LIMIT";
+    private static final String RATE_LIMIT_ACTION = "WEBRTC_RATE_LIMIT_ACTION";
+    private static final int PEER_LOGS_QUEUE_CAPACITY = 64 * 1024;
     private static final Map<String, Long> DEFAULT_PARTICIPANTS_ACCESS = Map.of(
             "${A}", 1L,
             "${B}", 2L,
@@ -35,8 +106,11 @@ public class WebrtcApp {
         log.info("About to start SignalServer for WebrtcPOC, loading config...");
 
         var staticRootDir = envVariable(STATIC_ROOT_DIR);
+        var staticWatch = Boolean.parseBoolean(envVariable(STATIC_WATCH, "false"));
         var useHttps = Boolean.parseBoolean(envVariable(USE_HTTPS, "false"));
         var httpServerPort = Integer.parseInt(envVariable(HTTP_SERVER_PORT, useHttps ? "4444" : "8888"));
+        //deflate contexts of every compressing socket take hundreds of KB, signaling messages are too small to pay off
+        var websocketCompression = Boolean.parseBoolean(envVariable(WEBSOCKET_COMPRESSION, "false"));
 
         String httpsCertPath;
         String httpsKeyPath;
@@ -48,51 +122,142 @@ public class WebrtcApp {
             httpsKeyPath = null;
         }
 
-        var participantsAccess = participantsAccess();
-
-        var vertx = Vertx.vertx();
-        var router = Router.router(vertx);
-
-        router.route().handler(staticHandler(staticRootDir));
+        var authentication = authentication();
+        var eventLoops = Integer.parseInt(envVariable(EVENT_LOOPS,
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        var useCluster = Boolean.parseBoolean(envVariable(CLUSTER, "false"));
+        var clusterHost = useCluster ? envVariable(CLUSTER_HOST, "") : "";
+        var peerLogsDir = envVariable(PEER_LOGS_DIR, "peer-logs");
+        var peerLogsMaxFileSize = Long.parseLong(envVariable(PEER_LOGS_MAX_FILE_SIZE_MB, "64")) * 1024 * 1024;
+        var peerLogsMaxFiles = Integer.parseInt(envVariable(PEER_LOGS_MAX_FILES, "10"));
+        var sessions = new SessionOptions(
+                Integer.parseInt(envVariable(SESSION_GRACE_PERIOD, String.valueOf(SessionOptions.DEFAULT.gracePeriod()))),
+                Integer.parseInt(envVariable(SESSION_BUFFERED_PEER_EVENTS,
+                        String.valueOf(SessionOptions.DEFAULT.bufferedPeerEvents()))));
+        //opt-in, as clients have to understand batched frames
+        var candidateBatching = new CandidateBatching(
+                Integer.parseInt(envVariable(CANDIDATE_BATCH_WINDOW, "0")),
+                Integer.parseInt(envVariable(CANDIDATE_BATCH_MAX_CANDIDATES,
+                        String.valueOf(CandidateBatching.DEFAULT_MAX_CANDIDATES))));
+        var writeCoalescing = new WriteCoalescing(Integer.parseInt(envVariable(WRITE_MAX_FLUSH_DELAY,
+                String.valueOf(WriteCoalescing.DEFAULT.maxFlushDelay()))));
+        var admission = new AdmissionControl(admissionOptions());
+        var iceServers = iceServersIssuer();
+        var iceRelaysLoadSecret = envVariable(ICE_RELAYS_LOAD_SECRET, "");
+        var adminSecret = envVariable(ADMIN_SECRET, "");
 
-        vertx.exceptionHandler(e -> log.error("There was a problem", e));
-        router.route().failureHandler(r -> log.error("Failed on router", r.failure()));
+        log.info("Loading static files from: {}", staticRootDir);
+        var staticAssets = new StaticAssetsHandler(Path.of(staticRootDir));
+        if (staticWatch) {
+            new StaticAssetsWatcher(Path.of(staticRootDir), staticAssets);
+        }
 
         log.info("Setting up http server");
         var httpServerOptions = new HttpServerOptions()
-                .setPort(httpServerPort);
+                .setPort(httpServerPort)
+                .setPerMessageWebSocketCompressionSupported(websocketCompression)
+                .setPerFrameWebSocketCompressionSupported(websocketCompression);
         if (useHttps) {
             log.info("Setting up https");
             setupHttps(httpServerOptions, httpsCertPath, httpsKeyPath);
         }
-        var httpServer = vertx.createHttpServer(httpServerOptions);
-
-        var signalingAuthenticator = new SignalingServerAuthenticator(participantsAccess);
-        var signalingServer = new SignalingServer(signalingAuthenticator);
 
-        signalingServer.start(httpServer);
+        var vertxOptions = new VertxOptions().setEventLoopPoolSize(eventLoops);
+        Future<Vertx> vertxFuture;
+        if (useCluster) {
+            log.info("Joining the cluster");
+            if (!clusterHost.isEmpty()) {
+                vertxOptions.getEventBusOptions().setHost(clusterHost);
+            }
+            vertxFuture = Vertx.clusteredVertx(vertxOptions);
+        } else {
+            vertxFuture = Future.succeededFuture(Vertx.vertx(vertxOptions));
+        }
 
-        httpServer.requestHandler(router);
+        vertxFuture.onFailure(t -> log.error("Failed to start vertx", t))
+                .onSuccess(vertx -> {
+                    vertx.exceptionHandler(e -> log.error("There was a problem", e));
+                    var cluster = useCluster ?
+                            new EventBusClusterTransport(vertx) : LoopbackCluster.standalone();
+                    var metrics = new Metrics();
+                    var peerLogs = new AsyncPeerLogSink(Path.of(peerLogsDir), peerLogsMaxFileSize, peerLogsMaxFiles,
+                            PEER_LOGS_QUEUE_CAPACITY, metrics);
+                    deploy(vertx, cluster, admission, candidateBatching, writeCoalescing, sessions, iceServers, metrics,
+                            peerLogs, eventLoops, httpServerOptions, staticAssets, iceRelaysLoadSecret, adminSecret, authentication);
+                });
+    }
 
-        httpServer.listen();
+    private static void deploy(Vertx vertx,
+                               ClusterTransport cluster,
+                               AdmissionControl admission,
+                               CandidateBatching candidateBatching,
+                               WriteCoalescing writeCoalescing,
+                               SessionOptions sessions,
+                               IceServersIssuer iceServers,
+                               Metrics metrics,
+                               PeerLogSink peerLogs,
+                               int eventLoops,
+                               HttpServerOptions httpServerOptions,
+                               StaticAssetsHandler staticAssets,
+                               String iceRelaysLoadSecret,
+                               String adminSecret,
+                               Supplier<Authentication> authentication) {
+        //every shard has its own signaling server, owned by event loop on which its http server listens
+        log.info("Deploying {} signal server shards of {} node", eventLoops, cluster.nodeId());
+        var shards = new Shards<SignalingServer>(eventLoops);
+        var shardsIndexes = new AtomicInteger();
+        //served on the signaling port, so metrics and stats are not served at all, unless they are guarded by the secret
+        var adminAuthorization = adminSecret.isEmpty() ? null : new BearerSecretHandler(adminSecret);
+        if (adminAuthorization == null) {
+            log.warn("{} is not set, metrics and stats will not be served", ADMIN_SECRET);
+        }
+        var metricsHandler = new MetricsHandler(metrics, shards);
+        var statsHandler = new StatsHandler(shards);
+        var iceRelayLoadAuthorization = iceRelaysLoadSecret.isEmpty() ? null : new BearerSecretHandler(iceRelaysLoadSecret);
+        var iceRelayLoadHandler = iceServers.pool().hasTurn() && iceRelayLoadAuthorization != null ?
+                new IceRelayLoadHandler(iceServers.pool()) : null;
+        List<SignalingVerticle> verticles = new CopyOnWriteArrayList<>();
 
-        log.info("Signal server is running!");
+        vertx.deployVerticle(() -> {
+            var verticle = new SignalingVerticle(shards, shardsIndexes.getAndIncrement(), cluster,
+                    () -> new SignalingServer(new SignalingServerAuthenticator(authentication.get()), admission,
+                            candidateBatching, writeCoalescing, sessions, iceServers, metrics, peerLogs),
+                    v -> router(v, staticAssets, adminAuthorization, metricsHandler, statsHandler,
+                            iceRelayLoadAuthorization, iceRelayLoadHandler),
+                    httpServerOptions);
+            verticles.add(verticle);
+            return verticle;
+        }, new DeploymentOptions().setInstances(eventLoops))
+                .onSuccess(s -> log.info("Signal server is running!"))
+                .onFailure(t -> log.error("Failed to start signal server", t));
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("Shutting down...");
-            signalingServer.stop();
+            verticles.forEach(v -> v.signalingServer().stop());
+            peerLogs.close();
+            cluster.close();
         }));
     }
 
-    private static StaticHandler staticHandler(String root) {
-        log.info("Taking frontend files from: {}", root);
-
-        return StaticHandler.create()
-                .setFilesReadOnly(false)
-                .setCachingEnabled(false)
-                .setMaxAgeSeconds(0)
-                .setAllowRootFileSystemAccess(true)
-                .setWebRoot(root);
+    private static Router router(Vertx vertx, StaticAssetsHandler staticAssets, BearerSecretHandler adminAuthorization,
+                                 MetricsHandler metricsHandler, StatsHandler statsHandler,
+                                 BearerSecretHandler iceRelayLoadAuthorization, IceRelayLoadHandler iceRelayLoadHandler) {
+        var router = Router.router(vertx);
+        if (adminAuthorization != null) {
+            router.get(MetricsHandler.ROUTE).handler(adminAuthorization).handler(metricsHandler);
+            router.get(StatsHandler.ROUTE).handler(adminAuthorization).handler(statsHandler.node());
+            router.get(StatsHandler.ROOM_ROUTE).handler(adminAuthorization).handler(statsHandler.room());
+            router.get(StatsHandler.USER_ROUTE).handler(adminAuthorization).handler(statsHandler.user());
+        }
+        if (iceRelayLoadHandler != null) {
+            router.put(IceRelayLoadHandler.ROUTE)
+                    .handler(iceRelayLoadAuthorization)
+                    .handler(BodyHandler.create().setBodyLimit(64))
+                    .handler(iceRelayLoadHandler);
+        }
+        router.route().handler(staticAssets);
+        router.route().failureHandler(r -> log.error("Failed on router", r.failure()));
+        return router;
     }
 
     private static String envVariable(String key, String defaultValue) {
@@ -104,7 +269,7 @@ public class WebrtcApp {
             log.info("{} is null, using default value: {}", key, defaultValue);
             return defaultValue;
         }
-        log.info("{} has value of: {}", key, key.endsWith(PARTICIPANTS_ACCESS) ? "*****" : value);
+        log.info("{} has value of: {}", key, SECRET_VARIABLES.contains(key) ? "*****" : value);
         return value;
     }
 
@@ -112,6 +277,60 @@ public class WebrtcApp {
         return envVariable(key, null);
     }
 
+    /**
+     * Every shard gets its own instance, as they are not thread safe.
+     */
+    private static Supplier<Authentication> authentication() {
+        if (TOKENS_AUTHENTICATION.equalsIgnoreCase(envVariable(AUTHENTICATION, "secrets"))) {
+            var keys = AuthTokens.keys(envVariable(AUTH_TOKEN_KEYS));
+            var cacheSize = Integer.parseInt(envVariable(AUTH_TOKEN_CACHE_SIZE, "1024"));
+            log.info("Authenticating users by tokens, signed by one of {} keys", keys.keySet());
+            return () -> new TokenAuthentication(keys, cacheSize);
+        }
+        var participantsAccess = participantsAccess();
+        return () -> new SecretsAuthentication(participantsAccess);
+    }
+
+    /**
+     * Rate limits are given as {@code <per second>:<burst>}, 0 for no limit.
+     */
+    private static AdmissionOptions admissionOptions() {
+        var defaults = AdmissionOptions.defaults(Integer.parseInt(envVariable(MAX_CONNECTIONS, "10")));
+        return new AdmissionOptions(defaults.maxConnections(),
+                rateLimit(ACCEPT_RATE_LIMIT, defaults.accept()),
+                rateLimit(SIGNALING_RATE_LIMIT, defaults.signaling()),
+                rateLimit(PEER_LOGS_RATE_LIMIT, defaults.peerLogs()),
+                rateLimit(PINGS_RATE_LIMIT, defaults.pings()),
+                RateLimitAction.valueOf(envVariable(RATE_LIMIT_ACTION, defaults.onExceeded().name())
+                        .toUpperCase(Locale.ROOT)));
+    }
+
+    private static RateLimit rateLimit(String key, RateLimit defaultValue) {
+        var value = envVariable(key, defaultValue.perSecond() + ":" + defaultValue.burst());
+        var rateBurst = value.split(":");
+        var perSecond = Double.parseDouble(rateBurst[0]);
+        var burst = rateBurst.length > 1 ? Integer.parseInt(rateBurst[1]) : (int) Math.ceil(perSecond);
+        return new RateLimit(perSecond, burst);
+    }
+
+    /**
+     * Relays are given as json array, as {@code [{"id":"eu-1","urls":["turn:10.0.0.1:3478"],"region":"eu","weight":1}]},
+     * without them clients use relays of their static config.
+     */
+    private static IceServersIssuer iceServersIssuer() {
+        var relays = envVariable(ICE_RELAYS, "");
+        if (relays.isBlank()) {
+            log.info("No ice relays set, clients will use their own");
+            return IceServersIssuer.DISABLED;
+        }
+        var region = envVariable(REGION, "");
+        var pool = new IceRelayPool(IceRelayPool.relays(relays), region.isEmpty() ? null : region);
+        var turnSecret = pool.hasTurn() ? envVariable(TURN_SECRET) : "";
+        return new IceServersIssuer(pool, turnSecret.getBytes(StandardCharsets.UTF_8),
+                Long.parseLong(envVariable(TURN_CREDENTIALS_TTL, "86400")),
+                Integer.parseInt(envVariable(TURN_RELAYS_PER_SESSION, "1")));
+    }
+
     private static Map<String, Long> participantsAccess() {
         String participants = envVariable(PARTICIPANTS_ACCESS, "");
         if (participants.isEmpty()) {
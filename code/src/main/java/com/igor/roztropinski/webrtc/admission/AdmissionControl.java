@@ -0,0 +1,56 @@
+package com.igor.roztropinski.webrtc.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission of connections to the whole node, shared by all of its shards: budget of open connections
+ * and rate of accepting new ones, both lock-free. Per connection message limits are kept by {@link ConnectionRates}.
+ */
+public class AdmissionControl {
+
+    private final AdmissionOptions options;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicRateLimiter accepts;
+    private final ConnectionRates.Limits rateLimits;
+
+    public AdmissionControl(AdmissionOptions options) {
+        this.options = options;
+        this.accepts = new AtomicRateLimiter(options.accept());
+        this.rateLimits = new ConnectionRates.Limits(options);
+    }
+
+    public boolean tryAccept(long nowNanos) {
+        return accepts.tryAcquire(nowNanos);
+    }
+
+    /**
+     * Acquired connection must be released exactly once, when it is closed.
+     */
+    public boolean tryAcquireConnection() {
+        while (true) {
+            var current = connections.get();
+            if (current >= options.maxConnections()) {
+                return false;
+            }
+            if (connections.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void releaseConnection() {
+        connections.decrementAndGet();
+    }
+
+    public int connections() {
+        return connections.get();
+    }
+
+    public ConnectionRates connectionRates() {
+        return new ConnectionRates(rateLimits);
+    }
+
+    public AdmissionOptions options() {
+        return options;
+    }
+}
@@ -0,0 +1,47 @@
+package com.igor.roztropinski.webrtc.admission;
+
+import lombok.Value;
+
+@Value
+public class AdmissionOptions {
+
+    /**
+     * Open connections, authenticated or not, of the whole node.
+     */
+    int maxConnections;
+    /**
+     * New connections accepted by the whole node.
+     */
+    RateLimit accept;
+    /**
+     * Messages of every connection.
+     */
+    RateLimit signaling;
+    RateLimit peerLogs;
+    RateLimit pings;
+    RateLimitAction onExceeded;
+
+    public static AdmissionOptions defaults(int maxConnections) {
+        return new AdmissionOptions(maxConnections, new RateLimit(100, 200), new RateLimit(100, 500),
+                new RateLimit(50, 200), new RateLimit(2, 10), RateLimitAction.REJECT);
+    }
+
+    /**
+     * Only connections are limited, for load tests and benchmarks.
+     */
+    public static AdmissionOptions unlimited(int maxConnections) {
+        return new AdmissionOptions(maxConnections, RateLimit.UNLIMITED, RateLimit.UNLIMITED, RateLimit.UNLIMITED,
+                RateLimit.UNLIMITED, RateLimitAction.REJECT);
+    }
+
+    public RateLimit limit(MessageClass messageClass) {
+        switch (messageClass) {
+            case PEER_LOGS:
+                return peerLogs;
+            case PINGS:
+                return pings;
+            default:
+                return signaling;
+        }
+    }
+}
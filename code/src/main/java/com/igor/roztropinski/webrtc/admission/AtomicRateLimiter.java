@@ -0,0 +1,37 @@
+package com.igor.roztropinski.webrtc.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free rate limiter, shared by all event loops. It is the generic cell rate algorithm: the only state is
+ * theoretical arrival time of the next event, so a single compare and set decides about an event.
+ */
+public class AtomicRateLimiter {
+
+    private final AtomicLong arrivalAt = new AtomicLong(Long.MIN_VALUE);
+    private final long interval;
+    private final long tolerance;
+    private final boolean unlimited;
+
+    public AtomicRateLimiter(RateLimit limit) {
+        this.interval = limit.interval();
+        this.tolerance = limit.tolerance();
+        this.unlimited = limit.unlimited();
+    }
+
+    public boolean tryAcquire(long nowNanos) {
+        if (unlimited) {
+            return true;
+        }
+        while (true) {
+            var current = arrivalAt.get();
+            var next = Math.max(current, nowNanos);
+            if (next - nowNanos > tolerance) {
+                return false;
+            }
+            if (arrivalAt.compareAndSet(current, next + interval)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.igor.roztropinski.webrtc.admission;
+
+import java.util.Arrays;
+
+/**
+ * Rate limiters of a single connection, one per {@link MessageClass}, using the same algorithm
+ * as {@link AtomicRateLimiter}, but owned by event loop of the connection, so without any atomics.
+ * Limits are computed once per node and shared by all connections, connection keeps only its arrival times
+ * and limited flags, packed into bits.
+ */
+public class ConnectionRates {
+
+    private static final MessageClass[] CLASSES = MessageClass.values();
+
+    private final Limits limits;
+    private final long[] arrivalsAt = new long[CLASSES.length];
+    private int limited;
+
+    public ConnectionRates(AdmissionOptions options) {
+        this(new Limits(options));
+    }
+
+    ConnectionRates(Limits limits) {
+        this.limits = limits;
+        Arrays.fill(arrivalsAt, Long.MIN_VALUE);
+    }
+
+    public boolean tryAcquire(MessageClass messageClass, long nowNanos) {
+        var i = messageClass.ordinal();
+        var interval = limits.intervals[i];
+        if (interval < 0) {
+            return true;
+        }
+        var next = Math.max(arrivalsAt[i], nowNanos);
+        if (next - nowNanos > limits.tolerances[i]) {
+            return false;
+        }
+        arrivalsAt[i] = next + interval;
+        limited &= ~(1 << i);
+        return true;
+    }
+
+    /**
+     * @return true, if it is the first message over the limit since the last one within it
+     */
+    public boolean onLimited(MessageClass messageClass) {
+        var bit = 1 << messageClass.ordinal();
+        var first = (limited & bit) == 0;
+        limited |= bit;
+        return first;
+    }
+
+    /**
+     * Intervals and tolerances of every {@link MessageClass}, in nanoseconds, -1 interval is unlimited.
+     */
+    static class Limits {
+
+        final long[] intervals = new long[CLASSES.length];
+        final long[] tolerances = new long[CLASSES.length];
+
+        Limits(AdmissionOptions options) {
+            for (var c : CLASSES) {
+                var limit = options.limit(c);
+                intervals[c.ordinal()] = limit.unlimited() ? -1 : limit.interval();
+                tolerances[c.ordinal()] = limit.tolerance();
+            }
+        }
+    }
+}
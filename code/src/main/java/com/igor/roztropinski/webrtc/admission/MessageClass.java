@@ -0,0 +1,30 @@
+package com.igor.roztropinski.webrtc.admission;
+
+import com.igor.roztropinski.webrtc.model.SocketMessageType;
+
+/**
+ * Classes of client messages, limited separately, so that flood of one of them does not starve the others.
+ */
+public enum MessageClass {
+    /**
+     * Peer events, authentication and room messages; also messages that can not be parsed.
+     */
+    SIGNALING,
+    /**
+     * Peer logs and peer stats, diagnostics only.
+     */
+    PEER_LOGS,
+    PINGS;
+
+    public static MessageClass of(SocketMessageType type) {
+        switch (type) {
+            case PEER_LOG:
+            case PEER_STATS:
+                return PEER_LOGS;
+            case PING:
+                return PINGS;
+            default:
+                return SIGNALING;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.igor.roztropinski.webrtc.admission;
+
+import lombok.Value;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sustained rate, with burst of that many events allowed at once.
+ */
+@Value
+public class RateLimit {
+
+    public static final RateLimit UNLIMITED = new RateLimit(0, 0);
+
+    /**
+     * 0 for no limit.
+     */
+    double perSecond;
+    int burst;
+
+    public boolean unlimited() {
+        return perSecond <= 0;
+    }
+
+    /**
+     * In nanoseconds, how often events are allowed in the long run.
+     */
+    public long interval() {
+        return unlimited() ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+    }
+
+    /**
+     * In nanoseconds, how much ahead of the sustained rate events can be.
+     */
+    public long tolerance() {
+        return interval() * Math.max(0, burst - 1);
+    }
+}
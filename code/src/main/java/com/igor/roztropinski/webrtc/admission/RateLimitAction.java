@@ -0,0 +1,15 @@
+package com.igor.roztropinski.webrtc.admission;
+
+/**
+ * What happens to connection sending messages faster than allowed.
+ */
+public enum RateLimitAction {
+    /**
+     * Messages over the limit are dropped, client is told about it once, until it gets within the limit again.
+     */
+    REJECT,
+    /**
+     * Connection is closed on the first message over the limit.
+     */
+    CLOSE
+}
@@ -0,0 +1,25 @@
+package com.igor.roztropinski.webrtc.assets;
+
+import io.vertx.core.buffer.Buffer;
+import lombok.Value;
+
+/**
+ * Static file held in memory, ready to be sent as it is.
+ */
+@Value
+public class StaticAsset {
+
+    String contentType;
+    Buffer content;
+    /**
+     * Null, if content is not compressible or gzip would not make it smaller.
+     */
+    Buffer gzipped;
+    String etag;
+    String gzippedEtag;
+    String cacheControl;
+
+    public boolean hasGzipped() {
+        return gzipped != null;
+    }
+}
@@ -0,0 +1,274 @@
+package com.igor.roztropinski.webrtc.assets;
+
+import io.vertx.core.buffer.Buffer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Immutable snapshot of static files of a directory, loaded into memory, with gzipped variants and ETags (content hashes).
+ * Every file, except html pages, is also available under fingerprinted name ({@code webrtc.<hash>.js}), which changes
+ * whenever its content does, so it can be cached forever. References to other files in html, js and css (quoted,
+ * relative paths, as of {@code <script src="webrtc.js">} or {@code import ... from "./config.js"}) are rewritten
+ * to their fingerprinted names, so hash of the file covers also files that it references.
+ * Pages, and files under their original names, are revalidated by ETags on every use.
+ */
+@Slf4j
+public class StaticAssets {
+
+    public static final String INDEX = "index.html";
+    static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    static final String REVALIDATE = "no-cache";
+    private static final int FINGERPRINT_LENGTH = 12;
+    private static final int ETAG_LENGTH = 32;
+    private static final Pattern QUOTED = Pattern.compile("([\"'])([^\"'\\s<>]+)\\1");
+    private static final Set<String> REFERRING = Set.of("html", "htm", "js", "mjs", "css");
+    private static final Map<String, String> CONTENT_TYPES = Map.ofEntries(
+            Map.entry("html", "text/html; charset=utf-8"),
+            Map.entry("htm", "text/html; charset=utf-8"),
+            Map.entry("js", "text/javascript; charset=utf-8"),
+            Map.entry("mjs", "text/javascript; charset=utf-8"),
+            Map.entry("css", "text/css; charset=utf-8"),
+            Map.entry("json", "application/json"),
+            Map.entry("map", "application/json"),
+            Map.entry("txt", "text/plain; charset=utf-8"),
+            Map.entry("svg", "image/svg+xml"),
+            Map.entry("png", "image/png"),
+            Map.entry("jpg", "image/jpeg"),
+            Map.entry("jpeg", "image/jpeg"),
+            Map.entry("gif", "image/gif"),
+            Map.entry("webp", "image/webp"),
+            Map.entry("ico", "image/x-icon"),
+            Map.entry("woff", "font/woff"),
+            Map.entry("woff2", "font/woff2"),
+            Map.entry("wasm", "application/wasm"));
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private final Map<String, StaticAsset> assets;
+    private final Map<String, String> fingerprinted;
+    private final long bytes;
+
+    private StaticAssets(Map<String, StaticAsset> assets, Map<String, String> fingerprinted, long bytes) {
+        this.assets = assets;
+        this.fingerprinted = fingerprinted;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Reads all files of the directory, blocking.
+     */
+    public static StaticAssets load(Path root) {
+        var files = new TreeMap<String, byte[]>();
+        try (var paths = Files.walk(root)) {
+            for (var p : paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                files.put(root.relativize(p).toString().replace('\\', '/'), Files.readAllBytes(p));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load static assets from " + root, e);
+        }
+        return new Loader(files).load();
+    }
+
+    /**
+     * @param path relative to the root, without leading slash
+     */
+    public StaticAsset get(String path) {
+        return assets.get(path);
+    }
+
+    /**
+     * @return fingerprinted path of the file, or null if it has none
+     */
+    public String fingerprinted(String path) {
+        return fingerprinted.get(path);
+    }
+
+    public int files() {
+        return fingerprinted.size();
+    }
+
+    /**
+     * Of all files, not compressed.
+     */
+    public long bytes() {
+        return bytes;
+    }
+
+    private static String extension(String path) {
+        var name = path.substring(path.lastIndexOf('/') + 1);
+        var dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isPage(String path) {
+        var extension = extension(path);
+        return extension.equals("html") || extension.equals("htm");
+    }
+
+    private static String contentType(String path) {
+        return CONTENT_TYPES.getOrDefault(extension(path), DEFAULT_CONTENT_TYPE);
+    }
+
+    private static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.startsWith("application/json")
+                || contentType.equals("image/svg+xml") || contentType.equals("application/wasm");
+    }
+
+    private static String withFingerprint(String path, String hash) {
+        var slash = path.lastIndexOf('/');
+        var dot = path.lastIndexOf('.');
+        var fingerprint = hash.substring(0, FINGERPRINT_LENGTH);
+        return dot <= slash + 1 ? path + "." + fingerprint :
+                path.substring(0, dot) + "." + fingerprint + path.substring(dot);
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            var hash = MessageDigest.getInstance("SHA-256").digest(content);
+            var hex = new StringBuilder(hash.length * 2);
+            for (var b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] content) {
+        var out = new ByteArrayOutputStream(content.length / 2);
+        try (var gzip = new GZIPOutputStream(out) {{
+            def.setLevel(Deflater.BEST_COMPRESSION);
+        }}) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Files are processed depth first, so that references of a file are fingerprinted before the file itself.
+     */
+    private static class Loader {
+
+        final Map<String, byte[]> files;
+        final Map<String, byte[]> contents = new HashMap<>();
+        final Map<String, String> hashes = new HashMap<>();
+        final Set<String> visiting = new HashSet<>();
+
+        Loader(Map<String, byte[]> files) {
+            this.files = files;
+        }
+
+        StaticAssets load() {
+            var assets = new HashMap<String, StaticAsset>();
+            var fingerprinted = new HashMap<String, String>();
+            long bytes = 0;
+            for (var path : files.keySet()) {
+                var content = content(path);
+                var hash = hashes.get(path);
+                var contentType = contentType(path);
+                var buffer = Buffer.buffer(content);
+                Buffer gzipped = null;
+                if (isCompressible(contentType)) {
+                    var compressed = gzip(content);
+                    if (compressed.length < content.length) {
+                        gzipped = Buffer.buffer(compressed);
+                    }
+                }
+                var etag = "\"" + hash.substring(0, ETAG_LENGTH) + "\"";
+                var gzippedEtag = "\"" + hash.substring(0, ETAG_LENGTH) + "-gz\"";
+
+                assets.put(path, new StaticAsset(contentType, buffer, gzipped, etag, gzippedEtag, REVALIDATE));
+                if (!isPage(path)) {
+                    var fingerprintedPath = withFingerprint(path, hash);
+                    assets.put(fingerprintedPath,
+                            new StaticAsset(contentType, buffer, gzipped, etag, gzippedEtag, IMMUTABLE));
+                    fingerprinted.put(path, fingerprintedPath);
+                }
+                bytes += content.length;
+            }
+            return new StaticAssets(Map.copyOf(assets), Map.copyOf(fingerprinted), bytes);
+        }
+
+        byte[] content(String path) {
+            var content = contents.get(path);
+            if (content != null) {
+                return content;
+            }
+            //file references itself, directly or not, so its hash can not cover its references
+            if (!visiting.add(path)) {
+                return files.get(path);
+            }
+            content = REFERRING.contains(extension(path)) ? rewriteReferences(path) : files.get(path);
+            visiting.remove(path);
+            contents.put(path, content);
+            hashes.put(path, sha256(content));
+            return content;
+        }
+
+        byte[] rewriteReferences(String path) {
+            var text = new String(files.get(path), StandardCharsets.UTF_8);
+            var matcher = QUOTED.matcher(text);
+            var rewritten = new StringBuilder(text.length() + 64);
+            var changed = false;
+            while (matcher.find()) {
+                var reference = matcher.group(2);
+                var referenced = resolve(path, reference);
+                if (referenced == null || isPage(referenced) || referenced.equals(path)) {
+                    matcher.appendReplacement(rewritten, Matcher.quoteReplacement(matcher.group()));
+                    continue;
+                }
+                content(referenced);
+                var hash = hashes.get(referenced);
+                if (hash == null) {
+                    matcher.appendReplacement(rewritten, Matcher.quoteReplacement(matcher.group()));
+                    continue;
+                }
+                var name = withFingerprint(referenced, hash);
+                var quote = matcher.group(1);
+                matcher.appendReplacement(rewritten, Matcher.quoteReplacement(quote
+                        + reference.substring(0, reference.lastIndexOf('/') + 1)
+                        + name.substring(name.lastIndexOf('/') + 1) + quote));
+                changed = true;
+            }
+            if (!changed) {
+                return files.get(path);
+            }
+            matcher.appendTail(rewritten);
+            return rewritten.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return path of the referenced file, relative to the root, or null if it is not one of files
+         */
+        String resolve(String path, String reference) {
+            try {
+                var uri = URI.create("/" + path).resolve(reference);
+                if (uri.getScheme() != null || uri.getAuthority() != null || uri.getQuery() != null
+                        || uri.getFragment() != null || uri.getPath() == null || uri.getPath().length() < 2) {
+                    return null;
+                }
+                var resolved = uri.getPath().substring(1);
+                return files.containsKey(resolved) ? resolved : null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.igor.roztropinski.webrtc.assets;
+
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.RoutingContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Serves static files from memory, so that even all participants of a large meeting loading the page at once
+ * do not cause any file I/O. Gzipped variant is sent to clients that accept it, request with a matching
+ * If-None-Match gets 304. Shared by all event loops: it only reads the current, immutable {@link StaticAssets},
+ * which {@link #reload()} replaces as a whole. Files that are not there are passed to the next handler.
+ */
+@Slf4j
+public class StaticAssetsHandler implements Handler<RoutingContext> {
+
+    private static final String GZIP = "gzip";
+
+    private final Path root;
+    private volatile StaticAssets assets;
+
+    /**
+     * Loads all files of the root directory, blocking.
+     */
+    public StaticAssetsHandler(Path root) {
+        this.root = root;
+        this.assets = load(root);
+    }
+
+    /**
+     * Loads files again, blocking, current ones are kept if it fails.
+     */
+    public void reload() {
+        try {
+            assets = load(root);
+        } catch (Exception e) {
+            log.error("Failed to reload static assets from {}, keeping the previous ones", root, e);
+        }
+    }
+
+    public StaticAssets assets() {
+        return assets;
+    }
+
+    @Override
+    public void handle(RoutingContext context) {
+        var request = context.request();
+        var head = request.method() == HttpMethod.HEAD;
+        if (request.method() != HttpMethod.GET && !head) {
+            context.next();
+            return;
+        }
+        var asset = assets.get(path(context.normalizedPath()));
+        if (asset == null) {
+            context.next();
+            return;
+        }
+
+        var response = context.response();
+        var gzip = asset.hasGzipped() && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        var etag = gzip ? asset.gzippedEtag() : asset.etag();
+        response.putHeader(HttpHeaders.ETAG, etag)
+                .putHeader(HttpHeaders.CACHE_CONTROL, asset.cacheControl());
+        if (asset.hasGzipped()) {
+            response.putHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatusCode(304).end();
+            return;
+        }
+
+        var content = gzip ? asset.gzipped() : asset.content();
+        response.putHeader(HttpHeaders.CONTENT_TYPE, asset.contentType());
+        if (gzip) {
+            response.putHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+        if (head) {
+            response.putHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(content.length())).end();
+        } else {
+            response.end(content);
+        }
+    }
+
+    private static StaticAssets load(Path root) {
+        var assets = StaticAssets.load(root);
+        log.info("Loaded {} static files ({} bytes) from {}", assets.files(), assets.bytes(), root);
+        return assets;
+    }
+
+    private static String path(String requestPath) {
+        var path = requestPath.startsWith("/") ? requestPath.substring(1) : requestPath;
+        return path.isEmpty() || path.endsWith("/") ? path + StaticAssets.INDEX : path;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (var coding : acceptEncoding.split(",")) {
+            var parameters = coding.split(";");
+            var name = parameters[0].trim().toLowerCase(Locale.ROOT);
+            if (name.equals(GZIP) || name.equals("*")) {
+                return parameters.length < 2 || !isZeroQuality(parameters[1]);
+            }
+        }
+        return false;
+    }
+
+    private static boolean isZeroQuality(String parameter) {
+        var qualityValue = parameter.trim().split("=");
+        if (qualityValue.length != 2 || !qualityValue[0].trim().equalsIgnoreCase("q")) {
+            return false;
+        }
+        try {
+            return Double.parseDouble(qualityValue[1].trim()) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (var tag : ifNoneMatch.split(",")) {
+            var t = tag.trim();
+            if (t.startsWith("W/")) {
+                t = t.substring(2);
+            }
+            if (t.equals(etag) || t.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
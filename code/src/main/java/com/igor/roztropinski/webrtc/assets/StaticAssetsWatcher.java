@@ -0,0 +1,86 @@
+package com.igor.roztropinski.webrtc.assets;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Development mode: reloads static files whenever any of them changes. Changes are watched by a background thread,
+ * burst of them (editor saving a few files) is reloaded once, after a short quiet period.
+ */
+@Slf4j
+public class StaticAssetsWatcher {
+
+    private static final long QUIET_PERIOD_MILLIS = 100;
+
+    private final Path root;
+    private final StaticAssetsHandler handler;
+    private final WatchService watchService;
+    private final Thread watcher;
+    private volatile boolean closed;
+
+    public StaticAssetsWatcher(Path root, StaticAssetsHandler handler) {
+        this.root = root;
+        this.handler = handler;
+        try {
+            this.watchService = root.getFileSystem().newWatchService();
+            registerAll();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to watch static assets of " + root, e);
+        }
+        this.watcher = new Thread(this::watch, "static-assets-watcher");
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+        log.info("Watching {} for changes of static files", root);
+    }
+
+    public void close() {
+        closed = true;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("Failed to close static assets watch service", e);
+        }
+    }
+
+    private void watch() {
+        while (!closed) {
+            try {
+                var key = watchService.take();
+                drain(key);
+                //subsequent changes of the burst
+                while ((key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    drain(key);
+                }
+                //new directories have to be watched as well
+                registerAll();
+                handler.reload();
+            } catch (ClosedWatchServiceException e) {
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Problem while watching static assets", e);
+            }
+        }
+    }
+
+    private static void drain(WatchKey key) {
+        key.pollEvents();
+        key.reset();
+    }
+
+    private void registerAll() throws IOException {
+        try (var paths = Files.walk(root)) {
+            for (var dir : paths.filter(Files::isDirectory).collect(Collectors.toList())) {
+                dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.igor.roztropinski.webrtc.auth;
+
+import com.igor.roztropinski.webrtc.json.JsonMapper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tokens are {@code keyId.payload.signature}: payload is base64url encoded json of {@link TokenClaims},
+ * signature is base64url encoded HMAC-SHA256 of {@code keyId.payload}, with the key of the given id.
+ * Key id allows to rotate keys: new tokens are signed with the newest key, while tokens signed with the older ones
+ * are still valid, as long as their keys are configured.
+ */
+public class AuthTokens {
+
+    public static final String ALGORITHM = "HmacSHA256";
+    public static final char SEPARATOR = '.';
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    public static String issue(String keyId, byte[] key, long userId, long expiresAt, List<String> rooms) {
+        var payload = ENCODER.encodeToString(JsonMapper.jsonBytes(new TokenClaims(userId, expiresAt, rooms)));
+        var signed = keyId + SEPARATOR + payload;
+        return signed + SEPARATOR + ENCODER.encodeToString(sign(mac(key), signed));
+    }
+
+    public static Mac mac(byte[] key) {
+        try {
+            var mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(key, ALGORITHM));
+            return mac;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static byte[] sign(Mac mac, String signed) {
+        return mac.doFinal(signed.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @param keys as {@code keyId=base64Key,keyId2=base64Key2}, the first one is the newest
+     */
+    public static Map<String, byte[]> keys(String keys) {
+        var parsed = new LinkedHashMap<String, byte[]>();
+        for (var keyValue : keys.split(",")) {
+            var separator = keyValue.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Key must be given as keyId=base64Key");
+            }
+            var keyId = keyValue.substring(0, separator).trim();
+            if (keyId.indexOf(SEPARATOR) >= 0) {
+                throw new IllegalArgumentException("Key id can not contain " + SEPARATOR);
+            }
+            parsed.put(keyId, Base64.getDecoder().decode(keyValue.substring(separator + 1).trim()));
+        }
+        return parsed;
+    }
+}
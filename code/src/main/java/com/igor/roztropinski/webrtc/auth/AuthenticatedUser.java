@@ -0,0 +1,22 @@
+package com.igor.roztropinski.webrtc.auth;
+
+import lombok.Value;
+
+import java.util.Set;
+
+@Value
+public class AuthenticatedUser {
+    long userId;
+    /**
+     * Rooms the user is allowed to join, any room if empty.
+     */
+    Set<String> rooms;
+
+    public static AuthenticatedUser withAnyRoom(long userId) {
+        return new AuthenticatedUser(userId, Set.of());
+    }
+
+    public boolean canJoin(String roomId) {
+        return rooms.isEmpty() || rooms.contains(roomId);
+    }
+}
@@ -0,0 +1,15 @@
+package com.igor.roztropinski.webrtc.auth;
+
+import java.util.Optional;
+
+/**
+ * Verifies credentials sent by client in USER_AUTHENTICATION message. Every shard has its own instance,
+ * used only on its event loop, so implementations do not have to be thread safe.
+ */
+public interface Authentication {
+
+    /**
+     * @return user, or empty result if credentials are invalid
+     */
+    Optional<AuthenticatedUser> authenticate(String credentials);
+}
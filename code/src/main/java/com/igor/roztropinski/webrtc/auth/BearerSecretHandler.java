@@ -0,0 +1,33 @@
+package com.igor.roztropinski.webrtc.auth;
+
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.ext.web.RoutingContext;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Passes on only requests authorized by the bearer secret, the others get 401. Guards routes that are not meant
+ * for clients (metrics, stats, relays load), as they are served on the same port as signaling.
+ */
+public class BearerSecretHandler implements Handler<RoutingContext> {
+
+    private static final String BEARER = "Bearer ";
+
+    private final byte[] secret;
+
+    public BearerSecretHandler(String secret) {
+        this.secret = (BEARER + secret).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void handle(RoutingContext context) {
+        var authorization = context.request().getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization == null || !MessageDigest.isEqual(secret, authorization.getBytes(StandardCharsets.UTF_8))) {
+            context.response().setStatusCode(401).end();
+            return;
+        }
+        context.next();
+    }
+}
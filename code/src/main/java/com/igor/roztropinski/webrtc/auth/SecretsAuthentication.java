@@ -0,0 +1,21 @@
+package com.igor.roztropinski.webrtc.auth;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Static secrets of configured users, every secret is known to the server in plain text.
+ */
+public class SecretsAuthentication implements Authentication {
+
+    private final Map<String, Long> secretsIds;
+
+    public SecretsAuthentication(Map<String, Long> secretsIds) {
+        this.secretsIds = secretsIds;
+    }
+
+    @Override
+    public Optional<AuthenticatedUser> authenticate(String credentials) {
+        return Optional.ofNullable(secretsIds.get(credentials)).map(AuthenticatedUser::withAnyRoom);
+    }
+}
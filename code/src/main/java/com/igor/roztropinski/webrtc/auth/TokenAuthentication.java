@@ -0,0 +1,112 @@
+package com.igor.roztropinski.webrtc.auth;
+
+import com.igor.roztropinski.webrtc.json.JsonMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.Mac;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.util.*;
+
+/**
+ * Stateless authentication by signed, expiring {@link AuthTokens}, so users do not have to be configured and every node
+ * can verify tokens issued by anyone having the key. Signatures are compared in constant time.
+ * Recently verified tokens are cached (LRU, bounded), so reconnecting users do not cost another HMAC and json parsing;
+ * cached token is still checked for expiration. Not thread safe, as any {@link Authentication}.
+ */
+@Slf4j
+public class TokenAuthentication implements Authentication {
+
+    private static final int MAX_TOKEN_LENGTH = 4096;
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final Map<String, Mac> macs = new HashMap<>();
+    private final Map<String, AuthenticatedToken> cache;
+    private final Clock clock;
+
+    public TokenAuthentication(Map<String, byte[]> keys, int cacheSize, Clock clock) {
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("At least one key is required");
+        }
+        keys.forEach((id, key) -> macs.put(id, AuthTokens.mac(key)));
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AuthenticatedToken> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.clock = clock;
+    }
+
+    public TokenAuthentication(Map<String, byte[]> keys, int cacheSize) {
+        this(keys, cacheSize, Clock.systemUTC());
+    }
+
+    @Override
+    public Optional<AuthenticatedUser> authenticate(String credentials) {
+        if (credentials == null || credentials.length() > MAX_TOKEN_LENGTH) {
+            return Optional.empty();
+        }
+
+        var now = clock.instant().getEpochSecond();
+        var cached = cache.get(credentials);
+        if (cached != null) {
+            if (cached.expiresAt > now) {
+                return Optional.of(cached.user);
+            }
+            cache.remove(credentials);
+            return Optional.empty();
+        }
+
+        var verified = verify(credentials, now);
+        verified.ifPresent(t -> cache.put(credentials, t));
+        return verified.map(t -> t.user);
+    }
+
+    private Optional<AuthenticatedToken> verify(String token, long now) {
+        try {
+            var keyEnd = token.indexOf(AuthTokens.SEPARATOR);
+            var payloadEnd = token.indexOf(AuthTokens.SEPARATOR, keyEnd + 1);
+            if (keyEnd <= 0 || payloadEnd < 0) {
+                return Optional.empty();
+            }
+
+            var mac = macs.get(token.substring(0, keyEnd));
+            if (mac == null) {
+                log.warn("Token signed with unknown key");
+                return Optional.empty();
+            }
+            var signature = DECODER.decode(token.substring(payloadEnd + 1));
+            if (!MessageDigest.isEqual(signature, AuthTokens.sign(mac, token.substring(0, payloadEnd)))) {
+                log.warn("Token with invalid signature");
+                return Optional.empty();
+            }
+
+            var claims = JsonMapper.object(DECODER.decode(token.substring(keyEnd + 1, payloadEnd)), TokenClaims.class);
+            if (claims.exp() <= now) {
+                log.info("Expired token of {} user", claims.sub());
+                return Optional.empty();
+            }
+            var rooms = claims.rooms() == null ? Set.<String>of() : Set.copyOf(claims.rooms());
+            return Optional.of(new AuthenticatedToken(new AuthenticatedUser(claims.sub(), rooms), claims.exp()));
+        } catch (Exception e) {
+            log.warn("Malformed token");
+            return Optional.empty();
+        }
+    }
+
+    public int cached() {
+        return cache.size();
+    }
+
+    private static class AuthenticatedToken {
+
+        final AuthenticatedUser user;
+        final long expiresAt;
+
+        AuthenticatedToken(AuthenticatedUser user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
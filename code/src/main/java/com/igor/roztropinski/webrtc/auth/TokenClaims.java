@@ -0,0 +1,24 @@
+package com.igor.roztropinski.webrtc.auth;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Signed payload of a token.
+ */
+@Value
+public class TokenClaims {
+    /**
+     * User id.
+     */
+    long sub;
+    /**
+     * Expiration time, in epoch seconds.
+     */
+    long exp;
+    /**
+     * Rooms the user is allowed to join, any room if null or empty.
+     */
+    List<String> rooms;
+}
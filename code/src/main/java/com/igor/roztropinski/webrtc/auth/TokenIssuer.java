@@ -0,0 +1,31 @@
+package com.igor.roztropinski.webrtc.auth;
+
+import java.time.Clock;
+import java.util.Arrays;
+
+/**
+ * Issues token with the newest key of {@value #KEYS}, for applications that integrate with signaling server
+ * and for manual testing: {@code TokenIssuer <userId> <ttlSeconds> [room...]}.
+ */
+public class TokenIssuer {
+
+    public static final String KEYS = "WEBRTC_AUTH_TOKEN_KEYS";
+
+    public static void main(String... args) {
+        if (args.length < 2) {
+            System.out.println("Usage: TokenIssuer <userId> <ttlSeconds> [room...]");
+            System.exit(1);
+        }
+        var keys = System.getenv(KEYS);
+        if (keys == null) {
+            System.out.println(KEYS + " must be set");
+            System.exit(1);
+        }
+
+        var newestKey = AuthTokens.keys(keys).entrySet().iterator().next();
+        var expiresAt = Clock.systemUTC().instant().getEpochSecond() + Long.parseLong(args[1]);
+        var rooms = Arrays.asList(args).subList(2, args.length);
+        System.out.println(AuthTokens.issue(newestKey.getKey(), newestKey.getValue(), Long.parseLong(args[0]), expiresAt,
+                rooms));
+    }
+}
@@ -0,0 +1,47 @@
+package com.igor.roztropinski.webrtc.cluster;
+
+import lombok.Value;
+
+/**
+ * Message passed between shards of different nodes. Node and shard always identify the sender.
+ */
+@Value
+public class ClusterMessage {
+    ClusterMessageType type;
+    String node;
+    int shard;
+    long userId;
+    long sequence;
+    String roomId;
+    long[] members;
+    String event;
+    String payload;
+
+    public static ClusterMessage userConnected(String node, int shard, long userId, long sequence) {
+        return new ClusterMessage(ClusterMessageType.USER_CONNECTED, node, shard, userId, sequence, null, null, null, null);
+    }
+
+    public static ClusterMessage userDisconnected(String node, int shard, long userId, long sequence) {
+        return new ClusterMessage(ClusterMessageType.USER_DISCONNECTED, node, shard, userId, sequence, null, null, null, null);
+    }
+
+    public static ClusterMessage directorySync(String node, int shard) {
+        return new ClusterMessage(ClusterMessageType.DIRECTORY_SYNC, node, shard, 0, 0, null, null, null, null);
+    }
+
+    public static ClusterMessage peerEvent(String node, int shard, long to, String event, String payload) {
+        return new ClusterMessage(ClusterMessageType.PEER_EVENT, node, shard, to, 0, null, null, event, payload);
+    }
+
+    public static ClusterMessage roomPartition(String node, int shard, String roomId, long[] members) {
+        return new ClusterMessage(ClusterMessageType.ROOM_PARTITION, node, shard, 0, 0, roomId, members, null, null);
+    }
+
+    public static ClusterMessage inheritRoom(String node, int shard, long userId, long sequence, String roomId) {
+        return new ClusterMessage(ClusterMessageType.INHERIT_ROOM, node, shard, userId, sequence, roomId, null, null, null);
+    }
+
+    public static ClusterMessage nodeLeft(String node, int shard) {
+        return new ClusterMessage(ClusterMessageType.NODE_LEFT, node, shard, 0, 0, null, null, null, null);
+    }
+}
@@ -0,0 +1,11 @@
+package com.igor.roztropinski.webrtc.cluster;
+
+public enum ClusterMessageType {
+    USER_CONNECTED,
+    USER_DISCONNECTED,
+    DIRECTORY_SYNC,
+    PEER_EVENT,
+    ROOM_PARTITION,
+    INHERIT_ROOM,
+    NODE_LEFT
+}
@@ -0,0 +1,29 @@
+package com.igor.roztropinski.webrtc.cluster;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+
+/**
+ * Passes messages between shards of signaling server nodes. Every shard of a node is addressable directly,
+ * so message for a user connected to other node takes exactly one hop.
+ * Delivery is at most once and ordered per sender and receiver, as the event bus is.
+ */
+public interface ClusterTransport {
+
+    String nodeId();
+
+    /**
+     * Must be called on the event loop of the shard, handler is called there, with messages sent to this shard
+     * and published by other nodes.
+     */
+    Future<Void> register(int shard, Handler<ClusterMessage> handler);
+
+    void send(String node, int shard, ClusterMessage message);
+
+    /**
+     * Sends message to all shards of all other nodes.
+     */
+    void publish(ClusterMessage message);
+
+    Future<Void> close();
+}
@@ -0,0 +1,158 @@
+package com.igor.roztropinski.webrtc.cluster;
+
+import com.hazelcast.cluster.MembershipEvent;
+import com.hazelcast.cluster.MembershipListener;
+import com.igor.roztropinski.webrtc.function.ClusterMessages;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.impl.VertxInternal;
+import io.vertx.spi.cluster.hazelcast.HazelcastClusterManager;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * Transport over the (clustered) vertx event bus. Every shard consumes its own address and the common one,
+ * to which messages for all nodes are published. Consumers are registered on the shard context,
+ * so messages are delivered straight to the shard event loop.
+ * Node id is the one of the cluster manager: when a node leaves the Hazelcast cluster without publishing NODE_LEFT
+ * (it has crashed or got partitioned away), the message is delivered to all shards on its behalf.
+ * Vertx has a single node listener, taken by its HA manager, so a Hazelcast membership listener is used instead.
+ */
+@Slf4j
+public class EventBusClusterTransport implements ClusterTransport {
+
+    private static final String ADDRESS_PREFIX = "webrtc.cluster.";
+    private static final String ALL_ADDRESS = ADDRESS_PREFIX + "all";
+
+    private final Vertx vertx;
+    private final String nodeId;
+    private final List<MessageConsumer<Buffer>> consumers = new CopyOnWriteArrayList<>();
+    private final List<ShardHandler> handlers = new CopyOnWriteArrayList<>();
+    private final HazelcastClusterManager hazelcast;
+    private final UUID membershipListener;
+
+    public EventBusClusterTransport(Vertx vertx) {
+        this.vertx = vertx;
+        var clusterManager = ((VertxInternal) vertx).getClusterManager();
+        this.nodeId = clusterManager.getNodeId();
+        if (clusterManager instanceof HazelcastClusterManager) {
+            hazelcast = (HazelcastClusterManager) clusterManager;
+            membershipListener = hazelcast.getHazelcastInstance().getCluster()
+                    .addMembershipListener(new LeftNodesListener());
+        } else {
+            log.warn("Nodes that leave without notice are not detected with {} cluster manager", clusterManager);
+            hazelcast = null;
+            membershipListener = null;
+        }
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public Future<Void> register(int shard, Handler<ClusterMessage> handler) {
+        var eventBus = vertx.eventBus();
+
+        var shardConsumer = eventBus.<Buffer>consumer(address(nodeId, shard), m -> {
+            var message = decoded(m.body());
+            if (message != null) {
+                handler.handle(message);
+            }
+        });
+        //publish is delivered to consumers of this node as well
+        var allConsumer = eventBus.<Buffer>consumer(ALL_ADDRESS, m -> {
+            var message = decoded(m.body());
+            if (message != null && !nodeId.equals(message.node())) {
+                handler.handle(message);
+            }
+        });
+        consumers.add(shardConsumer);
+        consumers.add(allConsumer);
+        handlers.add(new ShardHandler(vertx.getOrCreateContext(), handler));
+
+        return CompositeFuture.all(registered(shardConsumer), registered(allConsumer)).mapEmpty();
+    }
+
+    @Override
+    public void send(String node, int shard, ClusterMessage message) {
+        vertx.eventBus().send(address(node, shard), ClusterMessages.encoded(message));
+    }
+
+    @Override
+    public void publish(ClusterMessage message) {
+        vertx.eventBus().publish(ALL_ADDRESS, ClusterMessages.encoded(message));
+    }
+
+    @Override
+    public Future<Void> close() {
+        if (membershipListener != null) {
+            hazelcast.getHazelcastInstance().getCluster().removeMembershipListener(membershipListener);
+        }
+        handlers.clear();
+        var unregistered = consumers.stream()
+                .map(MessageConsumer::unregister)
+                .collect(Collectors.<Future>toList());
+        consumers.clear();
+        return CompositeFuture.all(unregistered).mapEmpty();
+    }
+
+    /**
+     * Called on a Hazelcast thread. Duplicates NODE_LEFT published by the node itself, if it had time to do so;
+     * handling it is idempotent.
+     */
+    private void onNodeLeft(String leftNode) {
+        log.warn("{} node has left the cluster", leftNode);
+        var message = ClusterMessage.nodeLeft(leftNode, 0);
+        handlers.forEach(h -> h.context.runOnContext(v -> h.handler.handle(message)));
+    }
+
+    private static String address(String node, int shard) {
+        return ADDRESS_PREFIX + node + "." + shard;
+    }
+
+    private static Future<Void> registered(MessageConsumer<?> consumer) {
+        var promise = Promise.<Void>promise();
+        consumer.completionHandler(promise);
+        return promise.future();
+    }
+
+    private static ClusterMessage decoded(Buffer body) {
+        try {
+            return ClusterMessages.decoded(body);
+        } catch (Exception e) {
+            log.warn("Failed to decode cluster message", e);
+            return null;
+        }
+    }
+
+    private class LeftNodesListener implements MembershipListener {
+
+        @Override
+        public void memberAdded(MembershipEvent event) {
+        }
+
+        @Override
+        public void memberRemoved(MembershipEvent event) {
+            onNodeLeft(event.getMember().getUuid().toString());
+        }
+    }
+
+    @Value
+    private static class ShardHandler {
+        Context context;
+        Handler<ClusterMessage> handler;
+    }
+}
@@ -0,0 +1,93 @@
+package com.igor.roztropinski.webrtc.cluster;
+
+import com.igor.roztropinski.webrtc.function.ClusterMessages;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process stand-in for the clustered event bus: any number of nodes in a single JVM, for tests and local runs.
+ * Messages are encoded and decoded, as they would be on the wire, and delivered asynchronously on the receiver
+ * shard context. Single node cluster is a standalone server.
+ */
+public class LoopbackCluster {
+
+    public static final String STANDALONE_NODE = "standalone";
+
+    private final Map<String, Map<Integer, Endpoint>> nodes = new ConcurrentHashMap<>();
+
+    public static ClusterTransport standalone() {
+        return new LoopbackCluster().transport(STANDALONE_NODE);
+    }
+
+    public ClusterTransport transport(String nodeId) {
+        return new Transport(nodeId);
+    }
+
+    private void deliver(Endpoint endpoint, ClusterMessage message) {
+        var encoded = ClusterMessages.encoded(message);
+        endpoint.context.runOnContext(v -> endpoint.handler.handle(ClusterMessages.decoded(encoded)));
+    }
+
+    private static class Endpoint {
+
+        final Context context;
+        final Handler<ClusterMessage> handler;
+
+        Endpoint(Context context, Handler<ClusterMessage> handler) {
+            this.context = context;
+            this.handler = handler;
+        }
+    }
+
+    private class Transport implements ClusterTransport {
+
+        private final String nodeId;
+
+        Transport(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        @Override
+        public String nodeId() {
+            return nodeId;
+        }
+
+        @Override
+        public Future<Void> register(int shard, Handler<ClusterMessage> handler) {
+            var context = Vertx.currentContext();
+            if (context == null) {
+                return Future.failedFuture("Shard must be registered on its event loop");
+            }
+            nodes.computeIfAbsent(nodeId, k -> new ConcurrentHashMap<>()).put(shard, new Endpoint(context, handler));
+            return Future.succeededFuture();
+        }
+
+        @Override
+        public void send(String node, int shard, ClusterMessage message) {
+            var endpoint = nodes.getOrDefault(node, Map.of()).get(shard);
+            if (endpoint != null) {
+                deliver(endpoint, message);
+            }
+        }
+
+        @Override
+        public void publish(ClusterMessage message) {
+            nodes.forEach((node, endpoints) -> {
+                if (!node.equals(nodeId)) {
+                    endpoints.values().forEach(e -> deliver(e, message));
+                }
+            });
+        }
+
+        @Override
+        public Future<Void> close() {
+            nodes.remove(nodeId);
+            return Future.succeededFuture();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.igor.roztropinski.webrtc.collection;
+
+public class Hashing {
+
+    private static final long PHI = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Spreads sequential ids (which is what user ids mostly are) over the whole int range.
+     */
+    public static int mix(long value) {
+        var h = value * PHI;
+        return (int) (h ^ (h >>> 32));
+    }
+}
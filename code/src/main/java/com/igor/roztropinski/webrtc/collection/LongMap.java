@@ -0,0 +1,222 @@
+package com.igor.roztropinski.webrtc.collection;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Open addressing (linear probing) map of primitive long keys, so lookups never box and every entry
+ * takes only its slots of two arrays, instead of a node with boxed key. Null values are not allowed.
+ * Not thread safe, callers are responsible for synchronization.
+ */
+public class LongMap<V> {
+
+    private static final long FREE = 0;
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int resizeAt;
+    private int size;
+    private V freeValue;
+
+    public LongMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public LongMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public V get(long key) {
+        if (key == FREE) {
+            return freeValue;
+        }
+        var idx = slot(key);
+        while (keys[idx] != FREE) {
+            if (keys[idx] == key) {
+                return value(idx);
+            }
+            idx = (idx + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return previous value of the key, null if there was none
+     */
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not allowed");
+        }
+        if (key == FREE) {
+            var previous = freeValue;
+            freeValue = value;
+            if (previous == null) {
+                size++;
+            }
+            return previous;
+        }
+
+        var idx = slot(key);
+        while (keys[idx] != FREE) {
+            if (keys[idx] == key) {
+                var previous = value(idx);
+                values[idx] = value;
+                return previous;
+            }
+            idx = (idx + 1) & mask;
+        }
+        keys[idx] = key;
+        values[idx] = value;
+        if (++size >= resizeAt) {
+            rehash(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * @return removed value, null if there was none
+     */
+    public V remove(long key) {
+        if (key == FREE) {
+            var previous = freeValue;
+            if (previous != null) {
+                freeValue = null;
+                size--;
+            }
+            return previous;
+        }
+
+        var idx = slot(key);
+        while (keys[idx] != FREE) {
+            if (keys[idx] == key) {
+                var previous = value(idx);
+                removeAt(idx);
+                return previous;
+            }
+            idx = (idx + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Removes the key only if it is mapped to the given value (the same instance).
+     */
+    public boolean remove(long key, V value) {
+        if (get(key) != value || value == null) {
+            return false;
+        }
+        remove(key);
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEachValue(Consumer<V> consumer) {
+        if (freeValue != null) {
+            consumer.accept(freeValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                consumer.accept(value(i));
+            }
+        }
+    }
+
+    /**
+     * @return number of removed entries
+     */
+    public int removeIf(Predicate<V> predicate) {
+        var removed = new LongSet();
+        if (freeValue != null && predicate.test(freeValue)) {
+            removed.add(FREE);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE && predicate.test(value(i))) {
+                removed.add(keys[i]);
+            }
+        }
+        removed.forEach(this::remove);
+        return removed.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int idx) {
+        return (V) values[idx];
+    }
+
+    private void removeAt(int idx) {
+        keys[idx] = FREE;
+        values[idx] = null;
+        shiftKeys(idx);
+        size--;
+    }
+
+    /**
+     * Backward shift deletion, as in {@link LongSet}.
+     */
+    private void shiftKeys(int freed) {
+        var last = freed;
+        var idx = (freed + 1) & mask;
+        while (keys[idx] != FREE) {
+            var home = slot(keys[idx]);
+            var shouldMove = last <= idx ? (home <= last || home > idx) : (home <= last && home > idx);
+            if (shouldMove) {
+                keys[last] = keys[idx];
+                values[last] = values[idx];
+                keys[idx] = FREE;
+                values[idx] = null;
+                last = idx;
+            }
+            idx = (idx + 1) & mask;
+        }
+    }
+
+    private void rehash(int capacity) {
+        var oldKeys = keys;
+        var oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            var k = oldKeys[i];
+            if (k != FREE) {
+                var idx = slot(k);
+                while (keys[idx] != FREE) {
+                    idx = (idx + 1) & mask;
+                }
+                keys[idx] = k;
+                values[idx] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = Math.max(1, (int) (capacity * LOAD_FACTOR));
+    }
+
+    private int slot(long key) {
+        return Hashing.mix(key) & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        var capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR <= expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,180 @@
+package com.igor.roztropinski.webrtc.collection;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Open addressing (linear probing) set of primitive longs, so membership checks and snapshots never box.
+ * Not thread safe, callers are responsible for synchronization.
+ */
+public class LongSet {
+
+    private static final long FREE = 0;
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int mask;
+    private int resizeAt;
+    private int size;
+    private boolean containsFree;
+
+    public LongSet(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public LongSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public boolean add(long value) {
+        if (value == FREE) {
+            if (containsFree) {
+                return false;
+            }
+            containsFree = true;
+            size++;
+            return true;
+        }
+
+        var idx = slot(value);
+        while (keys[idx] != FREE) {
+            if (keys[idx] == value) {
+                return false;
+            }
+            idx = (idx + 1) & mask;
+        }
+        keys[idx] = value;
+        if (++size >= resizeAt) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == FREE) {
+            return containsFree;
+        }
+        var idx = slot(value);
+        while (keys[idx] != FREE) {
+            if (keys[idx] == value) {
+                return true;
+            }
+            idx = (idx + 1) & mask;
+        }
+        return false;
+    }
+
+    public boolean remove(long value) {
+        if (value == FREE) {
+            if (containsFree) {
+                containsFree = false;
+                size--;
+                return true;
+            }
+            return false;
+        }
+
+        var idx = slot(value);
+        while (keys[idx] != FREE) {
+            if (keys[idx] == value) {
+                keys[idx] = FREE;
+                shiftKeys(idx);
+                size--;
+                return true;
+            }
+            idx = (idx + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(LongConsumer consumer) {
+        if (containsFree) {
+            consumer.accept(FREE);
+        }
+        for (var k : keys) {
+            if (k != FREE) {
+                consumer.accept(k);
+            }
+        }
+    }
+
+    public long[] toArray() {
+        var array = new long[size];
+        var i = 0;
+        if (containsFree) {
+            array[i++] = FREE;
+        }
+        for (var k : keys) {
+            if (k != FREE) {
+                array[i++] = k;
+            }
+        }
+        return array;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        containsFree = false;
+        size = 0;
+    }
+
+    /**
+     * Backward shift deletion: moves following entries of the probe chain into the freed slot,
+     * so lookups never need tombstones.
+     */
+    private void shiftKeys(int freed) {
+        var last = freed;
+        var idx = (freed + 1) & mask;
+        while (keys[idx] != FREE) {
+            var home = slot(keys[idx]);
+            var shouldMove = last <= idx ? (home <= last || home > idx) : (home <= last && home > idx);
+            if (shouldMove) {
+                keys[last] = keys[idx];
+                keys[idx] = FREE;
+                last = idx;
+            }
+            idx = (idx + 1) & mask;
+        }
+    }
+
+    private void rehash(int capacity) {
+        var old = keys;
+        allocate(capacity);
+        for (var k : old) {
+            if (k != FREE) {
+                var idx = slot(k);
+                while (keys[idx] != FREE) {
+                    idx = (idx + 1) & mask;
+                }
+                keys[idx] = k;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = Math.max(1, (int) (capacity * LOAD_FACTOR));
+    }
+
+    private int slot(long value) {
+        return Hashing.mix(value) & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        var capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR <= expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,81 @@
+package com.igor.roztropinski.webrtc.collection;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock free queue of many producers and a single consumer (array ring with per slot sequences).
+ * Producers claim slots by a single CAS and never wait for the consumer: when queue is full, offer fails immediately.
+ * Only one thread may poll.
+ */
+public class MpscBoundedQueue<T> {
+
+    private final AtomicReferenceArray<T> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final int mask;
+    private volatile long head;
+
+    public MpscBoundedQueue(int capacity) {
+        var size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        elements = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * @return false, if queue is full
+     */
+    public boolean offer(T element) {
+        var position = tail.get();
+        while (true) {
+            var idx = (int) position & mask;
+            var difference = sequences.get(idx) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(idx, element);
+                    sequences.lazySet(idx, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Single consumer only.
+     *
+     * @return null, if queue is empty
+     */
+    public T poll() {
+        var position = head;
+        var idx = (int) position & mask;
+        if (sequences.get(idx) != position + 1) {
+            return null;
+        }
+        var element = elements.get(idx);
+        elements.lazySet(idx, null);
+        sequences.lazySet(idx, position + capacity());
+        head = position + 1;
+        return element;
+    }
+
+    /**
+     * Approximate, when called concurrently with producers.
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,16 @@
+package com.igor.roztropinski.webrtc.function;
+
+import com.igor.roztropinski.webrtc.cluster.ClusterMessage;
+import com.igor.roztropinski.webrtc.json.JsonMapper;
+import io.vertx.core.buffer.Buffer;
+
+public class ClusterMessages {
+
+    public static Buffer encoded(ClusterMessage message) {
+        return Buffer.buffer(JsonMapper.jsonBytes(message));
+    }
+
+    public static ClusterMessage decoded(Buffer buffer) {
+        return JsonMapper.object(buffer.getBytes(), ClusterMessage.class);
+    }
+}
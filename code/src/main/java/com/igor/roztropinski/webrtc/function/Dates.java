@@ -17,4 +17,11 @@ public class Dates {
     public static LocalDate nowDate() {
         return LocalDate.now(clock());
     }
+
+    /**
+     * Monotonic time, to be used for measuring elapsed time and deadlines, never as a wall clock.
+     */
+    public static long monotonicNanos() {
+        return System.nanoTime();
+    }
 }
@@ -1,15 +1,27 @@
 package com.igor.roztropinski.webrtc.function;
 
-import com.igor.roztropinski.webrtc.model.Empty;
-import com.igor.roztropinski.webrtc.model.Failure;
-import com.igor.roztropinski.webrtc.model.SocketMessage;
-import com.igor.roztropinski.webrtc.model.SocketMessageType;
+import com.igor.roztropinski.webrtc.json.JsonMapper;
+import com.igor.roztropinski.webrtc.model.*;
+import io.vertx.core.buffer.Buffer;
 
-import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 public class SocketMessages {
 
+    private static final Map<SocketMessageType, EncodedMessage> ENCODED_EMPTY_MESSAGES = new EnumMap<>(SocketMessageType.class);
+
+    static {
+        for (var t : List.of(SocketMessageType.PONG, SocketMessageType.SERVER_CLOSING)) {
+            ENCODED_EMPTY_MESSAGES.put(t, encoded(SocketMessage.empty(t)));
+        }
+    }
+
+    public static EncodedMessage encoded(SocketMessage<?> message) {
+        return new EncodedMessage(message.type(), Buffer.buffer(JsonMapper.jsonBytes(message)));
+    }
+
     public static SocketMessage<Failure> failure(SocketMessageType source, String... errors) {
         return failure(source, List.of(errors));
     }
@@ -18,19 +30,35 @@ public class SocketMessages {
         return new SocketMessage<>(SocketMessageType.FAILURE, new Failure(source, errors));
     }
 
-    public static SocketMessage<Empty> userAuthenticated() {
-        return SocketMessage.empty(SocketMessageType.USER_AUTHENTICATED);
+    public static SocketMessage<UserAuthenticated> userAuthenticated(UserAuthenticated authenticated) {
+        return new SocketMessage<>(SocketMessageType.USER_AUTHENTICATED, authenticated);
+    }
+
+    public static SocketMessage<IceServers> iceServers(IceServers iceServers) {
+        return new SocketMessage<>(SocketMessageType.ICE_SERVERS, iceServers);
+    }
+
+    public static SocketMessage<RoomMembers> roomMembers(RoomMembers members) {
+        return new SocketMessage<>(SocketMessageType.ROOM_MEMBERS, members);
+    }
+
+    public static SocketMessage<RoomMembersChange> memberJoined(RoomMembersChange change) {
+        return new SocketMessage<>(SocketMessageType.MEMBER_JOINED, change);
+    }
+
+    public static SocketMessage<RoomMembersChange> memberLeft(RoomMembersChange change) {
+        return new SocketMessage<>(SocketMessageType.MEMBER_LEFT, change);
     }
 
-    public static SocketMessage<Collection<Long>> roomMembers(Collection<Long> ids) {
-        return new SocketMessage<>(SocketMessageType.ROOM_MEMBERS, ids);
+    public static SocketMessage<MediaQuality> mediaQuality(MediaQuality quality) {
+        return new SocketMessage<>(SocketMessageType.MEDIA_QUALITY, quality);
     }
 
-    public static SocketMessage<Empty> pong() {
-        return SocketMessage.empty(SocketMessageType.PONG);
+    public static EncodedMessage pong() {
+        return ENCODED_EMPTY_MESSAGES.get(SocketMessageType.PONG);
     }
 
-    public static SocketMessage<Empty> serverClosing() {
-        return SocketMessage.empty(SocketMessageType.SERVER_CLOSING);
+    public static EncodedMessage serverClosing() {
+        return ENCODED_EMPTY_MESSAGES.get(SocketMessageType.SERVER_CLOSING);
     }
 }
@@ -2,10 +2,15 @@ package com.igor.roztropinski.webrtc.function;
 
 import com.igor.roztropinski.webrtc.Errors;
 import com.igor.roztropinski.webrtc.json.JsonMapper;
-import com.igor.roztropinski.webrtc.model.RawSocketMessage;
-import com.igor.roztropinski.webrtc.model.SocketMessage;
-import com.igor.roztropinski.webrtc.model.SocketMessageType;
+import com.igor.roztropinski.webrtc.model.*;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.http.WebSocketBase;
+import io.vertx.core.http.WebSocketFrame;
+import io.vertx.core.http.impl.FrameType;
+import io.vertx.core.http.impl.ws.WebSocketFrameImpl;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Optional;
@@ -14,18 +19,64 @@ import java.util.function.Consumer;
 @Slf4j
 public class WebSockets {
 
+    private static final int MAX_FRAME_SIZE = HttpServerOptions.DEFAULT_MAX_WEBSOCKET_FRAME_SIZE;
+    private static final Buffer EMPTY_PING = Buffer.buffer(new byte[0]);
+    private static final Handler<Throwable> LOG_SEND_FAILURE = t -> log.error("Failed to send socket message", t);
+
     public static void send(WebSocketBase socket, SocketMessage<?> message) {
-        send(socket, message, t -> log.error("Failed to send socket message", t));
+        send(socket, SocketMessages.encoded(message));
     }
 
     public static void send(WebSocketBase socket, SocketMessage<?> message, Consumer<Throwable> onFailure) {
+        send(socket, SocketMessages.encoded(message), onFailure);
+    }
+
+    public static void send(WebSocketBase socket, EncodedMessage message) {
         try {
-            socket.writeTextMessage(JsonMapper.json(message)).onFailure(onFailure::accept);
+            writeText(socket, message.buffer()).onFailure(LOG_SEND_FAILURE);
         } catch (Exception e) {
             log.error("Failed to write socket message", e);
         }
     }
 
+    public static void send(WebSocketBase socket, EncodedMessage message, Consumer<Throwable> onFailure) {
+        try {
+            writeText(socket, message.buffer()).onFailure(onFailure::accept);
+        } catch (Exception e) {
+            log.error("Failed to write socket message", e);
+        }
+    }
+
+    /**
+     * Writes already encoded utf-8 text as a single frame, reusing given buffer memory, without copying or re-encoding it.
+     * Vert.x writes only a duplicate of its underlying ByteBuf, so the same buffer can be written to many sockets.
+     */
+    public static Future<Void> writeText(WebSocketBase socket, Buffer text) {
+        if (text.length() > MAX_FRAME_SIZE) {
+            return socket.writeTextMessage(text.toString());
+        }
+        return socket.writeFrame(textFrame(text));
+    }
+
+    /**
+     * As {@link #writeText(WebSocketBase, Buffer)}, but binary frame.
+     */
+    public static Future<Void> writeBinary(WebSocketBase socket, Buffer binary) {
+        if (binary.length() > MAX_FRAME_SIZE) {
+            return socket.writeBinaryMessage(binary);
+        }
+        return socket.writeFrame(WebSocketFrame.binaryFrame(binary, true));
+    }
+
+    /**
+     * Public {@link WebSocketFrame#textFrame(String, boolean)} takes a String, which would be encoded again for every socket.
+     * So text frames depend on Vert.x internals: WebSocketFrameImpl(FrameType, ByteBuf) constructor
+     * of vertx-core 4.0.x, check it when upgrading Vert.x.
+     */
+    private static WebSocketFrame textFrame(Buffer text) {
+        return new WebSocketFrameImpl(FrameType.TEXT, text.getByteBuf());
+    }
+
     public static Optional<RawSocketMessage> message(WebSocketBase socket, String text, boolean sendFailure) {
         try {
             return Optional.of(JsonMapper.object(text, RawSocketMessage.class));
@@ -41,9 +92,28 @@ public class WebSockets {
         return message(socket, text, true);
     }
 
+    /**
+     * Control frame, browsers answer it with pong on their own, so it costs no application level message on either side.
+     */
+    public static void ping(WebSocketBase socket) {
+        try {
+            socket.writePing(EMPTY_PING).onFailure(LOG_SEND_FAILURE);
+        } catch (Exception e) {
+            log.error("Failed to write ping", e);
+        }
+    }
+
     public static <T> Optional<T> data(RawSocketMessage message, Class<T> clazz) {
+        return data(message.dataJson(), clazz);
+    }
+
+    public static <T> Optional<T> data(InboundMessage message, Class<T> clazz) {
+        return data(message.dataJson(), clazz);
+    }
+
+    private static <T> Optional<T> data(String dataJson, Class<T> clazz) {
         try {
-            return Optional.of(JsonMapper.object(message.dataJson(), clazz));
+            return Optional.of(JsonMapper.object(dataJson, clazz));
         } catch (Exception e) {
             log.warn("Invalid type", e);
             return Optional.empty();
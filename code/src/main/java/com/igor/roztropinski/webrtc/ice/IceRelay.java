@@ -0,0 +1,29 @@
+package com.igor.roztropinski.webrtc.ice;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * STUN or TURN server, as configured. Every TURN relay of a pool must accept credentials
+ * signed with the same shared secret.
+ */
+@Value
+public class IceRelay {
+
+    String id;
+    List<String> urls;
+    /**
+     * Null, if relay serves all regions.
+     */
+    String region;
+    double weight;
+
+    public boolean isTurn() {
+        return urls.stream().anyMatch(u -> u.startsWith("turn:") || u.startsWith("turns:"));
+    }
+
+    public boolean servesRegion(String region) {
+        return this.region == null || this.region.equals(region);
+    }
+}
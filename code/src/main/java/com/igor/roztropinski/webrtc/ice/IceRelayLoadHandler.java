@@ -0,0 +1,42 @@
+package com.igor.roztropinski.webrtc.ice;
+
+import com.igor.roztropinski.webrtc.function.Dates;
+import io.vertx.core.Handler;
+import io.vertx.ext.web.RoutingContext;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Takes load reported by TURN relays (or by anything monitoring them), as a plain number from 0 to 1,
+ * authorized by the bearer secret shared with reporters, checked by {@link com.igor.roztropinski.webrtc.auth.BearerSecretHandler}
+ * before this one.
+ */
+@Slf4j
+public class IceRelayLoadHandler implements Handler<RoutingContext> {
+
+    public static final String ROUTE = "/ice-relays/:id/load";
+    private static final String ID = "id";
+
+    private final IceRelayPool pool;
+
+    public IceRelayLoadHandler(IceRelayPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void handle(RoutingContext context) {
+        var id = context.pathParam(ID);
+        double load;
+        try {
+            load = Double.parseDouble(context.getBodyAsString().trim());
+        } catch (Exception e) {
+            context.response().setStatusCode(400).end();
+            return;
+        }
+        if (Double.isNaN(load) || !pool.reportLoad(id, load, Dates.monotonicNanos())) {
+            context.response().setStatusCode(Double.isNaN(load) ? 400 : 404).end();
+            return;
+        }
+        log.debug("{} ice relay has reported {} load", id, load);
+        context.response().setStatusCode(204).end();
+    }
+}
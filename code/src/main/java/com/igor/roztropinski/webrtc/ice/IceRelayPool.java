@@ -0,0 +1,147 @@
+package com.igor.roztropinski.webrtc.ice;
+
+import com.igor.roztropinski.webrtc.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * STUN and TURN relays, from which every session gets its own selection. All STUN relays are always given,
+ * TURN relays are chosen at random, weighted by their configured weight and load reported by them,
+ * so that relayed traffic is spread across them instead of saturating one. Relays of the node region are preferred,
+ * others are used only if there is none of them. Load that was not reported again for too long is no longer trusted.
+ * Shared by all event loops, loads are reported concurrently.
+ */
+public class IceRelayPool {
+
+    public static final IceRelayPool EMPTY = new IceRelayPool(List.of(), null);
+    private static final long LOAD_VALIDITY = TimeUnit.SECONDS.toNanos(60);
+
+    private final List<IceRelay> stun = new ArrayList<>();
+    private final List<Turn> turn = new ArrayList<>();
+    private final Map<String, Turn> turnById = new LinkedHashMap<>();
+
+    /**
+     * @param region of the node, null if it has none
+     */
+    public IceRelayPool(List<IceRelay> relays, String region) {
+        for (var r : relays) {
+            if (!r.isTurn()) {
+                stun.add(r);
+            } else if (r.servesRegion(region)) {
+                var t = new Turn(r);
+                turn.add(t);
+                turnById.put(r.id(), t);
+            }
+        }
+        if (turn.isEmpty()) {
+            relays.stream().filter(IceRelay::isTurn).forEach(r -> {
+                var t = new Turn(r);
+                turn.add(t);
+                turnById.put(r.id(), t);
+            });
+        }
+    }
+
+    /**
+     * @param json array of {@link IceRelay}, as {@code [{"id":"eu-1","urls":["turn:10.0.0.1:3478"],"region":"eu","weight":1}]}
+     */
+    public static List<IceRelay> relays(String json) {
+        var relays = JsonMapper.objects(json, IceRelay.class);
+        for (var r : relays) {
+            if (r.id() == null || r.urls() == null || r.urls().isEmpty() || r.weight() < 0) {
+                throw new IllegalArgumentException("Ice relay must have id, urls and not negative weight: " + r);
+            }
+        }
+        return relays;
+    }
+
+    public boolean isEmpty() {
+        return stun.isEmpty() && turn.isEmpty();
+    }
+
+    public boolean hasTurn() {
+        return !turn.isEmpty();
+    }
+
+    /**
+     * @param load from 0 (idle) to 1 (full)
+     * @return false, if there is no such TURN relay in the pool
+     */
+    public boolean reportLoad(String relayId, double load, long nowNanos) {
+        var t = turnById.get(relayId);
+        if (t == null) {
+            return false;
+        }
+        t.load = Math.max(0, Math.min(1, load));
+        t.reportedAt = nowNanos;
+        t.reported = true;
+        return true;
+    }
+
+    /**
+     * All STUN relays and up to the given number of distinct TURN relays.
+     */
+    public List<IceRelay> select(int turnRelays, Random random, long nowNanos) {
+        var selected = new ArrayList<>(stun);
+        var candidates = new ArrayList<>(turn);
+        var weights = new double[candidates.size()];
+        var total = 0.0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = candidates.get(i).weight(nowNanos);
+            total += weights[i];
+        }
+        //all of them are fully loaded, or have no weight, still better than no relay at all
+        if (total <= 0) {
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = 1;
+            }
+            total = weights.length;
+        }
+
+        for (int n = 0; n < turnRelays && total > 0; n++) {
+            var point = random.nextDouble() * total;
+            var chosen = -1;
+            for (int i = 0; i < weights.length; i++) {
+                if (weights[i] <= 0) {
+                    continue;
+                }
+                chosen = i;
+                point -= weights[i];
+                if (point < 0) {
+                    break;
+                }
+            }
+            if (chosen < 0) {
+                break;
+            }
+            selected.add(candidates.get(chosen).relay);
+            total -= weights[chosen];
+            weights[chosen] = 0;
+        }
+        return selected;
+    }
+
+    private static class Turn {
+
+        final IceRelay relay;
+        volatile double load;
+        volatile long reportedAt;
+        volatile boolean reported;
+
+        Turn(IceRelay relay) {
+            this.relay = relay;
+        }
+
+        double weight(long nowNanos) {
+            if (!reported || nowNanos - reportedAt > LOAD_VALIDITY) {
+                return relay.weight();
+            }
+            return relay.weight() * (1 - load);
+        }
+    }
+}
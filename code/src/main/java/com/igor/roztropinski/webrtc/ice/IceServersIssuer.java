@@ -0,0 +1,75 @@
+package com.igor.roztropinski.webrtc.ice;
+
+import com.igor.roztropinski.webrtc.function.Dates;
+import com.igor.roztropinski.webrtc.model.IceServer;
+import com.igor.roztropinski.webrtc.model.IceServers;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Issues relays for peer connections of every authenticated session: its own selection of the {@link IceRelayPool},
+ * with TURN credentials valid for the given time, so that no credentials have to be shipped in static files.
+ */
+public class IceServersIssuer {
+
+    public static final IceServersIssuer DISABLED = new IceServersIssuer(IceRelayPool.EMPTY, new byte[0], 0, 0);
+
+    private final IceRelayPool pool;
+    private final byte[] turnSecret;
+    private final long credentialsTtl;
+    private final int turnRelaysPerSession;
+    private final Clock clock;
+
+    /**
+     * @param turnSecret     shared with TURN servers, as their {@code static-auth-secret}
+     * @param credentialsTtl in seconds
+     */
+    public IceServersIssuer(IceRelayPool pool, byte[] turnSecret, long credentialsTtl, int turnRelaysPerSession,
+                            Clock clock) {
+        if (pool.hasTurn() && turnSecret.length == 0) {
+            throw new IllegalArgumentException("TURN relays require secret of their credentials");
+        }
+        this.pool = pool;
+        this.turnSecret = turnSecret;
+        this.credentialsTtl = credentialsTtl;
+        this.turnRelaysPerSession = turnRelaysPerSession;
+        this.clock = clock;
+    }
+
+    public IceServersIssuer(IceRelayPool pool, byte[] turnSecret, long credentialsTtl, int turnRelaysPerSession) {
+        this(pool, turnSecret, credentialsTtl, turnRelaysPerSession, Dates.clock());
+    }
+
+    public boolean enabled() {
+        return !pool.isEmpty();
+    }
+
+    public IceRelayPool pool() {
+        return pool;
+    }
+
+    public Optional<IceServers> issue(long userId) {
+        if (!enabled()) {
+            return Optional.empty();
+        }
+        var expiresAt = clock.instant().getEpochSecond() + credentialsTtl;
+        var username = TurnCredentials.username(expiresAt, userId);
+        String password = null;
+
+        var iceServers = new ArrayList<IceServer>();
+        for (var r : pool.select(turnRelaysPerSession, ThreadLocalRandom.current(), Dates.monotonicNanos())) {
+            if (r.isTurn()) {
+                if (password == null) {
+                    password = TurnCredentials.password(turnSecret, username);
+                }
+                iceServers.add(new IceServer(r.urls(), username, password));
+            } else {
+                iceServers.add(new IceServer(r.urls(), null, null));
+            }
+        }
+        return Optional.of(new IceServers(iceServers, expiresAt));
+    }
+}
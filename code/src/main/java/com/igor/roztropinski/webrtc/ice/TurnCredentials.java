@@ -0,0 +1,30 @@
+package com.igor.roztropinski.webrtc.ice;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Time limited TURN credentials of the TURN REST API, as accepted by coturn with {@code use-auth-secret}:
+ * username is {@code <expires at, epoch seconds>:<user id>}, password is base64 encoded HMAC-SHA1 of the username,
+ * with the secret shared by the signaling server and TURN servers. TURN server checks them without calling anyone.
+ */
+public class TurnCredentials {
+
+    public static final String ALGORITHM = "HmacSHA1";
+
+    public static String username(long expiresAt, long userId) {
+        return expiresAt + ":" + userId;
+    }
+
+    public static String password(byte[] secret, String username) {
+        try {
+            var mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret, ALGORITHM));
+            return Base64.getEncoder().encodeToString(mac.doFinal(username.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.igor.roztropinski.webrtc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Handling of USER_AUTHENTICATION message: verifying credentials and registering authenticated connection.
+ */
+@Name(FlightEvents.PREFIX + "Authentication")
+@Label("Authentication")
+@Category(FlightEvents.CATEGORY)
+@Description("Verifying credentials and registering authenticated connection")
+@StackTrace(false)
+public class AuthenticationEvent extends jdk.jfr.Event {
+
+    @Label("Shard")
+    public int shard;
+
+    @Label("Connection Id")
+    public long connectionId;
+
+    @Label("User Id")
+    @Description("0, if authentication has failed")
+    public long userId;
+
+    @Label("Authenticated")
+    public boolean authenticated;
+}
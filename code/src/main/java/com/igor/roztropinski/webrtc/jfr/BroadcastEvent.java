@@ -0,0 +1,41 @@
+package com.igor.roztropinski.webrtc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Fan-out of room notification by the shard owning the room: encoding of snapshot and change, once,
+ * and passing them to shards of the recipients.
+ */
+@Name(FlightEvents.PREFIX + "Broadcast")
+@Label("Broadcast")
+@Category(FlightEvents.CATEGORY)
+@Description("Fan-out of room members notification to shards of its recipients")
+@StackTrace(false)
+@Threshold(FlightEvents.HOT_PATH_THRESHOLD)
+public class BroadcastEvent extends jdk.jfr.Event {
+
+    @Label("Shard")
+    public int shard;
+
+    @Label("Room Id")
+    public String roomId;
+
+    @Label("Members")
+    public int members;
+
+    @Label("Snapshot Recipients")
+    public int snapshotRecipients;
+
+    @Label("Change Recipients")
+    public int changeRecipients;
+
+    @Label("Encode Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long encodeTime;
+}
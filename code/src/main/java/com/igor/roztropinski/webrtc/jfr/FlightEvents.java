@@ -0,0 +1,22 @@
+package com.igor.roztropinski.webrtc.jfr;
+
+import jdk.jfr.Event;
+
+import java.util.List;
+
+/**
+ * Java Flight Recorder events of the signaling flows, so that recordings tell which user, room or message
+ * has taken time of the event loop. Events are emitted only when enabled in the recording, their fields are filled
+ * only when they are going to be committed. Events of the hot paths (peer event relay, broadcast and timeout sweep)
+ * have threshold, by default, so that production recordings get only the slow ones; load tests record them all,
+ * with {@link java.time.Duration#ZERO} threshold.
+ */
+public class FlightEvents {
+
+    public static final String PREFIX = "webrtc.";
+    public static final String CATEGORY = "WebRTC Signaling";
+    public static final String HOT_PATH_THRESHOLD = "1 ms";
+    public static final List<Class<? extends Event>> ALL = List.of(SocketAcceptedEvent.class, SocketClosedEvent.class,
+            AuthenticationEvent.class, RoomJoinEvent.class, RoomLeaveEvent.class, PeerEventRelayEvent.class,
+            BroadcastEvent.class, TimeoutSweepEvent.class);
+}
@@ -0,0 +1,52 @@
+package com.igor.roztropinski.webrtc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Delivery of peer event on the shard of its destination: transcoding, if needed, and offering it to the outbound
+ * queue. Queueing delay is the time since the event was received, so the time it has waited for the event loop
+ * of the destination.
+ */
+@Name(FlightEvents.PREFIX + "PeerEventRelay")
+@Label("Peer Event Relay")
+@Category(FlightEvents.CATEGORY)
+@Description("Delivery of peer event to its destination connection")
+@StackTrace(false)
+@Threshold(FlightEvents.HOT_PATH_THRESHOLD)
+public class PeerEventRelayEvent extends jdk.jfr.Event {
+
+    @Label("Shard")
+    public int shard;
+
+    @Label("From")
+    public long from;
+
+    @Label("To")
+    public long to;
+
+    @Label("Event")
+    public String event;
+
+    @Label("Kind")
+    public String kind;
+
+    @Label("Size")
+    @Description("Size of the event, in the form it was received in")
+    @DataAmount
+    public int size;
+
+    @Label("Delivered")
+    @Description("False, if destination was not connected, or the event was buffered for its suspended session")
+    public boolean delivered;
+
+    @Label("Queueing Delay")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queueingDelay;
+}
@@ -0,0 +1,35 @@
+package com.igor.roztropinski.webrtc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Joining the room, handled by the shard that owns it.
+ */
+@Name(FlightEvents.PREFIX + "RoomJoin")
+@Label("Room Join")
+@Category(FlightEvents.CATEGORY)
+@Description("User joins the room, on the shard owning it")
+@StackTrace(false)
+public class RoomJoinEvent extends jdk.jfr.Event {
+
+    @Label("Shard")
+    public int shard;
+
+    @Label("Room Id")
+    public String roomId;
+
+    @Label("User Id")
+    public long userId;
+
+    @Label("Changed")
+    @Description("Whether local members of the room have changed")
+    public boolean changed;
+
+    @Label("Members")
+    @Description("Members of the room, of all nodes, after the change")
+    public int members;
+}
@@ -0,0 +1,35 @@
+package com.igor.roztropinski.webrtc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * New WebSocket connection, accepted or rejected by admission control.
+ */
+@Name(FlightEvents.PREFIX + "SocketAccepted")
+@Label("Socket Accepted")
+@Category(FlightEvents.CATEGORY)
+@Description("New connection, accepted or rejected by admission control")
+@StackTrace(false)
+public class SocketAcceptedEvent extends jdk.jfr.Event {
+
+    @Label("Shard")
+    public int shard;
+
+    @Label("Connection Id")
+    @Description("0, if connection was rejected")
+    public long connectionId;
+
+    @Label("Address")
+    public String address;
+
+    @Label("Wire Format")
+    public String wireFormat;
+
+    @Label("Rejection")
+    @Description("Why connection was not accepted, null if it was")
+    public String rejection;
+}
@@ -0,0 +1,44 @@
+package com.igor.roztropinski.webrtc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Closed connection, by either side, with the state it was in.
+ */
+@Name(FlightEvents.PREFIX + "SocketClosed")
+@Label("Socket Closed")
+@Category(FlightEvents.CATEGORY)
+@Description("Closed connection, by either side")
+@StackTrace(false)
+public class SocketClosedEvent extends jdk.jfr.Event {
+
+    @Label("Shard")
+    public int shard;
+
+    @Label("Connection Id")
+    public long connectionId;
+
+    @Label("User Id")
+    @Description("0, if connection was not authenticated")
+    public long userId;
+
+    @Label("Room Id")
+    public String roomId;
+
+    @Label("State")
+    public String state;
+
+    @Label("Suspended")
+    @Description("Whether session of the connection waits to be resumed")
+    public boolean suspended;
+
+    @Label("Idle")
+    @Description("Time since the last inbound frame")
+    @Timespan(Timespan.NANOSECONDS)
+    public long idle;
+}
@@ -0,0 +1,30 @@
+package com.igor.roztropinski.webrtc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Advancing connection timeouts of the shard: authentication, ping and inactivity ones that have expired.
+ */
+@Name(FlightEvents.PREFIX + "TimeoutSweep")
+@Label("Timeout Sweep")
+@Category(FlightEvents.CATEGORY)
+@Description("Advancing connection timeouts of the shard")
+@StackTrace(false)
+@Threshold(FlightEvents.HOT_PATH_THRESHOLD)
+public class TimeoutSweepEvent extends jdk.jfr.Event {
+
+    @Label("Shard")
+    public int shard;
+
+    @Label("Expired")
+    public int expired;
+
+    @Label("Connections")
+    @Description("Open connections of the shard, authenticated or not")
+    public int connections;
+}
@@ -0,0 +1,148 @@
+package com.igor.roztropinski.webrtc.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.igor.roztropinski.webrtc.model.InboundMessage;
+import com.igor.roztropinski.webrtc.model.SocketMessageType;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Single pass, streaming parser of client messages. It reads only envelope fields (type or from/to/event),
+ * data is skipped, without building any tree, and only for server messages cut out from the original text.
+ * Invalid messages are reported as empty results, not exceptions.
+ */
+public class InboundMessageParser {
+
+    /**
+     * Exactly what legacy clients send as keepalive ({@code JSON.stringify({type: "PING"})}).
+     */
+    public static final String CANONICAL_PING = "{\"type\":\"PING\"}";
+    private static final String TYPE = "type";
+    private static final String DATA = "data";
+    private static final String FROM = "from";
+    private static final String TO = "to";
+    private static final String EVENT = "event";
+    private static final Map<String, SocketMessageType> TYPES = new HashMap<>();
+
+    static {
+        for (var t : SocketMessageType.values()) {
+            if (t != SocketMessageType.PEER_EVENT) {
+                TYPES.put(t.name(), t);
+            }
+        }
+    }
+
+    /**
+     * Allows to answer keepalive of legacy clients without parsing and allocating anything.
+     */
+    public static boolean isCanonicalPing(String json) {
+        return CANONICAL_PING.equals(json);
+    }
+
+    public static Optional<InboundMessage> parse(String json) {
+        return parse(json, false);
+    }
+
+    /**
+     * As {@link #parse(String)}, but data of the peer event is cut out as well, which is needed only to transcode it.
+     */
+    public static Optional<InboundMessage> parsePeerEvent(String json) {
+        return parse(json, true).filter(m -> m.type() == SocketMessageType.PEER_EVENT);
+    }
+
+    /**
+     * Data relayed in other format is embedded in json as it is, so it must be a single, complete json value,
+     * that can not break out of its envelope.
+     */
+    public static boolean isValidData(String json) {
+        try (var parser = JsonMapper.parser(json)) {
+            var token = parser.nextToken();
+            if (token == null) {
+                return false;
+            }
+            if (token.isStructStart()) {
+                parser.skipChildren();
+            }
+            return parser.nextToken() == null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static Optional<InboundMessage> parse(String json, boolean peerEventData) {
+        try (var parser = JsonMapper.parser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return Optional.empty();
+            }
+
+            var hasType = false;
+            SocketMessageType type = null;
+            var dataStart = -1;
+            var dataEnd = -1;
+            var hasFrom = false;
+            var hasTo = false;
+            long from = 0;
+            long to = 0;
+            String event = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var field = parser.getCurrentName();
+                var token = parser.nextToken();
+                if (TYPE.equals(field)) {
+                    hasType = true;
+                    type = token == JsonToken.VALUE_STRING ? TYPES.get(parser.getText()) : null;
+                } else if (DATA.equals(field)) {
+                    dataStart = (int) parser.getTokenLocation().getCharOffset();
+                    dataEnd = skipValue(parser, token);
+                } else if (FROM.equals(field) && token == JsonToken.VALUE_NUMBER_INT) {
+                    hasFrom = true;
+                    from = parser.getLongValue();
+                } else if (TO.equals(field) && token == JsonToken.VALUE_NUMBER_INT) {
+                    hasTo = true;
+                    to = parser.getLongValue();
+                } else if (EVENT.equals(field) && token == JsonToken.VALUE_STRING) {
+                    event = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            if (parser.currentToken() != JsonToken.END_OBJECT) {
+                return Optional.empty();
+            }
+
+            if (hasType) {
+                if (type == null) {
+                    return Optional.empty();
+                }
+                var data = dataStart < 0 ? RawSocketMessageDeserializer.EMPTY_DATA : json.substring(dataStart, dataEnd);
+                return Optional.of(InboundMessage.server(type, data, json));
+            }
+
+            if (hasFrom && hasTo && peerEventData) {
+                var data = dataStart < 0 ? RawSocketMessageDeserializer.EMPTY_DATA : json.substring(dataStart, dataEnd);
+                return Optional.of(InboundMessage.peerEvent(from, to, event, data, json));
+            }
+            if (hasFrom && hasTo) {
+                return Optional.of(InboundMessage.peerEvent(from, to, event, json));
+            }
+
+            return Optional.empty();
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    private static int skipValue(JsonParser parser, JsonToken token) throws Exception {
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+        } else if (token == JsonToken.VALUE_STRING) {
+            //strings are lazily parsed, so we need to read them to move past the closing quote
+            parser.getTextLength();
+        }
+        return (int) parser.getCurrentLocation().getCharOffset();
+    }
+}
@@ -3,6 +3,7 @@ package com.igor.roztropinski.webrtc.json;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -36,6 +37,14 @@ public class JsonMapper {
         }
     }
 
+    public static byte[] jsonBytes(Object value) {
+        try {
+            return MAPPER.writeValueAsBytes(value);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public static <T> T object(String json, Class<T> clazz) {
         try {
             return MAPPER.readValue(json, clazz);
@@ -44,6 +53,22 @@ public class JsonMapper {
         }
     }
 
+    public static <T> T object(byte[] json, Class<T> clazz) {
+        try {
+            return MAPPER.readValue(json, clazz);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static JsonParser parser(String json) {
+        try {
+            return MAPPER.getFactory().createParser(json);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public static <T> List<T> objects(String json, Class<T> clazz) {
         try {
             var type = MAPPER.getTypeFactory().constructCollectionType(List.class, clazz);
@@ -9,6 +9,8 @@ import com.igor.roztropinski.webrtc.model.SocketMessageType;
 
 public class RawSocketMessageDeserializer extends JsonDeserializer<RawSocketMessage> {
 
+    public static final String EMPTY_DATA = "{}";
+
     @Override
     public RawSocketMessage deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) {
         try {
@@ -18,7 +20,7 @@ public class RawSocketMessageDeserializer extends JsonDeserializer<RawSocketMess
 
             String data;
             if (dataNode == null) {
-                data = "{}";
+                data = EMPTY_DATA;
             } else {
                 data = dataNode.toString();
             }
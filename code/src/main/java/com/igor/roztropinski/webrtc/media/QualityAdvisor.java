@@ -0,0 +1,64 @@
+package com.igor.roztropinski.webrtc.media;
+
+import com.igor.roztropinski.webrtc.model.MediaQuality;
+import com.igor.roztropinski.webrtc.model.MediaStats;
+
+import java.util.Optional;
+
+/**
+ * Video quality that every member of a full mesh room should send. Every member uploads its video to every other one,
+ * so its uplink budget is split between room size - 1 peer connections; upload of about 800 KiB/s was seen
+ * with 6 members, which saturates weaker uplinks. Budget of a single connection is further capped by
+ * the available bitrate reported by the client, with some headroom, and high round trip time lowers quality by a tier.
+ * New advice is worth sending only if it differs enough from the previous one, so that noisy stats
+ * do not make clients renegotiate all the time.
+ */
+public class QualityAdvisor {
+
+    /**
+     * In kbps, for all peer connections of a member together.
+     */
+    public static final int UPLINK_BUDGET = 3_000;
+    /**
+     * In kbps, below that video is not worth sending.
+     */
+    public static final int MIN_BITRATE = 100;
+    /**
+     * In milliseconds.
+     */
+    public static final int HIGH_ROUND_TRIP_TIME = 400;
+    private static final double AVAILABLE_BITRATE_HEADROOM = 0.85;
+    private static final double MIN_BITRATE_CHANGE = 0.2;
+    private static final int BITRATE_STEP = 10;
+
+    /**
+     * @param roomSize members of the room, the advised one included
+     * @return empty, if there are no peers to send video to
+     */
+    public static Optional<MediaQuality> advise(int roomSize, MediaStats stats) {
+        if (roomSize < 2) {
+            return Optional.empty();
+        }
+        var budget = UPLINK_BUDGET / (roomSize - 1);
+        if (stats.availableBitrate() > 0) {
+            budget = Math.min(budget, (int) (stats.availableBitrate() * AVAILABLE_BITRATE_HEADROOM));
+        }
+
+        var tier = QualityTier.of(budget);
+        if (stats.roundTripTime() > HIGH_ROUND_TRIP_TIME) {
+            tier = tier.lower();
+        }
+        var maxBitrate = Math.max(MIN_BITRATE, Math.min(budget, tier.maxBitrate)) / BITRATE_STEP * BITRATE_STEP;
+        return Optional.of(new MediaQuality(tier.width, tier.height, tier.frameRate, maxBitrate));
+    }
+
+    /**
+     * @param previous advice, null if there was none
+     */
+    public static boolean isWorthSending(MediaQuality previous, MediaQuality next) {
+        if (previous == null || previous.width() != next.width() || previous.frameRate() != next.frameRate()) {
+            return true;
+        }
+        return Math.abs(next.maxBitrate() - previous.maxBitrate()) >= previous.maxBitrate() * MIN_BITRATE_CHANGE;
+    }
+}
@@ -0,0 +1,41 @@
+package com.igor.roztropinski.webrtc.media;
+
+/**
+ * Video qualities, the same as constraints of the frontend, from the highest to the lowest, with bitrates (in kbps)
+ * of a single peer connection that they need and that they can use.
+ */
+public enum QualityTier {
+    HIGH(640, 480, 25, 600, 1_200),
+    MEDIUM(320, 240, 20, 250, 600),
+    LOW(160, 120, 15, 0, 250);
+
+    final int width;
+    final int height;
+    final int frameRate;
+    final int minBitrate;
+    final int maxBitrate;
+
+    QualityTier(int width, int height, int frameRate, int minBitrate, int maxBitrate) {
+        this.width = width;
+        this.height = height;
+        this.frameRate = frameRate;
+        this.minBitrate = minBitrate;
+        this.maxBitrate = maxBitrate;
+    }
+
+    /**
+     * @return the highest tier that fits in the bitrate
+     */
+    static QualityTier of(int bitrate) {
+        for (var t : values()) {
+            if (bitrate >= t.minBitrate) {
+                return t;
+            }
+        }
+        return LOW;
+    }
+
+    QualityTier lower() {
+        return this == LOW ? LOW : values()[ordinal() + 1];
+    }
+}
@@ -0,0 +1,35 @@
+package com.igor.roztropinski.webrtc.metrics;
+
+/**
+ * Why server has closed a connection.
+ */
+public enum Closure {
+    /**
+     * Connection was not authenticated in time.
+     */
+    AUTHENTICATION_TIMEOUT,
+    /**
+     * Authenticated connection was not active for too long.
+     */
+    INACTIVITY_TIMEOUT,
+    /**
+     * Connection stayed over its outbound queue limits for too long.
+     */
+    EVICTION,
+    /**
+     * There were too many open connections to accept the new one.
+     */
+    CONNECTIONS_LIMIT,
+    /**
+     * New connections were accepted faster than allowed.
+     */
+    ACCEPT_RATE_LIMIT,
+    /**
+     * Connection has sent messages faster than allowed.
+     */
+    MESSAGES_RATE_LIMIT,
+    /**
+     * User has connected again, so its previous connection was closed.
+     */
+    REPLACED
+}
@@ -0,0 +1,72 @@
+package com.igor.roztropinski.webrtc.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with fixed buckets, in the Prometheus (cumulative, seconds) sense.
+ * Every bucket is a striped counter, so recording from many event loops at once neither contends nor allocates.
+ */
+public class Histogram {
+
+    static final long[] DEFAULT_BUCKETS = {
+            micros(50), micros(100), micros(250), micros(500),
+            millis(1), millis(2), millis(5), millis(10), millis(25), millis(50), millis(100), millis(250), millis(500),
+            millis(1000), millis(2500), millis(5000)
+    };
+
+    private final long[] bounds;
+    private final LongAdder[] buckets;
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * @param bounds upper bounds of buckets in nanoseconds, ascending
+     */
+    public Histogram(long[] bounds) {
+        this.bounds = bounds;
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public Histogram() {
+        this(DEFAULT_BUCKETS);
+    }
+
+    public void record(long nanos) {
+        var i = 0;
+        while (i < bounds.length && nanos > bounds[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        sum.add(nanos);
+    }
+
+    long bound(int bucket) {
+        return bounds[bucket];
+    }
+
+    int bounds() {
+        return bounds.length;
+    }
+
+    /**
+     * @param bucket index, {@link #bounds()} for the +Inf one
+     */
+    long count(int bucket) {
+        return buckets[bucket].sum();
+    }
+
+    long sum() {
+        return sum.sum();
+    }
+
+    private static long micros(long micros) {
+        return TimeUnit.MICROSECONDS.toNanos(micros);
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
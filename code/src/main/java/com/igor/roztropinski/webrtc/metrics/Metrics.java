@@ -0,0 +1,223 @@
+package com.igor.roztropinski.webrtc.metrics;
+
+import com.igor.roztropinski.webrtc.admission.MessageClass;
+import com.igor.roztropinski.webrtc.model.SocketMessageType;
+import com.igor.roztropinski.webrtc.outbound.OutboundKind;
+import com.igor.roztropinski.webrtc.wire.WireFormat;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms of the whole node, shared by all of its shards. All of them are striped,
+ * so event loops record them concurrently, without contention and allocations; they are summed only when scraped.
+ * Shard state (connections, queues, event loop lag) is not kept here, it is snapshotted from shards on scrape.
+ */
+public class Metrics {
+
+    private final LongAdder[] inbound = adders(SocketMessageType.values().length);
+    private final LongAdder[] outbound = adders(SocketMessageType.values().length);
+    private final LongAdder[] peerEvents = adders(OutboundKind.values().length);
+    private final LongAdder[] relayed = adders(OutboundKind.values().length);
+    private final LongAdder[] closures = adders(Closure.values().length);
+    private final LongAdder[] sessions = adders(SessionEvent.values().length);
+    private final LongAdder[] rateLimited = adders(MessageClass.values().length);
+    private final LongAdder[] transcoded = adders(WireFormat.values().length);
+    private final LongAdder invalidMessages = new LongAdder();
+    private final LongAdder pings = new LongAdder();
+    private final LongAdder bufferedPeerEvents = new LongAdder();
+    private final LongAdder bufferedPeerEventsDropped = new LongAdder();
+    private final LongAdder candidateBatches = new LongAdder();
+    private final LongAdder batchedCandidates = new LongAdder();
+    private final LongAdder peerLogsDropped = new LongAdder();
+    private final LongAdder peerLogsWritten = new LongAdder();
+    private final LongAdder peerLogsWrittenBytes = new LongAdder();
+    private final LongAdder peerLogsFailed = new LongAdder();
+    private final Histogram relayLatency = new Histogram();
+    private final Histogram eventLoopLag = new Histogram();
+
+    public void onInbound(SocketMessageType type) {
+        inbound[type.ordinal()].increment();
+    }
+
+    public void onInvalidMessage() {
+        invalidMessages.increment();
+    }
+
+    public void onOutbound(SocketMessageType type) {
+        outbound[type.ordinal()].increment();
+    }
+
+    public void onOutbound(SocketMessageType type, int messages) {
+        outbound[type.ordinal()].add(messages);
+    }
+
+    public void onPeerEvent(OutboundKind kind) {
+        peerEvents[kind.ordinal()].increment();
+    }
+
+    /**
+     * @param latency from receiving peer event to passing it to the outbound queue of its destination, in nanoseconds
+     */
+    public void onRelayed(OutboundKind kind, long latency) {
+        relayed[kind.ordinal()].increment();
+        relayLatency.record(latency);
+    }
+
+    /**
+     * Peer event from the other node, latency of which can not be measured with a monotonic clock.
+     */
+    public void onRelayed(OutboundKind kind) {
+        relayed[kind.ordinal()].increment();
+    }
+
+    /**
+     * @param format to which peer event was transcoded, as its destination speaks other one than its sender
+     */
+    public void onTranscoded(WireFormat format) {
+        transcoded[format.ordinal()].increment();
+    }
+
+    /**
+     * ICE candidates sent to their destination as a single frame.
+     */
+    public void onCandidateBatch(int candidates) {
+        candidateBatches.increment();
+        batchedCandidates.add(candidates);
+    }
+
+    public void onClosure(Closure closure) {
+        closures[closure.ordinal()].increment();
+    }
+
+    public void onSession(SessionEvent event) {
+        sessions[event.ordinal()].increment();
+    }
+
+    /**
+     * Peer event to the user whose session is suspended.
+     *
+     * @param dropped whether the oldest buffered event was dropped to make room for it
+     */
+    public void onBufferedPeerEvent(boolean dropped) {
+        bufferedPeerEvents.increment();
+        if (dropped) {
+            bufferedPeerEventsDropped.increment();
+        }
+    }
+
+    /**
+     * Message over the rate limit of its connection.
+     */
+    public void onRateLimited(MessageClass messageClass) {
+        rateLimited[messageClass.ordinal()].increment();
+    }
+
+    public void onPing() {
+        pings.increment();
+    }
+
+    public void onPeerLogDropped() {
+        peerLogsDropped.increment();
+    }
+
+    public void onPeerLogsWritten(int records, int bytes) {
+        peerLogsWritten.add(records);
+        peerLogsWrittenBytes.add(bytes);
+    }
+
+    public void onPeerLogWriteFailure(int records) {
+        peerLogsFailed.add(records);
+    }
+
+    public void onEventLoopLag(long lag) {
+        eventLoopLag.record(lag);
+    }
+
+    public long inbound(SocketMessageType type) {
+        return inbound[type.ordinal()].sum();
+    }
+
+    public long invalidMessages() {
+        return invalidMessages.sum();
+    }
+
+    public long outbound(SocketMessageType type) {
+        return outbound[type.ordinal()].sum();
+    }
+
+    public long peerEvents(OutboundKind kind) {
+        return peerEvents[kind.ordinal()].sum();
+    }
+
+    public long relayed(OutboundKind kind) {
+        return relayed[kind.ordinal()].sum();
+    }
+
+    public long transcoded(WireFormat format) {
+        return transcoded[format.ordinal()].sum();
+    }
+
+    public long candidateBatches() {
+        return candidateBatches.sum();
+    }
+
+    public long batchedCandidates() {
+        return batchedCandidates.sum();
+    }
+
+    public long closures(Closure closure) {
+        return closures[closure.ordinal()].sum();
+    }
+
+    public long sessions(SessionEvent event) {
+        return sessions[event.ordinal()].sum();
+    }
+
+    public long rateLimited(MessageClass messageClass) {
+        return rateLimited[messageClass.ordinal()].sum();
+    }
+
+    public long bufferedPeerEvents() {
+        return bufferedPeerEvents.sum();
+    }
+
+    public long bufferedPeerEventsDropped() {
+        return bufferedPeerEventsDropped.sum();
+    }
+
+    public long pings() {
+        return pings.sum();
+    }
+
+    public long peerLogsDropped() {
+        return peerLogsDropped.sum();
+    }
+
+    public long peerLogsWritten() {
+        return peerLogsWritten.sum();
+    }
+
+    public long peerLogsWrittenBytes() {
+        return peerLogsWrittenBytes.sum();
+    }
+
+    public long peerLogsFailed() {
+        return peerLogsFailed.sum();
+    }
+
+    public Histogram relayLatency() {
+        return relayLatency;
+    }
+
+    public Histogram eventLoopLag() {
+        return eventLoopLag;
+    }
+
+    private static LongAdder[] adders(int count) {
+        var adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,194 @@
+package com.igor.roztropinski.webrtc.metrics;
+
+import com.igor.roztropinski.webrtc.SignalingServer;
+import com.igor.roztropinski.webrtc.admission.MessageClass;
+import com.igor.roztropinski.webrtc.model.SocketMessageType;
+import com.igor.roztropinski.webrtc.outbound.OutboundKind;
+import com.igor.roztropinski.webrtc.shard.Shards;
+import com.igor.roztropinski.webrtc.wire.WireFormat;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.ext.web.RoutingContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ToLongFunction;
+
+/**
+ * Serves node metrics in the Prometheus text format. Shard gauges are snapshotted on event loops of their shards,
+ * so scrape never reads state of a connection from another thread; blocked event loop makes scrape fail with 503,
+ * after {@link #SHARDS_TIMEOUT}.
+ */
+@Slf4j
+public class MetricsHandler implements Handler<RoutingContext> {
+
+    public static final String ROUTE = "/metrics";
+    /**
+     * In milliseconds, below the default scrape timeout of Prometheus.
+     */
+    public static final long SHARDS_TIMEOUT = 5_000;
+    private static final String TYPE = "type";
+    private static final String KIND = "kind";
+    private static final String REASON = "reason";
+    private static final String EVENT = "event";
+    private static final String CLASS = "class";
+    private static final String SHARD = "shard";
+    private static final String FORMAT = "format";
+
+    private final Metrics metrics;
+    private final Shards<SignalingServer> shards;
+
+    public MetricsHandler(Metrics metrics, Shards<SignalingServer> shards) {
+        this.metrics = metrics;
+        this.shards = shards;
+    }
+
+    @Override
+    public void handle(RoutingContext context) {
+        shards.callAll(SignalingServer::shardMetrics, SHARDS_TIMEOUT)
+                .onSuccess(s -> context.response()
+                        .putHeader(HttpHeaders.CONTENT_TYPE, PrometheusText.CONTENT_TYPE)
+                        .end(text(s)))
+                .onFailure(t -> {
+                    log.error("Failed to collect metrics", t);
+                    if (t instanceof TimeoutException) {
+                        context.response().setStatusCode(503).end();
+                    } else {
+                        context.fail(t);
+                    }
+                });
+    }
+
+    private String text(List<ShardMetrics> shardsMetrics) {
+        var text = new PrometheusText();
+
+        text.metric("webrtc_inbound_messages_total", "counter", "Messages received from clients, by type");
+        for (var t : SocketMessageType.values()) {
+            text.sample("webrtc_inbound_messages_total", TYPE, t, metrics.inbound(t));
+        }
+        text.metric("webrtc_invalid_messages_total", "counter", "Messages received from clients, that could not be parsed")
+                .sample("webrtc_invalid_messages_total", metrics.invalidMessages());
+        text.metric("webrtc_outbound_messages_total", "counter", "Server messages sent to clients, by type");
+        for (var t : SocketMessageType.values()) {
+            text.sample("webrtc_outbound_messages_total", TYPE, t, metrics.outbound(t));
+        }
+
+        text.metric("webrtc_peer_events_total", "counter", "Peer events received from clients, by kind");
+        for (var k : peerEventKinds()) {
+            text.sample("webrtc_peer_events_total", KIND, label(k), metrics.peerEvents(k));
+        }
+        text.metric("webrtc_relayed_peer_events_total", "counter",
+                "Peer events passed to outbound queues of their destinations on this node, by kind");
+        for (var k : peerEventKinds()) {
+            text.sample("webrtc_relayed_peer_events_total", KIND, label(k), metrics.relayed(k));
+        }
+        text.metric("webrtc_transcoded_peer_events_total", "counter",
+                "Peer events transcoded, as their destinations speak other wire format than their senders, by target format");
+        for (var f : WireFormat.values()) {
+            text.sample("webrtc_transcoded_peer_events_total", FORMAT, label(f), metrics.transcoded(f));
+        }
+        text.metric("webrtc_candidate_batches_total", "counter", "Batches of ICE candidates, sent as single frames");
+        text.sample("webrtc_candidate_batches_total", metrics.candidateBatches());
+        text.metric("webrtc_batched_candidates_total", "counter", "ICE candidates sent in batches");
+        text.sample("webrtc_batched_candidates_total", metrics.batchedCandidates());
+        text.histogram("webrtc_relay_latency_seconds",
+                "Time from receiving peer event to passing it to the outbound queue (or candidates batch) of its destination, on the same node",
+                metrics.relayLatency());
+
+        text.metric("webrtc_closed_connections_total", "counter", "Connections closed by server, by reason");
+        for (var c : Closure.values()) {
+            text.sample("webrtc_closed_connections_total", REASON, label(c), metrics.closures(c));
+        }
+        text.metric("webrtc_rate_limited_messages_total", "counter",
+                "Messages over rate limits of their connections, by class");
+        for (var c : MessageClass.values()) {
+            text.sample("webrtc_rate_limited_messages_total", CLASS, label(c), metrics.rateLimited(c));
+        }
+        text.metric("webrtc_sessions_total", "counter", "Resumable sessions events, by event");
+        for (var e : SessionEvent.values()) {
+            text.sample("webrtc_sessions_total", EVENT, label(e), metrics.sessions(e));
+        }
+        text.metric("webrtc_session_buffered_peer_events_total", "counter",
+                        "Peer events buffered for users whose sessions are suspended")
+                .sample("webrtc_session_buffered_peer_events_total", metrics.bufferedPeerEvents());
+        text.metric("webrtc_session_buffered_peer_events_dropped_total", "counter",
+                        "Buffered peer events dropped, as newer ones did not fit into the buffer")
+                .sample("webrtc_session_buffered_peer_events_dropped_total", metrics.bufferedPeerEventsDropped());
+        text.metric("webrtc_pings_total", "counter", "WebSocket pings sent to idle connections")
+                .sample("webrtc_pings_total", metrics.pings());
+
+        text.metric("webrtc_peer_logs_dropped_total", "counter",
+                        "Peer logs dropped, as their writer did not keep up with them")
+                .sample("webrtc_peer_logs_dropped_total", metrics.peerLogsDropped());
+        text.metric("webrtc_peer_logs_written_total", "counter", "Peer logs written to files")
+                .sample("webrtc_peer_logs_written_total", metrics.peerLogsWritten());
+        text.metric("webrtc_peer_logs_written_bytes_total", "counter", "Bytes of peer logs written to files")
+                .sample("webrtc_peer_logs_written_bytes_total", metrics.peerLogsWrittenBytes());
+        text.metric("webrtc_peer_logs_failed_total", "counter", "Peer logs lost, as their batch failed to be written")
+                .sample("webrtc_peer_logs_failed_total", metrics.peerLogsFailed());
+
+        gauge(text, shardsMetrics, "webrtc_new_connections", "Open connections, not yet authenticated",
+                ShardMetrics::newConnections);
+        gauge(text, shardsMetrics, "webrtc_authenticated_connections", "Open and authenticated connections",
+                ShardMetrics::authenticatedConnections);
+        gauge(text, shardsMetrics, "webrtc_directory_users", "Users known to the node directory, of the whole cluster",
+                ShardMetrics::directoryUsers);
+        gauge(text, shardsMetrics, "webrtc_rooms", "Rooms owned by shard", ShardMetrics::rooms);
+        gauge(text, shardsMetrics, "webrtc_suspended_sessions", "Sessions of lost connections, waiting to be resumed",
+                ShardMetrics::suspendedSessions);
+        gauge(text, shardsMetrics, "webrtc_outbound_pending_messages", "Messages waiting in outbound queues",
+                ShardMetrics::pendingMessages);
+        gauge(text, shardsMetrics, "webrtc_outbound_pending_bytes", "Bytes of messages waiting in outbound queues",
+                ShardMetrics::pendingBytes);
+        gauge(text, shardsMetrics, "webrtc_outbound_socket_pending_messages_max",
+                "Messages waiting in the deepest outbound queue of a single socket", ShardMetrics::maxSocketPendingMessages);
+        counter(text, shardsMetrics, "webrtc_outbound_queued_total", "Messages that had to wait in outbound queues",
+                ShardMetrics::queued);
+        counter(text, shardsMetrics, "webrtc_outbound_coalesced_total", "Room members snapshots replaced by newer ones",
+                ShardMetrics::coalesced);
+        counter(text, shardsMetrics, "webrtc_outbound_dropped_total", "ICE candidates dropped from over limits queues",
+                ShardMetrics::dropped);
+        counter(text, shardsMetrics, "webrtc_outbound_evicted_total", "Connections evicted for being over outbound limits",
+                ShardMetrics::evicted);
+        counter(text, shardsMetrics, "webrtc_outbound_written_total", "Frames written to sockets", ShardMetrics::written);
+        counter(text, shardsMetrics, "webrtc_outbound_flushes_total",
+                "Flushes of sockets, each of them at most one write syscall", ShardMetrics::flushes);
+
+        text.metric("webrtc_event_loop_lag_seconds", "gauge", "Delay of the last event loop lag probe, by shard");
+        for (var s : shardsMetrics) {
+            text.seconds("webrtc_event_loop_lag_seconds", SHARD, s.shard(), s.eventLoopLag());
+        }
+        text.histogram("webrtc_event_loop_lag_distribution_seconds", "Delays of event loop lag probes, of all shards",
+                metrics.eventLoopLag());
+
+        return text.toString();
+    }
+
+    private static OutboundKind[] peerEventKinds() {
+        return new OutboundKind[]{OutboundKind.SDP, OutboundKind.CANDIDATE, OutboundKind.PEER_EVENT};
+    }
+
+    private static String label(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static void gauge(PrometheusText text, List<ShardMetrics> shardsMetrics, String name, String help,
+                              ToLongFunction<ShardMetrics> value) {
+        perShard(text, shardsMetrics, name, "gauge", help, value);
+    }
+
+    private static void counter(PrometheusText text, List<ShardMetrics> shardsMetrics, String name, String help,
+                                ToLongFunction<ShardMetrics> value) {
+        perShard(text, shardsMetrics, name, "counter", help, value);
+    }
+
+    private static void perShard(PrometheusText text, List<ShardMetrics> shardsMetrics, String name, String type,
+                                 String help, ToLongFunction<ShardMetrics> value) {
+        text.metric(name, type, help + ", by shard");
+        for (var s : shardsMetrics) {
+            text.sample(name, SHARD, s.shard(), value.applyAsLong(s));
+        }
+    }
+}
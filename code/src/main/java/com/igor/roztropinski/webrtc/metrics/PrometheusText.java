@@ -0,0 +1,64 @@
+package com.igor.roztropinski.webrtc.metrics;
+
+import java.math.BigDecimal;
+
+/**
+ * Writer of the Prometheus text exposition format (version 0.0.4).
+ */
+class PrometheusText {
+
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final int NANOS_SCALE = 9;
+
+    private final StringBuilder text = new StringBuilder(8192);
+
+    PrometheusText metric(String name, String type, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    PrometheusText sample(String name, long value) {
+        text.append(name).append(' ').append(value).append('\n');
+        return this;
+    }
+
+    PrometheusText sample(String name, String label, Object labelValue, long value) {
+        text.append(name).append('{').append(label).append("=\"").append(labelValue).append("\"} ")
+                .append(value).append('\n');
+        return this;
+    }
+
+    PrometheusText seconds(String name, String label, Object labelValue, long nanos) {
+        text.append(name).append('{').append(label).append("=\"").append(labelValue).append("\"} ")
+                .append(seconds(nanos)).append('\n');
+        return this;
+    }
+
+    /**
+     * Histogram of nanoseconds, exposed in seconds.
+     */
+    PrometheusText histogram(String name, String help, Histogram histogram) {
+        metric(name, "histogram", help);
+        var cumulative = 0L;
+        for (int i = 0; i < histogram.bounds(); i++) {
+            cumulative += histogram.count(i);
+            text.append(name).append("_bucket{le=\"").append(seconds(histogram.bound(i))).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        cumulative += histogram.count(histogram.bounds());
+        text.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+        text.append(name).append("_sum ").append(seconds(histogram.sum())).append('\n');
+        text.append(name).append("_count ").append(cumulative).append('\n');
+        return this;
+    }
+
+    private static String seconds(long nanos) {
+        return BigDecimal.valueOf(nanos, NANOS_SCALE).stripTrailingZeros().toPlainString();
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
@@ -0,0 +1,23 @@
+package com.igor.roztropinski.webrtc.metrics;
+
+/**
+ * What has happened to a resumable session.
+ */
+public enum SessionEvent {
+    /**
+     * Connection was lost, session waits to be resumed.
+     */
+    SUSPENDED,
+    /**
+     * New connection has resumed suspended session.
+     */
+    RESUMED,
+    /**
+     * Session was not resumed within its grace period, user has left.
+     */
+    EXPIRED,
+    /**
+     * User has authenticated again, instead of resuming its suspended session.
+     */
+    DISCARDED
+}
@@ -0,0 +1,26 @@
+package com.igor.roztropinski.webrtc.metrics;
+
+import lombok.Value;
+
+/**
+ * Snapshot of shard state, taken on its event loop.
+ */
+@Value
+public class ShardMetrics {
+    int shard;
+    int newConnections;
+    int authenticatedConnections;
+    int directoryUsers;
+    int rooms;
+    int suspendedSessions;
+    long pendingMessages;
+    long pendingBytes;
+    int maxSocketPendingMessages;
+    long queued;
+    long coalesced;
+    long dropped;
+    long evicted;
+    long written;
+    long flushes;
+    long eventLoopLag;
+}
@@ -0,0 +1,14 @@
+package com.igor.roztropinski.webrtc.model;
+
+import io.vertx.core.buffer.Buffer;
+import lombok.Value;
+
+/**
+ * Message already serialized to json (utf-8) text frame payload. It is shared between recipients
+ * and must never be modified after creation; every write works on its own duplicate of the underlying buffer.
+ */
+@Value
+public class EncodedMessage {
+    SocketMessageType type;
+    Buffer buffer;
+}
@@ -0,0 +1,17 @@
+package com.igor.roztropinski.webrtc.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * As RTCIceServer of the browser, STUN servers have no credentials.
+ */
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IceServer {
+    List<String> urls;
+    String username;
+    String credential;
+}
@@ -0,0 +1,14 @@
+package com.igor.roztropinski.webrtc.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Relays for peer connections of the session, with credentials valid until expiresAt (epoch seconds).
+ */
+@Value
+public class IceServers {
+    List<IceServer> iceServers;
+    long expiresAt;
+}
@@ -0,0 +1,30 @@
+package com.igor.roztropinski.webrtc.model;
+
+import lombok.Value;
+
+/**
+ * Envelope of a message received from the client. Server messages have a type and (raw) data json,
+ * peer events have {@link SocketMessageType#PEER_EVENT} type, from, to and event fields and are relayed
+ * as they are, in the raw form, their data is there only if it was asked for.
+ */
+@Value
+public class InboundMessage {
+    SocketMessageType type;
+    String dataJson;
+    long from;
+    long to;
+    String event;
+    String raw;
+
+    public static InboundMessage server(SocketMessageType type, String dataJson, String raw) {
+        return new InboundMessage(type, dataJson, 0, 0, null, raw);
+    }
+
+    public static InboundMessage peerEvent(long from, long to, String event, String raw) {
+        return new InboundMessage(SocketMessageType.PEER_EVENT, null, from, to, event, raw);
+    }
+
+    public static InboundMessage peerEvent(long from, long to, String event, String dataJson, String raw) {
+        return new InboundMessage(SocketMessageType.PEER_EVENT, dataJson, from, to, event, raw);
+    }
+}
@@ -0,0 +1,15 @@
+package com.igor.roztropinski.webrtc.model;
+
+import lombok.Value;
+
+/**
+ * Video that the client should send to every peer: target resolution, frame rate and max bitrate (in kbps)
+ * of every peer connection.
+ */
+@Value
+public class MediaQuality {
+    int width;
+    int height;
+    int frameRate;
+    int maxBitrate;
+}
@@ -0,0 +1,13 @@
+package com.igor.roztropinski.webrtc.model;
+
+import lombok.Value;
+
+/**
+ * Network conditions reported by the client, over all of its peer connections: the lowest available outgoing bitrate
+ * (in kbps) and the highest round trip time (in milliseconds). Values that are not known yet are 0.
+ */
+@Value
+public class MediaStats {
+    int availableBitrate;
+    int roundTripTime;
+}
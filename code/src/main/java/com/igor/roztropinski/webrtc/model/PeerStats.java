@@ -0,0 +1,18 @@
+package com.igor.roztropinski.webrtc.model;
+
+import lombok.Value;
+
+/**
+ * Summary of a single peer connection of the client, from its getStats(), over the last report interval:
+ * outgoing bitrate (in kbps), inbound packet loss (in percent), the highest jitter of inbound streams and round trip
+ * time (both in milliseconds) and type of the local candidate of the selected pair (host, srflx, prflx or relay).
+ */
+@Value
+public class PeerStats {
+    long peerId;
+    String candidateType;
+    int bitrate;
+    double packetLoss;
+    int jitter;
+    int roundTripTime;
+}
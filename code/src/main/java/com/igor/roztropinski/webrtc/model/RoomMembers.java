@@ -0,0 +1,13 @@
+package com.igor.roztropinski.webrtc.model;
+
+import lombok.Value;
+
+/**
+ * Full snapshot of room members at the given version.
+ */
+@Value
+public class RoomMembers {
+    String roomId;
+    long version;
+    long[] members;
+}
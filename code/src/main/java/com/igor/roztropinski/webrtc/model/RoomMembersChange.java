@@ -0,0 +1,15 @@
+package com.igor.roztropinski.webrtc.model;
+
+import lombok.Value;
+
+/**
+ * Members that have joined or left the room, changing it from one version to another.
+ * Client that does not have the from version has missed some changes and should ask for a snapshot, by joining again.
+ */
+@Value
+public class RoomMembersChange {
+    String roomId;
+    long fromVersion;
+    long version;
+    long[] members;
+}
@@ -1,10 +1,11 @@
 package com.igor.roztropinski.webrtc.model;
 
 public enum SocketMessageType {
-    USER_AUTHENTICATION, USER_AUTHENTICATED,
+    USER_AUTHENTICATION, USER_AUTHENTICATED, SESSION_RESUME, ICE_SERVERS,
     FAILURE, UNKNOWN,
-    JOIN_ROOM, LEAVE_ROOM, ROOM_MEMBERS,
-    PEER_LOG,
+    JOIN_ROOM, LEAVE_ROOM, ROOM_MEMBERS, MEMBER_JOINED, MEMBER_LEFT,
+    PEER_LOG, PEER_EVENT,
+    MEDIA_STATS, MEDIA_QUALITY, PEER_STATS,
     PING, PONG,
     SERVER_CLOSING
 }
@@ -0,0 +1,13 @@
+package com.igor.roztropinski.webrtc.model;
+
+import lombok.Value;
+
+/**
+ * Token of the session can be sent in SESSION_RESUME message, instead of credentials, when connection is lost.
+ * It is null, if sessions can not be resumed.
+ */
+@Value
+public class UserAuthenticated {
+    String sessionToken;
+    boolean resumed;
+}
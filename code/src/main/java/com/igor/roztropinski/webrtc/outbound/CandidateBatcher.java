@@ -0,0 +1,92 @@
+package com.igor.roztropinski.webrtc.outbound;
+
+import com.igor.roztropinski.webrtc.metrics.Metrics;
+import com.igor.roztropinski.webrtc.wire.PeerEventBatch;
+import com.igor.roztropinski.webrtc.wire.WireFormat;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offers peer events to outbound queues of a shard. With {@link CandidateBatching}, ICE candidates to the user
+ * are collected over a short window, shared by all queues of the shard, and sent as a single frame; any other event
+ * to the user sends collected candidates first, so the order of events of every pair of peers is kept.
+ * Owned by event loop of its shard, not thread safe.
+ */
+public class CandidateBatcher {
+
+    private final Vertx vertx;
+    private final CandidateBatching batching;
+    private final WriteCoalescer writes;
+    private final Metrics metrics;
+    private final List<OutboundQueue> batches = new ArrayList<>();
+
+    public CandidateBatcher(Vertx vertx, CandidateBatching batching, WriteCoalescer writes, Metrics metrics) {
+        this.vertx = vertx;
+        this.batching = batching;
+        this.writes = writes;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param frame event in the given format
+     */
+    public void offer(OutboundQueue destination, OutboundKind kind, WireFormat format, Buffer frame) {
+        if (batching.enabled()) {
+            if (kind == OutboundKind.CANDIDATE) {
+                batch(destination, format, frame);
+                return;
+            }
+            send(destination);
+        }
+        offer(destination, kind, format == WireFormat.BINARY, frame);
+    }
+
+    /**
+     * Candidates have binary type, so all candidates to the queue are in format of its connection.
+     */
+    private void batch(OutboundQueue destination, WireFormat format, Buffer frame) {
+        if (destination.candidates == null) {
+            destination.candidates = new PeerEventBatch(format);
+            if (batches.isEmpty()) {
+                vertx.setTimer(batching.window(), t -> {
+                    sendAll();
+                    writes.flushIfOverdue();
+                });
+            }
+            batches.add(destination);
+        }
+        destination.candidates.add(frame);
+        if (destination.candidates.size() >= batching.maxCandidates()) {
+            send(destination);
+        }
+    }
+
+    private void sendAll() {
+        batches.forEach(this::send);
+        batches.clear();
+    }
+
+    /**
+     * Queue stays in batches of the shard until the window ends, even if its batch was sent before.
+     */
+    private void send(OutboundQueue destination) {
+        var batch = destination.candidates;
+        if (batch == null) {
+            return;
+        }
+        destination.candidates = null;
+        metrics.onCandidateBatch(batch.size());
+        offer(destination, OutboundKind.CANDIDATE, batch.format() == WireFormat.BINARY, batch.frame());
+    }
+
+    private static void offer(OutboundQueue destination, OutboundKind kind, boolean binary, Buffer frame) {
+        if (binary) {
+            destination.offerBinary(kind, frame);
+        } else {
+            destination.offer(kind, frame);
+        }
+    }
+}
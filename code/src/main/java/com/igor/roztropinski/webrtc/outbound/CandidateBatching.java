@@ -0,0 +1,23 @@
+package com.igor.roztropinski.webrtc.outbound;
+
+import lombok.Value;
+
+@Value
+public class CandidateBatching {
+
+    public static final int DEFAULT_MAX_CANDIDATES = 16;
+    public static final CandidateBatching DISABLED = new CandidateBatching(0, DEFAULT_MAX_CANDIDATES);
+
+    /**
+     * In milliseconds, how long ICE candidates to the user wait for others, to be sent together. 0 disables batching.
+     */
+    int window;
+    /**
+     * Batch is sent at once, when it has that many candidates.
+     */
+    int maxCandidates;
+
+    public boolean enabled() {
+        return window > 0 && maxCandidates > 1;
+    }
+}
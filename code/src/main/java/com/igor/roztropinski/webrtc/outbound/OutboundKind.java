@@ -0,0 +1,59 @@
+package com.igor.roztropinski.webrtc.outbound;
+
+import com.igor.roztropinski.webrtc.model.SocketMessageType;
+
+/**
+ * Decides what can happen to a message waiting in the {@link OutboundQueue}, when its socket does not keep up.
+ */
+public enum OutboundKind {
+    /**
+     * Server messages, never dropped.
+     */
+    CONTROL,
+    /**
+     * Snapshot of room members, only the latest one (per room) matters, so pending ones are coalesced.
+     */
+    ROOM_MEMBERS,
+    /**
+     * Members that have joined or left the room, never dropped, but replaced by the newer snapshot of their room.
+     */
+    ROOM_MEMBERS_CHANGE,
+    /**
+     * Offers and answers, never dropped.
+     */
+    SDP,
+    /**
+     * ICE candidates, oldest ones are dropped first when queue is over its limits.
+     */
+    CANDIDATE,
+    /**
+     * Other peer events, never dropped.
+     */
+    PEER_EVENT;
+
+    private static final String OFFER = "offer";
+    private static final String ANSWER = "answer";
+    private static final String CANDIDATE_EVENT = "candidate";
+
+    public static OutboundKind ofServerMessage(SocketMessageType type) {
+        switch (type) {
+            case ROOM_MEMBERS:
+                return ROOM_MEMBERS;
+            case MEMBER_JOINED:
+            case MEMBER_LEFT:
+                return ROOM_MEMBERS_CHANGE;
+            default:
+                return CONTROL;
+        }
+    }
+
+    public static OutboundKind ofPeerEvent(String event) {
+        if (OFFER.equals(event) || ANSWER.equals(event)) {
+            return SDP;
+        }
+        if (CANDIDATE_EVENT.equals(event)) {
+            return CANDIDATE;
+        }
+        return PEER_EVENT;
+    }
+}
@@ -0,0 +1,16 @@
+package com.igor.roztropinski.webrtc.outbound;
+
+import lombok.Value;
+
+@Value
+public class OutboundLimits {
+
+    public static final OutboundLimits DEFAULT = new OutboundLimits(256, 512 * 1024, 5_000);
+
+    int maxMessages;
+    int maxBytes;
+    /**
+     * In milliseconds, how long socket can stay over its limits before being evicted.
+     */
+    int evictionGrace;
+}
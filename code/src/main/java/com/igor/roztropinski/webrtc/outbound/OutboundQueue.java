@@ -0,0 +1,195 @@
+package com.igor.roztropinski.webrtc.outbound;
+
+import com.igor.roztropinski.webrtc.function.Dates;
+import com.igor.roztropinski.webrtc.wire.PeerEventBatch;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.WebSocketBase;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded queue of messages waiting for socket, that does not keep up with writes.
+ * Messages are written directly as long as socket write queue is not full, otherwise they wait here,
+ * until socket is drained. Snapshot of room members replaces pending snapshots and changes of its room. When over its limits,
+ * the oldest ICE candidates are dropped; sdp and other server messages are never dropped.
+ * Socket that stays over limits longer than eviction grace, should be evicted. Queue is allocated only while
+ * there are pending messages, so that idle connections do not keep it. Messages are written by {@link WriteCoalescer}
+ * of the event loop.
+ * Owned by event loop of its socket, not thread safe.
+ */
+@Slf4j
+public class OutboundQueue {
+
+    final WebSocketBase socket;
+    //whether it is waiting for flush by the coalescer
+    boolean unflushed;
+    //ICE candidates collected by the batcher, not yet offered
+    PeerEventBatch candidates;
+    private ArrayDeque<Entry> pending;
+    private final OutboundLimits limits;
+    private final long evictionGrace;
+    private final OutboundStats stats;
+    private final WriteCoalescer writes;
+    private long pendingBytes;
+    private boolean overLimits;
+    private long overLimitsSince;
+
+    public OutboundQueue(WebSocketBase socket, OutboundLimits limits, OutboundStats stats, WriteCoalescer writes) {
+        this.socket = socket;
+        this.limits = limits;
+        this.evictionGrace = TimeUnit.MILLISECONDS.toNanos(limits.evictionGrace());
+        this.stats = stats;
+        this.writes = writes;
+        this.socket.drainHandler(v -> flush());
+    }
+
+    /**
+     * @param key coalescing key (room id), for {@link OutboundKind#ROOM_MEMBERS} and {@link OutboundKind#ROOM_MEMBERS_CHANGE}
+     */
+    public void offer(OutboundKind kind, Object key, Buffer message) {
+        offer(kind, key, message, false);
+    }
+
+    public void offer(OutboundKind kind, Buffer message) {
+        offer(kind, null, message, false);
+    }
+
+    /**
+     * Message is written as a binary frame, otherwise it is the same as text one.
+     */
+    public void offerBinary(OutboundKind kind, Buffer message) {
+        offer(kind, null, message, true);
+    }
+
+    private void offer(OutboundKind kind, Object key, Buffer message, boolean binary) {
+        //socket can be closed by the other side before its close handler is called
+        if (socket.isClosed()) {
+            return;
+        }
+        if (pending == null && !socket.writeQueueFull()) {
+            write(message, binary);
+            return;
+        }
+        if (pending == null) {
+            pending = new ArrayDeque<>();
+        }
+
+        if (kind == OutboundKind.ROOM_MEMBERS) {
+            removeCoalesced(key);
+        }
+
+        pending.add(new Entry(kind, key, message, binary));
+        pendingBytes += message.length();
+        stats.onQueued(message.length());
+
+        if (overLimits()) {
+            dropCandidates();
+        }
+        updateOverLimits();
+    }
+
+    public boolean shouldBeEvicted(long nowNanos) {
+        return overLimits && (nowNanos - overLimitsSince) > evictionGrace;
+    }
+
+    public void onEvicted() {
+        stats.onEvicted();
+        clear();
+    }
+
+    public void clear() {
+        if (pending != null) {
+            pending.forEach(e -> stats.onDequeued(e.message.length()));
+            pending = null;
+        }
+        pendingBytes = 0;
+        overLimits = false;
+    }
+
+    public int pendingMessages() {
+        return pending == null ? 0 : pending.size();
+    }
+
+    public long pendingBytes() {
+        return pendingBytes;
+    }
+
+    private void flush() {
+        while (pending != null && !socket.writeQueueFull()) {
+            var entry = pending.poll();
+            pendingBytes -= entry.message.length();
+            stats.onDequeued(entry.message.length());
+            write(entry.message, entry.binary);
+            if (pending.isEmpty()) {
+                pending = null;
+            }
+        }
+        updateOverLimits();
+    }
+
+    private void write(Buffer message, boolean binary) {
+        try {
+            writes.write(this, message, binary);
+        } catch (Exception e) {
+            log.warn("Failed to write message", e);
+        }
+    }
+
+    /**
+     * Snapshot of room members makes all pending snapshots and changes of the room obsolete.
+     */
+    private void removeCoalesced(Object key) {
+        for (Iterator<Entry> it = pending.iterator(); it.hasNext(); ) {
+            var e = it.next();
+            if ((e.kind == OutboundKind.ROOM_MEMBERS || e.kind == OutboundKind.ROOM_MEMBERS_CHANGE)
+                    && Objects.equals(e.key, key)) {
+                it.remove();
+                pendingBytes -= e.message.length();
+                stats.onCoalesced(e.message.length());
+            }
+        }
+    }
+
+    private void dropCandidates() {
+        for (Iterator<Entry> it = pending.iterator(); it.hasNext() && overLimits(); ) {
+            var e = it.next();
+            if (e.kind == OutboundKind.CANDIDATE) {
+                it.remove();
+                pendingBytes -= e.message.length();
+                stats.onDropped(e.message.length());
+            }
+        }
+    }
+
+    private boolean overLimits() {
+        return pendingMessages() > limits.maxMessages() || pendingBytes > limits.maxBytes();
+    }
+
+    private void updateOverLimits() {
+        if (!overLimits()) {
+            overLimits = false;
+        } else if (!overLimits) {
+            overLimits = true;
+            overLimitsSince = Dates.monotonicNanos();
+        }
+    }
+
+    private static class Entry {
+
+        final OutboundKind kind;
+        final Object key;
+        final Buffer message;
+        final boolean binary;
+
+        Entry(OutboundKind kind, Object key, Buffer message, boolean binary) {
+            this.kind = kind;
+            this.key = key;
+            this.message = message;
+            this.binary = binary;
+        }
+    }
+}
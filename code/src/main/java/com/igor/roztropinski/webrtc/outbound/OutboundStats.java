@@ -0,0 +1,97 @@
+package com.igor.roztropinski.webrtc.outbound;
+
+/**
+ * Aggregated depth and policy counters of all outbound queues of a single event loop.
+ * Written only by that event loop, can be read from anywhere.
+ */
+public class OutboundStats {
+
+    private volatile long pendingMessages;
+    private volatile long pendingBytes;
+    private volatile long queued;
+    private volatile long coalesced;
+    private volatile long dropped;
+    private volatile long evicted;
+    private volatile long written;
+    private volatile long flushes;
+
+    void onQueued(int bytes) {
+        pendingMessages++;
+        pendingBytes += bytes;
+        queued++;
+    }
+
+    void onDequeued(int bytes) {
+        pendingMessages--;
+        pendingBytes -= bytes;
+    }
+
+    void onCoalesced(int bytes) {
+        onDequeued(bytes);
+        coalesced++;
+    }
+
+    void onDropped(int bytes) {
+        onDequeued(bytes);
+        dropped++;
+    }
+
+    void onEvicted() {
+        evicted++;
+    }
+
+    /**
+     * @param flushed whether frame was flushed at once, by Vert.x
+     */
+    void onWritten(boolean flushed) {
+        written++;
+        if (flushed) {
+            flushes++;
+        }
+    }
+
+    void onFlushed() {
+        flushes++;
+    }
+
+    public long pendingMessages() {
+        return pendingMessages;
+    }
+
+    public long pendingBytes() {
+        return pendingBytes;
+    }
+
+    public long queued() {
+        return queued;
+    }
+
+    public long coalesced() {
+        return coalesced;
+    }
+
+    public long dropped() {
+        return dropped;
+    }
+
+    public long evicted() {
+        return evicted;
+    }
+
+    public long written() {
+        return written;
+    }
+
+    /**
+     * Every flush is at most one write syscall, frames written by Vert.x count as flushed one by one.
+     */
+    public long flushes() {
+        return flushes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OutboundStats(pendingMessages=%d, pendingBytes=%d, queued=%d, coalesced=%d, dropped=%d, evicted=%d, written=%d, flushes=%d)",
+                pendingMessages, pendingBytes, queued, coalesced, dropped, evicted, written, flushes);
+    }
+}
@@ -0,0 +1,145 @@
+package com.igor.roztropinski.webrtc.outbound;
+
+import com.igor.roztropinski.webrtc.function.Dates;
+import com.igor.roztropinski.webrtc.function.WebSockets;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.WebSocketBase;
+import io.vertx.core.http.impl.WebSocketInternal;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes of all outbound queues of a single event loop. Vert.x flushes every frame written outside of reading
+ * from its own socket, so a burst of relays or a room broadcast costs a write syscall per frame. Here frames are written
+ * to Netty channels under Vert.x sockets without flush, and every socket written in the event loop turn is flushed
+ * once, by a task executed after those already queued on the event loop. If the turn is long, sockets are flushed
+ * as soon as the oldest unflushed frame is over the max flush delay, checked on every write and, by
+ * {@link #flushIfOverdue()}, at the end of every handler of the event loop that can write. The delay is bounded
+ * at those points only: event loop can not be interrupted, so a single handler that writes a frame and then works
+ * for long, keeps it until it returns.
+ * Frames to sockets without a channel of this event loop and frames over the max frame size (split by Vert.x)
+ * are written by Vert.x, as usual. Frames are written only to sockets that are not closed, see {@link OutboundQueue};
+ * failed writes, to channels closed in the meantime included, are logged as those written by Vert.x.
+ * Owned by its event loop, not thread safe.
+ */
+@Slf4j
+public class WriteCoalescer {
+
+    private static final int MAX_FRAME_SIZE = HttpServerOptions.DEFAULT_MAX_WEBSOCKET_FRAME_SIZE;
+    private static final Handler<Throwable> LOG_WRITE_FAILURE = t -> log.debug("Failed to write queued message", t);
+    private static final ChannelFutureListener ON_WRITTEN = f -> {
+        if (!f.isSuccess()) {
+            LOG_WRITE_FAILURE.handle(f.cause());
+        }
+    };
+
+    private final boolean enabled;
+    private final long maxFlushDelay;
+    private final OutboundStats stats;
+    private final Runnable flushTask = this::onFlushTask;
+    private List<OutboundQueue> unflushed = new ArrayList<>();
+    private List<OutboundQueue> flushed = new ArrayList<>();
+    private boolean flushScheduled;
+    private boolean flushing;
+    private long unflushedSince;
+
+    public WriteCoalescer(WriteCoalescing options, OutboundStats stats) {
+        this.enabled = options.enabled();
+        this.maxFlushDelay = TimeUnit.MICROSECONDS.toNanos(options.maxFlushDelay());
+        this.stats = stats;
+    }
+
+    void write(OutboundQueue queue, Buffer message, boolean binary) {
+        var channel = enabled && message.length() <= MAX_FRAME_SIZE ? channel(queue.socket) : null;
+        if (channel == null) {
+            var written = binary ? WebSockets.writeBinary(queue.socket, message) : WebSockets.writeText(queue.socket, message);
+            written.onFailure(LOG_WRITE_FAILURE);
+            stats.onWritten(true);
+            return;
+        }
+
+        //Vert.x buffers are unpooled, their duplicates can be written to many sockets
+        var buffer = message.getByteBuf();
+        channel.write(binary ? new BinaryWebSocketFrame(buffer) : new TextWebSocketFrame(buffer),
+                channel.newPromise().addListener(ON_WRITTEN));
+        stats.onWritten(false);
+        if (!queue.unflushed) {
+            queue.unflushed = true;
+            unflushed.add(queue);
+        }
+
+        var now = Dates.monotonicNanos();
+        if (!flushScheduled) {
+            flushScheduled = true;
+            unflushedSince = now;
+            channel.executor().execute(flushTask);
+        } else if (now - unflushedSince > maxFlushDelay) {
+            flush();
+            unflushedSince = now;
+        }
+    }
+
+    /**
+     * Flushes sockets, if the oldest unflushed frame is over the max flush delay. Should be called at the end
+     * of handlers that can write, so that frames do not wait for the end of a long event loop turn.
+     */
+    public void flushIfOverdue() {
+        if (flushScheduled && !unflushed.isEmpty() && Dates.monotonicNanos() - unflushedSince > maxFlushDelay) {
+            flush();
+            unflushedSince = Dates.monotonicNanos();
+        }
+    }
+
+    private void onFlushTask() {
+        flushScheduled = false;
+        flush();
+    }
+
+    /**
+     * Flushed socket can become writable again, then its drain handler writes more frames at once, from within the flush.
+     * Those are collected for the next flush, which is scheduled by that write, if not already.
+     */
+    private void flush() {
+        if (flushing) {
+            return;
+        }
+        flushing = true;
+        var queues = unflushed;
+        unflushed = flushed;
+        flushed = queues;
+        try {
+            for (var queue : queues) {
+                queue.unflushed = false;
+                var channel = channel(queue.socket);
+                if (channel != null) {
+                    channel.flush();
+                    stats.onFlushed();
+                }
+            }
+        } finally {
+            queues.clear();
+            flushing = false;
+        }
+    }
+
+    /**
+     * Channel of Vert.x socket is reachable only through its internal interface: WebSocketInternal.channelHandlerContext()
+     * of vertx-core 4.0.x, check it when upgrading Vert.x. Sockets that do not implement it are written by Vert.x.
+     */
+    private static ChannelHandlerContext channel(WebSocketBase socket) {
+        if (!(socket instanceof WebSocketInternal)) {
+            return null;
+        }
+        var channel = ((WebSocketInternal) socket).channelHandlerContext();
+        return channel.executor().inEventLoop() ? channel : null;
+    }
+}
@@ -0,0 +1,20 @@
+package com.igor.roztropinski.webrtc.outbound;
+
+import lombok.Value;
+
+@Value
+public class WriteCoalescing {
+
+    public static final WriteCoalescing DEFAULT = new WriteCoalescing(1_000);
+    public static final WriteCoalescing DISABLED = new WriteCoalescing(0);
+
+    /**
+     * In microseconds, how long written frame can wait for flush, while event loop is busy with other work.
+     * 0 disables coalescing, every frame is flushed at once.
+     */
+    int maxFlushDelay;
+
+    public boolean enabled() {
+        return maxFlushDelay > 0;
+    }
+}
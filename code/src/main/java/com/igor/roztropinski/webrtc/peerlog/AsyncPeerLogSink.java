@@ -0,0 +1,172 @@
+package com.igor.roztropinski.webrtc.peerlog;
+
+import com.igor.roztropinski.webrtc.collection.MpscBoundedQueue;
+import com.igor.roztropinski.webrtc.function.Dates;
+import com.igor.roztropinski.webrtc.metrics.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Takes peer logs off event loops: they only put raw records into a bounded, lock free queue, which a single
+ * background thread drains, formats as json lines and writes in batches to size rotated files.
+ * When writer does not keep up and queue is full, records are dropped (and counted), event loops never wait.
+ * Record is {@code {"at":"<received at>","userId":<id>,"data":<data of the message, as it was sent>}},
+ * data is expected to be a {@link com.igor.roztropinski.webrtc.model.PeerLog}, but it is not parsed.
+ */
+@Slf4j
+public class AsyncPeerLogSink implements PeerLogSink {
+
+    private static final String FILE_PREFIX = "peer-logs";
+    private static final String FILE_SUFFIX = ".jsonl";
+    private static final int BATCH_SIZE = 256 * 1024;
+    private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long DROPS_LOG_FREQUENCY = TimeUnit.SECONDS.toNanos(10);
+
+    private final MpscBoundedQueue<PeerLogRecord> queue;
+    private final RotatingFiles files;
+    private final Metrics metrics;
+    private final Thread writer;
+    private final ByteBuffer batch;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder line = new StringBuilder(1024);
+    private volatile boolean closed;
+    private int batchRecords;
+    private long dropsLoggedAt;
+    private long dropsLogged;
+
+    /**
+     * @param maxFileSize in bytes
+     */
+    public AsyncPeerLogSink(Path dir, long maxFileSize, int maxFiles, int queueCapacity, Metrics metrics) {
+        this.queue = new MpscBoundedQueue<>(queueCapacity);
+        this.files = new RotatingFiles(dir, FILE_PREFIX, FILE_SUFFIX, maxFileSize, maxFiles, Dates.now());
+        this.metrics = metrics;
+        this.batch = ByteBuffer.allocateDirect((int) Math.min(BATCH_SIZE, maxFileSize));
+        this.writer = new Thread(this::write, "peer-logs-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void offer(long userId, String dataJson) {
+        if (closed || !queue.offer(new PeerLogRecord(userId, Dates.clock().millis(), dataJson))) {
+            metrics.onPeerLogDropped();
+        }
+    }
+
+    /**
+     * Writes what is already queued and stops the writer.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write() {
+        while (true) {
+            var record = queue.poll();
+            if (record != null) {
+                append(record);
+                continue;
+            }
+
+            flush();
+            logDrops();
+            if (closed) {
+                //producers may have claimed slots right before closing, wait for them once
+                if (queue.size() > 0) {
+                    continue;
+                }
+                break;
+            }
+            LockSupport.parkNanos(IDLE_WAIT);
+        }
+        files.close();
+        log.info("Peer logs writer has stopped");
+    }
+
+    private void append(PeerLogRecord record) {
+        line.setLength(0);
+        line.append("{\"at\":\"");
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(record.receivedAt()), line);
+        line.append("\",\"userId\":").append(record.userId())
+                .append(",\"data\":");
+        appendSingleLine(record.dataJson());
+        line.append("}\n");
+
+        while (true) {
+            var start = batch.position();
+            encoder.reset();
+            if (!encoder.encode(CharBuffer.wrap(line), batch, true).isOverflow()) {
+                batchRecords++;
+                return;
+            }
+            //records are never split between batches, as batches can go to different files
+            batch.position(start);
+            if (start == 0) {
+                log.warn("Peer log of {} user is bigger than the whole batch, skipping it", record.userId());
+                metrics.onPeerLogDropped();
+                return;
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Data is json as the client sent it, it may be pretty printed. Line breaks can be there only as whitespace
+     * between tokens (strings have them escaped), so replacing them with spaces keeps it the same json, on one line.
+     */
+    private void appendSingleLine(String json) {
+        for (int i = 0; i < json.length(); i++) {
+            var c = json.charAt(i);
+            line.append(c == '\n' || c == '\r' ? ' ' : c);
+        }
+    }
+
+    private void flush() {
+        if (batch.position() == 0) {
+            return;
+        }
+        batch.flip();
+        var bytes = batch.remaining();
+        try {
+            files.write(batch);
+            metrics.onPeerLogsWritten(batchRecords, bytes);
+        } catch (Exception e) {
+            log.error("Failed to write {} peer logs", batchRecords, e);
+            metrics.onPeerLogWriteFailure(batchRecords);
+            files.close();
+        } finally {
+            batch.clear();
+            batchRecords = 0;
+        }
+    }
+
+    private void logDrops() {
+        var now = Dates.monotonicNanos();
+        if (now - dropsLoggedAt < DROPS_LOG_FREQUENCY) {
+            return;
+        }
+        dropsLoggedAt = now;
+        var dropped = metrics.peerLogsDropped();
+        if (dropped > dropsLogged) {
+            log.warn("{} peer logs were dropped, as writer does not keep up with them", dropped - dropsLogged);
+            dropsLogged = dropped;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.igor.roztropinski.webrtc.peerlog;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Logs peer logs as they come, on the calling thread. Meant for embedded servers and tests only,
+ * as logging is synchronous, see {@link AsyncPeerLogSink}.
+ */
+@Slf4j
+public class LoggingPeerLogSink implements PeerLogSink {
+
+    @Override
+    public void offer(long userId, String dataJson) {
+        log.info("Peer log from {} is: {}", userId, dataJson);
+    }
+}
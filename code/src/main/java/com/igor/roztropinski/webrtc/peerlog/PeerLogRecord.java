@@ -0,0 +1,10 @@
+package com.igor.roztropinski.webrtc.peerlog;
+
+import lombok.Value;
+
+@Value
+class PeerLogRecord {
+    long userId;
+    long receivedAt;
+    String dataJson;
+}
@@ -0,0 +1,15 @@
+package com.igor.roztropinski.webrtc.peerlog;
+
+/**
+ * Destination of PEER_LOG messages. Called on event loops, so it must not block them.
+ */
+public interface PeerLogSink {
+
+    /**
+     * @param dataJson raw data of the message, as it was sent by the client
+     */
+    void offer(long userId, String dataJson);
+
+    default void close() {
+    }
+}
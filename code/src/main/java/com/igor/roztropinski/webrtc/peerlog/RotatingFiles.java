@@ -0,0 +1,91 @@
+package com.igor.roztropinski.webrtc.peerlog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.stream.Collectors;
+
+/**
+ * Files of a single writer, rotated when they reach max size. Names are ordered by creation,
+ * so only the newest max files are kept. Not thread safe.
+ */
+@Slf4j
+class RotatingFiles {
+
+    private static final DateTimeFormatter STARTED_AT_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Path dir;
+    private final String prefix;
+    private final String suffix;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final String startedAt;
+    private int index;
+    private FileChannel channel;
+    private long size;
+
+    RotatingFiles(Path dir, String prefix, String suffix, long maxFileSize, int maxFiles, LocalDateTime startedAt) {
+        this.dir = dir;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        this.startedAt = STARTED_AT_FORMAT.format(startedAt);
+    }
+
+    /**
+     * Writes the whole batch to the current file, rotating it first if batch would not fit.
+     * Batch is written as a whole, so records are never split between files.
+     */
+    void write(ByteBuffer batch) throws IOException {
+        if (channel == null || (size > 0 && size + batch.remaining() > maxFileSize)) {
+            rotate();
+        }
+        while (batch.hasRemaining()) {
+            size += channel.write(batch);
+        }
+    }
+
+    void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close {} file", dir, e);
+        }
+        channel = null;
+    }
+
+    private void rotate() throws IOException {
+        close();
+        Files.createDirectories(dir);
+        var file = dir.resolve(String.format("%s-%s-%04d%s", prefix, startedAt, index++, suffix));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+        log.info("Writing to {} file", file);
+        removeOldest();
+    }
+
+    private void removeOldest() throws IOException {
+        try (var files = Files.list(dir)) {
+            var ours = files.filter(f -> {
+                var name = f.getFileName().toString();
+                return name.startsWith(prefix) && name.endsWith(suffix);
+            }).sorted().collect(Collectors.toList());
+            for (int i = 0; i < ours.size() - maxFiles; i++) {
+                log.info("Removing the oldest {} file", ours.get(i));
+                Files.deleteIfExists(ours.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.igor.roztropinski.webrtc.room;
+
+import lombok.Value;
+
+/**
+ * Net changes of room members between two versions.
+ * Members that have joined (or asked for it again) in between get full snapshot instead.
+ */
+@Value
+public class RoomNotification {
+    String roomId;
+    long fromVersion;
+    long version;
+    long[] members;
+    long[] joined;
+    long[] left;
+    long[] snapshotRecipients;
+}
@@ -0,0 +1,246 @@
+package com.igor.roztropinski.webrtc.room;
+
+import com.igor.roztropinski.webrtc.collection.LongSet;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Rooms owned by a single shard (event loop). Every room is owned by exactly one shard on every node and all its
+ * membership changes are executed there, one after another, so they are atomic and versioned: every change of members
+ * increments room version. Changes are not broadcasted one by one, they are collected until {@link #flush(String)},
+ * which returns them as a single, net notification (member that joined and left in between is not there at all).
+ * Members that have just joined get full snapshot instead. Empty rooms are removed. Not thread safe.
+ * In a cluster, room members are partitioned by nodes: members connected to this node are local,
+ * members of other nodes are their partitions, replicated here as they are. Every node is the only writer
+ * of its partition, so partitions never conflict and room members are their union.
+ */
+public class Rooms {
+
+    public static final String DEFAULT_ROOM = "default";
+    public static final int MAX_ROOM_ID_LENGTH = 64;
+
+    private final Map<String, Room> rooms = new HashMap<>();
+
+    public static boolean isValidId(String roomId) {
+        return roomId != null && !roomId.isBlank() && roomId.length() <= MAX_ROOM_ID_LENGTH;
+    }
+
+    /**
+     * Member gets room snapshot on the next flush, even if it already was a member.
+     *
+     * @return true, if local members have changed
+     */
+    public boolean join(String roomId, long member) {
+        var room = rooms.computeIfAbsent(roomId, k -> new Room());
+        room.snapshotRecipients.add(member);
+        room.pending = true;
+        if (!room.local.add(member)) {
+            return false;
+        }
+        //user reconnecting to this node might still be in partition of the other one
+        if (!room.inPartitions(member)) {
+            room.onJoined(member);
+        }
+        return true;
+    }
+
+    /**
+     * @return true, if local members have changed
+     */
+    public boolean leave(String roomId, long member) {
+        var room = rooms.get(roomId);
+        if (room == null || !room.local.remove(member)) {
+            return false;
+        }
+        room.snapshotRecipients.remove(member);
+        if (!room.inPartitions(member)) {
+            room.onLeft(member);
+        }
+        removeIfEmpty(roomId, room);
+        return true;
+    }
+
+    /**
+     * Replaces members of the room connected to other node.
+     *
+     * @return true, if room members have changed
+     */
+    public boolean partition(String roomId, String node, long[] members) {
+        if (members.length == 0 && !rooms.containsKey(roomId)) {
+            return false;
+        }
+        var room = rooms.computeIfAbsent(roomId, k -> new Room());
+
+        var previous = room.partitions.remove(node);
+        var current = new LongSet(members.length);
+        for (var m : members) {
+            current.add(m);
+        }
+        if (!current.isEmpty()) {
+            room.partitions.put(node, current);
+        }
+
+        var versionBefore = room.version;
+        for (var m : members) {
+            if ((previous == null || !previous.contains(m)) && !room.local.contains(m) && !room.inPartitions(node, m)) {
+                room.onJoined(m);
+            }
+        }
+        if (previous != null) {
+            previous.forEach(m -> {
+                if (!current.contains(m) && !room.contains(m)) {
+                    room.onLeft(m);
+                }
+            });
+        }
+        removeIfEmpty(roomId, room);
+        return room.version != versionBefore;
+    }
+
+    /**
+     * Removes partitions of the node that has left the cluster.
+     *
+     * @return ids of rooms that have changed
+     */
+    public List<String> removeNode(String node) {
+        var changed = new ArrayList<String>();
+        for (var it = rooms.entrySet().iterator(); it.hasNext(); ) {
+            var e = it.next();
+            var room = e.getValue();
+            var partition = room.partitions.remove(node);
+            if (partition == null) {
+                continue;
+            }
+            var versionBefore = room.version;
+            partition.forEach(m -> {
+                if (!room.contains(m)) {
+                    room.onLeft(m);
+                }
+            });
+            if (room.version != versionBefore) {
+                changed.add(e.getKey());
+            }
+            if (room.isEmpty()) {
+                it.remove();
+            }
+        }
+        return changed;
+    }
+
+    public boolean isPending(String roomId) {
+        var room = rooms.get(roomId);
+        return room != null && room.pending;
+    }
+
+    /**
+     * Takes changes collected since the previous flush.
+     */
+    public Optional<RoomNotification> flush(String roomId) {
+        var room = rooms.get(roomId);
+        if (room == null || !room.pending) {
+            return Optional.empty();
+        }
+        var notification = new RoomNotification(roomId, room.flushedVersion, room.version, room.members(),
+                room.joined.toArray(), room.left.toArray(), room.snapshotRecipients.toArray());
+        room.flushed();
+        return Optional.of(notification);
+    }
+
+    public long[] members(String roomId) {
+        var room = rooms.get(roomId);
+        return room == null ? new long[0] : room.members();
+    }
+
+    public long[] localMembers(String roomId) {
+        var room = rooms.get(roomId);
+        return room == null ? new long[0] : room.local.toArray();
+    }
+
+    public void forEachLocal(BiConsumer<String, long[]> consumer) {
+        rooms.forEach((id, room) -> {
+            if (!room.local.isEmpty()) {
+                consumer.accept(id, room.local.toArray());
+            }
+        });
+    }
+
+    public int size() {
+        return rooms.size();
+    }
+
+    private void removeIfEmpty(String roomId, Room room) {
+        if (room.isEmpty()) {
+            rooms.remove(roomId);
+        }
+    }
+
+    private static class Room {
+
+        final LongSet local = new LongSet();
+        final Map<String, LongSet> partitions = new HashMap<>();
+        final LongSet joined = new LongSet();
+        final LongSet left = new LongSet();
+        final LongSet snapshotRecipients = new LongSet();
+        long version;
+        long flushedVersion;
+        boolean pending;
+
+        boolean isEmpty() {
+            return local.isEmpty() && partitions.isEmpty();
+        }
+
+        boolean contains(long member) {
+            return local.contains(member) || inPartitions(member);
+        }
+
+        boolean inPartitions(long member) {
+            return inPartitions(null, member);
+        }
+
+        boolean inPartitions(String exceptNode, long member) {
+            for (var p : partitions.entrySet()) {
+                if (!p.getKey().equals(exceptNode) && p.getValue().contains(member)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void onJoined(long member) {
+            version++;
+            if (!left.remove(member)) {
+                joined.add(member);
+            }
+            pending = true;
+        }
+
+        void onLeft(long member) {
+            version++;
+            if (!joined.remove(member)) {
+                left.add(member);
+            }
+            pending = true;
+        }
+
+        void flushed() {
+            joined.clear();
+            left.clear();
+            snapshotRecipients.clear();
+            flushedVersion = version;
+            pending = false;
+        }
+
+        long[] members() {
+            if (partitions.isEmpty()) {
+                return local.toArray();
+            }
+            var all = new LongSet(local.size() * 2);
+            local.forEach(all::add);
+            for (var p : partitions.values()) {
+                p.forEach(all::add);
+            }
+            return all.toArray();
+        }
+    }
+}
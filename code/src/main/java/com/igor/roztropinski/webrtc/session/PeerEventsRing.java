@@ -0,0 +1,55 @@
+package com.igor.roztropinski.webrtc.session;
+
+import com.igor.roztropinski.webrtc.wire.RelayedPeerEvent;
+
+import java.util.function.Consumer;
+
+/**
+ * Bounded buffer of peer events, keeping the latest ones: when full, the oldest event is overwritten.
+ * Events are kept in the form they were received in, resuming connection might speak other format than the lost one.
+ * Not thread safe.
+ */
+public class PeerEventsRing {
+
+    private final RelayedPeerEvent[] events;
+    private int head;
+    private int size;
+
+    public PeerEventsRing(int capacity) {
+        this.events = new RelayedPeerEvent[capacity];
+    }
+
+    /**
+     * @return true, if the oldest event was overwritten to make room for this one
+     */
+    public boolean add(RelayedPeerEvent event) {
+        if (events.length == 0) {
+            return true;
+        }
+        var tail = (head + size) % events.length;
+        events[tail] = event;
+        if (size < events.length) {
+            size++;
+            return false;
+        }
+        head = (head + 1) % events.length;
+        return true;
+    }
+
+    /**
+     * Passes events from the oldest to the newest one and clears the buffer.
+     */
+    public void drain(Consumer<RelayedPeerEvent> consumer) {
+        for (int i = 0; i < size; i++) {
+            var idx = (head + i) % events.length;
+            consumer.accept(events[idx]);
+            events[idx] = null;
+        }
+        head = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,23 @@
+package com.igor.roztropinski.webrtc.session;
+
+import lombok.Value;
+
+@Value
+public class SessionOptions {
+
+    public static final SessionOptions DEFAULT = new SessionOptions(15_000, 128);
+    public static final SessionOptions DISABLED = new SessionOptions(0, 0);
+
+    /**
+     * In milliseconds, how long session of a user, whose connection was lost, can be resumed. 0 disables resumption.
+     */
+    int gracePeriod;
+    /**
+     * How many of the latest peer events, sent to the user in the meantime, are kept for it.
+     */
+    int bufferedPeerEvents;
+
+    public boolean enabled() {
+        return gracePeriod > 0;
+    }
+}
@@ -0,0 +1,40 @@
+package com.igor.roztropinski.webrtc.session;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Tokens of resumable sessions: shard that keeps the session and random, unguessable part,
+ * so that resuming connection knows where to look for it, without any shared map.
+ */
+public class SessionTokens {
+
+    private static final int RANDOM_BYTES = 24;
+    private static final char SEPARATOR = '.';
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    public static String generate(int shard) {
+        var bytes = new byte[RANDOM_BYTES];
+        RANDOM.nextBytes(bytes);
+        return shard + String.valueOf(SEPARATOR) + ENCODER.encodeToString(bytes);
+    }
+
+    /**
+     * @return shard of the token, or -1, if it is not a valid token
+     */
+    public static int shard(String token) {
+        if (token == null) {
+            return -1;
+        }
+        var separator = token.indexOf(SEPARATOR);
+        if (separator <= 0 || separator > 5) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(token, 0, separator, 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
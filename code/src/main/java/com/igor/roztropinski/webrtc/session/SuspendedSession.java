@@ -0,0 +1,53 @@
+package com.igor.roztropinski.webrtc.session;
+
+import com.igor.roztropinski.webrtc.auth.AuthenticatedUser;
+import com.igor.roztropinski.webrtc.timer.TimerWheel;
+
+/**
+ * Session of a lost connection: its user, room and the latest peer events sent to the user in the meantime.
+ * Sequence is the one of the lost connection, or of the resuming one, if it was closed before the session was resumed.
+ */
+public class SuspendedSession {
+
+    private final AuthenticatedUser user;
+    private final long sequence;
+    private final String token;
+    private final String roomId;
+    private final PeerEventsRing events;
+    TimerWheel.Timeout timeout;
+
+    /**
+     * @param roomId null, if the user was not a member of any
+     */
+    public SuspendedSession(AuthenticatedUser user, long sequence, String token, String roomId, PeerEventsRing events) {
+        this.user = user;
+        this.sequence = sequence;
+        this.token = token;
+        this.roomId = roomId;
+        this.events = events;
+    }
+
+    public AuthenticatedUser user() {
+        return user;
+    }
+
+    public long userId() {
+        return user.userId();
+    }
+
+    public long sequence() {
+        return sequence;
+    }
+
+    public String token() {
+        return token;
+    }
+
+    public String roomId() {
+        return roomId;
+    }
+
+    public PeerEventsRing events() {
+        return events;
+    }
+}
@@ -0,0 +1,112 @@
+package com.igor.roztropinski.webrtc.session;
+
+import com.igor.roztropinski.webrtc.collection.LongMap;
+import com.igor.roztropinski.webrtc.function.Dates;
+import com.igor.roztropinski.webrtc.metrics.Metrics;
+import com.igor.roztropinski.webrtc.metrics.SessionEvent;
+import com.igor.roztropinski.webrtc.timer.TimerWheel;
+import com.igor.roztropinski.webrtc.wire.RelayedPeerEvent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Suspended sessions of a shard, by user and by token. Session waits to be resumed for the grace period of
+ * {@link SessionOptions}, buffering peer events sent to its user, and then expires.
+ * Owned by event loop of its shard, not thread safe.
+ */
+@Slf4j
+public class SuspendedSessions {
+
+    private final LongMap<SuspendedSession> users = new LongMap<>();
+    private final Map<String, SuspendedSession> tokens = new HashMap<>();
+    private final SessionOptions options;
+    private final long gracePeriod;
+    private final TimerWheel timeouts;
+    private final Metrics metrics;
+    private final Consumer<SuspendedSession> onExpired;
+
+    /**
+     * @param timeouts  of the shard
+     * @param onExpired called with session that was not resumed in time, after it is removed
+     */
+    public SuspendedSessions(SessionOptions options, TimerWheel timeouts, Metrics metrics,
+                             Consumer<SuspendedSession> onExpired) {
+        this.options = options;
+        this.gracePeriod = TimeUnit.MILLISECONDS.toNanos(options.gracePeriod());
+        this.timeouts = timeouts;
+        this.metrics = metrics;
+        this.onExpired = onExpired;
+    }
+
+    public void suspend(SuspendedSession session) {
+        session.timeout = timeouts.schedule(Dates.monotonicNanos() + gracePeriod, () -> expire(session));
+        users.put(session.userId(), session);
+        tokens.put(session.token(), session);
+        metrics.onSession(SessionEvent.SUSPENDED);
+        log.info("Session of {} user is suspended, it can be resumed within {} ms", session.userId(),
+                options.gracePeriod());
+    }
+
+    private void expire(SuspendedSession session) {
+        if (users.get(session.userId()) != session) {
+            return;
+        }
+        log.info("Session of {} user was not resumed in time, user has left", session.userId());
+        remove(session.userId());
+        metrics.onSession(SessionEvent.EXPIRED);
+        onExpired.accept(session);
+    }
+
+    /**
+     * @return null, if the user has no suspended session
+     */
+    public SuspendedSession get(long userId) {
+        return users.get(userId);
+    }
+
+    /**
+     * @return removed session, or null if the user had none
+     */
+    public SuspendedSession remove(long userId) {
+        var session = users.remove(userId);
+        if (session != null) {
+            tokens.remove(session.token());
+            session.timeout.cancel();
+        }
+        return session;
+    }
+
+    /**
+     * Removes session, so that it is resumed only once.
+     *
+     * @return null, if there is no session of this token
+     */
+    public SuspendedSession claim(String token) {
+        var session = tokens.get(token);
+        return session == null ? null : remove(session.userId());
+    }
+
+    /**
+     * @return false, if the user has no suspended session
+     */
+    public boolean buffer(long userId, RelayedPeerEvent event) {
+        var session = users.get(userId);
+        if (session == null) {
+            return false;
+        }
+        metrics.onBufferedPeerEvent(session.events().add(event));
+        return true;
+    }
+
+    public void forEach(Consumer<SuspendedSession> consumer) {
+        users.forEachValue(consumer);
+    }
+
+    public int size() {
+        return users.size();
+    }
+}
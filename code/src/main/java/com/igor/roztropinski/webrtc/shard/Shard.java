@@ -0,0 +1,67 @@
+package com.igor.roztropinski.webrtc.shard;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Single event loop with the state it owns. Other event loops never touch that state directly, they pass messages
+ * (tasks) to it instead. Tasks go through Netty event loop task queue, which is a lock-free, multi producer single consumer queue,
+ * and are executed in order of submission, per producer.
+ */
+public class Shard<T> {
+
+    private final int index;
+    private volatile Context context;
+    private volatile T owner;
+
+    Shard(int index) {
+        this.index = index;
+    }
+
+    void register(Context context, T owner) {
+        this.context = context;
+        this.owner = owner;
+    }
+
+    public int index() {
+        return index;
+    }
+
+    public T owner() {
+        return owner;
+    }
+
+    public boolean isCurrent() {
+        return context != null && Vertx.currentContext() == context;
+    }
+
+    public void execute(Runnable task) {
+        context.runOnContext(v -> task.run());
+    }
+
+    /**
+     * Calls task with the owner, on its event loop. Result fails, if task throws or it has not completed
+     * within timeout (in milliseconds), with {@link TimeoutException}, as the event loop is blocked.
+     */
+    public <R> Future<R> call(Function<T, R> task, long timeout) {
+        var promise = Promise.<R>promise();
+        var vertx = context.owner();
+        var timer = vertx.setTimer(timeout, t -> promise.tryFail(
+                new TimeoutException(String.format("%d shard has not responded in %d ms", index, timeout))));
+        execute(() -> {
+            try {
+                promise.tryComplete(task.apply(owner));
+            } catch (Exception e) {
+                promise.tryFail(e);
+            } finally {
+                vertx.cancelTimer(timer);
+            }
+        });
+        return promise.future();
+    }
+}
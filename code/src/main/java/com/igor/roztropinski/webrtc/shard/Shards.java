@@ -0,0 +1,122 @@
+package com.igor.roztropinski.webrtc.shard;
+
+import com.igor.roztropinski.webrtc.collection.Hashing;
+import com.igor.roztropinski.webrtc.function.Dates;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Fixed set of shards, one per event loop. Keys (users, rooms) are assigned to shards by their hash.
+ * It also holds state of the node shared by all of its shards: sequence clock and directory of users.
+ */
+public class Shards<T> {
+
+    private static final int DIRECTORY_STRIPES_PER_SHARD = 16;
+
+    private final List<Shard<T>> shards;
+    private final AtomicInteger registered = new AtomicInteger();
+    private final Promise<Void> allRegistered = Promise.promise();
+    private final AtomicLong sequence = new AtomicLong();
+    private final UserDirectory directory;
+
+    public Shards(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("There must be at least one shard");
+        }
+        var shards = new ArrayList<Shard<T>>(count);
+        for (int i = 0; i < count; i++) {
+            shards.add(new Shard<>(i));
+        }
+        this.shards = Collections.unmodifiableList(shards);
+        this.directory = new UserDirectory(count * DIRECTORY_STRIPES_PER_SHARD);
+    }
+
+    public static <T> Shards<T> single() {
+        return new Shards<>(1);
+    }
+
+    /**
+     * Must be called on the event loop of the given shard.
+     */
+    public void register(int index, Context context, T owner) {
+        shards.get(index).register(context, owner);
+        if (registered.incrementAndGet() == shards.size()) {
+            allRegistered.complete();
+        }
+    }
+
+    /**
+     * Shards can pass messages to each other only when all of them are registered.
+     */
+    public Future<Void> allRegistered() {
+        return allRegistered.future();
+    }
+
+    public int count() {
+        return shards.size();
+    }
+
+    public Shard<T> shard(int index) {
+        return shards.get(index);
+    }
+
+    public List<Shard<T>> all() {
+        return shards;
+    }
+
+    /**
+     * Calls task with owners of all shards, on their event loops, see {@link Shard#call(Function, long)}.
+     *
+     * @return results in order of shards
+     */
+    public <R> Future<List<R>> callAll(Function<T, R> task, long timeout) {
+        var futures = new ArrayList<Future>(shards.size());
+        for (var s : shards) {
+            futures.add(s.call(task, timeout));
+        }
+        return CompositeFuture.all(futures).map(CompositeFuture::list);
+    }
+
+    public UserDirectory directory() {
+        return directory;
+    }
+
+    public Shard<T> ofKey(long key) {
+        return shards.get(Math.floorMod(Hashing.mix(key), shards.size()));
+    }
+
+    public Shard<T> ofKey(Object key) {
+        return shards.get(Math.floorMod(key.hashCode(), shards.size()));
+    }
+
+    /**
+     * Increasing sequence, used to order events concerning the same key, but coming from different shards and nodes.
+     * It is a hybrid logical clock: it follows wall clock (in microseconds), but never goes below sequences
+     * observed from other nodes, see {@link #observeSequence(long)}. So an event caused by, or following, an observed
+     * one is always ordered after it, whatever the clock skew between nodes. Sequences are unique within a node only,
+     * equal sequences of different nodes are ordered by node ids, see {@link UserLocation#isAfter(UserLocation)}.
+     */
+    public long nextSequence() {
+        var now = TimeUnit.MILLISECONDS.toMicros(Dates.clock().millis());
+        return sequence.accumulateAndGet(now, (last, n) -> Math.max(last + 1, n));
+    }
+
+    /**
+     * Raises the sequence to the one received from another node, so that next sequences are ordered after it.
+     */
+    public void observeSequence(long observed) {
+        if (sequence.get() < observed) {
+            sequence.accumulateAndGet(observed, Math::max);
+        }
+    }
+}
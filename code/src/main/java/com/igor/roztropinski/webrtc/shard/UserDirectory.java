@@ -0,0 +1,94 @@
+package com.igor.roztropinski.webrtc.shard;
+
+import com.igor.roztropinski.webrtc.collection.Hashing;
+import com.igor.roztropinski.webrtc.collection.LongMap;
+
+/**
+ * Locations of users of the whole cluster, one directory per node, shared by all of its shards.
+ * It is partitioned by user id into stripes, each guarded by its own lock, so shards looking up
+ * and updating different users rarely wait for each other.
+ */
+public class UserDirectory {
+
+    private static final int MAX_STRIPES = 256;
+
+    private final LongMap<UserLocation>[] stripes;
+    private final int mask;
+
+    @SuppressWarnings("unchecked")
+    public UserDirectory(int stripes) {
+        var count = 1;
+        while (count < Math.min(stripes, MAX_STRIPES)) {
+            count <<= 1;
+        }
+        this.stripes = new LongMap[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new LongMap<>();
+        }
+        this.mask = count - 1;
+    }
+
+    /**
+     * @return location of the user, null if it is not connected
+     */
+    public UserLocation get(long userId) {
+        var stripe = stripe(userId);
+        synchronized (stripe) {
+            return stripe.get(userId);
+        }
+    }
+
+    /**
+     * Sets location of the user, unless the current one is after it.
+     *
+     * @return location of the user before this call, null if there was none
+     */
+    public UserLocation connect(long userId, UserLocation location) {
+        var stripe = stripe(userId);
+        synchronized (stripe) {
+            var current = stripe.get(userId);
+            if (current == null || !current.isAfter(location)) {
+                stripe.put(userId, location);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Removes location of the user, only if it is still of the given connection.
+     */
+    public void disconnect(long userId, String node, long sequence) {
+        var stripe = stripe(userId);
+        synchronized (stripe) {
+            var current = stripe.get(userId);
+            if (current != null && current.sequence() == sequence && current.node().equals(node)) {
+                stripe.remove(userId);
+            }
+        }
+    }
+
+    public void removeNode(String node) {
+        for (var stripe : stripes) {
+            synchronized (stripe) {
+                stripe.removeIf(l -> l.node().equals(node));
+            }
+        }
+    }
+
+    public int size() {
+        var size = 0;
+        for (var stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Top bits of the hash, low ones pick slots within the stripe map.
+     */
+    private LongMap<UserLocation> stripe(long userId) {
+        return stripes[(Hashing.mix(userId) >>> 24) & mask];
+    }
+}
@@ -0,0 +1,25 @@
+package com.igor.roztropinski.webrtc.shard;
+
+import lombok.Value;
+
+/**
+ * Node and its shard on which user connection lives. Sequence orders connections of the same user,
+ * so that late messages about the previous connection never override location of the current one.
+ */
+@Value
+public class UserLocation {
+    String node;
+    int shard;
+    long sequence;
+
+    public boolean isAfter(UserLocation other) {
+        return isAfter(other.node, other.sequence);
+    }
+
+    /**
+     * Sequences are unique within a node only, so equal sequences of different nodes are ordered by node ids.
+     */
+    public boolean isAfter(String otherNode, long otherSequence) {
+        return sequence > otherSequence || (sequence == otherSequence && node.compareTo(otherNode) > 0);
+    }
+}
@@ -0,0 +1,25 @@
+package com.igor.roztropinski.webrtc.telemetry;
+
+import java.util.Locale;
+
+/**
+ * Types of ICE candidates, as reported by getStats(); relayed connections cost TURN traffic.
+ */
+public enum CandidateType {
+    HOST, SRFLX, PRFLX, RELAY, UNKNOWN;
+
+    public static CandidateType of(String type) {
+        if (type != null) {
+            for (var t : values()) {
+                if (t.name().equalsIgnoreCase(type)) {
+                    return t;
+                }
+            }
+        }
+        return UNKNOWN;
+    }
+
+    public String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,67 @@
+package com.igor.roztropinski.webrtc.telemetry;
+
+import com.igor.roztropinski.webrtc.media.QualityAdvisor;
+import com.igor.roztropinski.webrtc.model.MediaQuality;
+import com.igor.roztropinski.webrtc.model.MediaStats;
+import com.igor.roztropinski.webrtc.model.PeerStats;
+
+import java.util.Optional;
+
+/**
+ * What a single client reports: its network conditions (MEDIA_STATS), for which it is advised video quality
+ * by {@link QualityAdvisor}, and summaries of its peer connections (PEER_STATS), kept in {@link StatsRing}
+ * and aggregated by shard {@link PeerStatsAggregator}. Allocated on the first report, legacy clients never send them.
+ * Not thread safe.
+ */
+public class ClientTelemetry {
+
+    static final int MAX_PEER_STATS = 64;
+
+    private MediaStats mediaStats;
+    private MediaQuality quality;
+    private StatsRing stats;
+
+    public void onMediaStats(MediaStats mediaStats) {
+        this.mediaStats = mediaStats;
+    }
+
+    /**
+     * At most {@link #MAX_PEER_STATS} of a single report are recorded.
+     *
+     * @param roomId of the client, null if it is not a member of any
+     * @param now    in monotonic milliseconds
+     */
+    public void onPeerStats(PeerStats[] peerStats, String roomId, PeerStatsAggregator shardStats, long now) {
+        if (stats == null) {
+            stats = new StatsRing();
+        }
+        for (int i = 0; i < Math.min(peerStats.length, MAX_PEER_STATS); i++) {
+            if (peerStats[i] != null) {
+                shardStats.record(roomId, peerStats[i], now);
+                stats.record(now, peerStats[i]);
+            }
+        }
+    }
+
+    /**
+     * Advice is given only to clients that report media stats, legacy ones would not know what to do with it.
+     *
+     * @return advice, only if it differs enough from the previous one
+     */
+    public Optional<MediaQuality> advise(int roomSize) {
+        if (mediaStats == null) {
+            return Optional.empty();
+        }
+        return QualityAdvisor.advise(roomSize, mediaStats)
+                .filter(q -> QualityAdvisor.isWorthSending(quality, q))
+                .map(q -> quality = q);
+    }
+
+    /**
+     * @param now in monotonic milliseconds
+     * @return null, if the client has not reported peer stats
+     */
+    public StatsSnapshot snapshot(long now) {
+        return stats == null ? null : stats.snapshot(now);
+    }
+}
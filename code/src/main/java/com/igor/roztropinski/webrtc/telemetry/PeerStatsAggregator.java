@@ -0,0 +1,63 @@
+package com.igor.roztropinski.webrtc.telemetry;
+
+import com.igor.roztropinski.webrtc.model.PeerStats;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rolling peer stats of a single shard, globally and per room of the reporting user. Rooms are kept only while
+ * they report, idle ones are removed by {@link #prune(long)}. Merged across shards when queried.
+ * Owned by event loop of its shard, not thread safe.
+ */
+public class PeerStatsAggregator {
+
+    private final RollingStats global = new RollingStats();
+    private final Map<String, RollingStats> rooms = new HashMap<>();
+
+    /**
+     * @param roomId of the reporting user, null if it is not a member of any
+     * @param now    in monotonic milliseconds
+     */
+    public void record(String roomId, PeerStats stats, long now) {
+        global.record(now, stats);
+        if (roomId != null) {
+            rooms.computeIfAbsent(roomId, k -> new RollingStats()).record(now, stats);
+        }
+    }
+
+    public void prune(long now) {
+        rooms.values().removeIf(r -> r.isIdle(now));
+    }
+
+    public StatsSnapshot global(long now) {
+        var snapshot = new StatsSnapshot();
+        global.mergeInto(snapshot, now);
+        return snapshot;
+    }
+
+    /**
+     * @return null, if the room has not reported within the window
+     */
+    public StatsSnapshot room(String roomId, long now) {
+        var room = rooms.get(roomId);
+        if (room == null || room.isIdle(now)) {
+            return null;
+        }
+        var snapshot = new StatsSnapshot();
+        room.mergeInto(snapshot, now);
+        return snapshot;
+    }
+
+    public Map<String, StatsSnapshot> rooms(long now) {
+        var snapshots = new HashMap<String, StatsSnapshot>();
+        rooms.forEach((id, room) -> {
+            if (!room.isIdle(now)) {
+                var snapshot = new StatsSnapshot();
+                room.mergeInto(snapshot, now);
+                snapshots.put(id, snapshot);
+            }
+        });
+        return snapshots;
+    }
+}
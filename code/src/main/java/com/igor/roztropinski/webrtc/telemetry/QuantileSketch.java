@@ -0,0 +1,77 @@
+package com.igor.roztropinski.webrtc.telemetry;
+
+import java.util.Arrays;
+
+/**
+ * Counts of non negative integers in logarithmic buckets, so quantiles have bounded relative error
+ * (about {@link #RELATIVE_ERROR}) and memory is fixed, whatever the count and range of values are.
+ * Sketches of the same shape can be merged, which is how rolling windows and shards are combined. Not thread safe.
+ */
+public class QuantileSketch {
+
+    static final double RELATIVE_ERROR = 0.1;
+    private static final double GAMMA = (1 + RELATIVE_ERROR) / (1 - RELATIVE_ERROR);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    //0 has its own bucket, the last one takes all values over about 2^20
+    private static final int BUCKETS = 2 + (int) Math.ceil(Math.log(1 << 20) / LOG_GAMMA);
+
+    private final int[] counts = new int[BUCKETS];
+    private long count;
+
+    public void add(int value) {
+        counts[bucket(value)]++;
+        count++;
+    }
+
+    public void merge(QuantileSketch other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        count = 0;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @param quantile from 0 to 1
+     * @return approximate value, 0 if there are no values
+     */
+    public double quantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        var rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(rank, 1)) {
+                return value(i);
+            }
+        }
+        return value(BUCKETS - 1);
+    }
+
+    private static int bucket(int value) {
+        if (value <= 0) {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, 1 + (int) (Math.log(value) / LOG_GAMMA));
+    }
+
+    /**
+     * Middle of the bucket, so that its error is relative in both directions.
+     */
+    private static double value(int bucket) {
+        if (bucket == 0) {
+            return 0;
+        }
+        return 2 * Math.pow(GAMMA, bucket) / (GAMMA + 1);
+    }
+}
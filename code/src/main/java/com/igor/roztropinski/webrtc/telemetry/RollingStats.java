@@ -0,0 +1,62 @@
+package com.igor.roztropinski.webrtc.telemetry;
+
+import com.igor.roztropinski.webrtc.model.PeerStats;
+
+/**
+ * Peer stats of the last {@link #WINDOW} milliseconds, in a ring of {@link #SLOTS} snapshots: every slot covers
+ * its part of the window and is cleared when it is reused, so memory is fixed and old stats fall out
+ * a slot at a time. Monotonic time has an arbitrary origin, it can be negative, so epochs are floored.
+ * Not thread safe.
+ */
+public class RollingStats {
+
+    public static final long WINDOW = 60_000;
+    static final int SLOTS = 6;
+    private static final long SLOT_DURATION = WINDOW / SLOTS;
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final StatsSnapshot[] slots = new StatsSnapshot[SLOTS];
+    private final long[] epochs = new long[SLOTS];
+    private long lastEpoch = NEVER;
+
+    public RollingStats() {
+        for (int i = 0; i < SLOTS; i++) {
+            slots[i] = new StatsSnapshot();
+            epochs[i] = NEVER;
+        }
+    }
+
+    /**
+     * @param now in monotonic milliseconds
+     */
+    public void record(long now, PeerStats stats) {
+        var epoch = Math.floorDiv(now, SLOT_DURATION);
+        var slot = (int) Math.floorMod(epoch, SLOTS);
+        if (epochs[slot] != epoch) {
+            epochs[slot] = epoch;
+            slots[slot].clear();
+        }
+        slots[slot].add(stats);
+        lastEpoch = epoch;
+    }
+
+    public void mergeInto(StatsSnapshot snapshot, long now) {
+        var epoch = Math.floorDiv(now, SLOT_DURATION);
+        for (int i = 0; i < SLOTS; i++) {
+            if (isCurrent(epochs[i], epoch)) {
+                snapshot.merge(slots[i]);
+            }
+        }
+    }
+
+    /**
+     * @return true, if nothing was recorded within the window
+     */
+    public boolean isIdle(long now) {
+        return !isCurrent(lastEpoch, Math.floorDiv(now, SLOT_DURATION));
+    }
+
+    private static boolean isCurrent(long slotEpoch, long epoch) {
+        return slotEpoch != NEVER && epoch - slotEpoch < SLOTS;
+    }
+}
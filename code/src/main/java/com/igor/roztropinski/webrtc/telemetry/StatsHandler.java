@@ -0,0 +1,155 @@
+package com.igor.roztropinski.webrtc.telemetry;
+
+import com.igor.roztropinski.webrtc.SignalingServer;
+import com.igor.roztropinski.webrtc.json.JsonMapper;
+import com.igor.roztropinski.webrtc.metrics.MetricsHandler;
+import com.igor.roztropinski.webrtc.shard.Shards;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.ext.web.RoutingContext;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Serves rolling peer stats of the node, as json: global ones with the worst rooms ({@link #ROUTE}, sorted by share
+ * of relayed connections or, with sort=loss, by p95 of packet loss), of a single room ({@link #ROOM_ROUTE})
+ * and of a single user connected to this node ({@link #USER_ROUTE}). Stats are snapshotted on event loops of all shards
+ * and merged, as {@link com.igor.roztropinski.webrtc.metrics.MetricsHandler} does with metrics, with the same
+ * deadline: request fails with 503, if any shard does not respond in time.
+ */
+@Slf4j
+public class StatsHandler {
+
+    public static final String ROUTE = "/stats";
+    public static final String ROOM_ROUTE = "/stats/rooms/:roomId";
+    public static final String USER_ROUTE = "/stats/users/:userId";
+    private static final String ROOM_ID = "roomId";
+    private static final String USER_ID = "userId";
+    private static final String LIMIT = "limit";
+    private static final String SORT = "sort";
+    private static final String SORT_BY_LOSS = "loss";
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 1000;
+    private static final String CONTENT_TYPE = "application/json";
+
+    private final Shards<SignalingServer> shards;
+
+    public StatsHandler(Shards<SignalingServer> shards) {
+        this.shards = shards;
+    }
+
+    public Handler<RoutingContext> node() {
+        return context -> {
+            int limit;
+            try {
+                var limitParam = context.request().getParam(LIMIT);
+                limit = limitParam == null ? DEFAULT_LIMIT : Math.min(MAX_LIMIT, Integer.parseInt(limitParam));
+            } catch (NumberFormatException e) {
+                context.response().setStatusCode(400).end();
+                return;
+            }
+            var byLoss = SORT_BY_LOSS.equals(context.request().getParam(SORT));
+
+            var global = onShards(SignalingServer::globalPeerStats).map(StatsHandler::merged);
+            var rooms = onShards(SignalingServer::roomsPeerStats).map(StatsHandler::mergedRooms);
+            CompositeFuture.all(global, rooms)
+                    .map(r -> new NodeStats(global.result().summary(), worstRooms(rooms.result(), byLoss, limit)))
+                    .onComplete(r -> respond(context, r));
+        };
+    }
+
+    public Handler<RoutingContext> room() {
+        return context -> {
+            var roomId = context.pathParam(ROOM_ID);
+            onShards(s -> s.roomPeerStats(roomId))
+                    .map(StatsHandler::merged)
+                    .map(s -> s.samples() == 0 ? null : s.summary())
+                    .onComplete(r -> respond(context, r));
+        };
+    }
+
+    public Handler<RoutingContext> user() {
+        return context -> {
+            long userId;
+            try {
+                userId = Long.parseLong(context.pathParam(USER_ID));
+            } catch (NumberFormatException e) {
+                context.response().setStatusCode(400).end();
+                return;
+            }
+            onShards(s -> s.userPeerStats(userId))
+                    .map(StatsHandler::merged)
+                    .map(s -> s.samples() == 0 ? null : s.summary())
+                    .onComplete(r -> respond(context, r));
+        };
+    }
+
+    private <T> Future<List<T>> onShards(Function<SignalingServer, T> snapshot) {
+        return shards.callAll(snapshot, MetricsHandler.SHARDS_TIMEOUT);
+    }
+
+    private static StatsSnapshot merged(List<StatsSnapshot> snapshots) {
+        var merged = new StatsSnapshot();
+        snapshots.stream().filter(Objects::nonNull).forEach(merged::merge);
+        return merged;
+    }
+
+    private static Map<String, StatsSnapshot> mergedRooms(List<Map<String, StatsSnapshot>> shardsRooms) {
+        var merged = new HashMap<String, StatsSnapshot>();
+        for (var rooms : shardsRooms) {
+            rooms.forEach((id, s) -> merged.computeIfAbsent(id, k -> new StatsSnapshot()).merge(s));
+        }
+        return merged;
+    }
+
+    private static List<RoomStats> worstRooms(Map<String, StatsSnapshot> rooms, boolean byLoss, int limit) {
+        var order = byLoss ?
+                Comparator.<RoomStats>comparingDouble(r -> r.stats().packetLoss().p95()) :
+                Comparator.<RoomStats>comparingDouble(r -> r.stats().relayShare());
+        var roomsStats = new ArrayList<RoomStats>(rooms.size());
+        rooms.forEach((id, s) -> roomsStats.add(new RoomStats(id, s.summary())));
+        roomsStats.sort(order.reversed());
+        return roomsStats.subList(0, Math.min(Math.max(limit, 0), roomsStats.size()));
+    }
+
+    private static void respond(RoutingContext context, AsyncResult<?> result) {
+        if (result.failed()) {
+            log.error("Failed to collect peer stats", result.cause());
+            if (result.cause() instanceof TimeoutException) {
+                context.response().setStatusCode(503).end();
+            } else {
+                context.fail(result.cause());
+            }
+        } else if (result.result() == null) {
+            context.response().setStatusCode(404).end();
+        } else {
+            context.response()
+                    .putHeader(HttpHeaders.CONTENT_TYPE, CONTENT_TYPE)
+                    .end(JsonMapper.json(result.result()));
+        }
+    }
+
+    @Value
+    static class NodeStats {
+        StatsSummary global;
+        List<RoomStats> rooms;
+    }
+
+    @Value
+    static class RoomStats {
+        String roomId;
+        StatsSummary stats;
+    }
+}
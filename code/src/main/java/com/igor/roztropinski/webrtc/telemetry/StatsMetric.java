@@ -0,0 +1,42 @@
+package com.igor.roztropinski.webrtc.telemetry;
+
+import com.igor.roztropinski.webrtc.model.PeerStats;
+
+/**
+ * Aggregated metrics of peer stats. All of them are kept as non negative integers, packet loss in tenths of percent.
+ */
+public enum StatsMetric {
+    BITRATE(1),
+    PACKET_LOSS(10),
+    JITTER(1),
+    ROUND_TRIP_TIME(1);
+
+    private final int scale;
+
+    StatsMetric(int scale) {
+        this.scale = scale;
+    }
+
+    int value(PeerStats stats) {
+        double value;
+        switch (this) {
+            case BITRATE:
+                value = stats.bitrate();
+                break;
+            case PACKET_LOSS:
+                value = Math.min(stats.packetLoss(), 100);
+                break;
+            case JITTER:
+                value = stats.jitter();
+                break;
+            default:
+                value = stats.roundTripTime();
+        }
+        //NaN ends up as 0 as well
+        return value > 0 ? (int) Math.round(value * scale) : 0;
+    }
+
+    double unscaled(double value) {
+        return value / scale;
+    }
+}
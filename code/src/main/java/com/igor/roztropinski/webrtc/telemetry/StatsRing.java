@@ -0,0 +1,35 @@
+package com.igor.roztropinski.webrtc.telemetry;
+
+import com.igor.roztropinski.webrtc.model.PeerStats;
+
+/**
+ * The latest peer stats of a single user, in a ring buffer of fixed capacity: a new one overwrites the oldest.
+ * Only those within {@link RollingStats#WINDOW} are aggregated. Not thread safe.
+ */
+public class StatsRing {
+
+    static final int CAPACITY = 32;
+
+    private final PeerStats[] stats = new PeerStats[CAPACITY];
+    private final long[] recordedAt = new long[CAPACITY];
+    private int next;
+
+    /**
+     * @param now in monotonic milliseconds
+     */
+    public void record(long now, PeerStats peerStats) {
+        stats[next] = peerStats;
+        recordedAt[next] = now;
+        next = (next + 1) % CAPACITY;
+    }
+
+    public StatsSnapshot snapshot(long now) {
+        var snapshot = new StatsSnapshot();
+        for (int i = 0; i < CAPACITY; i++) {
+            if (stats[i] != null && now - recordedAt[i] < RollingStats.WINDOW) {
+                snapshot.add(stats[i]);
+            }
+        }
+        return snapshot;
+    }
+}
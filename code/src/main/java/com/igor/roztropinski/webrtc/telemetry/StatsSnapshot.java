@@ -0,0 +1,69 @@
+package com.igor.roztropinski.webrtc.telemetry;
+
+import com.igor.roztropinski.webrtc.model.PeerStats;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * Peer stats aggregated over some scope and time: a {@link QuantileSketch} of every {@link StatsMetric}
+ * and counts of candidate types. Snapshots of the same scope from many slots, or shards, are merged into one.
+ * Not thread safe.
+ */
+public class StatsSnapshot {
+
+    private static final StatsMetric[] METRICS = StatsMetric.values();
+    private static final CandidateType[] CANDIDATE_TYPES = CandidateType.values();
+
+    private final QuantileSketch[] sketches = new QuantileSketch[METRICS.length];
+    private final long[] candidateTypes = new long[CANDIDATE_TYPES.length];
+
+    public StatsSnapshot() {
+        for (int i = 0; i < sketches.length; i++) {
+            sketches[i] = new QuantileSketch();
+        }
+    }
+
+    public void add(PeerStats stats) {
+        for (var m : METRICS) {
+            sketches[m.ordinal()].add(m.value(stats));
+        }
+        candidateTypes[CandidateType.of(stats.candidateType()).ordinal()]++;
+    }
+
+    public void merge(StatsSnapshot other) {
+        for (int i = 0; i < sketches.length; i++) {
+            sketches[i].merge(other.sketches[i]);
+        }
+        for (int i = 0; i < candidateTypes.length; i++) {
+            candidateTypes[i] += other.candidateTypes[i];
+        }
+    }
+
+    public void clear() {
+        for (var s : sketches) {
+            s.clear();
+        }
+        Arrays.fill(candidateTypes, 0);
+    }
+
+    public long samples() {
+        return sketches[0].count();
+    }
+
+    public StatsSummary summary() {
+        var types = new LinkedHashMap<String, Long>();
+        for (var t : CANDIDATE_TYPES) {
+            types.put(t.label(), candidateTypes[t.ordinal()]);
+        }
+        var samples = samples();
+        var relayShare = samples == 0 ? 0 : (double) candidateTypes[CandidateType.RELAY.ordinal()] / samples;
+        return new StatsSummary(samples, percentiles(StatsMetric.BITRATE), percentiles(StatsMetric.PACKET_LOSS),
+                percentiles(StatsMetric.JITTER), percentiles(StatsMetric.ROUND_TRIP_TIME), types, relayShare);
+    }
+
+    private StatsSummary.Percentiles percentiles(StatsMetric metric) {
+        var sketch = sketches[metric.ordinal()];
+        return new StatsSummary.Percentiles(metric.unscaled(sketch.quantile(0.5)), metric.unscaled(sketch.quantile(0.95)));
+    }
+}
@@ -0,0 +1,26 @@
+package com.igor.roztropinski.webrtc.telemetry;
+
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Rolling percentiles of peer stats: bitrate in kbps, packet loss in percent, jitter and round trip time
+ * in milliseconds, with counts of candidate types and share of relayed ones.
+ */
+@Value
+public class StatsSummary {
+    long samples;
+    Percentiles bitrate;
+    Percentiles packetLoss;
+    Percentiles jitter;
+    Percentiles roundTripTime;
+    Map<String, Long> candidateTypes;
+    double relayShare;
+
+    @Value
+    public static class Percentiles {
+        double p50;
+        double p95;
+    }
+}
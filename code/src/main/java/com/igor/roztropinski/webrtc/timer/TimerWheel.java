@@ -0,0 +1,166 @@
+package com.igor.roztropinski.webrtc.timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel, keyed on monotonic {@link System#nanoTime()}.
+ * Scheduling and cancellation are O(1), advancing visits only slots of ticks that have passed,
+ * and within them only timeouts hashed there, so its cost does not depend on the number of all scheduled timeouts.
+ * Not thread safe: it is meant to be owned, scheduled and advanced by a single event loop.
+ */
+public class TimerWheel {
+
+    private final Timeout[] slots;
+    private final int mask;
+    private final long tickNanos;
+    private final long startNanos;
+    private long currentTick;
+    private boolean advancing;
+    private int size;
+
+    public TimerWheel(long tick, TimeUnit unit, int ticksPerWheel, long nowNanos) {
+        if (tick <= 0) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+        var wheelSize = 1;
+        while (wheelSize < ticksPerWheel) {
+            wheelSize <<= 1;
+        }
+        this.slots = new Timeout[wheelSize];
+        this.mask = wheelSize - 1;
+        this.tickNanos = unit.toNanos(tick);
+        this.startNanos = nowNanos;
+    }
+
+    public Timeout schedule(long deadlineNanos, Runnable task) {
+        var timeout = new Timeout(this, task);
+        reschedule(timeout, deadlineNanos);
+        return timeout;
+    }
+
+    /**
+     * Puts (possibly expired or cancelled) timeout back into the wheel, without allocating a new one.
+     */
+    public void reschedule(Timeout timeout, long deadlineNanos) {
+        if (timeout.wheel != this) {
+            throw new IllegalArgumentException("Timeout belongs to other wheel");
+        }
+        if (timeout.scheduled()) {
+            unlink(timeout);
+        }
+        //currently expiring tick was already visited
+        var minTick = advancing ? currentTick + 1 : currentTick;
+        var deadlineTick = Math.max(minTick, ceilTick(deadlineNanos));
+        timeout.deadlineTick = deadlineTick;
+        link(timeout, (int) (deadlineTick & mask));
+    }
+
+    /**
+     * Runs all timeouts with deadlines up to now.
+     *
+     * @return number of expired timeouts
+     */
+    public int advance(long nowNanos) {
+        var nowTick = (nowNanos - startNanos) / tickNanos;
+        var expired = 0;
+        advancing = true;
+        try {
+            while (currentTick <= nowTick) {
+                expired += expire((int) (currentTick & mask), currentTick);
+                currentTick++;
+            }
+        } finally {
+            advancing = false;
+        }
+        return expired;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long tickNanos() {
+        return tickNanos;
+    }
+
+    private int expire(int slot, long tick) {
+        var expired = 0;
+        var timeout = slots[slot];
+        while (timeout != null) {
+            var next = timeout.next;
+            if (timeout.deadlineTick <= tick) {
+                unlink(timeout);
+                expired++;
+                timeout.task.run();
+                //task might have cancelled or rescheduled next timeout, start over from the head then
+                if (next != null && next.slot != slot) {
+                    next = slots[slot];
+                }
+            }
+            timeout = next;
+        }
+        return expired;
+    }
+
+    private long ceilTick(long deadlineNanos) {
+        var fromStart = deadlineNanos - startNanos;
+        var tick = fromStart / tickNanos;
+        return fromStart % tickNanos == 0 ? tick : tick + 1;
+    }
+
+    private void link(Timeout timeout, int slot) {
+        var head = slots[slot];
+        timeout.slot = slot;
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        slots[slot] = timeout;
+        size++;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev == null) {
+            slots[timeout.slot] = timeout.next;
+        } else {
+            timeout.prev.next = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.slot = -1;
+        size--;
+    }
+
+    public static class Timeout {
+
+        private final TimerWheel wheel;
+        private final Runnable task;
+        private Timeout prev;
+        private Timeout next;
+        private long deadlineTick;
+        private int slot = -1;
+
+        private Timeout(TimerWheel wheel, Runnable task) {
+            this.wheel = wheel;
+            this.task = task;
+        }
+
+        public boolean scheduled() {
+            return slot >= 0;
+        }
+
+        public void cancel() {
+            if (scheduled()) {
+                wheel.unlink(this);
+            }
+        }
+
+        public void reschedule(long deadlineNanos) {
+            wheel.reschedule(this, deadlineNanos);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.igor.roztropinski.webrtc.wire;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Fixed envelope of a peer event in {@link WireFormat#BINARY} format, all numbers big-endian:
+ * <pre>
+ * type    1 byte   offer (1), answer (2) or candidate (3)
+ * flags   1 byte   bit 0: payload is deflated with {@link SdpDictionary}
+ * from    8 bytes  user id of the sender
+ * to      8 bytes  user id of the destination
+ * length  4 bytes  of the payload
+ * payload          data of the event, utf-8 json, as in json format
+ * </pre>
+ * Server reads only the envelope, payload is relayed as it is. Frame to the client can hold many envelopes,
+ * one after another, see {@link #length(Buffer, int)}.
+ */
+public class BinaryEnvelope {
+
+    public static final int HEADER_LENGTH = 22;
+    public static final byte OFFER = 1;
+    public static final byte ANSWER = 2;
+    public static final byte CANDIDATE = 3;
+    public static final byte DEFLATED = 1;
+    private static final String[] EVENTS = {null, "offer", "answer", "candidate"};
+    private static final int TYPE_OFFSET = 0;
+    private static final int FLAGS_OFFSET = 1;
+    private static final int FROM_OFFSET = 2;
+    private static final int TO_OFFSET = 10;
+    private static final int LENGTH_OFFSET = 18;
+
+    public static Buffer encode(String event, long from, long to, byte[] payload, boolean deflated) {
+        var type = type(event);
+        if (type < 0) {
+            throw new IllegalArgumentException("Event has no binary type: " + event);
+        }
+        return Buffer.buffer(HEADER_LENGTH + payload.length)
+                .appendByte(type)
+                .appendByte(deflated ? DEFLATED : 0)
+                .appendLong(from)
+                .appendLong(to)
+                .appendInt(payload.length)
+                .appendBytes(payload);
+    }
+
+    /**
+     * Data is deflated only if it makes it smaller, offers and answers usually are, candidates are not.
+     */
+    public static Buffer encode(String event, long from, long to, byte[] data) {
+        var deflated = SdpDictionary.deflate(data);
+        return deflated.length < data.length ? encode(event, from, to, deflated, true) : encode(event, from, to, data, false);
+    }
+
+    /**
+     * @return length of the whole envelope that starts at the given offset of the frame, -1 if frame is too short for it
+     */
+    public static int length(Buffer frames, int offset) {
+        if (frames.length() - offset < HEADER_LENGTH) {
+            return -1;
+        }
+        var length = HEADER_LENGTH + frames.getInt(offset + LENGTH_OFFSET);
+        return length >= HEADER_LENGTH && length <= frames.length() - offset ? length : -1;
+    }
+
+    public static boolean isValid(Buffer frame) {
+        if (frame.length() < HEADER_LENGTH) {
+            return false;
+        }
+        var type = frame.getByte(TYPE_OFFSET);
+        return type >= OFFER && type <= CANDIDATE
+                && (frame.getByte(FLAGS_OFFSET) & ~DEFLATED) == 0
+                && frame.getInt(LENGTH_OFFSET) == frame.length() - HEADER_LENGTH;
+    }
+
+    /**
+     * @return binary type of the event, -1 if it has none
+     */
+    public static byte type(String event) {
+        for (byte i = OFFER; i <= CANDIDATE; i++) {
+            if (EVENTS[i].equals(event)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Frame must be valid.
+     */
+    public static String event(Buffer frame) {
+        return EVENTS[frame.getByte(TYPE_OFFSET)];
+    }
+
+    public static boolean isDeflated(Buffer frame) {
+        return (frame.getByte(FLAGS_OFFSET) & DEFLATED) != 0;
+    }
+
+    public static long from(Buffer frame) {
+        return frame.getLong(FROM_OFFSET);
+    }
+
+    public static long to(Buffer frame) {
+        return frame.getLong(TO_OFFSET);
+    }
+
+    /**
+     * @return utf-8 json data of the event, inflated if needed
+     * @throws IllegalArgumentException if deflated payload is invalid or inflates over the limit
+     */
+    public static byte[] data(Buffer frame) {
+        var payload = frame.getBytes(HEADER_LENGTH, frame.length());
+        return isDeflated(frame) ? SdpDictionary.inflate(payload) : payload;
+    }
+}
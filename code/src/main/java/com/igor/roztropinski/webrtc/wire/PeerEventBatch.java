@@ -0,0 +1,57 @@
+package com.igor.roztropinski.webrtc.wire;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Peer events to the same user, sent as a single frame. In {@link WireFormat#JSON} it is an array of events,
+ * in {@link WireFormat#BINARY} envelopes follow one another, as every one of them has its length.
+ * Single event is sent as it is.
+ */
+public class PeerEventBatch {
+
+    private final WireFormat format;
+    private final List<Buffer> events = new ArrayList<>(4);
+    private int length;
+
+    public PeerEventBatch(WireFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * @param event frame in format of the batch
+     */
+    public void add(Buffer event) {
+        events.add(event);
+        length += event.length();
+    }
+
+    public int size() {
+        return events.size();
+    }
+
+    public WireFormat format() {
+        return format;
+    }
+
+    public Buffer frame() {
+        if (events.size() == 1) {
+            return events.get(0);
+        }
+        if (format == WireFormat.BINARY) {
+            var frame = Buffer.buffer(length);
+            events.forEach(frame::appendBuffer);
+            return frame;
+        }
+        var frame = Buffer.buffer(length + events.size() + 1).appendByte((byte) '[');
+        for (int i = 0; i < events.size(); i++) {
+            if (i > 0) {
+                frame.appendByte((byte) ',');
+            }
+            frame.appendBuffer(events.get(i));
+        }
+        return frame.appendByte((byte) ']');
+    }
+}
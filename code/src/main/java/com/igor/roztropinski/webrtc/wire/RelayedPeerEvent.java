@@ -0,0 +1,139 @@
+package com.igor.roztropinski.webrtc.wire;
+
+import com.igor.roztropinski.webrtc.json.InboundMessageParser;
+import com.igor.roztropinski.webrtc.outbound.OutboundKind;
+import io.vertx.core.buffer.Buffer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Peer event on its way to the destination. It is kept in the form it was received in and relayed as it is
+ * to destinations speaking the same {@link WireFormat}; other form is transcoded only when needed, at most once.
+ * Owned by one event loop at a time: of the sender, then of the destination.
+ */
+@Slf4j
+public class RelayedPeerEvent {
+
+    private final OutboundKind kind;
+    private final String event;
+    private final int size;
+    private String jsonText;
+    private Buffer json;
+    private Buffer binary;
+    private boolean binaryTranscoded;
+
+    private RelayedPeerEvent(OutboundKind kind, String event, int size) {
+        this.kind = kind;
+        this.event = event;
+        this.size = size;
+    }
+
+    public static RelayedPeerEvent ofJson(String event, String json) {
+        var relayed = new RelayedPeerEvent(OutboundKind.ofPeerEvent(event), event, json.length());
+        relayed.jsonText = json;
+        return relayed;
+    }
+
+    /**
+     * Frame must be valid {@link BinaryEnvelope}.
+     */
+    public static RelayedPeerEvent ofBinary(Buffer frame) {
+        var event = BinaryEnvelope.event(frame);
+        var relayed = new RelayedPeerEvent(OutboundKind.ofPeerEvent(event), event, frame.length());
+        relayed.binary = frame;
+        relayed.binaryTranscoded = true;
+        return relayed;
+    }
+
+    public OutboundKind kind() {
+        return kind;
+    }
+
+    public String event() {
+        return event;
+    }
+
+    /**
+     * @return size of the event in the form it was received in: bytes of binary frame, or characters of json
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return event in the given format, or json if it can not be represented in the binary one
+     */
+    public WireFormat formatFor(WireFormat destination) {
+        return destination == WireFormat.BINARY && BinaryEnvelope.type(event) >= 0 ? WireFormat.BINARY : WireFormat.JSON;
+    }
+
+    public boolean isIn(WireFormat format) {
+        return format == WireFormat.BINARY ? binary != null : (json != null || jsonText != null);
+    }
+
+    /**
+     * @return frame in the given format, null if it could not be transcoded
+     */
+    public Buffer in(WireFormat format) {
+        return format == WireFormat.BINARY ? binary() : json();
+    }
+
+    /**
+     * @return whole event as json text, as cluster transport passes it
+     */
+    public String jsonText() {
+        if (jsonText == null) {
+            var json = json();
+            jsonText = json == null ? null : json.toString();
+        }
+        return jsonText;
+    }
+
+    private Buffer json() {
+        if (json == null) {
+            json = jsonText != null ? Buffer.buffer(jsonText) : binaryToJson(binary);
+        }
+        return json;
+    }
+
+    private Buffer binary() {
+        if (!binaryTranscoded) {
+            binaryTranscoded = true;
+            binary = jsonToBinary(jsonText());
+        }
+        return binary;
+    }
+
+    private static Buffer binaryToJson(Buffer frame) {
+        try {
+            var data = BinaryEnvelope.data(frame);
+            if (!InboundMessageParser.isValidData(new String(data, StandardCharsets.UTF_8))) {
+                log.warn("Binary peer event has invalid json data, it can not be transcoded");
+                return null;
+            }
+            var prefix = String.format("{\"from\":%d,\"to\":%d,\"event\":\"%s\",\"data\":",
+                    BinaryEnvelope.from(frame), BinaryEnvelope.to(frame), BinaryEnvelope.event(frame));
+            return Buffer.buffer(prefix.length() + data.length + 1)
+                    .appendString(prefix)
+                    .appendBytes(data)
+                    .appendByte((byte) '}');
+        } catch (Exception e) {
+            log.warn("Failed to transcode binary peer event to json", e);
+            return null;
+        }
+    }
+
+    private static Buffer jsonToBinary(String json) {
+        if (json == null) {
+            return null;
+        }
+        return InboundMessageParser.parsePeerEvent(json)
+                .map(m -> BinaryEnvelope.encode(m.event(), m.from(), m.to(),
+                        m.dataJson().getBytes(StandardCharsets.UTF_8)))
+                .orElseGet(() -> {
+                    log.warn("Failed to transcode json peer event to binary");
+                    return null;
+                });
+    }
+}
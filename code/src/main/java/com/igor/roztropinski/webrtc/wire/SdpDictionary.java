@@ -0,0 +1,132 @@
+package com.igor.roztropinski.webrtc.wire;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Raw deflate with a preset dictionary of what typical offers, answers and candidates (as json data of their events)
+ * are made of, so that even the first occurrence of every line is a back reference. Random parts (fingerprints,
+ * ice credentials, ssrcs) stay as they are, the rest shrinks several times. Dictionary is a part of
+ * {@link WireFormat#BINARY}, changing it requires a new version of the format.
+ * Deflaters and inflaters are reused per thread (event loop).
+ */
+public class SdpDictionary {
+
+    public static final int MAX_INFLATED_LENGTH = 256 * 1024;
+    private static final int CHUNK = 4096;
+    //the most frequent strings are at the end, closest to the data, so that their back references are the shortest
+    private static final byte[] DICTIONARY = String.join("",
+            "{\"candidate\":\"candidate:",
+            " 1 udp 2122260223 192.168.1.",
+            " 1 udp 1686052607 ",
+            " 1 tcp 1518280447 ",
+            " typ host tcptype passive generation 0 ufrag ",
+            " typ srflx raddr 0.0.0.0 rport 0 generation 0 ufrag ",
+            " typ relay raddr ",
+            " typ host generation 0 ufrag ",
+            " network-id 1 network-cost 10\",\"sdpMid\":\"0\",\"sdpMLineIndex\":0,\"usernameFragment\":\"",
+            "\",\"sdpMid\":\"1\",\"sdpMLineIndex\":1}",
+            "a=extmap:2 http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time\\r\\n",
+            "a=extmap:3 http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01\\r\\n",
+            "a=extmap:4 urn:ietf:params:rtp-hdrext:sdes:mid\\r\\n",
+            "a=extmap:5 urn:ietf:params:rtp-hdrext:sdes:rtp-stream-id\\r\\n",
+            "a=extmap:6 urn:ietf:params:rtp-hdrext:sdes:repaired-rtp-stream-id\\r\\n",
+            "a=extmap:13 urn:3gpp:video-orientation\\r\\n",
+            "a=extmap:12 urn:ietf:params:rtp-hdrext:toffset\\r\\n",
+            "a=extmap:14 http://www.webrtc.org/experiments/rtp-hdrext/playout-delay\\r\\n",
+            "a=extmap:11 http://www.webrtc.org/experiments/rtp-hdrext/video-content-type\\r\\n",
+            "a=extmap:7 http://www.webrtc.org/experiments/rtp-hdrext/video-timing\\r\\n",
+            "a=extmap:8 http://www.webrtc.org/experiments/rtp-hdrext/color-space\\r\\n",
+            "a=extmap:1 urn:ietf:params:rtp-hdrext:ssrc-audio-level\\r\\n",
+            "a=rtpmap:103 ISAC/16000\\r\\na=rtpmap:104 ISAC/32000\\r\\na=rtpmap:9 G722/8000\\r\\n",
+            "a=rtpmap:0 PCMU/8000\\r\\na=rtpmap:8 PCMA/8000\\r\\na=rtpmap:106 CN/32000\\r\\n",
+            "a=rtpmap:105 CN/16000\\r\\na=rtpmap:13 CN/8000\\r\\na=rtpmap:110 telephone-event/48000\\r\\n",
+            "a=rtpmap:112 telephone-event/32000\\r\\na=rtpmap:113 telephone-event/16000\\r\\n",
+            "a=rtpmap:126 telephone-event/8000\\r\\n",
+            "a=rtpmap:111 opus/48000/2\\r\\na=rtcp-fb:111 transport-cc\\r\\n",
+            "a=fmtp:111 minptime=10;useinbandfec=1\\r\\n",
+            "a=rtpmap:98 VP9/90000\\r\\n",
+            "a=fmtp:98 profile-id=0\\r\\n",
+            "a=rtpmap:102 H264/90000\\r\\n",
+            "a=fmtp:102 level-asymmetry-allowed=1;packetization-mode=1;profile-level-id=42001f\\r\\n",
+            "a=fmtp:125 level-asymmetry-allowed=1;packetization-mode=1;profile-level-id=42e01f\\r\\n",
+            "a=rtpmap:97 rtx/90000\\r\\na=fmtp:97 apt=96\\r\\n",
+            "a=rtpmap:99 rtx/90000\\r\\na=fmtp:99 apt=98\\r\\n",
+            "a=rtpmap:101 rtx/90000\\r\\na=fmtp:101 apt=100\\r\\n",
+            "a=rtpmap:127 red/90000\\r\\na=rtpmap:124 ulpfec/90000\\r\\n",
+            "a=rtpmap:96 VP8/90000\\r\\n",
+            "a=rtcp-fb:96 goog-remb\\r\\na=rtcp-fb:96 transport-cc\\r\\na=rtcp-fb:96 ccm fir\\r\\n",
+            "a=rtcp-fb:96 nack\\r\\na=rtcp-fb:96 nack pli\\r\\n",
+            "a=rtcp-fb:98 goog-remb\\r\\na=rtcp-fb:98 transport-cc\\r\\na=rtcp-fb:98 ccm fir\\r\\n",
+            "a=rtcp-fb:98 nack\\r\\na=rtcp-fb:98 nack pli\\r\\n",
+            "a=ssrc-group:FID ",
+            " cname:",
+            " msid:",
+            "a=ssrc:",
+            "m=video 9 UDP/TLS/RTP/SAVPF 96 97 98 99 100 101 102 121 127 120 125 107 108 109 124 119 123 118 114 115 116\\r\\n",
+            "m=audio 9 UDP/TLS/RTP/SAVPF 111 103 104 9 0 8 106 105 13 110 112 113 126\\r\\n",
+            "m=application 9 UDP/DTLS/SCTP webrtc-datachannel\\r\\na=sctp-port:5000\\r\\na=max-message-size:262144\\r\\n",
+            "c=IN IP4 0.0.0.0\\r\\na=rtcp:9 IN IP4 0.0.0.0\\r\\n",
+            "a=ice-options:trickle\\r\\n",
+            "a=fingerprint:sha-256 ",
+            "a=setup:actpass\\r\\n",
+            "a=setup:active\\r\\n",
+            "a=mid:0\\r\\na=mid:1\\r\\n",
+            "a=sendrecv\\r\\na=recvonly\\r\\na=sendonly\\r\\n",
+            "a=msid:",
+            "a=rtcp-mux\\r\\na=rtcp-rsize\\r\\n",
+            "a=ice-ufrag:",
+            "\\r\\na=ice-pwd:",
+            "{\"type\":\"answer\",\"sdp\":\"v=0\\r\\no=- ",
+            "{\"type\":\"offer\",\"sdp\":\"v=0\\r\\no=- ",
+            " 2 IN IP4 127.0.0.1\\r\\ns=-\\r\\nt=0 0\\r\\na=group:BUNDLE 0 1\\r\\na=extmap-allow-mixed\\r\\n",
+            "a=msid-semantic: WMS ")
+            .getBytes(StandardCharsets.UTF_8);
+    private static final ThreadLocal<Deflater> DEFLATERS =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_COMPRESSION, true));
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    public static byte[] deflate(byte[] data) {
+        var deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setDictionary(DICTIONARY);
+        deflater.setInput(data);
+        deflater.finish();
+        var out = new ByteArrayOutputStream(data.length / 2 + 16);
+        var chunk = new byte[CHUNK];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if data is not valid or inflates over {@link #MAX_INFLATED_LENGTH}
+     */
+    public static byte[] inflate(byte[] deflated) {
+        var inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setDictionary(DICTIONARY);
+        inflater.setInput(deflated);
+        var out = new ByteArrayOutputStream(deflated.length * 4);
+        var chunk = new byte[CHUNK];
+        try {
+            while (!inflater.finished()) {
+                var inflated = inflater.inflate(chunk);
+                if (inflated == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Deflated data is truncated");
+                }
+                if (out.size() + inflated > MAX_INFLATED_LENGTH) {
+                    throw new IllegalArgumentException("Deflated data is over the limit");
+                }
+                out.write(chunk, 0, inflated);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Invalid deflated data", e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,37 @@
+package com.igor.roztropinski.webrtc.wire;
+
+import java.util.List;
+
+/**
+ * Format in which a client exchanges peer events, negotiated by WebSocket subprotocol. Clients that do not ask
+ * for any subprotocol (legacy ones, browser frontend) speak json. Server messages are json text frames in both formats.
+ */
+public enum WireFormat {
+    /**
+     * Text frames of json messages.
+     */
+    JSON("webrtc-signaling.json"),
+    /**
+     * Offers, answers and candidates in binary frames of {@link BinaryEnvelope}, other messages as in json format.
+     */
+    BINARY("webrtc-signaling.bin.v1");
+
+    /**
+     * Offered by the server, in order of its preference.
+     */
+    public static final List<String> SUB_PROTOCOLS = List.of(BINARY.subProtocol, JSON.subProtocol);
+
+    private final String subProtocol;
+
+    WireFormat(String subProtocol) {
+        this.subProtocol = subProtocol;
+    }
+
+    public String subProtocol() {
+        return subProtocol;
+    }
+
+    public static WireFormat ofSubProtocol(String subProtocol) {
+        return BINARY.subProtocol.equals(subProtocol) ? BINARY : JSON;
+    }
+}
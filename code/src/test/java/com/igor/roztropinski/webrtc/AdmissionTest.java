@@ -0,0 +1,198 @@
+package com.igor.roztropinski.webrtc;
+
+import com.igor.roztropinski.webrtc.admission.AdmissionControl;
+import com.igor.roztropinski.webrtc.admission.AdmissionOptions;
+import com.igor.roztropinski.webrtc.admission.RateLimit;
+import com.igor.roztropinski.webrtc.admission.RateLimitAction;
+import com.igor.roztropinski.webrtc.cluster.LoopbackCluster;
+import com.igor.roztropinski.webrtc.ice.IceServersIssuer;
+import com.igor.roztropinski.webrtc.metrics.Metrics;
+import com.igor.roztropinski.webrtc.peerlog.LoggingPeerLogSink;
+import com.igor.roztropinski.webrtc.session.SessionOptions;
+import com.igor.roztropinski.webrtc.shard.Shards;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.WebSocket;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Admission of connections and their messages by a single shard server, over real sockets.
+ */
+class AdmissionTest {
+
+    private static final int PORT = 19879;
+    private static final String SECRET = "secret-1";
+    private static final long TIMEOUT = 5_000;
+    //burst of two messages, then one per 10 seconds, so the third one is over the limit however slow the test is
+    private static final RateLimit SIGNALING = new RateLimit(0.1, 2);
+    private static final String INVALID_MESSAGE = "invalid";
+
+    private Vertx serverVertx;
+    private Vertx clientVertx;
+    private HttpClient client;
+    private AdmissionControl admission;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        await(clientVertx.close());
+        await(serverVertx.close());
+    }
+
+    @Test
+    void rejectsMessagesOverTheLimitTellingClientOnceAndKeepsConnection() throws Exception {
+        start(new AdmissionOptions(10, RateLimit.UNLIMITED, SIGNALING, RateLimit.UNLIMITED, RateLimit.UNLIMITED,
+                RateLimitAction.REJECT));
+        var connection = connect();
+
+        for (int i = 0; i < 4; i++) {
+            connection.send(INVALID_MESSAGE);
+        }
+
+        assertEquals(Errors.INVALID_MESSAGE_FORMAT, connection.nextError());
+        assertEquals(Errors.INVALID_MESSAGE_FORMAT, connection.nextError());
+        assertEquals(Errors.RATE_LIMITED, connection.nextError());
+        //pings are limited on their own, so its answer comes right after the only rate limited failure
+        connection.send(new JsonObject().put("type", "PING").encode());
+        assertEquals(Errors.NOT_AUTHENTICATED, connection.nextError());
+        assertFalse(connection.closed.await(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void closesConnectionOnTheFirstMessageOverTheLimit() throws Exception {
+        start(new AdmissionOptions(10, RateLimit.UNLIMITED, SIGNALING, RateLimit.UNLIMITED, RateLimit.UNLIMITED,
+                RateLimitAction.CLOSE));
+        var connection = connect();
+
+        for (int i = 0; i < 3; i++) {
+            connection.send(INVALID_MESSAGE);
+        }
+
+        assertEquals(Errors.INVALID_MESSAGE_FORMAT, connection.nextError());
+        assertEquals(Errors.INVALID_MESSAGE_FORMAT, connection.nextError());
+        assertTrue(connection.closed.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertNull(connection.messages.poll());
+        awaitConnections(0);
+    }
+
+    @Test
+    void acceptsConnectionOverBudgetOnlyAfterOneIsClosed() throws Exception {
+        start(AdmissionOptions.unlimited(1));
+        var first = connect();
+        first.authenticate();
+        assertEquals(1, admission.connections());
+
+        assertFalse(tryConnectAndAuthenticate());
+        assertEquals(1, admission.connections());
+
+        first.close();
+        awaitConnections(0);
+        assertTrue(tryConnectAndAuthenticate());
+    }
+
+    private void start(AdmissionOptions options) throws Exception {
+        admission = new AdmissionControl(options);
+        serverVertx = Vertx.vertx();
+        var metrics = new Metrics();
+        var peerLogs = new LoggingPeerLogSink();
+        await(serverVertx.deployVerticle(new SignalingVerticle(new Shards<>(1), 0, LoopbackCluster.standalone(),
+                () -> new SignalingServer(new SignalingServerAuthenticator(Map.of(SECRET, 1L)), admission,
+                        SessionOptions.DEFAULT, IceServersIssuer.DISABLED, metrics, peerLogs),
+                Router::router,
+                new HttpServerOptions().setPort(PORT))));
+        clientVertx = Vertx.vertx();
+        client = clientVertx.createHttpClient();
+    }
+
+    /**
+     * Connection over the budget is closed by the server at once, before or after the handshake.
+     */
+    private boolean tryConnectAndAuthenticate() throws Exception {
+        TestClient connection;
+        try {
+            connection = connect();
+        } catch (Exception e) {
+            return false;
+        }
+        connection.send(new JsonObject().put("type", "USER_AUTHENTICATION").put("data", SECRET).encode());
+        var deadline = System.currentTimeMillis() + TIMEOUT;
+        while (System.currentTimeMillis() < deadline) {
+            var message = connection.messages.poll(10, TimeUnit.MILLISECONDS);
+            if (message != null && "USER_AUTHENTICATED".equals(message.getString("type"))) {
+                return true;
+            }
+            if (message == null && connection.closed.getCount() == 0) {
+                return false;
+            }
+        }
+        return fail("Connection was neither authenticated nor closed");
+    }
+
+    private void awaitConnections(int expected) throws Exception {
+        var deadline = System.currentTimeMillis() + TIMEOUT;
+        while (admission.connections() != expected) {
+            assertTrue(System.currentTimeMillis() < deadline, "Connections have not been released in time");
+            Thread.sleep(10);
+        }
+    }
+
+    private TestClient connect() throws Exception {
+        return new TestClient(await(client.webSocket(PORT, "localhost", "/")));
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    private static class TestClient {
+
+        final WebSocket socket;
+        final BlockingQueue<JsonObject> messages = new LinkedBlockingQueue<>();
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        TestClient(WebSocket socket) {
+            this.socket = socket;
+            socket.textMessageHandler(m -> messages.add(new JsonObject(m)));
+            socket.closeHandler(v -> closed.countDown());
+        }
+
+        void send(String message) {
+            socket.writeTextMessage(message);
+        }
+
+        void authenticate() throws Exception {
+            send(new JsonObject().put("type", "USER_AUTHENTICATION").put("data", SECRET).encode());
+            var message = messages.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+            assertNotNull(message, "Not authenticated in time");
+            assertEquals("USER_AUTHENTICATED", message.getString("type"));
+        }
+
+        /**
+         * @return the first error of the next message, null if it is not a failure
+         */
+        String nextError() throws Exception {
+            var message = messages.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+            assertNotNull(message, "No message in time");
+            if (!"FAILURE".equals(message.getString("type"))) {
+                return null;
+            }
+            return message.getJsonObject("data").getJsonArray("errors").getString(0);
+        }
+
+        void close() throws Exception {
+            await(socket.close());
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.igor.roztropinski.webrtc;
+
+import com.igor.roztropinski.webrtc.admission.AdmissionControl;
+import com.igor.roztropinski.webrtc.admission.AdmissionOptions;
+import com.igor.roztropinski.webrtc.cluster.LoopbackCluster;
+import com.igor.roztropinski.webrtc.ice.IceServersIssuer;
+import com.igor.roztropinski.webrtc.metrics.Metrics;
+import com.igor.roztropinski.webrtc.metrics.SessionEvent;
+import com.igor.roztropinski.webrtc.metrics.ShardMetrics;
+import com.igor.roztropinski.webrtc.peerlog.LoggingPeerLogSink;
+import com.igor.roztropinski.webrtc.session.SessionOptions;
+import com.igor.roztropinski.webrtc.session.SessionTokens;
+import com.igor.roztropinski.webrtc.shard.Shards;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.WebSocket;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Resumption of sessions on a node of two shards, over real sockets.
+ */
+class SessionResumeTest {
+
+    private static final int PORT = 19877;
+    private static final int SHARDS = 2;
+    private static final long USER_ID = 1;
+    private static final String SECRET = "secret-1";
+    private static final long TIMEOUT = 5_000;
+
+    private final Shards<SignalingServer> shards = new Shards<>(SHARDS);
+    private final Metrics metrics = new Metrics();
+    private Vertx serverVertx;
+    private Vertx clientVertx;
+    private HttpClient client;
+
+    @BeforeEach
+    void setup() throws Exception {
+        serverVertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(SHARDS));
+        var shardsIndexes = new AtomicInteger();
+        var cluster = LoopbackCluster.standalone();
+        var admission = new AdmissionControl(AdmissionOptions.unlimited(16));
+        var peerLogs = new LoggingPeerLogSink();
+        await(serverVertx.deployVerticle(() -> new SignalingVerticle(shards, shardsIndexes.getAndIncrement(), cluster,
+                        () -> new SignalingServer(new SignalingServerAuthenticator(Map.of(SECRET, USER_ID)), admission,
+                                SessionOptions.DEFAULT, IceServersIssuer.DISABLED, metrics, peerLogs),
+                        Router::router,
+                        new HttpServerOptions().setPort(PORT)),
+                new DeploymentOptions().setInstances(SHARDS)));
+        clientVertx = Vertx.vertx();
+        client = clientVertx.createHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        await(clientVertx.close());
+        await(serverVertx.close());
+    }
+
+    @Test
+    void resumesSessionWithTheSameTokenAfterResumingConnectionWasClosed() throws Exception {
+        var first = connect();
+        first.send("USER_AUTHENTICATION", SECRET);
+        var token = first.next("USER_AUTHENTICATED").getString("sessionToken");
+        var sessionShard = SessionTokens.shard(token);
+        first.close();
+        awaitShard(sessionShard, m -> m.suspendedSessions() == 1);
+
+        var resuming = connectToOtherShardThan(sessionShard);
+        //session shard claims the session only after the resuming connection is closed
+        shards.shard(sessionShard).execute(() -> sleep(500));
+        resuming.send("SESSION_RESUME", token);
+        resuming.close();
+        awaitShard(sessionShard, m -> m.suspendedSessions() == 1);
+        assertEquals(0, metrics.sessions(SessionEvent.RESUMED));
+
+        var next = connect();
+        next.send("SESSION_RESUME", token);
+        var authenticated = next.next("USER_AUTHENTICATED");
+        assertTrue(authenticated.getBoolean("resumed"));
+        assertEquals(1, metrics.sessions(SessionEvent.RESUMED));
+    }
+
+    private TestClient connectToOtherShardThan(int shard) throws Exception {
+        while (true) {
+            var connection = connect();
+            awaitAnyShard(m -> m.newConnections() == 1);
+            if (shardMetrics(shard).newConnections() == 0) {
+                return connection;
+            }
+            connection.close();
+            awaitShard(shard, m -> m.newConnections() == 0);
+        }
+    }
+
+    private TestClient connect() throws Exception {
+        return new TestClient(await(client.webSocket(PORT, "localhost", "/")));
+    }
+
+    private ShardMetrics shardMetrics(int shard) throws Exception {
+        return await(shards.shard(shard).call(SignalingServer::shardMetrics, TIMEOUT));
+    }
+
+    private void awaitShard(int shard, Predicate<ShardMetrics> condition) throws Exception {
+        var deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.test(shardMetrics(shard))) {
+            assertTrue(System.currentTimeMillis() < deadline, "Shard has not reached expected state in time");
+            Thread.sleep(10);
+        }
+    }
+
+    private void awaitAnyShard(Predicate<ShardMetrics> condition) throws Exception {
+        var deadline = System.currentTimeMillis() + TIMEOUT;
+        while (true) {
+            List<ShardMetrics> all = await(shards.callAll(SignalingServer::shardMetrics, TIMEOUT));
+            if (all.stream().anyMatch(condition)) {
+                return;
+            }
+            assertTrue(System.currentTimeMillis() < deadline, "No shard has reached expected state in time");
+            Thread.sleep(10);
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class TestClient {
+
+        final WebSocket socket;
+        final BlockingQueue<JsonObject> messages = new LinkedBlockingQueue<>();
+
+        TestClient(WebSocket socket) {
+            this.socket = socket;
+            socket.textMessageHandler(m -> messages.add(new JsonObject(m)));
+        }
+
+        void send(String type, String data) {
+            socket.writeTextMessage(new JsonObject().put("type", type).put("data", data).encode());
+        }
+
+        /**
+         * Skips messages of other types.
+         */
+        JsonObject next(String type) throws Exception {
+            var deadline = System.currentTimeMillis() + TIMEOUT;
+            while (true) {
+                var message = messages.poll(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                assertNotNull(message, "No " + type + " message in time");
+                assertNotEquals("FAILURE", message.getString("type"), "Failure: " + message);
+                if (type.equals(message.getString("type"))) {
+                    return message.getJsonObject("data");
+                }
+            }
+        }
+
+        void close() throws Exception {
+            await(socket.close());
+        }
+    }
+}
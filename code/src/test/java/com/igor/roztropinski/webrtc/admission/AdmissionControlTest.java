@@ -0,0 +1,96 @@
+package com.igor.roztropinski.webrtc.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long START = 1_000;
+
+    @Test
+    void acceptsConnectionsAtTheirRateWithBurst() {
+        var admission = new AdmissionControl(new AdmissionOptions(100, new RateLimit(2, 2), RateLimit.UNLIMITED,
+                RateLimit.UNLIMITED, RateLimit.UNLIMITED, RateLimitAction.REJECT));
+
+        assertTrue(admission.tryAccept(START));
+        assertTrue(admission.tryAccept(START));
+        assertFalse(admission.tryAccept(START));
+        assertFalse(admission.tryAccept(START + SECOND / 2 - 1));
+        assertTrue(admission.tryAccept(START + SECOND / 2));
+    }
+
+    @Test
+    void releasedConnectionGivesBudgetBack() {
+        var admission = new AdmissionControl(AdmissionOptions.unlimited(2));
+
+        assertTrue(admission.tryAcquireConnection());
+        assertTrue(admission.tryAcquireConnection());
+        assertFalse(admission.tryAcquireConnection());
+        assertEquals(2, admission.connections());
+
+        admission.releaseConnection();
+
+        assertEquals(1, admission.connections());
+        assertTrue(admission.tryAcquireConnection());
+        assertFalse(admission.tryAcquireConnection());
+    }
+
+    @Test
+    void neverExceedsBudgetOfConcurrentShards() throws Exception {
+        var budget = 50;
+        var admission = new AdmissionControl(AdmissionOptions.unlimited(budget));
+        var acquired = new AtomicInteger();
+        var start = new CountDownLatch(1);
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            var thread = new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < budget; i++) {
+                    if (admission.tryAcquireConnection()) {
+                        acquired.incrementAndGet();
+                    }
+                    Thread.yield();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(budget, acquired.get());
+        assertEquals(budget, admission.connections());
+    }
+
+    @Test
+    void givesEveryConnectionItsOwnRates() {
+        var admission = new AdmissionControl(AdmissionOptions.defaults(10));
+        var first = admission.connectionRates();
+        var second = admission.connectionRates();
+
+        for (int i = 0; i < AdmissionOptions.defaults(10).signaling().burst(); i++) {
+            assertTrue(first.tryAcquire(MessageClass.SIGNALING, START));
+        }
+
+        assertFalse(first.tryAcquire(MessageClass.SIGNALING, START));
+        assertTrue(second.tryAcquire(MessageClass.SIGNALING, START));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
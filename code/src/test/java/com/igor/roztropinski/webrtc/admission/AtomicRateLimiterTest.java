@@ -0,0 +1,112 @@
+package com.igor.roztropinski.webrtc.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AtomicRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    //monotonic clock can be negative
+    private static final long START = -5 * SECOND;
+
+    @Test
+    void allowsBurstAtOnceAndNothingMoreBeforeRefill() {
+        var limiter = new AtomicRateLimiter(new RateLimit(10, 3));
+
+        assertTrue(limiter.tryAcquire(START));
+        assertTrue(limiter.tryAcquire(START));
+        assertTrue(limiter.tryAcquire(START));
+        assertFalse(limiter.tryAcquire(START));
+        assertFalse(limiter.tryAcquire(START + SECOND / 10 - 1));
+    }
+
+    @Test
+    void refillsOneEventPerInterval() {
+        var limiter = new AtomicRateLimiter(new RateLimit(10, 2));
+        var interval = SECOND / 10;
+        limiter.tryAcquire(START);
+        limiter.tryAcquire(START);
+
+        assertTrue(limiter.tryAcquire(START + interval));
+        assertFalse(limiter.tryAcquire(START + interval));
+        assertFalse(limiter.tryAcquire(START + 2 * interval - 1));
+        assertTrue(limiter.tryAcquire(START + 2 * interval));
+    }
+
+    @Test
+    void refillsWholeBurstAfterIdleTime() {
+        var limiter = new AtomicRateLimiter(new RateLimit(10, 3));
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire(START);
+        }
+
+        var later = START + 10 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire(later), "Event " + i + " of the burst");
+        }
+        assertFalse(limiter.tryAcquire(later));
+    }
+
+    @Test
+    void keepsSustainedRateOfSingleEventBurst() {
+        var limiter = new AtomicRateLimiter(new RateLimit(10, 1));
+        var interval = SECOND / 10;
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire(START + i * interval));
+            assertFalse(limiter.tryAcquire(START + i * interval + interval / 2));
+        }
+    }
+
+    @Test
+    void allowsEverythingWhenUnlimited() {
+        var limiter = new AtomicRateLimiter(RateLimit.UNLIMITED);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(limiter.tryAcquire(START));
+        }
+    }
+
+    @Test
+    void allowsExactlyBurstToConcurrentEventsOfTheSameTime() throws Exception {
+        var burst = 100;
+        var limiter = new AtomicRateLimiter(new RateLimit(1, burst));
+        var acquired = new AtomicInteger();
+        var start = new CountDownLatch(1);
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            var thread = new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < burst; i++) {
+                    if (limiter.tryAcquire(START)) {
+                        acquired.incrementAndGet();
+                    }
+                    Thread.yield();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(burst, acquired.get());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
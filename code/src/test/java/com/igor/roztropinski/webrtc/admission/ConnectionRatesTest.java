@@ -0,0 +1,68 @@
+package com.igor.roztropinski.webrtc.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionRatesTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long START = 1_000;
+
+    private final AdmissionOptions options = new AdmissionOptions(10, RateLimit.UNLIMITED, new RateLimit(1, 2),
+            new RateLimit(1, 1), RateLimit.UNLIMITED, RateLimitAction.REJECT);
+
+    @Test
+    void limitsEveryMessageClassSeparately() {
+        var rates = new ConnectionRates(options);
+
+        assertTrue(rates.tryAcquire(MessageClass.SIGNALING, START));
+        assertTrue(rates.tryAcquire(MessageClass.SIGNALING, START));
+        assertFalse(rates.tryAcquire(MessageClass.SIGNALING, START));
+
+        assertTrue(rates.tryAcquire(MessageClass.PEER_LOGS, START));
+        assertFalse(rates.tryAcquire(MessageClass.PEER_LOGS, START));
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(rates.tryAcquire(MessageClass.PINGS, START));
+        }
+    }
+
+    @Test
+    void refillsAfterInterval() {
+        var rates = new ConnectionRates(options);
+        rates.tryAcquire(MessageClass.SIGNALING, START);
+        rates.tryAcquire(MessageClass.SIGNALING, START);
+
+        assertFalse(rates.tryAcquire(MessageClass.SIGNALING, START + SECOND - 1));
+        assertTrue(rates.tryAcquire(MessageClass.SIGNALING, START + SECOND));
+    }
+
+    @Test
+    void reportsOnlyTheFirstLimitedMessageUntilWithinLimitAgain() {
+        var rates = new ConnectionRates(options);
+        rates.tryAcquire(MessageClass.PEER_LOGS, START);
+
+        assertFalse(rates.tryAcquire(MessageClass.PEER_LOGS, START));
+        assertTrue(rates.onLimited(MessageClass.PEER_LOGS));
+        assertFalse(rates.tryAcquire(MessageClass.PEER_LOGS, START));
+        assertFalse(rates.onLimited(MessageClass.PEER_LOGS));
+        //other classes are reported on their own
+        assertTrue(rates.onLimited(MessageClass.SIGNALING));
+
+        assertTrue(rates.tryAcquire(MessageClass.PEER_LOGS, START + SECOND));
+        assertFalse(rates.tryAcquire(MessageClass.PEER_LOGS, START + SECOND));
+        assertTrue(rates.onLimited(MessageClass.PEER_LOGS));
+    }
+
+    @Test
+    void startsWithFullBurstAtAnyTime() {
+        var rates = new ConnectionRates(options);
+
+        assertTrue(rates.tryAcquire(MessageClass.SIGNALING, Long.MIN_VALUE / 2));
+        assertTrue(rates.tryAcquire(MessageClass.SIGNALING, Long.MIN_VALUE / 2));
+        assertFalse(rates.tryAcquire(MessageClass.SIGNALING, Long.MIN_VALUE / 2));
+    }
+}
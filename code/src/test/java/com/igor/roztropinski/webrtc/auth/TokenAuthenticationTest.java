@@ -0,0 +1,189 @@
+package com.igor.roztropinski.webrtc.auth;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenAuthenticationTest {
+
+    private static final long NOW = 1_700_000_000;
+    private static final long USER_ID = 7;
+    private static final byte[] OLD_KEY = "old-key-of-at-least-32-bytes-long".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NEW_KEY = "new-key-of-at-least-32-bytes-long".getBytes(StandardCharsets.US_ASCII);
+
+    private final TestClock clock = new TestClock();
+
+    @Test
+    void authenticatesUserWithRoomsOfValidToken() {
+        var authentication = authentication(Map.of("new", NEW_KEY));
+
+        var user = authentication.authenticate(AuthTokens.issue("new", NEW_KEY, USER_ID, NOW + 60, List.of("a", "b")))
+                .orElseThrow();
+
+        assertEquals(USER_ID, user.userId());
+        assertTrue(user.canJoin("a"));
+        assertTrue(user.canJoin("b"));
+        assertFalse(user.canJoin("c"));
+    }
+
+    @Test
+    void allowsAnyRoomToTokenWithoutRooms() {
+        var authentication = authentication(Map.of("new", NEW_KEY));
+
+        var user = authentication.authenticate(AuthTokens.issue("new", NEW_KEY, USER_ID, NOW + 60, List.of()))
+                .orElseThrow();
+
+        assertTrue(user.canJoin("any"));
+    }
+
+    @Test
+    void rejectsTokenWithTamperedPayload() {
+        var authentication = authentication(Map.of("new", NEW_KEY));
+        var token = AuthTokens.issue("new", NEW_KEY, USER_ID, NOW + 60, List.of("a"));
+        var parts = token.split("\\.");
+        var forged = AuthTokens.issue("new", "other-key".getBytes(StandardCharsets.US_ASCII), USER_ID, NOW + 60,
+                List.of()).split("\\.")[1];
+
+        assertTrue(authentication.authenticate(parts[0] + "." + forged + "." + parts[2]).isEmpty());
+    }
+
+    @Test
+    void rejectsTokenWithTamperedSignature() {
+        var authentication = authentication(Map.of("new", NEW_KEY));
+        var token = AuthTokens.issue("new", NEW_KEY, USER_ID, NOW + 60, List.of());
+        var signatureStart = token.lastIndexOf('.') + 1;
+        var signature = Base64.getUrlDecoder().decode(token.substring(signatureStart));
+        signature[0] ^= 1;
+
+        var tampered = token.substring(0, signatureStart) + Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+
+        assertTrue(authentication.authenticate(tampered).isEmpty());
+        assertEquals(0, authentication.cached());
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        var authentication = authentication(Map.of("new", NEW_KEY));
+
+        assertTrue(authentication.authenticate(null).isEmpty());
+        assertTrue(authentication.authenticate("").isEmpty());
+        assertTrue(authentication.authenticate("new").isEmpty());
+        assertTrue(authentication.authenticate(".payload.signature").isEmpty());
+        assertTrue(authentication.authenticate("new.not-base64!.signature").isEmpty());
+        assertTrue(authentication.authenticate("new." + "x".repeat(5_000) + ".signature").isEmpty());
+    }
+
+    @Test
+    void rejectsExpiredToken() {
+        var authentication = authentication(Map.of("new", NEW_KEY));
+
+        assertTrue(authentication.authenticate(AuthTokens.issue("new", NEW_KEY, USER_ID, NOW, List.of())).isEmpty());
+        assertTrue(authentication.authenticate(AuthTokens.issue("new", NEW_KEY, USER_ID, NOW - 1, List.of())).isEmpty());
+        assertEquals(0, authentication.cached());
+    }
+
+    @Test
+    void acceptsTokenOfRotatedOutKeyOnlyAsLongAsTheKeyIsConfigured() {
+        var token = AuthTokens.issue("old", OLD_KEY, USER_ID, NOW + 60, List.of());
+        var overlap = new LinkedHashMap<String, byte[]>();
+        overlap.put("new", NEW_KEY);
+        overlap.put("old", OLD_KEY);
+
+        assertTrue(authentication(overlap).authenticate(token).isPresent());
+        assertTrue(authentication(Map.of("new", NEW_KEY)).authenticate(token).isEmpty());
+    }
+
+    @Test
+    void rejectsTokenSignedWithOtherKeyUnderConfiguredKeyId() {
+        var authentication = authentication(Map.of("new", NEW_KEY));
+
+        assertTrue(authentication.authenticate(AuthTokens.issue("new", OLD_KEY, USER_ID, NOW + 60, List.of())).isEmpty());
+    }
+
+    @Test
+    void rejectsCachedTokenOnceExpired() {
+        var authentication = authentication(Map.of("new", NEW_KEY));
+        var token = AuthTokens.issue("new", NEW_KEY, USER_ID, NOW + 60, List.of());
+
+        assertTrue(authentication.authenticate(token).isPresent());
+        assertEquals(1, authentication.cached());
+        clock.now = NOW + 59;
+        assertTrue(authentication.authenticate(token).isPresent());
+
+        clock.now = NOW + 60;
+        assertTrue(authentication.authenticate(token).isEmpty());
+        assertEquals(0, authentication.cached());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedTokensOverCacheSize() {
+        var authentication = new TokenAuthentication(Map.of("new", NEW_KEY), 2, clock);
+        var first = AuthTokens.issue("new", NEW_KEY, 1, NOW + 60, List.of());
+        var second = AuthTokens.issue("new", NEW_KEY, 2, NOW + 60, List.of());
+        var third = AuthTokens.issue("new", NEW_KEY, 3, NOW + 60, List.of());
+
+        authentication.authenticate(first);
+        authentication.authenticate(second);
+        authentication.authenticate(first);
+        authentication.authenticate(third);
+
+        assertEquals(2, authentication.cached());
+        //evicted token is verified again, so it still authenticates
+        assertEquals(2, authentication.authenticate(second).orElseThrow().userId());
+    }
+
+    @Test
+    void parsesKeysInOrderOfConfiguration() {
+        var keys = AuthTokens.keys("new=" + base64(NEW_KEY) + ", old=" + base64(OLD_KEY));
+
+        assertEquals(List.of("new", "old"), List.copyOf(keys.keySet()));
+        assertArrayEquals(NEW_KEY, keys.get("new"));
+        assertArrayEquals(OLD_KEY, keys.get("old"));
+    }
+
+    @Test
+    void rejectsInvalidKeys() {
+        assertThrows(IllegalArgumentException.class, () -> AuthTokens.keys(base64(NEW_KEY)));
+        assertThrows(IllegalArgumentException.class, () -> AuthTokens.keys("=" + base64(NEW_KEY)));
+        assertThrows(IllegalArgumentException.class, () -> AuthTokens.keys("new.key=" + base64(NEW_KEY)));
+        assertThrows(IllegalArgumentException.class, () -> new TokenAuthentication(Map.of(), 1, clock));
+    }
+
+    private TokenAuthentication authentication(Map<String, byte[]> keys) {
+        return new TokenAuthentication(keys, 16, clock);
+    }
+
+    private static String base64(byte[] key) {
+        return Base64.getEncoder().encodeToString(key);
+    }
+
+    private static class TestClock extends Clock {
+
+        long now = NOW;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochSecond(now);
+        }
+    }
+}
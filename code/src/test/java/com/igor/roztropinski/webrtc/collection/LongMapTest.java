@@ -0,0 +1,124 @@
+package com.igor.roztropinski.webrtc.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongMapTest {
+
+    //capacity of a map expecting a single entry
+    private static final int SMALL_CAPACITY = 8;
+
+    @Test
+    void keepsZeroKeyApartFromFreeSlots() {
+        var map = new LongMap<String>();
+
+        assertNull(map.get(0));
+        assertNull(map.put(0, "zero"));
+        assertNull(map.put(1, "one"));
+
+        assertEquals("zero", map.get(0));
+        assertTrue(map.containsKey(0));
+        assertEquals(2, map.size());
+        assertEquals("zero", map.put(0, "ZERO"));
+        assertEquals(2, map.size());
+
+        var values = new ArrayList<String>();
+        map.forEachValue(values::add);
+        assertTrue(values.containsAll(List.of("ZERO", "one")));
+
+        assertFalse(map.remove(0, "zero"));
+        assertEquals("ZERO", map.remove(0));
+        assertNull(map.remove(0));
+        assertNull(map.get(0));
+        assertEquals(1, map.size());
+        assertEquals("one", map.get(1));
+    }
+
+    @Test
+    void findsKeysProbedPastTheEndOfTableAfterRemoval() {
+        var map = new LongMap<Long>(1);
+        var colliding = keysOfSlot(SMALL_CAPACITY - 1, 3);
+        colliding.forEach(k -> map.put(k, k));
+
+        //the first one took the last slot, the others wrapped around to the first ones
+        assertEquals(colliding.get(0), map.remove(colliding.get(0)));
+
+        assertNull(map.get(colliding.get(0)));
+        assertEquals(colliding.get(1), map.get(colliding.get(1)));
+        assertEquals(colliding.get(2), map.get(colliding.get(2)));
+        assertEquals(2, map.size());
+
+        assertEquals(colliding.get(1), map.remove(colliding.get(1)));
+        assertEquals(colliding.get(2), map.get(colliding.get(2)));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void keepsAllEntriesOverRehashes() {
+        var map = new LongMap<Long>(1);
+        for (long k = 0; k < 1_000; k++) {
+            map.put(k, k);
+        }
+
+        assertEquals(1_000, map.size());
+        for (long k = 0; k < 1_000; k++) {
+            assertEquals(k, map.get(k));
+        }
+    }
+
+    @Test
+    void removesMatchingValues() {
+        var map = new LongMap<Long>();
+        for (long k = 0; k < 100; k++) {
+            map.put(k, k);
+        }
+
+        assertEquals(50, map.removeIf(v -> v % 2 == 0));
+
+        assertEquals(50, map.size());
+        assertNull(map.get(0));
+        assertEquals(1L, map.get(1));
+    }
+
+    @Test
+    void behavesAsHashMapUnderRandomOperations() {
+        var random = new Random(42);
+        var map = new LongMap<Long>(1);
+        var expected = new HashMap<Long, Long>();
+
+        for (int i = 0; i < 100_000; i++) {
+            //small range of keys, zero included, so that puts and removes hit the same clusters
+            long key = random.nextInt(64);
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long k = 0; k < 64; k++) {
+            assertEquals(expected.get(k), map.get(k));
+        }
+    }
+
+    @Test
+    void rejectsNullValues() {
+        assertThrows(NullPointerException.class, () -> new LongMap<String>().put(1, null));
+    }
+
+    private static List<Long> keysOfSlot(int slot, int count) {
+        var keys = new ArrayList<Long>();
+        for (long k = 1; keys.size() < count; k++) {
+            if ((Hashing.mix(k) & (SMALL_CAPACITY - 1)) == slot) {
+                keys.add(k);
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,117 @@
+package com.igor.roztropinski.webrtc.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MpscBoundedQueueTest {
+
+    @Test
+    void roundsCapacityUpToPowerOfTwo() {
+        assertEquals(16, new MpscBoundedQueue<>(10).capacity());
+        assertEquals(16, new MpscBoundedQueue<>(16).capacity());
+        //the smallest one
+        assertEquals(4, new MpscBoundedQueue<>(1).capacity());
+    }
+
+    @Test
+    void pollsNothingFromEmptyQueue() {
+        var queue = new MpscBoundedQueue<Integer>(4);
+
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void rejectsOffersWhenFullUntilPolled() {
+        var queue = new MpscBoundedQueue<Integer>(4);
+        for (int i = 0; i < queue.capacity(); i++) {
+            assertTrue(queue.offer(i));
+        }
+
+        assertFalse(queue.offer(-1));
+        assertEquals(queue.capacity(), queue.size());
+
+        assertEquals(0, queue.poll());
+        assertTrue(queue.offer(4));
+        assertFalse(queue.offer(-1));
+    }
+
+    @Test
+    void pollsInOrderOfOffersOverManyLaps() {
+        var queue = new MpscBoundedQueue<Integer>(4);
+        var next = 0;
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(queue.offer(i));
+            if (i % 3 == 2) {
+                while (queue.size() > 0) {
+                    assertEquals(next++, queue.poll());
+                }
+            }
+        }
+        while (queue.size() > 0) {
+            assertEquals(next++, queue.poll());
+        }
+        assertEquals(1_000, next);
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void keepsOrderOfEveryProducer() throws Exception {
+        var producers = 4;
+        var perProducer = 20_000;
+        var queue = new MpscBoundedQueue<long[]>(64);
+        var start = new CountDownLatch(1);
+        var threads = new ArrayList<Thread>();
+        for (int p = 0; p < producers; p++) {
+            var producer = p;
+            var thread = new Thread(() -> {
+                awaitQuietly(start);
+                for (long i = 0; i < perProducer; i++) {
+                    var element = new long[]{producer, i};
+                    while (!queue.offer(element)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        var lastOf = new long[producers];
+        Arrays.fill(lastOf, -1);
+        var polled = 0;
+        while (polled < producers * perProducer) {
+            var element = queue.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            var producer = (int) element[0];
+            assertEquals(lastOf[producer] + 1, element[1], "Order of producer " + producer);
+            lastOf[producer] = element[1];
+            polled++;
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        assertNull(queue.poll());
+        for (var last : lastOf) {
+            assertEquals(perProducer - 1, last);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
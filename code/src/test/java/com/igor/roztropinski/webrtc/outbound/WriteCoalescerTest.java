@@ -0,0 +1,100 @@
+package com.igor.roztropinski.webrtc.outbound;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.ServerWebSocket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Outbound queue writing through the coalescer, over real sockets, so that frames go to Netty channels without flush.
+ */
+class WriteCoalescerTest {
+
+    private static final int PORT = 19878;
+    private static final long TIMEOUT = 5_000;
+    private static final int MESSAGES = 2_000;
+    private static final int WRITE_QUEUE_MAX_SIZE = 8 * 1024;
+
+    private final OutboundStats stats = new OutboundStats();
+    private final CompletableFuture<ServerWebSocket> serverSocket = new CompletableFuture<>();
+    private final CompletableFuture<Context> serverContext = new CompletableFuture<>();
+    private Vertx serverVertx;
+    private Vertx clientVertx;
+
+    @BeforeEach
+    void setup() throws Exception {
+        serverVertx = Vertx.vertx();
+        await(serverVertx.createHttpServer(new HttpServerOptions().setPort(PORT))
+                .webSocketHandler(s -> {
+                    serverContext.complete(Vertx.currentContext());
+                    serverSocket.complete(s);
+                })
+                .listen());
+        clientVertx = Vertx.vertx();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        await(clientVertx.close());
+        await(serverVertx.close());
+    }
+
+    @Test
+    void queuesMessagesWhileUnflushedFramesFillSocketWriteQueueAndWritesThemAllOnDrain() throws Exception {
+        var received = new LinkedBlockingQueue<String>();
+        var client = await(clientVertx.createHttpClient().webSocket(PORT, "localhost", "/"));
+        client.textMessageHandler(received::add);
+        var socket = serverSocket.get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+        var pendingAfterOffers = onServer(() -> {
+            socket.setWriteQueueMaxSize(WRITE_QUEUE_MAX_SIZE);
+            var queue = new OutboundQueue(socket, new OutboundLimits(MESSAGES, Integer.MAX_VALUE, 60_000), stats,
+                    new WriteCoalescer(WriteCoalescing.DEFAULT, stats));
+            for (int i = 0; i < MESSAGES; i++) {
+                queue.offer(OutboundKind.CONTROL, Buffer.buffer(message(i)));
+            }
+            return queue.pendingMessages();
+        });
+
+        //nothing is flushed within the turn, yet unflushed frames count into the socket write queue
+        assertTrue(pendingAfterOffers > 0, "Socket write queue has never been full");
+        assertTrue(pendingAfterOffers < MESSAGES, "Nothing was written directly");
+        for (int i = 0; i < MESSAGES; i++) {
+            assertEquals(message(i), poll(received), "Message " + i);
+        }
+        assertEquals(MESSAGES, stats.written());
+        assertEquals(0, stats.pendingMessages());
+        assertTrue(stats.flushes() < stats.written(), "Frames were not coalesced: " + stats);
+    }
+
+    private <T> T onServer(Supplier<T> task) throws Exception {
+        var result = new CompletableFuture<T>();
+        serverContext.get(TIMEOUT, TimeUnit.MILLISECONDS).runOnContext(v -> result.complete(task.get()));
+        return result.get(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    private static String message(int index) {
+        return String.format("%05d", index) + "x".repeat(1_000);
+    }
+
+    private static String poll(BlockingQueue<String> received) throws Exception {
+        return received.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,77 @@
+package com.igor.roztropinski.webrtc.session;
+
+import com.igor.roztropinski.webrtc.wire.RelayedPeerEvent;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PeerEventsRingTest {
+
+    @Test
+    void drainsEventsFromTheOldestToTheNewest() {
+        var ring = new PeerEventsRing(3);
+
+        assertFalse(ring.add(event(1)));
+        assertFalse(ring.add(event(2)));
+
+        assertEquals(List.of(1L, 2L), drain(ring));
+        assertEquals(0, ring.size());
+        assertEquals(List.of(), drain(ring));
+    }
+
+    @Test
+    void overwritesTheOldestEventsWhenFull() {
+        var ring = new PeerEventsRing(3);
+
+        for (int i = 1; i <= 3; i++) {
+            assertFalse(ring.add(event(i)));
+        }
+        assertTrue(ring.add(event(4)));
+        assertTrue(ring.add(event(5)));
+
+        assertEquals(3, ring.size());
+        assertEquals(List.of(3L, 4L, 5L), drain(ring));
+    }
+
+    @Test
+    void keepsOrderAfterDrainOfWrappedBuffer() {
+        var ring = new PeerEventsRing(2);
+        for (int i = 1; i <= 3; i++) {
+            ring.add(event(i));
+        }
+        drain(ring);
+
+        ring.add(event(4));
+        ring.add(event(5));
+        assertTrue(ring.add(event(6)));
+
+        assertEquals(List.of(5L, 6L), drain(ring));
+    }
+
+    @Test
+    void dropsEveryEventWithoutCapacity() {
+        var ring = new PeerEventsRing(0);
+
+        assertTrue(ring.add(event(1)));
+        assertEquals(0, ring.size());
+        assertEquals(List.of(), drain(ring));
+    }
+
+    /**
+     * Event from the given user, so that order of events is seen by their senders.
+     */
+    private static RelayedPeerEvent event(long from) {
+        return RelayedPeerEvent.ofJson("candidate",
+                String.format("{\"from\":%d,\"to\":100,\"event\":\"candidate\",\"data\":{}}", from));
+    }
+
+    private static List<Long> drain(PeerEventsRing ring) {
+        var senders = new ArrayList<Long>();
+        ring.drain(e -> senders.add(new JsonObject(e.jsonText()).getLong("from")));
+        return senders;
+    }
+}
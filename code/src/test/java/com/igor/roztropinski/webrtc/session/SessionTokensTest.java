@@ -0,0 +1,40 @@
+package com.igor.roztropinski.webrtc.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionTokensTest {
+
+    @Test
+    void generatesUniqueTokensOfTheShard() {
+        var token = SessionTokens.generate(12);
+        var parts = token.split("\\.");
+
+        assertEquals(2, parts.length);
+        assertEquals("12", parts[0]);
+        assertEquals(24, Base64.getUrlDecoder().decode(parts[1]).length);
+        assertNotEquals(token, SessionTokens.generate(12));
+        assertEquals(12, SessionTokens.shard(token));
+        assertEquals(0, SessionTokens.shard(SessionTokens.generate(0)));
+    }
+
+    @Test
+    void readsShardOfTheLongestAllowedPrefix() {
+        assertEquals(99_999, SessionTokens.shard("99999.random"));
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertEquals(-1, SessionTokens.shard(null));
+        assertEquals(-1, SessionTokens.shard(""));
+        assertEquals(-1, SessionTokens.shard("random"));
+        assertEquals(-1, SessionTokens.shard(".random"));
+        assertEquals(-1, SessionTokens.shard("123456.random"));
+        assertEquals(-1, SessionTokens.shard("1a.random"));
+        assertEquals(-1, SessionTokens.shard(" 1.random"));
+        assertEquals(-1, SessionTokens.shard("-.random"));
+    }
+}
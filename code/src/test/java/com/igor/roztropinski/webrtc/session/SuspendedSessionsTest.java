@@ -0,0 +1,121 @@
+package com.igor.roztropinski.webrtc.session;
+
+import com.igor.roztropinski.webrtc.auth.AuthenticatedUser;
+import com.igor.roztropinski.webrtc.function.Dates;
+import com.igor.roztropinski.webrtc.metrics.Metrics;
+import com.igor.roztropinski.webrtc.metrics.SessionEvent;
+import com.igor.roztropinski.webrtc.timer.TimerWheel;
+import com.igor.roztropinski.webrtc.wire.RelayedPeerEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuspendedSessionsTest {
+
+    private static final long GRACE_PERIOD = 1_000;
+    private static final long TICK = 10;
+    private static final SessionOptions OPTIONS = new SessionOptions((int) GRACE_PERIOD, 2);
+
+    //sessions schedule their expiry on the monotonic clock, so the wheel starts on it too
+    private final long start = Dates.monotonicNanos();
+    private final TimerWheel timeouts = new TimerWheel(TICK, TimeUnit.MILLISECONDS, 64, start);
+    private final Metrics metrics = new Metrics();
+    private final List<SuspendedSession> expired = new ArrayList<>();
+    private final SuspendedSessions sessions = new SuspendedSessions(OPTIONS, timeouts, metrics, expired::add);
+
+    @Test
+    void expiresSessionNotResumedWithinGracePeriod() {
+        var session = suspend(1, "0.a");
+
+        timeouts.advance(start + millis(GRACE_PERIOD / 2));
+        assertEquals(1, sessions.size());
+
+        timeouts.advance(afterGracePeriod());
+        assertEquals(List.of(session), expired);
+        assertEquals(0, sessions.size());
+        assertNull(sessions.get(1));
+        assertNull(sessions.claim("0.a"));
+        assertEquals(1, metrics.sessions(SessionEvent.EXPIRED));
+    }
+
+    @Test
+    void claimsSessionOnlyOnce() {
+        var session = suspend(1, "0.a");
+
+        assertNull(sessions.claim("0.b"));
+        assertSame(session, sessions.claim("0.a"));
+        assertNull(sessions.claim("0.a"));
+        assertNull(sessions.get(1));
+    }
+
+    @Test
+    void neverExpiresClaimedSession() {
+        suspend(1, "0.a");
+        sessions.claim("0.a");
+
+        timeouts.advance(afterGracePeriod());
+
+        assertEquals(List.of(), expired);
+        assertEquals(0, timeouts.size());
+        assertEquals(0, metrics.sessions(SessionEvent.EXPIRED));
+    }
+
+    @Test
+    void expiresOnlySessionsNotClaimed() {
+        suspend(1, "0.a");
+        var notClaimed = suspend(2, "0.b");
+
+        sessions.claim("0.a");
+        timeouts.advance(afterGracePeriod());
+
+        assertEquals(List.of(notClaimed), expired);
+    }
+
+    @Test
+    void replacesSessionOfTheSameUserOnlyUnderItsNewToken() {
+        suspend(1, "0.a");
+        sessions.remove(1);
+        var next = suspend(1, "0.b");
+
+        assertNull(sessions.claim("0.a"));
+        timeouts.advance(afterGracePeriod());
+        assertEquals(List.of(next), expired);
+    }
+
+    @Test
+    void buffersTheLatestPeerEventsOfSuspendedUsersOnly() {
+        var session = suspend(1, "0.a");
+
+        assertFalse(sessions.buffer(2, event()));
+        for (int i = 0; i < 3; i++) {
+            assertTrue(sessions.buffer(1, event()));
+        }
+
+        assertEquals(2, session.events().size());
+        assertEquals(3, metrics.bufferedPeerEvents());
+        assertEquals(1, metrics.bufferedPeerEventsDropped());
+    }
+
+    private SuspendedSession suspend(long userId, String token) {
+        var session = new SuspendedSession(AuthenticatedUser.withAnyRoom(userId), userId, token, "room",
+                new PeerEventsRing(OPTIONS.bufferedPeerEvents()));
+        sessions.suspend(session);
+        return session;
+    }
+
+    private static RelayedPeerEvent event() {
+        return RelayedPeerEvent.ofJson("candidate", "{\"from\":2,\"to\":1,\"event\":\"candidate\",\"data\":{}}");
+    }
+
+    private long afterGracePeriod() {
+        return Dates.monotonicNanos() + millis(GRACE_PERIOD + 2 * TICK);
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
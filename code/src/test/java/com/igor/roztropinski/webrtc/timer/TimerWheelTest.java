@@ -0,0 +1,138 @@
+package com.igor.roztropinski.webrtc.timer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimerWheelTest {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int TICKS_PER_WHEEL = 8;
+    private static final long START = 1_000_000;
+
+    private final TimerWheel wheel = new TimerWheel(10, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL, START);
+    private final List<String> fired = new ArrayList<>();
+
+    @Test
+    void firesTimeoutsOnlyOnceTheirDeadlinePassed() {
+        wheel.schedule(at(2), () -> fired.add("a"));
+        wheel.schedule(at(5), () -> fired.add("b"));
+
+        assertEquals(0, wheel.advance(at(1)));
+        assertEquals(1, wheel.advance(at(2)));
+        assertEquals(List.of("a"), fired);
+        assertEquals(1, wheel.size());
+
+        assertEquals(1, wheel.advance(at(6)));
+        assertEquals(List.of("a", "b"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void doesNotFireTimeoutsOfLaterRoundsOfTheSameSlot() {
+        wheel.schedule(at(1), () -> fired.add("first round"));
+        wheel.schedule(at(1 + TICKS_PER_WHEEL), () -> fired.add("second round"));
+
+        wheel.advance(at(1));
+        assertEquals(List.of("first round"), fired);
+
+        wheel.advance(at(1 + TICKS_PER_WHEEL));
+        assertEquals(List.of("first round", "second round"), fired);
+    }
+
+    @Test
+    void doesNotFireCancelledTimeouts() {
+        var timeout = wheel.schedule(at(1), () -> fired.add("cancelled"));
+        wheel.schedule(at(1), () -> fired.add("kept"));
+
+        timeout.cancel();
+        timeout.cancel();
+
+        assertFalse(timeout.scheduled());
+        assertEquals(1, wheel.size());
+        assertEquals(1, wheel.advance(at(3)));
+        assertEquals(List.of("kept"), fired);
+    }
+
+    @Test
+    void doesNotFireTimeoutCancelledByOtherOneExpiringInTheSameSlot() {
+        var timeouts = new TimerWheel.Timeout[1];
+        //linked at head, so it expires first
+        timeouts[0] = wheel.schedule(at(1), () -> fired.add("cancelled"));
+        wheel.schedule(at(1), () -> {
+            fired.add("cancelling");
+            timeouts[0].cancel();
+        });
+
+        assertEquals(1, wheel.advance(at(1)));
+        assertEquals(List.of("cancelling"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void firesTimeoutRescheduledFromItsOwnTaskAtTheNewDeadline() {
+        var timeouts = new TimerWheel.Timeout[1];
+        timeouts[0] = wheel.schedule(at(1), () -> {
+            fired.add("at " + fired.size());
+            if (fired.size() < 3) {
+                timeouts[0].reschedule(at(1 + 2 * fired.size()));
+            }
+        });
+
+        assertEquals(1, wheel.advance(at(1)));
+        assertTrue(timeouts[0].scheduled());
+        assertEquals(0, wheel.advance(at(2)));
+        assertEquals(1, wheel.advance(at(3)));
+        assertEquals(1, wheel.advance(at(5)));
+        assertEquals(List.of("at 0", "at 1", "at 2"), fired);
+        assertFalse(timeouts[0].scheduled());
+    }
+
+    @Test
+    void firesTimeoutRescheduledFromItsOwnTaskToThePastOnTheNextTick() {
+        var timeouts = new TimerWheel.Timeout[1];
+        timeouts[0] = wheel.schedule(at(1), () -> {
+            fired.add("fired");
+            if (fired.size() == 1) {
+                timeouts[0].reschedule(at(0));
+            }
+        });
+
+        //does not loop within the expiring tick
+        assertEquals(1, wheel.advance(at(1)));
+        assertEquals(1, wheel.advance(at(2)));
+        assertEquals(List.of("fired", "fired"), fired);
+    }
+
+    @Test
+    void reschedulesOtherTimeoutOfTheExpiringSlot() {
+        var timeouts = new TimerWheel.Timeout[1];
+        timeouts[0] = wheel.schedule(at(1), () -> fired.add("postponed"));
+        wheel.schedule(at(1), () -> {
+            fired.add("postponing");
+            timeouts[0].reschedule(at(4));
+        });
+
+        assertEquals(1, wheel.advance(at(1)));
+        assertEquals(List.of("postponing"), fired);
+        assertEquals(1, wheel.advance(at(4)));
+        assertEquals(List.of("postponing", "postponed"), fired);
+    }
+
+    @Test
+    void rejectsTimeoutsOfOtherWheel() {
+        var other = new TimerWheel(10, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL, START);
+        var timeout = other.schedule(at(1), () -> {
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> wheel.reschedule(timeout, at(2)));
+    }
+
+    private static long at(int tick) {
+        return START + tick * TICK;
+    }
+}
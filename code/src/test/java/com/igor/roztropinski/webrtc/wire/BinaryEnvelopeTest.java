@@ -0,0 +1,103 @@
+package com.igor.roztropinski.webrtc.wire;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryEnvelopeTest {
+
+    private static final String CANDIDATE = "{\"candidate\":\"candidate:1 1 udp 2122260223 192.168.1.2 54321 typ host\"}";
+
+    @Test
+    void readsWhatWasEncoded() {
+        var frame = BinaryEnvelope.encode("candidate", 1, Long.MAX_VALUE, bytes(CANDIDATE), false);
+
+        assertTrue(BinaryEnvelope.isValid(frame));
+        assertEquals(BinaryEnvelope.HEADER_LENGTH + CANDIDATE.length(), frame.length());
+        assertEquals("candidate", BinaryEnvelope.event(frame));
+        assertEquals(1, BinaryEnvelope.from(frame));
+        assertEquals(Long.MAX_VALUE, BinaryEnvelope.to(frame));
+        assertFalse(BinaryEnvelope.isDeflated(frame));
+        assertEquals(CANDIDATE, string(BinaryEnvelope.data(frame)));
+    }
+
+    @Test
+    void deflatesOnlyDataThatShrinks() {
+        var offer = Sdp.offer();
+
+        var offerFrame = BinaryEnvelope.encode("offer", 1, 2, bytes(offer));
+        var emptyFrame = BinaryEnvelope.encode("candidate", 1, 2, bytes("{}"));
+
+        assertTrue(BinaryEnvelope.isDeflated(offerFrame));
+        assertTrue(offerFrame.length() < offer.length() / 2, "Offer is not deflated enough: " + offerFrame.length());
+        assertEquals(offer, string(BinaryEnvelope.data(offerFrame)));
+        assertFalse(BinaryEnvelope.isDeflated(emptyFrame));
+        assertEquals("{}", string(BinaryEnvelope.data(emptyFrame)));
+    }
+
+    @Test
+    void rejectsEventsWithoutBinaryType() {
+        assertEquals(-1, BinaryEnvelope.type("bye"));
+        assertThrows(IllegalArgumentException.class, () -> BinaryEnvelope.encode("bye", 1, 2, new byte[0], false));
+    }
+
+    @Test
+    void invalidatesFrameWithTruncatedHeader() {
+        var frame = BinaryEnvelope.encode("offer", 1, 2, new byte[0], false);
+
+        assertTrue(BinaryEnvelope.isValid(frame));
+        assertFalse(BinaryEnvelope.isValid(frame.getBuffer(0, BinaryEnvelope.HEADER_LENGTH - 1)));
+        assertFalse(BinaryEnvelope.isValid(Buffer.buffer()));
+    }
+
+    @Test
+    void invalidatesFrameWithPayloadOfOtherLengthThanDeclared() {
+        var frame = BinaryEnvelope.encode("answer", 1, 2, bytes("{}"), false);
+
+        assertFalse(BinaryEnvelope.isValid(frame.getBuffer(0, frame.length() - 1)));
+        assertFalse(BinaryEnvelope.isValid(frame.copy().appendByte((byte) 0)));
+        assertFalse(BinaryEnvelope.isValid(frame.copy().setInt(18, -1)));
+    }
+
+    @Test
+    void invalidatesFrameOfUnknownTypeOrFlags() {
+        var frame = BinaryEnvelope.encode("answer", 1, 2, bytes("{}"), false);
+
+        assertFalse(BinaryEnvelope.isValid(frame.copy().setByte(0, (byte) 0)));
+        assertFalse(BinaryEnvelope.isValid(frame.copy().setByte(0, (byte) 4)));
+        assertFalse(BinaryEnvelope.isValid(frame.copy().setByte(1, (byte) 2)));
+    }
+
+    @Test
+    void measuresEnvelopesOfFrameOneAfterAnother() {
+        var first = BinaryEnvelope.encode("candidate", 1, 2, bytes(CANDIDATE), false);
+        var second = BinaryEnvelope.encode("offer", 1, 2, bytes("{}"), false);
+        var frames = Buffer.buffer().appendBuffer(first).appendBuffer(second);
+
+        assertEquals(first.length(), BinaryEnvelope.length(frames, 0));
+        assertEquals(second.length(), BinaryEnvelope.length(frames, first.length()));
+        assertEquals(-1, BinaryEnvelope.length(frames, frames.length()));
+        //header or payload cut off
+        assertEquals(-1, BinaryEnvelope.length(frames.getBuffer(0, first.length() + 10), first.length()));
+        assertEquals(-1, BinaryEnvelope.length(frames.getBuffer(0, frames.length() - 1), first.length()));
+    }
+
+    @Test
+    void failsToReadDataOfInvalidDeflatedPayload() {
+        var frame = BinaryEnvelope.encode("offer", 1, 2, bytes("not deflated"), true);
+
+        assertTrue(BinaryEnvelope.isValid(frame));
+        assertThrows(IllegalArgumentException.class, () -> BinaryEnvelope.data(frame));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,111 @@
+package com.igor.roztropinski.webrtc.wire;
+
+import com.igor.roztropinski.webrtc.outbound.OutboundKind;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RelayedPeerEventTest {
+
+    private static final String CANDIDATE_DATA = "{\"candidate\":\"candidate:1 1 udp 2122260223 192.168.1.2 54321 typ host\"}";
+
+    @Test
+    void transcodesJsonToBinaryOnlyWhenAskedForAndOnce() {
+        var json = peerEvent("offer", Sdp.offer());
+        var event = RelayedPeerEvent.ofJson("offer", json);
+
+        assertEquals(OutboundKind.SDP, event.kind());
+        assertEquals(json.length(), event.size());
+        assertTrue(event.isIn(WireFormat.JSON));
+        assertFalse(event.isIn(WireFormat.BINARY));
+
+        var binary = event.in(WireFormat.BINARY);
+
+        assertTrue(event.isIn(WireFormat.BINARY));
+        assertSame(binary, event.in(WireFormat.BINARY));
+        assertTrue(BinaryEnvelope.isValid(binary));
+        assertTrue(BinaryEnvelope.isDeflated(binary));
+        assertEquals("offer", BinaryEnvelope.event(binary));
+        assertEquals(1, BinaryEnvelope.from(binary));
+        assertEquals(2, BinaryEnvelope.to(binary));
+        assertEquals(new JsonObject(Sdp.offer()), new JsonObject(string(BinaryEnvelope.data(binary))));
+        assertEquals(json, event.in(WireFormat.JSON).toString());
+    }
+
+    @Test
+    void transcodesBinaryToJsonOnlyWhenAskedFor() {
+        var frame = BinaryEnvelope.encode("candidate", 3, 4, bytes(CANDIDATE_DATA));
+        var event = RelayedPeerEvent.ofBinary(frame);
+
+        assertEquals(OutboundKind.CANDIDATE, event.kind());
+        assertEquals(frame.length(), event.size());
+        assertSame(frame, event.in(WireFormat.BINARY));
+        assertFalse(event.isIn(WireFormat.JSON));
+
+        var json = event.in(WireFormat.JSON);
+
+        assertTrue(event.isIn(WireFormat.JSON));
+        assertSame(json, event.in(WireFormat.JSON));
+        assertEquals(new JsonObject(peerEvent(3, 4, "candidate", CANDIDATE_DATA)), new JsonObject(json));
+        assertEquals(json.toString(), event.jsonText());
+    }
+
+    @Test
+    void keepsEventThroughRoundTripOfBothFormats() {
+        var json = peerEvent("answer", Sdp.offer().replace("offer", "answer"));
+
+        var binary = RelayedPeerEvent.ofJson("answer", json).in(WireFormat.BINARY);
+        var back = RelayedPeerEvent.ofBinary(binary).jsonText();
+
+        assertEquals(new JsonObject(json), new JsonObject(back));
+    }
+
+    @Test
+    void staysInJsonForEventsWithoutBinaryType() {
+        var event = RelayedPeerEvent.ofJson("bye", peerEvent("bye", "{}"));
+
+        assertEquals(OutboundKind.PEER_EVENT, event.kind());
+        assertEquals(WireFormat.JSON, event.formatFor(WireFormat.BINARY));
+        assertEquals(WireFormat.JSON, event.formatFor(WireFormat.JSON));
+        assertEquals(WireFormat.BINARY, RelayedPeerEvent.ofJson("offer", peerEvent("offer", "{}"))
+                .formatFor(WireFormat.BINARY));
+    }
+
+    @Test
+    void cannotBeTranscodedFromInvalidJson() {
+        var event = RelayedPeerEvent.ofJson("offer", "{\"from\":1,\"to\":2,\"event\":\"offer\"");
+
+        assertNull(event.in(WireFormat.BINARY));
+        assertNull(event.in(WireFormat.BINARY));
+    }
+
+    @Test
+    void cannotBeTranscodedFromBinaryWithInvalidData() {
+        var notJson = RelayedPeerEvent.ofBinary(BinaryEnvelope.encode("offer", 1, 2, bytes("{not json"), false));
+        var bomb = RelayedPeerEvent.ofBinary(BinaryEnvelope.encode("offer", 1, 2,
+                SdpDictionary.deflate(new byte[2 * SdpDictionary.MAX_INFLATED_LENGTH]), true));
+
+        assertNull(notJson.in(WireFormat.JSON));
+        assertNull(notJson.jsonText());
+        assertNull(bomb.in(WireFormat.JSON));
+    }
+
+    private static String peerEvent(String event, String data) {
+        return peerEvent(1, 2, event, data);
+    }
+
+    private static String peerEvent(long from, long to, String event, String data) {
+        return String.format("{\"from\":%d,\"to\":%d,\"event\":\"%s\",\"data\":%s}", from, to, event, data);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,33 @@
+package com.igor.roztropinski.webrtc.wire;
+
+/**
+ * Json data of typical peer events, as browsers send them.
+ */
+class Sdp {
+
+    static String offer() {
+        return "{\"type\":\"offer\",\"sdp\":\"v=0\\r\\no=- 4611731400430051336 2 IN IP4 127.0.0.1\\r\\ns=-\\r\\nt=0 0\\r\\n"
+                + "a=group:BUNDLE 0 1\\r\\na=extmap-allow-mixed\\r\\na=msid-semantic: WMS 3WcMrDmrXTJVprRJ\\r\\n"
+                + "m=audio 9 UDP/TLS/RTP/SAVPF 111 103 104 9 0 8 106 105 13 110 112 113 126\\r\\n"
+                + "c=IN IP4 0.0.0.0\\r\\na=rtcp:9 IN IP4 0.0.0.0\\r\\na=ice-ufrag:Fh7A\\r\\na=ice-pwd:Jd2v8qXrT1n9PpLk0sVb3mZc\\r\\n"
+                + "a=ice-options:trickle\\r\\na=fingerprint:sha-256 6B:8B:5D:EA:59:04:20:23:29:C8:87:1C:CC:87:32:BE:DD:8C:66:A5:"
+                + "8E:50:55:EA:4C:D3:B1:07:F7:BE:4E:A0\\r\\na=setup:actpass\\r\\na=mid:0\\r\\n"
+                + "a=extmap:1 urn:ietf:params:rtp-hdrext:ssrc-audio-level\\r\\n"
+                + "a=extmap:2 http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time\\r\\n"
+                + "a=extmap:3 http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01\\r\\n"
+                + "a=extmap:4 urn:ietf:params:rtp-hdrext:sdes:mid\\r\\na=sendrecv\\r\\na=msid:3WcMrDmrXTJVprRJ a1b2\\r\\n"
+                + "a=rtcp-mux\\r\\na=rtpmap:111 opus/48000/2\\r\\na=rtcp-fb:111 transport-cc\\r\\n"
+                + "a=fmtp:111 minptime=10;useinbandfec=1\\r\\na=rtpmap:103 ISAC/16000\\r\\na=rtpmap:104 ISAC/32000\\r\\n"
+                + "a=rtpmap:9 G722/8000\\r\\na=rtpmap:0 PCMU/8000\\r\\na=rtpmap:8 PCMA/8000\\r\\na=rtpmap:106 CN/32000\\r\\n"
+                + "a=rtpmap:105 CN/16000\\r\\na=rtpmap:13 CN/8000\\r\\na=rtpmap:110 telephone-event/48000\\r\\n"
+                + "a=rtpmap:112 telephone-event/32000\\r\\na=rtpmap:113 telephone-event/16000\\r\\n"
+                + "a=rtpmap:126 telephone-event/8000\\r\\na=ssrc:1001 cname:Qw9sbz0T4r\\r\\na=ssrc:1001 msid:3WcMrDmrXTJVprRJ a1b2\\r\\n"
+                + "m=video 9 UDP/TLS/RTP/SAVPF 96 97 98 99 100 101 102 121 127 120 125 107 108 109 124 119 123 118 114 115 116\\r\\n"
+                + "c=IN IP4 0.0.0.0\\r\\na=rtcp:9 IN IP4 0.0.0.0\\r\\na=ice-ufrag:Fh7A\\r\\na=ice-pwd:Jd2v8qXrT1n9PpLk0sVb3mZc\\r\\n"
+                + "a=ice-options:trickle\\r\\na=setup:actpass\\r\\na=mid:1\\r\\na=sendrecv\\r\\na=rtcp-mux\\r\\na=rtcp-rsize\\r\\n"
+                + "a=rtpmap:96 VP8/90000\\r\\na=rtcp-fb:96 goog-remb\\r\\na=rtcp-fb:96 transport-cc\\r\\na=rtcp-fb:96 ccm fir\\r\\n"
+                + "a=rtcp-fb:96 nack\\r\\na=rtcp-fb:96 nack pli\\r\\na=rtpmap:97 rtx/90000\\r\\na=fmtp:97 apt=96\\r\\n"
+                + "a=rtpmap:98 VP9/90000\\r\\na=fmtp:98 profile-id=0\\r\\na=rtpmap:99 rtx/90000\\r\\na=fmtp:99 apt=98\\r\\n"
+                + "a=ssrc-group:FID 2001 2002\\r\\na=ssrc:2001 cname:Qw9sbz0T4r\\r\\na=ssrc:2002 cname:Qw9sbz0T4r\\r\\n\"}";
+    }
+}
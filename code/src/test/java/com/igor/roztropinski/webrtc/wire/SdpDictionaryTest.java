@@ -0,0 +1,70 @@
+package com.igor.roztropinski.webrtc.wire;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SdpDictionaryTest {
+
+    @Test
+    void inflatesWhatWasDeflated() {
+        var offer = Sdp.offer().getBytes(StandardCharsets.UTF_8);
+
+        var deflated = SdpDictionary.deflate(offer);
+
+        assertTrue(deflated.length < offer.length / 2, "Offer is not deflated enough: " + deflated.length);
+        assertArrayEquals(offer, SdpDictionary.inflate(deflated));
+    }
+
+    @Test
+    void inflatesEmptyData() {
+        assertArrayEquals(new byte[0], SdpDictionary.inflate(SdpDictionary.deflate(new byte[0])));
+    }
+
+    @Test
+    void inflatesDataOfTheMaxLength() {
+        var data = new byte[SdpDictionary.MAX_INFLATED_LENGTH];
+        Arrays.fill(data, (byte) 'a');
+
+        assertArrayEquals(data, SdpDictionary.inflate(SdpDictionary.deflate(data)));
+    }
+
+    @Test
+    void rejectsDataInflatingOverTheMaxLength() {
+        var bomb = SdpDictionary.deflate(new byte[10 * SdpDictionary.MAX_INFLATED_LENGTH]);
+
+        //a few kilobytes that would inflate to megabytes
+        assertTrue(bomb.length < 8 * 1024, "Bomb is too big: " + bomb.length);
+        var error = assertThrows(IllegalArgumentException.class, () -> SdpDictionary.inflate(bomb));
+        assertTrue(error.getMessage().contains("over the limit"), error.getMessage());
+    }
+
+    @Test
+    void rejectsTruncatedData() {
+        var deflated = SdpDictionary.deflate(Sdp.offer().getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> SdpDictionary.inflate(Arrays.copyOf(deflated, deflated.length / 2)));
+        assertThrows(IllegalArgumentException.class, () -> SdpDictionary.inflate(new byte[0]));
+    }
+
+    @Test
+    void rejectsInvalidData() {
+        var garbage = new byte[64];
+        Arrays.fill(garbage, (byte) 0xff);
+
+        assertThrows(IllegalArgumentException.class, () -> SdpDictionary.inflate(garbage));
+    }
+
+    @Test
+    void reusesInflaterAfterFailure() {
+        var offer = Sdp.offer().getBytes(StandardCharsets.UTF_8);
+        assertThrows(IllegalArgumentException.class,
+                () -> SdpDictionary.inflate(SdpDictionary.deflate(new byte[2 * SdpDictionary.MAX_INFLATED_LENGTH])));
+
+        assertArrayEquals(offer, SdpDictionary.inflate(SdpDictionary.deflate(offer)));
+    }
+}
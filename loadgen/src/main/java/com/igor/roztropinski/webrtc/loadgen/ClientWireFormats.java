@@ -0,0 +1,26 @@
+package com.igor.roztropinski.webrtc.loadgen;
+
+import com.igor.roztropinski.webrtc.wire.WireFormat;
+
+/**
+ * Wire formats spoken by simulated clients.
+ */
+public enum ClientWireFormats {
+    JSON,
+    BINARY,
+    /**
+     * Clients with odd ids speak binary format, others json, so that peer events are transcoded between them.
+     */
+    MIXED;
+
+    public WireFormat of(long userId) {
+        switch (this) {
+            case BINARY:
+                return WireFormat.BINARY;
+            case MIXED:
+                return userId % 2 == 1 ? WireFormat.BINARY : WireFormat.JSON;
+            default:
+                return WireFormat.JSON;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.igor.roztropinski.webrtc.loadgen;
+
+import com.igor.roztropinski.webrtc.jfr.FlightEvents;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Report of signaling {@link FlightEvents} of a flight recording: latencies of every event type, and where the time
+ * of event loops has gone, to which rooms, users and kinds of peer events. It is written at the end of a load test
+ * with embedded server, that was recorded; recording of a standalone server, started with
+ * -XX:StartFlightRecording, can be reported as well:
+ * java -cp webrtc-poc-loadgen-jar-with-dependencies.jar com.igor.roztropinski.webrtc.loadgen.FlightReport server.jfr
+ * Latencies are in microseconds.
+ */
+public class FlightReport {
+
+    private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final int TOP = 5;
+    private static final String RECORDING_SETTINGS = "profile";
+
+    private final Map<String, Histogram> durations = new TreeMap<>();
+    private final Map<String, Long> rejections = new TreeMap<>();
+    private final Map<String, Long> closures = new TreeMap<>();
+    private final Map<String, Histogram> queueingDelays = new TreeMap<>();
+    private final Map<String, Long> relayedBytes = new HashMap<>();
+    private final Map<String, Long> roomsTime = new HashMap<>();
+    private final Map<Long, Long> usersTime = new HashMap<>();
+    private final Histogram recipients = new Histogram(SIGNIFICANT_DIGITS);
+    private final Histogram encodeTimes = histogram();
+    private long accepted;
+    private long suspended;
+    private long failedAuthentications;
+    private long undelivered;
+    private long expiredTimeouts;
+
+    public static void main(String... args) throws Exception {
+        if (args.length != 1) {
+            System.out.println("Usage: FlightReport <recording.jfr>");
+            return;
+        }
+        System.out.println(report(Path.of(args[0])));
+    }
+
+    /**
+     * Records all signaling events, without thresholds, together with events of the profile settings, so that
+     * the report can be backed by execution samples and allocations of the same recording.
+     */
+    public static Recording startRecording(Path destination) throws Exception {
+        var recording = new Recording(Configuration.getConfiguration(RECORDING_SETTINGS));
+        FlightEvents.ALL.forEach(e -> recording.enable(e).withThreshold(Duration.ZERO));
+        recording.setDestination(destination);
+        recording.start();
+        return recording;
+    }
+
+    public static String report(Path recording) throws IOException {
+        var report = new FlightReport();
+        try (var file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                report.add(file.readEvent());
+            }
+        }
+        return report.toString();
+    }
+
+    private void add(RecordedEvent event) {
+        var type = event.getEventType().getName();
+        if (!type.startsWith(FlightEvents.PREFIX)) {
+            return;
+        }
+        var duration = event.getDuration().toNanos();
+        record(durations.computeIfAbsent(type.substring(FlightEvents.PREFIX.length()), t -> histogram()), duration);
+
+        switch (type.substring(FlightEvents.PREFIX.length())) {
+            case "SocketAccepted":
+                var rejection = event.getString("rejection");
+                if (rejection == null) {
+                    accepted++;
+                } else {
+                    rejections.merge(rejection, 1L, Long::sum);
+                }
+                break;
+            case "SocketClosed":
+                closures.merge(event.getString("state"), 1L, Long::sum);
+                suspended += event.getBoolean("suspended") ? 1 : 0;
+                break;
+            case "Authentication":
+                failedAuthentications += event.getBoolean("authenticated") ? 0 : 1;
+                usersTime.merge(event.getLong("userId"), duration, Long::sum);
+                break;
+            case "RoomJoin":
+            case "RoomLeave":
+                roomsTime.merge(event.getString("roomId"), duration, Long::sum);
+                break;
+            case "PeerEventRelay":
+                var kind = event.getString("kind");
+                record(queueingDelays.computeIfAbsent(kind, k -> histogram()),
+                        event.getDuration("queueingDelay").toNanos());
+                relayedBytes.merge(kind, (long) event.getInt("size"), Long::sum);
+                undelivered += event.getBoolean("delivered") ? 0 : 1;
+                usersTime.merge(event.getLong("from"), duration, Long::sum);
+                break;
+            case "Broadcast":
+                recipients.recordValue(event.getInt("snapshotRecipients") + event.getInt("changeRecipients"));
+                record(encodeTimes, event.getDuration("encodeTime").toNanos());
+                roomsTime.merge(event.getString("roomId"), duration, Long::sum);
+                break;
+            case "TimeoutSweep":
+                expiredTimeouts += event.getInt("expired");
+                break;
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (durations.isEmpty()) {
+            return "no signaling events recorded";
+        }
+        var report = new StringBuilder();
+        durations.forEach((type, histogram) -> report.append(String.format("%s %s%n    ", type,
+                LoadMetrics.percentiles(histogram))));
+        report.append(String.format("connections: accepted: %d, rejected: %s, closed: %s (suspended: %d), failed authentications: %d%n    ",
+                accepted, rejections, closures, suspended, failedAuthentications));
+        queueingDelays.forEach((kind, histogram) -> report.append(String.format("%s relay queueing (avg size: %d B) %s%n    ",
+                kind, relayedBytes.get(kind) / histogram.getTotalCount(), LoadMetrics.percentiles(histogram))));
+        report.append(String.format("relayed events not delivered: %d, expired timeouts: %d%n    ", undelivered, expiredTimeouts));
+        if (recipients.getTotalCount() > 0) {
+            report.append(String.format("broadcast recipients p50: %d, max: %d, encode %s%n    ",
+                    recipients.getValueAtPercentile(50), recipients.getMaxValue(), LoadMetrics.percentiles(encodeTimes)));
+        }
+        report.append(String.format("top rooms by event loop time [us]: %s%n    top users by event loop time [us]: %s",
+                top(roomsTime), top(usersTime)));
+        return report.toString();
+    }
+
+    private static <K> String top(Map<K, Long> times) {
+        return times.entrySet().stream()
+                .sorted(Map.Entry.<K, Long>comparingByValue().reversed())
+                .limit(TOP)
+                .map(e -> e.getKey() + ": " + TimeUnit.NANOSECONDS.toMicros(e.getValue()))
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    private static void record(Histogram histogram, long nanos) {
+        histogram.recordValue(Math.min(HIGHEST_LATENCY, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+    private static Histogram histogram() {
+        return new Histogram(HIGHEST_LATENCY, SIGNIFICANT_DIGITS);
+    }
+}
@@ -0,0 +1,468 @@
+package com.igor.roztropinski.webrtc.loadgen;
+
+import com.igor.roztropinski.webrtc.wire.BinaryEnvelope;
+import com.igor.roztropinski.webrtc.wire.WireFormat;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.WebSocket;
+import io.vertx.core.http.WebSocketConnectOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Single simulated participant, behaving as the frontend does: it authenticates, joins its room, negotiates with
+ * every other member (members with lower ids send offers, members with higher ids answer, both send candidates)
+ * and keeps the connection alive with PINGs. Room members are followed from snapshot and versioned changes;
+ * client that misses a change joins the room again, to get a new snapshot. Client can resume its session,
+ * instead of authenticating again, keeping its negotiated peers. Client speaks its configured wire format:
+ * in the binary one, peer events are sent and received in binary frames, server messages are json in both.
+ * Batched peer events (json array or many binary envelopes in one frame) are handled one by one.
+ * Client reports random, but plausible, media stats and peer stats periodically and counts quality advice it gets back.
+ * All its state is touched only on its own context (event loop), on which its socket is opened.
+ */
+@Slf4j
+public class LoadClient {
+
+    private static final String TYPE = "type";
+    private static final String DATA = "data";
+    private static final String FROM = "from";
+    private static final String EVENT = "event";
+    private static final String MEMBERS = "members";
+    private static final String VERSION = "version";
+    private static final String FROM_VERSION = "fromVersion";
+    private static final String SESSION_TOKEN = "sessionToken";
+    private static final String RESUMED = "resumed";
+    private static final String SOURCE = "source";
+    private static final String USER_AUTHENTICATED = "USER_AUTHENTICATED";
+    private static final String ROOM_MEMBERS = "ROOM_MEMBERS";
+    private static final String MEMBER_JOINED = "MEMBER_JOINED";
+    private static final String MEMBER_LEFT = "MEMBER_LEFT";
+    private static final String PONG = "PONG";
+    private static final String MEDIA_QUALITY = "MEDIA_QUALITY";
+    private static final int MIN_AVAILABLE_BITRATE = 200;
+    private static final int MAX_AVAILABLE_BITRATE = 3_000;
+    private static final int MIN_ROUND_TRIP_TIME = 10;
+    private static final int MAX_ROUND_TRIP_TIME = 500;
+    private static final int MAX_JITTER = 50;
+    private static final double MAX_PACKET_LOSS = 5;
+    private static final double RELAYED_SHARE = 0.1;
+    private static final String FAILURE = "FAILURE";
+    private static final String SESSION_RESUME = "SESSION_RESUME";
+    private static final String PING = "{\"type\":\"PING\"}";
+
+    private final long userId;
+    private final WireFormat format;
+    private final LoadConfig config;
+    private final Vertx vertx;
+    private final HttpClient httpClient;
+    private final LoadMetrics metrics;
+    private final Context context;
+    private final List<Long> peers = new ArrayList<>();
+    private final Set<Long> offered = new HashSet<>();
+    private final Set<Long> negotiated = new HashSet<>();
+    private WebSocket socket;
+    private long authenticationStartedAt;
+    private String sessionToken;
+    private boolean resuming;
+    private long roomVersion = -1;
+    private boolean roomResyncing;
+    private long pingTimer = -1;
+    private long mediaStatsTimer = -1;
+    private long trafficTimer = -1;
+    private int candidates;
+    private Promise<Void> authenticated;
+    private volatile Promise<Void> ready;
+
+    public LoadClient(long userId, LoadConfig config, Vertx vertx, HttpClient httpClient, LoadMetrics metrics) {
+        this.userId = userId;
+        this.format = config.wireFormat(userId);
+        this.config = config;
+        this.vertx = vertx;
+        this.httpClient = httpClient;
+        this.metrics = metrics;
+        this.context = vertx.getOrCreateContext();
+    }
+
+    /**
+     * @return future completed, when client is authenticated
+     */
+    public Future<Void> connect() {
+        return connect(false);
+    }
+
+    /**
+     * Connects presenting token of the previous session, falls back to authentication, if it can not be resumed.
+     *
+     * @return future completed, when client is authenticated
+     */
+    public Future<Void> resume() {
+        return connect(true);
+    }
+
+    private Future<Void> connect(boolean resume) {
+        var authenticated = Promise.<Void>promise();
+        var ready = Promise.<Void>promise();
+        context.runOnContext(v -> connect(authenticated, ready, resume));
+        this.ready = ready;
+        return authenticated.future();
+    }
+
+    private void connect(Promise<Void> authenticated, Promise<Void> ready, boolean resume) {
+        this.authenticated = authenticated;
+        this.ready = ready;
+        resuming = resume && sessionToken != null;
+        if (!resuming) {
+            resetRoom();
+        }
+
+        var connectStartedAt = System.nanoTime();
+        var options = new WebSocketConnectOptions()
+                .setPort(config.port())
+                .setHost(config.host())
+                .setURI("/")
+                .addSubProtocol(format.subProtocol());
+        httpClient.webSocket(options)
+                .onFailure(t -> {
+                    metrics.onConnectFailure();
+                    authenticated.tryFail(t);
+                })
+                .onSuccess(s -> {
+                    metrics.onConnected(System.nanoTime() - connectStartedAt);
+                    onConnected(s);
+                });
+    }
+
+    private void resetRoom() {
+        peers.clear();
+        offered.clear();
+        negotiated.clear();
+        roomVersion = -1;
+        roomResyncing = false;
+        if (config.roomPeers(userId) == 0) {
+            ready.tryComplete();
+        }
+    }
+
+    /**
+     * @return future completed, when client has negotiated with all other members of its room
+     */
+    public Future<Void> ready() {
+        return ready.future();
+    }
+
+    public Future<Void> reconnect() {
+        return close().compose(v -> connect());
+    }
+
+    public Future<Void> close() {
+        var closed = Promise.<Void>promise();
+        context.runOnContext(v -> {
+            stopTimers();
+            if (socket == null || socket.isClosed()) {
+                closed.complete();
+            } else {
+                socket.close(closed);
+            }
+        });
+        return closed.future();
+    }
+
+    /**
+     * Starts sending candidates to random members of the room, so that every client sends the given number
+     * of messages per second on average.
+     */
+    public void startTraffic(double messagesPerSecond) {
+        if (messagesPerSecond <= 0) {
+            return;
+        }
+        var interval = Math.max(1, (long) (1000 / messagesPerSecond));
+        //spread clients evenly, so that they do not send all at the same time
+        var delay = ThreadLocalRandom.current().nextLong(interval) + 1;
+        context.runOnContext(v -> {
+            stopTraffic();
+            trafficTimer = vertx.setTimer(delay, t -> trafficTimer = vertx.setPeriodic(interval, p -> sendTraffic()));
+        });
+    }
+
+    private void stopTraffic() {
+        if (trafficTimer >= 0) {
+            vertx.cancelTimer(trafficTimer);
+            trafficTimer = -1;
+        }
+    }
+
+    private void onConnected(WebSocket socket) {
+        this.socket = socket;
+        socket.textMessageHandler(this::onMessage);
+        socket.binaryMessageHandler(this::onBinaryMessage);
+        socket.exceptionHandler(t -> metrics.onFailure());
+        socket.closeHandler(v -> {
+            metrics.onDisconnected();
+            stopTimers();
+            authenticated.tryFail("Closed before authentication");
+        });
+
+        authenticationStartedAt = System.nanoTime();
+        if (resuming) {
+            send(String.format("{\"type\":\"SESSION_RESUME\",\"data\":\"%s\"}", sessionToken));
+        } else {
+            authenticate();
+        }
+    }
+
+    private void authenticate() {
+        send(String.format("{\"type\":\"USER_AUTHENTICATION\",\"data\":\"%s\"}", config.secret(userId)));
+    }
+
+    private void onMessage(String text) {
+        try {
+            metrics.onReceivedFrame();
+            if (text.startsWith("[")) {
+                var events = new JsonArray(text);
+                for (int i = 0; i < events.size(); i++) {
+                    var event = events.getJsonObject(i);
+                    onPeerEvent(event, event.encode().length());
+                }
+                return;
+            }
+            var message = new JsonObject(text);
+            var type = message.getString(TYPE);
+            if (type == null) {
+                onPeerEvent(message, text.length());
+            } else if (type.equals(USER_AUTHENTICATED)) {
+                onAuthenticated(message.getJsonObject(DATA));
+            } else if (type.equals(ROOM_MEMBERS)) {
+                onRoomMembers(message.getJsonObject(DATA));
+            } else if (type.equals(MEMBER_JOINED)) {
+                onMembersChange(message.getJsonObject(DATA), true);
+            } else if (type.equals(MEMBER_LEFT)) {
+                onMembersChange(message.getJsonObject(DATA), false);
+            } else if (type.equals(PONG)) {
+                metrics.onPong();
+            } else if (type.equals(MEDIA_QUALITY)) {
+                metrics.onQualityAdvice();
+            } else if (type.equals(FAILURE) && SESSION_RESUME.equals(message.getJsonObject(DATA).getString(SOURCE))) {
+                log.info("Session of {} client can not be resumed, authenticating again", userId);
+                resuming = false;
+                resetRoom();
+                authenticate();
+            } else if (type.equals(FAILURE)) {
+                log.warn("Failure received by {} client: {}", userId, text);
+                metrics.onFailure();
+            }
+        } catch (Exception e) {
+            log.warn("Failed to handle message received by {} client: {}", userId, text, e);
+            metrics.onFailure();
+        }
+    }
+
+    private void onAuthenticated(JsonObject data) {
+        metrics.onAuthenticated(System.nanoTime() - authenticationStartedAt);
+        sessionToken = data == null ? null : data.getString(SESSION_TOKEN);
+        pingTimer = vertx.setPeriodic(config.pingInterval(), t -> send(PING));
+        if (config.mediaStatsInterval() > 0) {
+            mediaStatsTimer = vertx.setPeriodic(config.mediaStatsInterval(), t -> sendMediaStats());
+        }
+        //resumed session is still a member of its room, with all peers negotiated
+        if (data != null && data.getBoolean(RESUMED, false)) {
+            ready.tryComplete();
+        } else {
+            joinRoom();
+        }
+        authenticated.tryComplete();
+    }
+
+    private void joinRoom() {
+        send(String.format("{\"type\":\"JOIN_ROOM\",\"data\":\"%s\"}", config.roomId(userId)));
+    }
+
+    private void onRoomMembers(JsonObject data) {
+        roomVersion = data.getLong(VERSION);
+        roomResyncing = false;
+        var members = data.getJsonArray(MEMBERS);
+        var current = new HashSet<Long>();
+        for (int i = 0; i < members.size(); i++) {
+            var member = members.getLong(i);
+            if (member != userId) {
+                current.add(member);
+            }
+        }
+        //members that have left have to be negotiated with again, when they are back
+        offered.retainAll(current);
+        negotiated.retainAll(current);
+        peers.clear();
+        peers.addAll(current);
+
+        for (var member : current) {
+            if (userId < member && offered.add(member)) {
+                sendPeerEvent(member, PeerEvents.OFFER, PeerEvents.offer(System.nanoTime()));
+            }
+        }
+    }
+
+    private void onMembersChange(JsonObject data, boolean joined) {
+        if (roomResyncing) {
+            return;
+        }
+        if (data.getLong(FROM_VERSION) != roomVersion) {
+            roomResyncing = true;
+            joinRoom();
+            return;
+        }
+        roomVersion = data.getLong(VERSION);
+
+        var members = data.getJsonArray(MEMBERS);
+        for (int i = 0; i < members.size(); i++) {
+            var member = members.getLong(i);
+            if (member == userId) {
+                continue;
+            }
+            if (joined) {
+                onMemberJoined(member);
+            } else {
+                peers.remove(member);
+                offered.remove(member);
+                negotiated.remove(member);
+            }
+        }
+    }
+
+    private void onMemberJoined(long member) {
+        if (!peers.contains(member)) {
+            peers.add(member);
+        }
+        if (userId < member && offered.add(member)) {
+            sendPeerEvent(member, PeerEvents.OFFER, PeerEvents.offer(System.nanoTime()));
+        }
+    }
+
+    /**
+     * Frame can be a batch of envelopes.
+     */
+    private void onBinaryMessage(Buffer frames) {
+        try {
+            metrics.onReceivedFrame();
+            for (int offset = 0; offset < frames.length(); ) {
+                var length = BinaryEnvelope.length(frames, offset);
+                var frame = length < 0 ? null : frames.slice(offset, offset + length);
+                if (frame == null || !BinaryEnvelope.isValid(frame)) {
+                    throw new IllegalArgumentException("Invalid binary envelope");
+                }
+                var data = new JsonObject(new String(BinaryEnvelope.data(frame), StandardCharsets.UTF_8));
+                onPeerEvent(BinaryEnvelope.from(frame), BinaryEnvelope.event(frame), data, frame.length());
+                offset += length;
+            }
+        } catch (Exception e) {
+            log.warn("Failed to handle binary message received by {} client", userId, e);
+            metrics.onFailure();
+        }
+    }
+
+    private void onPeerEvent(JsonObject message, int length) {
+        onPeerEvent(message.getLong(FROM), message.getString(EVENT), message.getJsonObject(DATA), length);
+    }
+
+    private void onPeerEvent(long from, String event, JsonObject data, int length) {
+        metrics.onPeerEvent(System.nanoTime() - data.getLong(PeerEvents.SENT_AT), length);
+
+        if (PeerEvents.OFFER.equals(event)) {
+            sendPeerEvent(from, PeerEvents.ANSWER, PeerEvents.answer(System.nanoTime()));
+            sendCandidates(from);
+            onNegotiated(from);
+        } else if (PeerEvents.ANSWER.equals(event)) {
+            sendCandidates(from);
+            onNegotiated(from);
+        }
+    }
+
+    private void onNegotiated(long peer) {
+        negotiated.add(peer);
+        if (negotiated.size() >= config.roomPeers(userId)) {
+            ready.tryComplete();
+        }
+    }
+
+    private void sendCandidates(long peer) {
+        for (int i = 0; i < config.candidatesPerNegotiation(); i++) {
+            sendPeerEvent(peer, PeerEvents.CANDIDATE, PeerEvents.candidate(candidates++, System.nanoTime()));
+        }
+    }
+
+    private void sendTraffic() {
+        if (peers.isEmpty()) {
+            return;
+        }
+        var peer = peers.get(ThreadLocalRandom.current().nextInt(peers.size()));
+        sendPeerEvent(peer, PeerEvents.CANDIDATE, PeerEvents.candidate(candidates++, System.nanoTime()));
+    }
+
+    private void sendMediaStats() {
+        if (peers.isEmpty()) {
+            return;
+        }
+        var random = ThreadLocalRandom.current();
+        send(String.format("{\"type\":\"MEDIA_STATS\",\"data\":{\"availableBitrate\":%d,\"roundTripTime\":%d}}",
+                random.nextInt(MIN_AVAILABLE_BITRATE, MAX_AVAILABLE_BITRATE),
+                random.nextInt(MIN_ROUND_TRIP_TIME, MAX_ROUND_TRIP_TIME)));
+
+        var summaries = new JsonArray();
+        for (var peer : peers) {
+            summaries.add(new JsonObject()
+                    .put("peerId", peer)
+                    .put("candidateType", random.nextDouble() < RELAYED_SHARE ? "relay" : "host")
+                    .put("bitrate", random.nextInt(MIN_AVAILABLE_BITRATE, MAX_AVAILABLE_BITRATE))
+                    .put("packetLoss", random.nextDouble(MAX_PACKET_LOSS))
+                    .put("jitter", random.nextInt(MAX_JITTER))
+                    .put("roundTripTime", random.nextInt(MIN_ROUND_TRIP_TIME, MAX_ROUND_TRIP_TIME)));
+        }
+        send(new JsonObject().put(TYPE, "PEER_STATS").put(DATA, summaries).encode());
+    }
+
+    private void sendPeerEvent(long to, String event, String data) {
+        if (format == WireFormat.BINARY) {
+            send(BinaryEnvelope.encode(event, userId, to, data.getBytes(StandardCharsets.UTF_8)));
+        } else {
+            send(PeerEvents.json(userId, to, event, data));
+        }
+    }
+
+    private void send(String message) {
+        if (socket == null || socket.isClosed()) {
+            return;
+        }
+        socket.writeTextMessage(message).onFailure(t -> metrics.onFailure());
+        metrics.onSent(message.length());
+    }
+
+    private void send(Buffer frame) {
+        if (socket == null || socket.isClosed()) {
+            return;
+        }
+        socket.writeBinaryMessage(frame).onFailure(t -> metrics.onFailure());
+        metrics.onSent(frame.length());
+    }
+
+    private void stopTimers() {
+        stopTraffic();
+        if (pingTimer >= 0) {
+            vertx.cancelTimer(pingTimer);
+            pingTimer = -1;
+        }
+        if (mediaStatsTimer >= 0) {
+            vertx.cancelTimer(mediaStatsTimer);
+            mediaStatsTimer = -1;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.igor.roztropinski.webrtc.loadgen;
+
+import com.igor.roztropinski.webrtc.wire.WireFormat;
+import lombok.Value;
+
+@Value
+public class LoadConfig {
+    String host;
+    int port;
+    int clients;
+    int roomSize;
+    Scenario scenario;
+    int durationSeconds;
+    /**
+     * Per client, in the steady state.
+     */
+    double messagesPerSecond;
+    int connectConcurrency;
+    int candidatesPerNegotiation;
+    int pingInterval;
+    /**
+     * In milliseconds, how often clients report media and peer stats, 0 disables reporting (and quality advice).
+     */
+    int mediaStatsInterval;
+    int reportIntervalSeconds;
+    int eventLoops;
+    boolean embeddedServer;
+    int embeddedServerEventLoops;
+    /**
+     * In milliseconds, 0 disables batching of ICE candidates by the embedded server.
+     */
+    int embeddedServerCandidateBatchWindow;
+    /**
+     * In microseconds, 0 disables write coalescing of the embedded server.
+     */
+    int embeddedServerMaxFlushDelay;
+    String secretPrefix;
+    ClientWireFormats wireFormats;
+    /**
+     * Path of flight recording of the embedded server, reported by {@link FlightReport} at the end, empty disables it.
+     */
+    String flightRecording;
+
+    public String secret(long userId) {
+        return secretPrefix + userId;
+    }
+
+    public WireFormat wireFormat(long userId) {
+        return wireFormats.of(userId);
+    }
+
+    public String roomId(long userId) {
+        return "load-" + roomIndex(userId);
+    }
+
+    /**
+     * Number of other clients in the room of the user, the last room might be smaller than others.
+     */
+    public int roomPeers(long userId) {
+        var roomStart = roomIndex(userId) * roomSize + 1;
+        var roomEnd = Math.min(roomStart + roomSize - 1, clients);
+        return (int) (roomEnd - roomStart);
+    }
+
+    private long roomIndex(long userId) {
+        return (userId - 1) / roomSize;
+    }
+}
@@ -0,0 +1,350 @@
+package com.igor.roztropinski.webrtc.loadgen;
+
+import com.igor.roztropinski.webrtc.SignalingServer;
+import com.igor.roztropinski.webrtc.SignalingServerAuthenticator;
+import com.igor.roztropinski.webrtc.SignalingVerticle;
+import com.igor.roztropinski.webrtc.admission.AdmissionControl;
+import com.igor.roztropinski.webrtc.admission.AdmissionOptions;
+import com.igor.roztropinski.webrtc.cluster.LoopbackCluster;
+import com.igor.roztropinski.webrtc.ice.IceServersIssuer;
+import com.igor.roztropinski.webrtc.metrics.Metrics;
+import com.igor.roztropinski.webrtc.outbound.CandidateBatching;
+import com.igor.roztropinski.webrtc.outbound.WriteCoalescing;
+import com.igor.roztropinski.webrtc.peerlog.LoggingPeerLogSink;
+import com.igor.roztropinski.webrtc.session.SessionOptions;
+import com.igor.roztropinski.webrtc.shard.Shards;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.ext.web.Router;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Opens configured number of simulated clients against the signaling server and reports its capacity:
+ * connect rate, authentication and relay latencies and messages rate.
+ * By default, server is started embedded, in the same jvm (but on its own event loops); to test a standalone one,
+ * it has to be started with participants access written by the generator to {@link #PARTICIPANTS_ACCESS_FILE}.
+ */
+@Slf4j
+public class LoadGenerator {
+
+    private static final String HOST = "LOADGEN_HOST";
+    private static final String PORT = "LOADGEN_PORT";
+    private static final String CLIENTS = "LOADGEN_CLIENTS";
+    private static final String ROOM_SIZE = "LOADGEN_ROOM_SIZE";
+    private static final String SCENARIO = "LOADGEN_SCENARIO";
+    private static final String DURATION_SECONDS = "LOADGEN_DURATION_SECONDS";
+    private static final String MESSAGES_PER_SECOND = "LOADGEN_MESSAGES_PER_SECOND";
+    private static final String CONNECT_CONCURRENCY = "LOADGEN_CONNECT_CONCURRENCY";
+    private static final String CANDIDATES_PER_NEGOTIATION = "LOADGEN_CANDIDATES_PER_NEGOTIATION";
+    private static final String PING_INTERVAL = "LOADGEN_PING_INTERVAL";
+    private static final String MEDIA_STATS_INTERVAL = "LOADGEN_MEDIA_STATS_INTERVAL";
+    private static final String REPORT_INTERVAL_SECONDS = "LOADGEN_REPORT_INTERVAL_SECONDS";
+    private static final String EVENT_LOOPS = "LOADGEN_EVENT_LOOPS";
+    private static final String EMBEDDED_SERVER = "LOADGEN_EMBEDDED_SERVER";
+    private static final String EMBEDDED_SERVER_EVENT_LOOPS = "LOADGEN_EMBEDDED_SERVER_EVENT_LOOPS";
+    private static final String EMBEDDED_SERVER_CANDIDATE_BATCH_WINDOW = "LOADGEN_EMBEDDED_SERVER_CANDIDATE_BATCH_WINDOW";
+    private static final String EMBEDDED_SERVER_MAX_FLUSH_DELAY = "LOADGEN_EMBEDDED_SERVER_MAX_FLUSH_DELAY";
+    private static final String SECRET_PREFIX = "LOADGEN_SECRET_PREFIX";
+    private static final String WIRE_FORMAT = "LOADGEN_WIRE_FORMAT";
+    private static final String FLIGHT_RECORDING = "LOADGEN_FLIGHT_RECORDING";
+    private static final String PARTICIPANTS_ACCESS_FILE = "loadgen-participants-access.txt";
+    private static final int WAIT_TIMEOUT_SECONDS = 120;
+
+    public static void main(String... args) throws Exception {
+        var config = config();
+        log.info("Starting load generator with: {}", config);
+
+        var vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(config.eventLoops()));
+        Vertx serverVertx = null;
+        if (config.embeddedServer()) {
+            serverVertx = startEmbeddedServer(config);
+        } else {
+            writeParticipantsAccess(config);
+        }
+        var recording = startFlightRecording(config);
+
+        var metrics = new LoadMetrics();
+        var httpClient = vertx.createHttpClient(new HttpClientOptions()
+                .setMaxWebSockets(config.clients())
+                .setConnectTimeout((int) TimeUnit.SECONDS.toMillis(WAIT_TIMEOUT_SECONDS)));
+        var clients = LongStream.rangeClosed(1, config.clients())
+                .mapToObj(id -> new LoadClient(id, config, vertx, httpClient, metrics))
+                .collect(Collectors.toList());
+
+        var reporter = new Reporter(metrics, config.reportIntervalSeconds());
+        reporter.start();
+        var startedAt = System.nanoTime();
+        try {
+            run(config, clients);
+        } finally {
+            reporter.stop();
+            var seconds = (System.nanoTime() - startedAt) / 1e9;
+            log.info("{} scenario finished in {} s, summary:\n    {}", config.scenario(), String.format("%.1f", seconds),
+                    metrics.summary(seconds));
+
+            await(all(clients, LoadClient::close));
+            await(vertx.close());
+            //after clients have disconnected, so that closing of their sockets is recorded as well
+            if (recording != null) {
+                recording.stop();
+                recording.close();
+                log.info("Flight recording written to {}, signaling events:\n    {}", config.flightRecording(),
+                        FlightReport.report(Path.of(config.flightRecording())));
+            }
+            if (serverVertx != null) {
+                await(serverVertx.close());
+            }
+        }
+    }
+
+    private static void run(LoadConfig config, List<LoadClient> clients) throws Exception {
+        switch (config.scenario()) {
+            case JOIN_STORM:
+                joinStorm(config, clients);
+                break;
+            case STEADY_STATE:
+                connectAndNegotiate(config, clients);
+                steadyState(config, clients, config.durationSeconds());
+                break;
+            case MASS_RECONNECT:
+                connectAndNegotiate(config, clients);
+                steadyState(config, clients, config.durationSeconds() / 2);
+                massReconnect(config, clients);
+                steadyState(config, clients, config.durationSeconds() / 2);
+                break;
+            case MASS_RESUME:
+                connectAndNegotiate(config, clients);
+                steadyState(config, clients, config.durationSeconds() / 2);
+                massResume(config, clients);
+                steadyState(config, clients, config.durationSeconds() / 2);
+                break;
+        }
+    }
+
+    private static void joinStorm(LoadConfig config, List<LoadClient> clients) throws Exception {
+        var startedAt = System.nanoTime();
+        connectAndNegotiate(config, clients);
+        log.info("Join storm: {} clients connected, authenticated and negotiated with their rooms in {} ms",
+                clients.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    private static void massReconnect(LoadConfig config, List<LoadClient> clients) throws Exception {
+        log.info("Disconnecting all clients...");
+        await(all(clients, LoadClient::close));
+
+        var startedAt = System.nanoTime();
+        await(withConcurrency(clients, config.connectConcurrency(), LoadClient::connect));
+        await(all(clients, LoadClient::ready));
+        log.info("Mass reconnect: {} clients reconnected and negotiated again in {} ms",
+                clients.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    private static void massResume(LoadConfig config, List<LoadClient> clients) throws Exception {
+        log.info("Disconnecting all clients...");
+        await(all(clients, LoadClient::close));
+
+        var startedAt = System.nanoTime();
+        await(withConcurrency(clients, config.connectConcurrency(), LoadClient::resume));
+        await(all(clients, LoadClient::ready));
+        log.info("Mass resume: {} clients resumed their sessions in {} ms",
+                clients.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    private static void connectAndNegotiate(LoadConfig config, List<LoadClient> clients) throws Exception {
+        log.info("Connecting {} clients, {} at a time...", clients.size(), config.connectConcurrency());
+        await(withConcurrency(clients, config.connectConcurrency(), LoadClient::connect));
+        log.info("All clients authenticated, waiting for negotiation in rooms...");
+        await(all(clients, LoadClient::ready));
+    }
+
+    private static void steadyState(LoadConfig config, List<LoadClient> clients, int seconds) throws Exception {
+        log.info("Steady state for {} s, {} messages/s per client", seconds, config.messagesPerSecond());
+        clients.forEach(c -> c.startTraffic(config.messagesPerSecond()));
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+    }
+
+    /**
+     * Runs operation on all clients, but no more than concurrency at a time.
+     */
+    private static Future<Void> withConcurrency(List<LoadClient> clients, int concurrency,
+                                                Function<LoadClient, Future<Void>> operation) {
+        var next = new AtomicInteger();
+        var chains = new ArrayList<Future>();
+        for (int i = 0; i < Math.min(concurrency, clients.size()); i++) {
+            var chain = Promise.<Void>promise();
+            runNext(clients, next, operation, chain);
+            chains.add(chain.future());
+        }
+        return CompositeFuture.all(chains).mapEmpty();
+    }
+
+    private static void runNext(List<LoadClient> clients, AtomicInteger next,
+                                Function<LoadClient, Future<Void>> operation, Promise<Void> chain) {
+        var index = next.getAndIncrement();
+        if (index >= clients.size()) {
+            chain.complete();
+            return;
+        }
+        operation.apply(clients.get(index))
+                .onComplete(r -> runNext(clients, next, operation, chain));
+    }
+
+    private static Future<Void> all(List<LoadClient> clients, Function<LoadClient, Future<Void>> operation) {
+        return CompositeFuture.all(clients.stream().map(operation).collect(Collectors.<Future>toList())).mapEmpty();
+    }
+
+    private static void await(Future<Void> future) throws Exception {
+        future.toCompletionStage().toCompletableFuture().get(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static Vertx startEmbeddedServer(LoadConfig config) throws Exception {
+        log.info("Starting embedded server with {} event loops on {} port", config.embeddedServerEventLoops(), config.port());
+        var access = participantsAccess(config);
+        var vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(config.embeddedServerEventLoops()));
+        var shards = new Shards<SignalingServer>(config.embeddedServerEventLoops());
+        var shardsIndexes = new AtomicInteger();
+        var cluster = LoopbackCluster.standalone();
+        //load is limited only by connections, rate limits would reject storms it is meant to measure
+        var admission = new AdmissionControl(AdmissionOptions.unlimited(config.clients() * 2));
+        var metrics = new Metrics();
+        var peerLogs = new LoggingPeerLogSink();
+        var candidateBatching = new CandidateBatching(config.embeddedServerCandidateBatchWindow(),
+                CandidateBatching.DEFAULT_MAX_CANDIDATES);
+        var deployed = vertx.deployVerticle(() -> new SignalingVerticle(shards, shardsIndexes.getAndIncrement(), cluster,
+                        () -> new SignalingServer(new SignalingServerAuthenticator(access), admission,
+                                candidateBatching, new WriteCoalescing(config.embeddedServerMaxFlushDelay()),
+                                SessionOptions.DEFAULT, IceServersIssuer.DISABLED, metrics, peerLogs),
+                        Router::router,
+                        new HttpServerOptions().setPort(config.port())),
+                new DeploymentOptions().setInstances(config.embeddedServerEventLoops()));
+        deployed.toCompletionStage().toCompletableFuture().get(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        return vertx;
+    }
+
+    /**
+     * Standalone server has to be recorded by its own jvm, there is nothing to record here.
+     */
+    private static Recording startFlightRecording(LoadConfig config) throws Exception {
+        if (config.flightRecording().isEmpty()) {
+            return null;
+        }
+        if (!config.embeddedServer()) {
+            log.warn("Only embedded server can be recorded, start standalone one with -XX:StartFlightRecording instead");
+            return null;
+        }
+        log.info("Recording embedded server to {}", config.flightRecording());
+        return FlightReport.startRecording(Path.of(config.flightRecording()));
+    }
+
+    private static HashMap<String, Long> participantsAccess(LoadConfig config) {
+        var access = new HashMap<String, Long>();
+        for (long id = 1; id <= config.clients(); id++) {
+            access.put(config.secret(id), id);
+        }
+        return access;
+    }
+
+    /**
+     * In the WEBRTC_PARTICIPANTS_ACCESS format.
+     */
+    private static void writeParticipantsAccess(LoadConfig config) throws Exception {
+        var access = participantsAccess(config).entrySet().stream()
+                .map(e -> e.getValue() + "=" + e.getKey())
+                .collect(Collectors.joining(","));
+        Files.writeString(Path.of(PARTICIPANTS_ACCESS_FILE), access);
+        log.info("Server must be started with WEBRTC_PARTICIPANTS_ACCESS set to the content of {} file",
+                PARTICIPANTS_ACCESS_FILE);
+    }
+
+    private static LoadConfig config() {
+        var processors = String.valueOf(Runtime.getRuntime().availableProcessors());
+        return new LoadConfig(
+                envVariable(HOST, "localhost"),
+                Integer.parseInt(envVariable(PORT, "8888")),
+                Integer.parseInt(envVariable(CLIENTS, "1000")),
+                Integer.parseInt(envVariable(ROOM_SIZE, "4")),
+                Scenario.valueOf(envVariable(SCENARIO, Scenario.STEADY_STATE.name())),
+                Integer.parseInt(envVariable(DURATION_SECONDS, "60")),
+                Double.parseDouble(envVariable(MESSAGES_PER_SECOND, "1")),
+                Integer.parseInt(envVariable(CONNECT_CONCURRENCY, "256")),
+                Integer.parseInt(envVariable(CANDIDATES_PER_NEGOTIATION, "4")),
+                Integer.parseInt(envVariable(PING_INTERVAL, "2500")),
+                Integer.parseInt(envVariable(MEDIA_STATS_INTERVAL, "5000")),
+                Integer.parseInt(envVariable(REPORT_INTERVAL_SECONDS, "5")),
+                Integer.parseInt(envVariable(EVENT_LOOPS, processors)),
+                Boolean.parseBoolean(envVariable(EMBEDDED_SERVER, "true")),
+                Integer.parseInt(envVariable(EMBEDDED_SERVER_EVENT_LOOPS, processors)),
+                Integer.parseInt(envVariable(EMBEDDED_SERVER_CANDIDATE_BATCH_WINDOW, "0")),
+                Integer.parseInt(envVariable(EMBEDDED_SERVER_MAX_FLUSH_DELAY,
+                        String.valueOf(WriteCoalescing.DEFAULT.maxFlushDelay()))),
+                envVariable(SECRET_PREFIX, "loadgen-secret-"),
+                ClientWireFormats.valueOf(envVariable(WIRE_FORMAT, ClientWireFormats.JSON.name())),
+                envVariable(FLIGHT_RECORDING, ""));
+    }
+
+    private static String envVariable(String key, String defaultValue) {
+        var value = System.getenv(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        log.info("{} has value of: {}", key, value);
+        return value;
+    }
+
+    private static class Reporter {
+
+        private final LoadMetrics metrics;
+        private final long interval;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        Reporter(LoadMetrics metrics, int intervalSeconds) {
+            this.metrics = metrics;
+            this.interval = TimeUnit.SECONDS.toMillis(intervalSeconds);
+            this.thread = new Thread(this::run, "loadgen-reporter");
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            thread.interrupt();
+            thread.join();
+        }
+
+        private void run() {
+            var last = System.nanoTime();
+            while (running) {
+                try {
+                    Thread.sleep(interval);
+                } catch (InterruptedException e) {
+                    //last, partial interval is reported as well
+                }
+                var now = System.nanoTime();
+                log.info("Last {} s:\n    {}", String.format("%.1f", (now - last) / 1e9), metrics.intervalReport((now - last) / 1e9));
+                last = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.igor.roztropinski.webrtc.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recorded by clients on many event loops, reported by a single thread. Latencies are in microseconds.
+ * Bytes are of message payloads, without websocket framing (json is ascii, so its length is its size).
+ */
+public class LoadMetrics {
+
+    private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Latency connect = new Latency();
+    private final Latency authentication = new Latency();
+    private final Latency relay = new Latency();
+    private final Counter connected = new Counter();
+    private final Counter connectFailures = new Counter();
+    private final Counter disconnected = new Counter();
+    private final Counter sent = new Counter();
+    private final Counter sentBytes = new Counter();
+    private final Counter received = new Counter();
+    private final Counter receivedBytes = new Counter();
+    private final Counter receivedFrames = new Counter();
+    private final Counter pongs = new Counter();
+    private final Counter qualityAdvice = new Counter();
+    private final Counter failures = new Counter();
+
+    public void onConnected(long latencyNanos) {
+        connected.increment();
+        connect.record(latencyNanos);
+    }
+
+    public void onConnectFailure() {
+        connectFailures.increment();
+    }
+
+    public void onAuthenticated(long latencyNanos) {
+        authentication.record(latencyNanos);
+    }
+
+    public void onDisconnected() {
+        disconnected.increment();
+    }
+
+    public void onSent(int bytes) {
+        sent.increment();
+        sentBytes.add(bytes);
+    }
+
+    public void onPeerEvent(long latencyNanos, int bytes) {
+        received.increment();
+        receivedBytes.add(bytes);
+        relay.record(latencyNanos);
+    }
+
+    /**
+     * Every text or binary frame, it can be a batch of many peer events.
+     */
+    public void onReceivedFrame() {
+        receivedFrames.increment();
+    }
+
+    public void onPong() {
+        pongs.increment();
+    }
+
+    public void onQualityAdvice() {
+        qualityAdvice.increment();
+    }
+
+    public void onFailure() {
+        failures.increment();
+    }
+
+    /**
+     * Must be called by a single thread.
+     */
+    public String intervalReport(double seconds) {
+        return String.format("connects: %.0f/s (failed: %d, disconnected: %d), sent: %.0f/s (%.0f kB/s), relayed: %.0f/s (%.0f kB/s), frames received: %.0f/s, pongs: %d, quality advice: %d, failures: %d%n" +
+                        "    connect %s%n    auth %s%n    relay %s",
+                connected.interval() / seconds, connectFailures.interval(), disconnected.interval(),
+                sent.interval() / seconds, sentBytes.interval() / seconds / 1000,
+                received.interval() / seconds, receivedBytes.interval() / seconds / 1000,
+                receivedFrames.interval() / seconds, pongs.interval(), qualityAdvice.interval(), failures.interval(),
+                percentiles(connect.interval()), percentiles(authentication.interval()), percentiles(relay.interval()));
+    }
+
+    /**
+     * Totals since the start, must be called after the last interval report.
+     */
+    public String summary(double seconds) {
+        return String.format("connected: %d (%.0f/s, failed: %d), sent: %d (%.0f/s, %d kB), relayed: %d (%.0f/s, %d kB), frames received: %d, pongs: %d, quality advice: %d, failures: %d%n" +
+                        "    connect %s%n    auth %s%n    relay %s",
+                connected.total, connected.total / seconds, connectFailures.total,
+                sent.total, sent.total / seconds, sentBytes.total / 1000,
+                received.total, received.total / seconds, receivedBytes.total / 1000, receivedFrames.total,
+                pongs.total, qualityAdvice.total, failures.total,
+                percentiles(connect.total), percentiles(authentication.total), percentiles(relay.total));
+    }
+
+    static String percentiles(Histogram histogram) {
+        if (histogram.getTotalCount() == 0) {
+            return "-";
+        }
+        return String.format("[us] p50: %d, p99: %d, p999: %d, max: %d (%d samples)",
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+                histogram.getValueAtPercentile(99.9), histogram.getMaxValue(), histogram.getTotalCount());
+    }
+
+    private static class Latency {
+
+        final Recorder recorder = new Recorder(HIGHEST_LATENCY, SIGNIFICANT_DIGITS);
+        final Histogram total = new Histogram(HIGHEST_LATENCY, SIGNIFICANT_DIGITS);
+        Histogram interval;
+
+        void record(long latencyNanos) {
+            recorder.recordValue(Math.min(HIGHEST_LATENCY, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        }
+
+        Histogram interval() {
+            interval = recorder.getIntervalHistogram(interval);
+            total.add(interval);
+            return interval;
+        }
+    }
+
+    private static class Counter {
+
+        final LongAdder adder = new LongAdder();
+        long total;
+
+        void increment() {
+            adder.increment();
+        }
+
+        void add(long value) {
+            adder.add(value);
+        }
+
+        long interval() {
+            var interval = adder.sumThenReset();
+            total += interval;
+            return interval;
+        }
+    }
+}
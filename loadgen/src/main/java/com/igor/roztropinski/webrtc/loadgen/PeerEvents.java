@@ -0,0 +1,37 @@
+package com.igor.roztropinski.webrtc.loadgen;
+
+/**
+ * Peer events, as the frontend sends them, with the sending time added to their data,
+ * so that the receiving client can measure relay latency. Clients run in the same jvm, so monotonic time is used.
+ * Data is the same in both wire formats, in json one it is wrapped by {@link #json(long, long, String, String)}.
+ */
+public class PeerEvents {
+
+    public static final String OFFER = "offer";
+    public static final String ANSWER = "answer";
+    public static final String CANDIDATE = "candidate";
+    public static final String SENT_AT = "sentAt";
+    private static final String SDP = "v=0\\r\\no=- 4611731400430051336 2 IN IP4 127.0.0.1\\r\\ns=-\\r\\nt=0 0\\r\\na=group:BUNDLE 0 1\\r\\na=extmap-allow-mixed\\r\\na=msid-semantic: WMS 6e2c6d2e-7d14-4d4f-a4c4-cd2b1d6f3b1e\\r\\nm=audio 9 UDP/TLS/RTP/SAVPF 111 103 104 9 0 8 106 105 13 110 112 113 126\\r\\nc=IN IP4 0.0.0.0\\r\\na=rtcp:9 IN IP4 0.0.0.0\\r\\na=ice-ufrag:EsAw\\r\\na=ice-pwd:bP+XJMM09aR8AiX1jdukzR6Y\\r\\na=ice-options:trickle\\r\\na=fingerprint:sha-256 DA:7B:57:DC:28:CE:04:4F:31:79:85:C4:31:67:EB:27:58:29:ED:77:2A:0D:24:AE:ED:AD:30:BC:BD:F1:9C:02\\r\\na=setup:%s\\r\\na=mid:0\\r\\na=extmap:1 urn:ietf:params:rtp-hdrext:ssrc-audio-level\\r\\na=sendrecv\\r\\na=msid:stream audio\\r\\na=rtcp-mux\\r\\na=rtpmap:111 opus/48000/2\\r\\na=rtcp-fb:111 transport-cc\\r\\na=fmtp:111 minptime=10;useinbandfec=1\\r\\nm=video 9 UDP/TLS/RTP/SAVPF 96 97 98 99 100 101 102\\r\\nc=IN IP4 0.0.0.0\\r\\na=rtcp:9 IN IP4 0.0.0.0\\r\\na=ice-ufrag:EsAw\\r\\na=ice-pwd:bP+XJMM09aR8AiX1jdukzR6Y\\r\\na=setup:%s\\r\\na=mid:1\\r\\na=sendrecv\\r\\na=rtcp-mux\\r\\na=rtcp-rsize\\r\\na=rtpmap:96 VP8/90000\\r\\na=rtcp-fb:96 goog-remb\\r\\na=rtcp-fb:96 transport-cc\\r\\na=rtcp-fb:96 ccm fir\\r\\na=rtcp-fb:96 nack\\r\\na=rtcp-fb:96 nack pli\\r\\n";
+    private static final String OFFER_SDP = String.format(SDP, "actpass", "actpass");
+    private static final String ANSWER_SDP = String.format(SDP, "active", "active");
+    private static final String EVENT = "{\"from\":%d,\"to\":%d,\"event\":\"%s\",\"data\":%s}";
+    private static final String DESCRIPTION = "{\"type\":\"%s\",\"sdp\":\"%s\",\"sentAt\":%d}";
+    private static final String CANDIDATE_DATA = "{\"candidate\":\"candidate:%d 1 udp 1677729535 93.184.216.%d %d typ srflx raddr 192.168.1.%d rport %d generation 0 network-cost 999\",\"sdpMid\":\"0\",\"sdpMLineIndex\":0,\"sentAt\":%d}";
+
+    public static String json(long from, long to, String event, String data) {
+        return String.format(EVENT, from, to, event, data);
+    }
+
+    public static String offer(long sentAt) {
+        return String.format(DESCRIPTION, OFFER, OFFER_SDP, sentAt);
+    }
+
+    public static String answer(long sentAt) {
+        return String.format(DESCRIPTION, ANSWER, ANSWER_SDP, sentAt);
+    }
+
+    public static String candidate(int index, long sentAt) {
+        var port = 50_000 + index;
+        return String.format(CANDIDATE_DATA, 842163049L + index, index % 255, port, index % 255, port, sentAt);
+    }
+}
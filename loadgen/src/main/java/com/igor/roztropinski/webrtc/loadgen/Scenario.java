@@ -0,0 +1,22 @@
+package com.igor.roztropinski.webrtc.loadgen;
+
+public enum Scenario {
+    /**
+     * All clients connect at once, as at the start of many meetings, and negotiate with all members of their rooms.
+     */
+    JOIN_STORM,
+    /**
+     * Clients are connected and negotiated, then they exchange peer events at the configured rate.
+     */
+    STEADY_STATE,
+    /**
+     * Steady state, during which all clients disconnect at the same time and connect again, as after a server
+     * or network restart.
+     */
+    MASS_RECONNECT,
+    /**
+     * As mass reconnect, but clients resume their sessions, as after a short network outage,
+     * so they do not authenticate, join and negotiate again.
+     */
+    MASS_RESUME
+}
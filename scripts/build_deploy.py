@@ -13,7 +13,7 @@ FAKE_CERTS = "fake-certs"
 CERTS = "certs"
 WEBRTC_POC = "webrtc-poc"
 COTURN = "coturn"
-COTURN_CONFIG_USER_KEY = "user"
+COTURN_CONFIG_SECRET_KEY = "static-auth-secret"
 COTURN_CONFIG_REALM_KEY = "realm"
 
 MAIN_STUN_SERVER = "stun:stun.l.google.com:19302"
@@ -74,17 +74,13 @@ def execute_script(script):
         raise Exception(f'Fail to run, return code: {code}')
 
 
-def new_coturn_credentials():
-    return new_secret(), new_secret()
-
-
-def replace_coturn_config(config_path, user, password, realm):
+def replace_coturn_config(config_path, secret, realm):
     with open(config_path) as f:
         new_lines = []
         for l in f.readlines():
-            if l.startswith(COTURN_CONFIG_USER_KEY):
-                new_credentials = f"{COTURN_CONFIG_USER_KEY}={user}:{password}"
-                new_lines.append(new_credentials)
+            if l.startswith(COTURN_CONFIG_SECRET_KEY):
+                new_secret_line = f"{COTURN_CONFIG_SECRET_KEY}={secret}"
+                new_lines.append(new_secret_line)
                 new_lines.append("\n")
             elif l.startswith(COTURN_CONFIG_REALM_KEY):
                 new_realm = f'{COTURN_CONFIG_REALM_KEY}={realm}'
@@ -142,7 +138,7 @@ def new_secret():
     return ''.join(secrets.choice(characters) for _ in range(SECRETS_LENGTH))
 
 
-def replace_js_config(js_path, server_host, server_port, use_https, turn_user, turn_password, coturn_port):
+def replace_js_config(js_path, server_host, server_port, use_https):
     ws_prefix = "wss" if use_https else "ws"
     new_signal_server_endpoint = f"const signalServerEndpoint = '{ws_prefix}://{server_host}:{server_port}';"
 
@@ -150,11 +146,6 @@ def replace_js_config(js_path, server_host, server_port, use_https, turn_user, t
         iceServers: [
             {{
                 urls: "{MAIN_STUN_SERVER}"
-            }},
-            {{
-                urls: "turn:{server_host}:{coturn_port}",
-                username: "{turn_user}",
-                credential: "{turn_password}"
             }}
         ],
     }};"""
@@ -234,10 +225,10 @@ print(f"Copying {COTURN} Dockerfiles...")
 shutil.copytree(path.join(ROOT_DIR, "docker", COTURN),
                 DEPLOY_LOCAL_COTURN_POC_DIR)
 print()
-print("Replacing coturn credentials with random ones...")
-coturn_user, coturn_password = new_coturn_credentials()
+print("Replacing coturn secret of time limited credentials with random one...")
+turn_secret = new_secret()
 replace_coturn_config(path.join(DEPLOY_LOCAL_COTURN_POC_DIR, "coturn.conf"),
-                      user=coturn_user, password=coturn_password, realm=server_host)
+                      secret=turn_secret, realm=server_host)
 
 print()
 print(f"Building {WEBRTC_POC}...")
@@ -262,8 +253,7 @@ frontend_target = path.join(DEPLOY_LOCAL_WEBRTC_POC_DIR, FRONTEND)
 shutil.copytree(FRONTEND_DIR, frontend_target)
 
 print(f"Frontend copied, replacing js config...")
-replace_js_config(js_path=frontend_target, server_host=server_host, server_port=http_port, use_https=use_https,
-                  turn_user=coturn_user, turn_password=coturn_password, coturn_port=coturn_port)
+replace_js_config(js_path=frontend_target, server_host=server_host, server_port=http_port, use_https=use_https)
 print("Js config replaced")
 
 print("Securing conference access by randomizing index.html...")
@@ -302,6 +292,9 @@ export_use_https = 'export WEBRTC_USE_HTTPS=true' if use_https else ""
 export_https_cert_path = f'export WEBRTC_HTTPS_CERT_PATH="{https_cert_path}"' if https_cert_path else ""
 export_https_key_path = f'export WEBRTC_HTTPS_KEY_PATH="{https_key_path}"' if https_key_path else ""
 export_participants_access = f'export WEBRTC_PARTICIPANTS_ACCESS="{participants_access_to_export(participants_access)}"'
+ice_relays = f'[{{"id":"stun","urls":["{MAIN_STUN_SERVER}"]}},{{"id":"coturn","urls":["turn:{server_host}:{coturn_port}"],"weight":1}}]'
+export_ice_relays = f"export WEBRTC_ICE_RELAYS='{ice_relays}'"
+export_turn_secret = f'export WEBRTC_TURN_SECRET="{turn_secret}"'
 
 executable_script = f"""
 #!bin/bash
@@ -317,6 +310,8 @@ export WEBRTC_STATIC_ROOT_DIR="${{to_package_dir}}{FRONTEND}"
 {export_https_cert_path}
 {export_https_key_path}
 {export_participants_access}
+{export_ice_relays}
+{export_turn_secret}
 
 jar_path=${{to_package_dir}}{EXECUTABLE_JAR_NAME}
 
@@ -0,0 +1,122 @@
+import json
+import subprocess
+from argparse import ArgumentParser
+from os import path
+import os
+
+ROOT_DIR = path.split(os.getcwd())[0]
+
+BENCHMARKS_DIR = path.join(ROOT_DIR, "benchmarks")
+BENCHMARKS_JAR = path.join(BENCHMARKS_DIR, "target", "benchmarks.jar")
+RESULTS_DIR = path.join(BENCHMARKS_DIR, "results")
+
+INCLUDE = "include"
+COMPARE_WITH = "compare_with"
+THRESHOLD = "threshold"
+SKIP_BUILD = "skip_build"
+
+SCORE = "score"
+THROUGHPUT = "thrpt"
+ALLOCATION_METRICS = ["·gc.alloc.rate.norm", "loopAllocRateNorm", "retainedBytesPerConnection"]
+
+
+def cmd_args():
+    parser = ArgumentParser()
+    parser.add_argument(f'--{INCLUDE}', default="",
+                        help="Regexp of benchmarks to run. Default: all")
+    parser.add_argument(f'--{COMPARE_WITH}',
+                        help="Results (json) of the previous run, to which results of this one will be compared")
+    parser.add_argument(f'--{THRESHOLD}', type=float, default=10,
+                        help="Difference, in percents, from which time or allocation change is reported as regression")
+    parser.add_argument(f'--{SKIP_BUILD}', action="store_true")
+
+    return vars(parser.parse_args())
+
+
+def execute_script(script):
+    code = subprocess.call(f"""
+        set -e
+        {script}
+    """, shell=True)
+    if code != 0:
+        raise Exception(f'Fail to run, return code: {code}')
+
+
+def git_revision():
+    return subprocess.check_output(["git", "rev-parse", "--short", "HEAD"], cwd=ROOT_DIR).decode().strip()
+
+
+def benchmark_key(result):
+    params = ",".join(f"{k}={v}" for k, v in sorted(result.get("params", {}).items()))
+    return f'{result["benchmark"]}({params})'
+
+
+def metrics(results_path):
+    with open(results_path) as f:
+        results = json.load(f)
+
+    benchmarks_metrics = {}
+    for r in results:
+        key = benchmark_key(r)
+        benchmark_metrics = {SCORE: r["primaryMetric"]["score"], "mode": r["mode"]}
+        for m in ALLOCATION_METRICS:
+            secondary = r.get("secondaryMetrics", {}).get(m)
+            if secondary:
+                benchmark_metrics[m] = secondary["score"]
+        benchmarks_metrics[key] = benchmark_metrics
+
+    return benchmarks_metrics
+
+
+def compare(previous_path, current_path, threshold):
+    previous = metrics(previous_path)
+    current = metrics(current_path)
+
+    regressions = 0
+    for key, current_metrics in sorted(current.items()):
+        previous_metrics = previous.get(key)
+        if not previous_metrics:
+            print(f"{key}: new benchmark")
+            continue
+
+        for m, value in current_metrics.items():
+            previous_value = previous_metrics.get(m)
+            if m == "mode" or not previous_value:
+                continue
+            change = (value - previous_value) * 100 / previous_value
+            # throughput is better when higher, time and allocation when lower
+            worse = -change if m == SCORE and current_metrics["mode"] == THROUGHPUT else change
+            if worse > threshold:
+                regressions += 1
+                print(f"[REGRESSION] {key} {m}: {previous_value:.3f} -> {value:.3f} ({change:+.1f}%)")
+            else:
+                print(f"{key} {m}: {previous_value:.3f} -> {value:.3f} ({change:+.1f}%)")
+
+    return regressions
+
+
+args = cmd_args()
+
+if not args[SKIP_BUILD]:
+    print("Building server and benchmarks...")
+    execute_script(f"""
+        cd {ROOT_DIR}
+        mvn clean install -DskipTests
+    """)
+
+os.makedirs(RESULTS_DIR, exist_ok=True)
+results_path = path.join(RESULTS_DIR, f"{git_revision()}.json")
+
+print()
+print(f"Running benchmarks, results will be available in {results_path}")
+execute_script(f"""
+    java -jar {BENCHMARKS_JAR} '{args[INCLUDE]}' -prof gc -rf json -rff {results_path}
+""")
+
+if args[COMPARE_WITH]:
+    print()
+    print(f"Comparing with {args[COMPARE_WITH]}...")
+    found = compare(args[COMPARE_WITH], results_path, args[THRESHOLD])
+    if found > 0:
+        raise Exception(f"{found} regressions found")
+    print("No regressions found")
@@ -5,6 +5,7 @@
 const signalServerEndpoint = "wss://localhost:4444";
 //replace_end
 
+//TURN relays, with credentials, are given by signal server, after authentication
 //replace_start
 const webrtcConfiguration = {
     iceTransportPolicy: "all",
@@ -12,11 +13,6 @@ const webrtcConfiguration = {
         {
             urls: "stun:stun.l.google.com:19302"
         }
-        // {
-        //     urls: "turn:10.11.157.139:3478",
-        //     credential: "turner123",
-        //     username: "turner"
-        // }
     ],
 };
 //replace_end
@@ -31,24 +31,53 @@ const CANDIDATE = "candidate";
 
 const USER_AUTHENTICATION = "USER_AUTHENTICATION";
 const USER_AUTHENTICATED = "USER_AUTHENTICATED";
+const SESSION_RESUME = "SESSION_RESUME";
+const ICE_SERVERS = "ICE_SERVERS";
 const JOIN_ROOM = "JOIN_ROOM";
 const LEAVE_ROOM = "LEAVE_ROOM";
 const ROOM_MEMBERS = "ROOM_MEMBERS";
+const MEMBER_JOINED = "MEMBER_JOINED";
+const MEMBER_LEFT = "MEMBER_LEFT";
 const PEER_LOG = "PEER_LOG";
 const PING = "PING";
 const PONG = "PONG";
+const FAILURE = "FAILURE";
 const SERVER_CLOSING = "SERVER_CLOSING";
-
-const PING_FREQUENCY = 2500;
-const PONG_FREQUENCY = 10000;
-let lastPong = 0;
-let pongInterval = null;
+const MEDIA_STATS = "MEDIA_STATS";
+const MEDIA_QUALITY = "MEDIA_QUALITY";
+const PEER_STATS = "PEER_STATS";
+
+//server keeps the connection alive with ping frames, answered by the browser; json PING only detects dead server
+//when it has been silent for long, connection lost on the way is reported by onclose
+const PING_FREQUENCY = 30000;
+const SERVER_SILENCE_LIMIT = PING_FREQUENCY + 10000;
+const LIVENESS_CHECK_FREQUENCY = 5000;
+const MEDIA_STATS_FREQUENCY = 5000;
+let lastServerMessage = 0;
+let roomVersion = -1;
+let roomMembers = [];
+let roomResyncing = false;
+let livenessInterval = null;
+let mediaStatsInterval = null;
+//advised by server, for the room size and reported stats
+let mediaQuality = null;
+//counters of the previous report, per peer, so that summaries cover the last interval only
+const previousPeerStats = new Map();
+let sessionToken = null;
+let resumeAttempts = 0;
+//issued by server for the session, relays of static config are used until then
+let iceServers = null;
 
 const ICE_CONNECTED = "connected";
 const ICE_DISCONNECTED = "disconnected";
 const ICE_FAILED = "failed";
 
 const RECONNECT_TIMEOUT = 4000;
+const RESUME_DELAY = 1000;
+const MAX_RESUME_ATTEMPTS = 10;
+
+const DEFAULT_ROOM = "default";
+const room = new URLSearchParams(window.location.search).get("room") || DEFAULT_ROOM;
 
 const highQualityVideoConstraints = {
     width: { ideal: 640, max: 960 },
@@ -56,18 +85,6 @@ const highQualityVideoConstraints = {
     frameRate: 25
 };
 
-const mediumQualityVideoConstraints = {
-    width: { ideal: 320, max: 480 },
-    height: { ideal: 240, max: 360 },
-    frameRate: 20
-};
-
-const lowQualityVideoConstraints = {
-    width: { ideal: 160, max: 200 },
-    height: { ideal: 120, max: 200 },
-    frameRate: 20
-};
-
 const streamConstraints = {
     video: highQualityVideoConstraints,
     audio: true
@@ -99,10 +116,6 @@ localVideo.onresize = () => console.log(`Local video size changed to ${localVide
 
 
 function connectToSignalServer() {
-    function isServerMessage(message) {
-        return message.type;
-    }
-
     const userSecret = userSelect.value;
     if (!userSelect) {
         alert("User need to be selected");
@@ -110,6 +123,7 @@ function connectToSignalServer() {
     }
 
     if (signalServerSocket) {
+        sessionToken = null;
         signalServerSocket.close();
         onCloseSignalServerSocket();
         return;
@@ -118,20 +132,33 @@ function connectToSignalServer() {
     user = parseInt(userSelect[userSelect.selectedIndex].text);
     console.log("Connecting as user = " + user);
 
-    signalServerSocket = new WebSocket(CONFIG.signalServerEndpoint);
+    openSignalServerSocket({ type: USER_AUTHENTICATION, data: userSecret });
+}
 
-    signalServerSocket.onopen = () => {
-        sendToSignalServer({
-            type: USER_AUTHENTICATION,
-            data: userSecret
-        });
-        alert("SignalServerConnection established, sending credentials");
+function openSignalServerSocket(authentication) {
+    function isServerMessage(message) {
+        return message.type;
+    }
+
+    const socket = new WebSocket(CONFIG.signalServerEndpoint);
+    signalServerSocket = socket;
+
+    socket.onopen = () => {
+        sendToSignalServer(authentication);
+        if (authentication.type == USER_AUTHENTICATION) {
+            alert("SignalServerConnection established, sending credentials");
+        } else {
+            console.log("SignalServerConnection established again, resuming session");
+        }
     };
 
-    signalServerSocket.onmessage = e => {
+    socket.onmessage = e => {
         try {
             const message = JSON.parse(e.data);
-            if (isServerMessage(message)) {
+            //server can batch ICE candidates into a single frame
+            if (Array.isArray(message)) {
+                message.forEach(m => handleEvent(m.from, m.event, m.data));
+            } else if (isServerMessage(message)) {
                 handleServerMessage(message);
             } else {
                 handleEvent(message.from, message.event, message.data);
@@ -141,62 +168,106 @@ function connectToSignalServer() {
         }
     };
 
-    signalServerSocket.onerror = e => alert(`SignalServerConnection error: ${JSON.stringify(e)}`);
+    socket.onerror = e => {
+        if (resumeAttempts == 0) {
+            alert(`SignalServerConnection error: ${JSON.stringify(e)}`);
+        }
+    };
 
-    signalServerSocket.onclose = onCloseSignalServerSocket;
+    //closing of the previous socket must not affect the current one
+    socket.onclose = e => {
+        if (socket == signalServerSocket) {
+            onCloseSignalServerSocket(e);
+        }
+    };
 }
 
 function onCloseSignalServerSocket(e) {
     if (signalServerSocket == null) {
         return;
     }
+    resetSignalServerConnection();
+
+    if (e && !e.wasClean) {
+        onSignalServerConnectionLost();
+        return;
+    }
+
+    sessionToken = null;
+    resumeAttempts = 0;
+    hangup();
+
+    if (e) {
+        alert(`Connection closed cleanly, code=${e.code}, reason=${e.reason}`);
+    }
+}
+
+function resetSignalServerConnection() {
     signalServerSocket = null;
     authenticated = false;
-    lastPong = 0;
+    lastServerMessage = 0;
     updateSignalServerConnectionStatus(OFF);
-    hangup();
 
-    if (pongInterval) {
-        clearInterval(pongInterval);
-        pongInterval = null;
+    if (livenessInterval) {
+        clearInterval(livenessInterval);
+        livenessInterval = null;
     }
+}
 
-    if (e) {
-        if (e.wasClean) {
-            alert(`Connection closed cleanly, code=${e.code}, reason=${e.reason}`);
-        } else {
-            alert(`Connection died, code=${e.code}`);
-        }
+/**
+ * Session is resumed, keeping peer connections and room membership, as long as server still has it.
+ */
+function onSignalServerConnectionLost() {
+    if (!sessionToken || resumeAttempts >= MAX_RESUME_ATTEMPTS) {
+        sessionToken = null;
+        resumeAttempts = 0;
+        hangup();
+        alert("Connection died and can not be resumed");
+        return;
     }
-}
 
-function setupPingPong() {
-    lastPong = Date.now();
+    resumeAttempts++;
+    console.log(`SignalServer connection lost, resuming session in ${RESUME_DELAY} ms, attempt: ${resumeAttempts}`);
+    setTimeout(() => {
+        if (!signalServerSocket && sessionToken) {
+            openSignalServerSocket({ type: SESSION_RESUME, data: sessionToken });
+        }
+    }, RESUME_DELAY);
+}
 
-    const ping = { type: PING };
-    sendToSignalServer(ping);
+/**
+ * Any message from the server proves it is alive, PING is sent only after PING_FREQUENCY of silence.
+ */
+function setupLivenessCheck() {
+    lastServerMessage = Date.now();
+    let pingSentAt = 0;
 
-    pongInterval = setInterval(() => {
+    livenessInterval = setInterval(() => {
         if (!signalServerSocket) {
             return;
         }
 
-        if (signalServerSocket.readyState == WebSocket.OPEN) {
-            sendToSignalServer(ping);
-        }
-
-        const inactive = (Date.now() - lastPong) > PONG_FREQUENCY;
-        if (inactive) {
+        const now = Date.now();
+        const silence = now - lastServerMessage;
+        if (silence > SERVER_SILENCE_LIMIT) {
             console.log("Inactive server connection, closing");
             signalServerSocket.close();
-            onCloseSignalServerSocket();
+            resetSignalServerConnection();
+            onSignalServerConnectionLost();
+            return;
         }
-    }, PING_FREQUENCY);
+
+        if (silence > PING_FREQUENCY && now - pingSentAt > PING_FREQUENCY
+            && signalServerSocket.readyState == WebSocket.OPEN) {
+            pingSentAt = now;
+            sendToSignalServer({ type: PING });
+        }
+    }, LIVENESS_CHECK_FREQUENCY);
 }
 
 function handleServerMessage(message) {
+    lastServerMessage = Date.now();
     if (message.type == PONG) {
-        lastPong = Date.now();
         return;
     }
 
@@ -204,12 +275,36 @@ function handleServerMessage(message) {
     if (message.type == USER_AUTHENTICATED) {
         console.log("SignalServerConnection is authenticated");
         authenticated = true;
+        sessionToken = message.data ? message.data.sessionToken : null;
+        resumeAttempts = 0;
+        if (message.data && message.data.resumed) {
+            console.log("Session is resumed, keeping peer connections");
+        }
         updateSignalServerConnectionStatus(ON);
-        if (lastPong == 0) {
-            setupPingPong();
+        if (!livenessInterval) {
+            setupLivenessCheck();
         }
+    } else if (message.type == ICE_SERVERS) {
+        iceServers = message.data.iceServers;
     } else if (message.type == ROOM_MEMBERS) {
-        setupPeerConnections(message.data);
+        if (message.data.roomId == room) {
+            roomVersion = message.data.version;
+            roomMembers = message.data.members;
+            roomResyncing = false;
+            setupPeerConnections(roomMembers);
+        } else {
+            console.log(`Members of other room (${message.data.roomId}), ignoring them`);
+        }
+    } else if (message.type == MEMBER_JOINED || message.type == MEMBER_LEFT) {
+        handleMembersChange(message.type == MEMBER_JOINED, message.data);
+    } else if (message.type == FAILURE && message.data.source == SESSION_RESUME) {
+        console.log("Session can not be resumed, authenticating again");
+        sessionToken = null;
+        resumeAttempts = 0;
+        hangup();
+        sendToSignalServer({ type: USER_AUTHENTICATION, data: userSelect.value });
+    } else if (message.type == MEDIA_QUALITY) {
+        applyMediaQuality(message.data);
     } else if (message.type == SERVER_CLOSING) {
         console.log("Server is closing...");
     } else {
@@ -217,6 +312,30 @@ function handleServerMessage(message) {
     }
 }
 
+function handleMembersChange(joined, change) {
+    if (change.roomId != room) {
+        console.log(`Members change of other room (${change.roomId}), ignoring it`);
+        return;
+    }
+    if (roomResyncing) {
+        return;
+    }
+    if (change.fromVersion != roomVersion) {
+        console.log(`Members change from ${change.fromVersion} version, but we have ${roomVersion}, joining again`);
+        roomResyncing = true;
+        sendToSignalServer({ type: JOIN_ROOM, data: room });
+        return;
+    }
+
+    roomVersion = change.version;
+    if (joined) {
+        roomMembers = roomMembers.concat(change.members.filter(m => !roomMembers.includes(m)));
+    } else {
+        roomMembers = roomMembers.filter(m => !change.members.includes(m));
+    }
+    setupPeerConnections(roomMembers);
+}
+
 function sendToSignalServer(data) {
     signalServerSocket.send(JSON.stringify(data));
 }
@@ -263,29 +382,132 @@ function noPeerConnections() {
     return peerConnections.size == 0;
 }
 
-function updateVideoStreamQuality() {
-    if (localStream == null || true) {
-        console.log("Local stream is not set, skipping quality change");
+/**
+ * Every interval, summaries of all peer connections are sent for server telemetry (PEER_STATS),
+ * and the lowest available bitrate and the highest round trip time of them for quality advice (MEDIA_STATS).
+ */
+async function reportMediaStats() {
+    if (noPeerConnections()) {
         return;
     }
-    //FIX it: not working on chrome, firefox not supporting constraints (?) almost at all
-    let newConstraints;
-    if (peerConnections.size <= 2) {
-        console.log("Up to 2 peers, using high quality video");
-        newConstraints = highQualityVideoConstraints;
-    } else {
-        console.log("More than 2 peers, switching to medium quality");
-        newConstraints = mediumQualityVideoConstraints;
+    const summaries = [];
+    let availableBitrate = 0;
+    let roundTripTime = 0;
+    for (const [peerId, peerConnection] of peerConnections.entries()) {
+        try {
+            const stats = await peerConnection.getStats();
+            const candidatePair = selectedCandidatePair(stats);
+            if (!candidatePair) {
+                continue;
+            }
+            if (candidatePair.availableOutgoingBitrate) {
+                const bitrate = Math.round(candidatePair.availableOutgoingBitrate / 1000);
+                availableBitrate = availableBitrate == 0 ? bitrate : Math.min(availableBitrate, bitrate);
+            }
+            if (candidatePair.currentRoundTripTime) {
+                roundTripTime = Math.max(roundTripTime, Math.round(candidatePair.currentRoundTripTime * 1000));
+            }
+            const summary = peerStatsSummary(peerId, stats, candidatePair);
+            if (summary) {
+                summaries.push(summary);
+            }
+        } catch (e) {
+            console.log("Failed to gather media stats", e);
+        }
+    }
+    for (const peerId of previousPeerStats.keys()) {
+        if (!peerConnections.has(peerId)) {
+            previousPeerStats.delete(peerId);
+        }
     }
 
-    streamConstraints.video = newConstraints;
+    if (signalServerSocket && authenticated) {
+        sendToSignalServer({ type: MEDIA_STATS, data: { availableBitrate: availableBitrate, roundTripTime: roundTripTime } });
+        if (summaries.length > 0) {
+            sendToSignalServer({ type: PEER_STATS, data: summaries });
+        }
+    }
+}
 
-    localStream.getVideoTracks().forEach(t => {
-        console.log("Applying new constraints to stream...", newConstraints);
-        t.applyConstraints(streamConstraints)
-            .then(() => console.log("Constraints applied"))
-            .catch(e => console.log("Fail to apply new constraints", e));
-    });
+/**
+ * Bitrate and packet loss are of the last interval, so the first stats of the peer (or of its recreated connection)
+ * are only remembered.
+ */
+function peerStatsSummary(peerId, stats, candidatePair) {
+    let packetsLost = 0;
+    let packetsReceived = 0;
+    let jitter = 0;
+    for (const v of stats.values()) {
+        if (v.type == "inbound-rtp") {
+            packetsLost += v.packetsLost || 0;
+            packetsReceived += v.packetsReceived || 0;
+            jitter = Math.max(jitter, v.jitter || 0);
+        }
+    }
+    const current = {
+        timestamp: candidatePair.timestamp,
+        bytesSent: candidatePair.bytesSent || 0,
+        packetsLost: packetsLost,
+        packetsReceived: packetsReceived
+    };
+    const previous = previousPeerStats.get(peerId);
+    previousPeerStats.set(peerId, current);
+    if (!previous || current.timestamp <= previous.timestamp || current.bytesSent < previous.bytesSent) {
+        return null;
+    }
+
+    const seconds = (current.timestamp - previous.timestamp) / 1000;
+    const lost = Math.max(0, current.packetsLost - previous.packetsLost);
+    const expected = lost + Math.max(0, current.packetsReceived - previous.packetsReceived);
+    const localCandidate = stats.get(candidatePair.localCandidateId);
+    return {
+        peerId: peerId,
+        candidateType: localCandidate ? localCandidate.candidateType : null,
+        bitrate: Math.round((current.bytesSent - previous.bytesSent) * 8 / 1000 / seconds),
+        packetLoss: expected > 0 ? lost * 100 / expected : 0,
+        jitter: Math.round(jitter * 1000),
+        roundTripTime: Math.round((candidatePair.currentRoundTripTime || 0) * 1000)
+    };
+}
+
+function applyMediaQuality(quality) {
+    mediaQuality = quality;
+    streamConstraints.video = {
+        width: { ideal: quality.width },
+        height: { ideal: quality.height },
+        frameRate: quality.frameRate
+    };
+
+    if (localStream) {
+        localStream.getVideoTracks().forEach(t => {
+            console.log("Applying advised constraints to stream...", streamConstraints.video);
+            t.applyConstraints(streamConstraints.video)
+                .catch(e => console.log("Failed to apply advised constraints", e));
+        });
+    }
+    for (const peerConnection of peerConnections.values()) {
+        applyMaxBitrate(peerConnection);
+    }
+}
+
+/**
+ * Senders have no encodings until negotiation, so it is applied again when peer is connected.
+ */
+function applyMaxBitrate(peerConnection) {
+    if (!mediaQuality) {
+        return;
+    }
+    peerConnection.getSenders()
+        .filter(s => s.track && s.track.kind == "video")
+        .forEach(s => {
+            const parameters = s.getParameters();
+            if (!parameters.encodings || parameters.encodings.length == 0) {
+                return;
+            }
+            parameters.encodings.forEach(e => e.maxBitrate = mediaQuality.maxBitrate * 1000);
+            s.setParameters(parameters)
+                .catch(e => console.log("Failed to set max bitrate", e));
+        });
 }
 
 async function handleOffer(from, offer) {
@@ -434,7 +656,8 @@ async function call() {
     }
 
     inCall = true;
-    sendToSignalServer({ type: JOIN_ROOM });
+    sendToSignalServer({ type: JOIN_ROOM, data: room });
+    mediaStatsInterval = setInterval(reportMediaStats, MEDIA_STATS_FREQUENCY);
     remoteContainerParent.classList.remove(NO_DISPLAY_CLASS);
 }
 
@@ -463,7 +686,7 @@ function setupPeerConnections(peers) {
     }
 
     if (initiateOffer) {
-        console.log("RTCPeerConnection configuration: ", CONFIG.webrtcConfiguration);
+        console.log("RTCPeerConnection configuration: ", webrtcConfiguration());
         console.log("Peers to connect: ", peers);
     }
 
@@ -488,7 +711,6 @@ function setupPeerConnections(peers) {
         initiateOffer = false;
         videoGridLayout.refresh();
         setupRemoteVideosListeners();
-        updateVideoStreamQuality();
     }
 }
 
@@ -513,8 +735,15 @@ function closePeer(peerId, peerConnection) {
     removePeerVideo(peerId);
 }
 
+function webrtcConfiguration() {
+    if (iceServers) {
+        return { ...CONFIG.webrtcConfiguration, iceServers: iceServers };
+    }
+    return CONFIG.webrtcConfiguration;
+}
+
 function newPeerConnection(peerId, offerer) {
-    const peerConnection = new RTCPeerConnection(CONFIG.webrtcConfiguration);
+    const peerConnection = new RTCPeerConnection(webrtcConfiguration());
 
     setupPeerConnection(peerId, peerConnection, offerer);
 
@@ -594,6 +823,7 @@ function setupPeerConnection(peerId, peerConnection, offerer) {
         } else if (peerConnection.iceConnectionState == ICE_CONNECTED) {
             peerLog(peerId, `Peer ${ICE_CONNECTED}, trying to find connected candidates...`);
             logConnectionStats(peerId, peerConnection);
+            applyMaxBitrate(peerConnection);
         }
     };
 
@@ -684,7 +914,7 @@ function peerLog(peerId, message, ...objects) {
 
     let jsonObjects;
     if (objects.length > 0) {
-        jsonObjects = objects.map(o => JSON.stringify(o, null, 2));
+        jsonObjects = objects.map(o => JSON.stringify(o));
     } else {
         jsonObjects = [];
     }
@@ -783,6 +1013,11 @@ function hangup() {
     console.log("Ending call");
 
     inCall = false;
+    if (mediaStatsInterval) {
+        clearInterval(mediaStatsInterval);
+        mediaStatsInterval = null;
+    }
+    previousPeerStats.clear();
 
     for (const [id, pc] of peerConnections.entries()) {
         console.log(`Closing ${id} peer connection`);
@@ -791,10 +1026,13 @@ function hangup() {
 
     peerConnections.clear();
     initiateOffer = true;
+    roomVersion = -1;
+    roomMembers = [];
+    roomResyncing = false;
 
-    if (signalServerSocket) {
+    if (signalServerSocket && authenticated) {
         console.log("Sending message to SignalServer");
-        sendToSignalServer({ type: LEAVE_ROOM });
+        sendToSignalServer({ type: LEAVE_ROOM, data: room });
     }
 
     hangupButton.disabled = true;